@@ -0,0 +1,253 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.serialize;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Deterministic benchmark inputs. Points are mostly clustered around metro areas, the way GPS pings
+ * and store locations are, with a uniform background over the sphere.
+ */
+final class BenchmarkData {
+  /** Number of distinct inputs per benchmark. A power of two so indexes can be masked. */
+  static final int SIZE = 1024;
+
+  static final int MASK = SIZE - 1;
+
+  private static final long SEED = 0x5eed_4835L;
+  private static final double CLUSTERED_FRACTION = 0.8;
+  /** Standard deviation, in degrees, of points around a metro center. */
+  private static final double CLUSTER_SPREAD = 0.25;
+
+  private static final double[][] METRO_CENTERS = {
+    {40.7128, -74.0060}, // New York
+    {37.7749, -122.4194}, // San Francisco
+    {51.5074, -0.1278}, // London
+    {35.6762, 139.6503}, // Tokyo
+    {-23.5505, -46.6333}, // Sao Paulo
+    {19.0760, 72.8777}, // Mumbai
+    {-33.8688, 151.2093}, // Sydney
+    {6.5244, 3.3792}, // Lagos
+    {55.7558, 37.6173}, // Moscow
+    {1.3521, 103.8198}, // Singapore
+    {64.1466, -21.9426}, // Reykjavik
+    {-54.8019, -68.3030}, // Ushuaia
+  };
+
+  private BenchmarkData() {}
+
+  /** Returns SIZE points as <code>{lat, lng}</code> degree pairs. */
+  static double[][] points() {
+    Random random = new Random(SEED);
+    double[][] points = new double[SIZE][];
+    for (int i = 0; i < SIZE; i++) {
+      if (random.nextDouble() < CLUSTERED_FRACTION) {
+        double[] center = METRO_CENTERS[random.nextInt(METRO_CENTERS.length)];
+        points[i] =
+            new double[] {
+              clampLat(center[0] + random.nextGaussian() * CLUSTER_SPREAD),
+              wrapLng(center[1] + random.nextGaussian() * CLUSTER_SPREAD)
+            };
+      } else {
+        // Uniform over the surface of the sphere, rather than over the lat/lng rectangle
+        points[i] =
+            new double[] {
+              Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+              random.nextDouble() * 360 - 180
+            };
+      }
+    }
+    return points;
+  }
+
+  /** Returns SIZE cells at the given resolution, one per point. */
+  static long[] cells(int res) {
+    double[][] points = points();
+    long[] cells = new long[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      cells[i] = H3Plugin.h3.latLngToCell(points[i][0], points[i][1], res);
+    }
+    return cells;
+  }
+
+  /**
+   * Returns cells around <code>cells</code>, at the same positions, which are up to <code>k</code>
+   * grid steps away (taken from the outermost ring of the disk).
+   */
+  static long[] distant(long[] cells, int k) {
+    long[] distant = new long[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      List<Long> disk = H3Plugin.h3.gridDisk(cells[i], k);
+      distant[i] = disk.get(disk.size() - 1);
+    }
+    return distant;
+  }
+
+  /** Returns SIZE serialized points. */
+  static Slice[] pointGeometries() {
+    GeometryFactory geometryFactory = new GeometryFactory();
+    double[][] points = points();
+    Slice[] slices = new Slice[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      slices[i] =
+          serialize(geometryFactory.createPoint(new Coordinate(points[i][1], points[i][0])));
+    }
+    return slices;
+  }
+
+  /**
+   * Returns <code>count</code> serialized polygons around the metro points, approximating circles
+   * of the given radius (in degrees) with <code>vertices</code> jittered vertices.
+   */
+  static Slice[] polygons(int count, double radius, int vertices) {
+    GeometryFactory geometryFactory = new GeometryFactory();
+    Random random = new Random(SEED);
+    double[][] points = points();
+    Slice[] slices = new Slice[count];
+    for (int i = 0; i < count; i++) {
+      double[] center = points[i % SIZE];
+      Coordinate[] ring = new Coordinate[vertices + 1];
+      for (int v = 0; v < vertices; v++) {
+        double angle = 2 * Math.PI * v / vertices;
+        double r = radius * (0.75 + 0.5 * random.nextDouble());
+        ring[v] =
+            new Coordinate(
+                center[1] + r * Math.cos(angle) / Math.cos(Math.toRadians(center[0])),
+                clampLat(center[0] + r * Math.sin(angle)));
+      }
+      ring[vertices] = ring[0];
+      slices[i] = serialize(geometryFactory.createPolygon(ring));
+    }
+    return slices;
+  }
+
+  /**
+   * Returns <code>count</code> islands around Lagos, scattered over a few degrees, each a jittered
+   * circle of up to <code>radius</code> degrees with <code>vertices</code> vertices.
+   */
+  static Polygon[] archipelago(int count, double radius, int vertices) {
+    GeometryFactory geometryFactory = new GeometryFactory();
+    Random random = new Random(SEED);
+    double[] center = METRO_CENTERS[7];
+    Polygon[] islands = new Polygon[count];
+    for (int i = 0; i < count; i++) {
+      double lat = center[0] + random.nextDouble() * 4 - 2;
+      double lng = center[1] + random.nextDouble() * 4 - 2;
+      double islandRadius = radius * (0.2 + 0.8 * random.nextDouble());
+      Coordinate[] ring = new Coordinate[vertices + 1];
+      for (int v = 0; v < vertices; v++) {
+        double angle = 2 * Math.PI * v / vertices;
+        double r = islandRadius * (0.75 + 0.5 * random.nextDouble());
+        ring[v] = new Coordinate(lng + r * Math.cos(angle), lat + r * Math.sin(angle));
+      }
+      ring[vertices] = ring[0];
+      islands[i] = geometryFactory.createPolygon(ring);
+    }
+    return islands;
+  }
+
+  /**
+   * Returns a <code>size</code> by <code>size</code> grid of counties around New York, each <code>
+   * width</code> degrees across, sharing jittered borders with <code>vertices</code> vertices per
+   * side.
+   */
+  static Polygon[] counties(int size, double width, int vertices) {
+    GeometryFactory geometryFactory = new GeometryFactory();
+    Random random = new Random(SEED);
+    double[] center = METRO_CENTERS[0];
+    // Shared vertices along every grid line, so that neighboring counties have identical borders
+    int points = size * vertices + 1;
+    double[][] lats = new double[points][points];
+    double[][] lngs = new double[points][points];
+    double step = width / vertices;
+    for (int y = 0; y < points; y++) {
+      for (int x = 0; x < points; x++) {
+        boolean corner = x % vertices == 0 && y % vertices == 0;
+        double jitter = corner ? 0 : step / 3;
+        lats[y][x] = center[0] + (y - points / 2) * step + (random.nextDouble() - 0.5) * jitter;
+        lngs[y][x] = center[1] + (x - points / 2) * step + (random.nextDouble() - 0.5) * jitter;
+      }
+    }
+    Polygon[] counties = new Polygon[size * size];
+    for (int cy = 0; cy < size; cy++) {
+      for (int cx = 0; cx < size; cx++) {
+        List<Coordinate> ring = new ArrayList<>();
+        int x0 = cx * vertices;
+        int y0 = cy * vertices;
+        for (int i = 0; i < vertices; i++) {
+          ring.add(new Coordinate(lngs[y0][x0 + i], lats[y0][x0 + i]));
+        }
+        for (int i = 0; i < vertices; i++) {
+          ring.add(new Coordinate(lngs[y0 + i][x0 + vertices], lats[y0 + i][x0 + vertices]));
+        }
+        for (int i = vertices; i > 0; i--) {
+          ring.add(new Coordinate(lngs[y0 + vertices][x0 + i], lats[y0 + vertices][x0 + i]));
+        }
+        for (int i = vertices; i > 0; i--) {
+          ring.add(new Coordinate(lngs[y0 + i][x0], lats[y0 + i][x0]));
+        }
+        ring.add(ring.get(0));
+        counties[cy * size + cx] = geometryFactory.createPolygon(ring.toArray(new Coordinate[0]));
+      }
+    }
+    return counties;
+  }
+
+  /** Returns the given cells as an <code>ARRAY(BIGINT)</code> block. */
+  static Block block(List<Long> cells) {
+    return H3Plugin.longListToBlock(cells);
+  }
+
+  /** Returns the children of <code>cells</code> at <code>childRes</code>, as blocks. */
+  static Block[] childBlocks(long[] cells, int count, int childRes) {
+    Block[] blocks = new Block[count];
+    for (int i = 0; i < count; i++) {
+      blocks[i] = block(H3Plugin.h3.cellToChildren(cells[i], childRes));
+    }
+    return blocks;
+  }
+
+  /** Returns a gridDisk around each of <code>cells</code>, as blocks. */
+  static Block[] diskBlocks(long[] cells, int count, int k) {
+    Block[] blocks = new Block[count];
+    for (int i = 0; i < count; i++) {
+      blocks[i] = block(new ArrayList<>(H3Plugin.h3.gridDisk(cells[i], k)));
+    }
+    return blocks;
+  }
+
+  private static double clampLat(double lat) {
+    return Math.max(-89.9, Math.min(89.9, lat));
+  }
+
+  private static double wrapLng(double lng) {
+    if (lng > 180) {
+      return lng - 360;
+    } else if (lng < -180) {
+      return lng + 360;
+    }
+    return lng;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the <code>benchmark</code> Maven profile. Runs the JMH benchmarks with the GC
+ * profiler so that both time (ns/op) and allocation (bytes/op) are reported.
+ *
+ * <p>Arguments are given as <code>key=value</code> pairs:
+ *
+ * <ul>
+ *   <li><code>include</code>: regular expression of benchmarks to run
+ *   <li><code>mode</code>: <code>run</code> to only print results, <code>record</code> to write the
+ *       results to the baseline file, or <code>compare</code> to check the results against the
+ *       baseline file and exit non-zero if any benchmark regressed
+ *   <li><code>baseline</code>: path of the baseline file
+ *   <li><code>tolerance</code>: allowed relative regression before <code>compare</code> fails
+ *   <li><code>metrics</code>: <code>true</code> to run every benchmark with {@link FunctionMetrics}
+ *       enabled, so that comparing with a baseline recorded without shows their overhead
+ * </ul>
+ */
+public final class BenchmarkRunner {
+  private static final String SCORE_SUFFIX = ".score";
+  private static final String ALLOC_SUFFIX = ".alloc";
+  private static final String ALLOC_RESULT = "gc.alloc.rate.norm";
+  /** Allocation noise (bytes/op) below which a change is never considered a regression. */
+  private static final double ALLOC_SLACK = 16;
+
+  private BenchmarkRunner() {}
+
+  public static void main(String[] args) throws RunnerException, IOException {
+    Map<String, String> arguments = new HashMap<>();
+    for (String arg : args) {
+      int split = arg.indexOf('=');
+      if (split < 0) {
+        throw new IllegalArgumentException("Expected key=value argument, got: " + arg);
+      }
+      arguments.put(arg.substring(0, split), arg.substring(split + 1));
+    }
+    String include = arguments.getOrDefault("include", ".*");
+    String mode = arguments.getOrDefault("mode", "run");
+    Path baseline = Paths.get(arguments.getOrDefault("baseline", "benchmark-baseline.properties"));
+    double tolerance = Double.parseDouble(arguments.getOrDefault("tolerance", "0.10"));
+    boolean metrics = Boolean.parseBoolean(arguments.getOrDefault("metrics", "false"));
+
+    ChainedOptionsBuilder options =
+        new OptionsBuilder()
+            .include(include)
+            .mode(Mode.AverageTime)
+            .timeUnit(TimeUnit.NANOSECONDS)
+            .addProfiler(GCProfiler.class)
+            .shouldFailOnError(true);
+    if (metrics) {
+      // Prepended, so that the arguments benchmarks append to their forks are kept
+      options.jvmArgsPrepend("-D" + H3PluginConfig.METRICS_ENABLED_PROPERTY + "=true");
+    }
+    SortedMap<String, Double> results = summarize(new Runner(options.build()).run());
+
+    switch (mode) {
+      case "run":
+        break;
+      case "record":
+        writeBaseline(baseline, results);
+        System.out.printf("Wrote %d results to %s%n", results.size(), baseline);
+        break;
+      case "compare":
+        if (!compare(readBaseline(baseline), results, tolerance)) {
+          System.exit(1);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown mode: " + mode);
+    }
+  }
+
+  /** Flattens JMH results into <code>benchmark(params).score/alloc</code> keys. */
+  static SortedMap<String, Double> summarize(Collection<RunResult> runResults) {
+    SortedMap<String, Double> results = new TreeMap<>();
+    for (RunResult runResult : runResults) {
+      String key = benchmarkKey(runResult.getParams());
+      results.put(key + SCORE_SUFFIX, runResult.getPrimaryResult().getScore());
+      for (Map.Entry<String, Result> secondary :
+          runResult.getSecondaryResults().entrySet()) {
+        // JMH versions differ on whether the GC profiler prefixes its results with a dot
+        if (secondary.getKey().endsWith(ALLOC_RESULT)) {
+          results.put(key + ALLOC_SUFFIX, secondary.getValue().getScore());
+        }
+      }
+    }
+    return results;
+  }
+
+  private static String benchmarkKey(BenchmarkParams params) {
+    StringBuilder key = new StringBuilder(params.getBenchmark());
+    if (!params.getParamsKeys().isEmpty()) {
+      key.append('(');
+      boolean first = true;
+      for (String param : params.getParamsKeys()) {
+        if (!first) {
+          key.append(',');
+        }
+        key.append(param).append('=').append(params.getParam(param));
+        first = false;
+      }
+      key.append(')');
+    }
+    return key.toString();
+  }
+
+  static boolean compare(
+      Map<String, Double> baseline, Map<String, Double> results, double tolerance) {
+    boolean passed = true;
+    for (Map.Entry<String, Double> result : results.entrySet()) {
+      Double expected = baseline.get(result.getKey());
+      if (expected == null) {
+        System.out.printf("NEW        %s = %.2f%n", result.getKey(), result.getValue());
+        continue;
+      }
+      double actual = result.getValue();
+      double change = expected == 0 ? 0 : (actual - expected) / expected;
+      boolean regressed = change > tolerance;
+      if (result.getKey().endsWith(ALLOC_SUFFIX)) {
+        regressed = regressed && actual - expected > ALLOC_SLACK;
+      }
+      System.out.printf(
+          "%-10s %s = %.2f (baseline %.2f, %+.1f%%)%n",
+          regressed ? "REGRESSED" : "OK",
+          result.getKey(),
+          actual,
+          expected,
+          change * 100);
+      passed &= !regressed;
+    }
+    return passed;
+  }
+
+  static SortedMap<String, Double> readBaseline(Path path) throws IOException {
+    SortedMap<String, Double> baseline = new TreeMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        int split = line.lastIndexOf('=');
+        baseline.put(line.substring(0, split), Double.parseDouble(line.substring(split + 1)));
+      }
+    }
+    return baseline;
+  }
+
+  static void writeBaseline(Path path, SortedMap<String, Double> results) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      writer.write("# h3-presto benchmark baseline: ns/op (.score) and bytes/op (.alloc)");
+      writer.newLine();
+      for (Map.Entry<String, Double> result : results.entrySet()) {
+        writer.write(result.getKey() + "=" + result.getValue());
+        writer.newLine();
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>h3_cell_to_boundary</code> without and with the {@link CellGeometryCache}, which holds all
+ * of the benchmark's cells after warmup. The <code>Contended</code> variants run 64 threads, as
+ * drivers on a large worker would, to show whether they wait for each other in the cache. The
+ * <code>cacheHit</code> variants look up cached cells directly, without the function around them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class CellGeometryCacheBenchmark {
+  private static final String CACHE_ENABLED =
+      "-D" + H3PluginConfig.GEOMETRY_CACHE_SIZE_PROPERTY + "=100000";
+  private static final int THREADS = 64;
+
+  private long[] cells;
+  private int i;
+
+  /** A cache holding all of the cells, shared by the threads of the benchmark. */
+  @State(Scope.Benchmark)
+  public static class FilledCache {
+    final CellGeometryCache cache = new CellGeometryCache(BenchmarkData.SIZE * 2, 0);
+    final Slice geometry = GeometrySlices.point(0, 0);
+    final LongFunction<Slice> serializer = cell -> geometry;
+
+    @Setup
+    public void setup() {
+      for (long cell : BenchmarkData.cells(9)) {
+        cache.get(cell, serializer);
+      }
+    }
+  }
+
+  @Setup
+  public void setup() {
+    cells = BenchmarkData.cells(9);
+  }
+
+  @Benchmark
+  public Slice cacheHit(FilledCache filled) {
+    return filled.cache.get(cells[i++ & BenchmarkData.MASK], filled.serializer);
+  }
+
+  @Benchmark
+  @Threads(THREADS)
+  public Slice cacheHitContended(FilledCache filled) {
+    return filled.cache.get(cells[i++ & BenchmarkData.MASK], filled.serializer);
+  }
+
+  @Benchmark
+  public Slice cellToBoundary() {
+    return IndexingFunctions.cellToBoundary(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = CACHE_ENABLED)
+  public Slice cellToBoundaryCached() {
+    return IndexingFunctions.cellToBoundary(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  @Threads(THREADS)
+  public Slice cellToBoundaryContended() {
+    return IndexingFunctions.cellToBoundary(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  @Threads(THREADS)
+  @Fork(value = 1, jvmArgsAppend = CACHE_ENABLED)
+  public Slice cellToBoundaryCachedContended() {
+    return IndexingFunctions.cellToBoundary(cells[i++ & BenchmarkData.MASK]);
+  }
+}
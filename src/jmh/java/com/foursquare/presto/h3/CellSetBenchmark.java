@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cell sets compared with <code>ARRAY(BIGINT)</code>, on two overlapping disks of cells. The
+ * <code>array</code> variants do what <code>array_intersect</code> and <code>contains</code> do: a
+ * hash set of one array, and a linear scan. For space, allocation per operation (<code>
+ * gc.alloc.rate.norm</code>) of <code>encode</code> is the size of a set, against 8 bytes per cell
+ * for the array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@State(Scope.Thread)
+public class CellSetBenchmark {
+  private static final int RES = 9;
+
+  /** Radius of the disks: about 30 thousand and 1 million cells. */
+  @Param({"100", "577"})
+  public int k;
+
+  private Block diskA;
+  private Block diskB;
+  private Slice setA;
+  private Slice setB;
+  private long cell;
+
+  @Setup
+  public void setup() {
+    long origin = BenchmarkData.cells(RES)[0];
+    // Overlapping by about half
+    long other = H3Plugin.h3.gridRingUnsafe(origin, k).get(0);
+    diskA = BenchmarkData.block(new ArrayList<>(H3Plugin.h3.gridDisk(origin, k)));
+    diskB = BenchmarkData.block(new ArrayList<>(H3Plugin.h3.gridDisk(other, k)));
+    setA = CellSetFunctions.cellSet(diskA);
+    setB = CellSetFunctions.cellSet(diskB);
+    // Last in the disk, so the worst case for a scan
+    cell = diskA.getLong(diskA.getPositionCount() - 1);
+  }
+
+  @Benchmark
+  public Slice encode() {
+    return CellSetFunctions.cellSet(diskA);
+  }
+
+  @Benchmark
+  public Slice intersection() {
+    return CellSetFunctions.cellSetIntersection(setA, setB);
+  }
+
+  @Benchmark
+  public Block intersectionArray() {
+    LongHashSet b = new LongHashSet(diskB.getPositionCount());
+    b.addAll(H3Plugin.longBlockToArray(diskB));
+    long[] a = H3Plugin.longBlockToArray(diskA);
+    int count = 0;
+    for (long value : a) {
+      if (b.contains(value)) {
+        a[count++] = value;
+      }
+    }
+    return H3Plugin.longArrayToBlock(Arrays.copyOf(a, count));
+  }
+
+  @Benchmark
+  public Slice union() {
+    return CellSetFunctions.cellSetUnion(setA, setB);
+  }
+
+  @Benchmark
+  public Slice difference() {
+    return CellSetFunctions.cellSetDifference(setA, setB);
+  }
+
+  @Benchmark
+  public Boolean contains() {
+    return CellSetFunctions.cellSetContains(setA, cell);
+  }
+
+  @Benchmark
+  public boolean containsArray() {
+    for (int i = 0; i < diskA.getPositionCount(); i++) {
+      if (diskA.getLong(i) == cell) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
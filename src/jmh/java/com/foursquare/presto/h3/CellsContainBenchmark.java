@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>h3_cells_contain</code> of resolution 12 cells in a compacted coverage of a disk of
+ * resolution 9 cells, compared with what SQL does without it: <code>contains(coverage,
+ * h3_cell_to_parent(cell, r))</code> for each resolution, each a scan of the array. The uncached
+ * variant builds the index for every cell, and the column variant passes a different block with
+ * the same cells for each cell, as for a coverage read from a column, which is scanned instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@State(Scope.Thread)
+public class CellsContainBenchmark {
+  private static final int RES = 9;
+  private static final int QUERY_RES = 12;
+
+  /** Radius of the disk: about 1 and 4 million cells before compaction. */
+  @Param({"577", "1155"})
+  public int k;
+
+  private Block coverage;
+  private long[] queries;
+  private int i;
+
+  @Setup
+  public void setup() {
+    long origin = BenchmarkData.cells(RES)[0];
+    Block disk = BenchmarkData.block(new ArrayList<>(H3Plugin.h3.gridDisk(origin, k)));
+    coverage = HierarchyFunctions.compactCells(disk);
+    // Half inside the disk and half in the ring around it
+    long[] inside = H3Plugin.longBlockToArray(disk);
+    long[] outside = H3Plugin.h3Primitives.gridRingUnsafe(origin, k + 1);
+    queries = new long[BenchmarkData.SIZE];
+    for (int q = 0; q < queries.length; q++) {
+      long[] cells = q % 2 == 0 ? inside : outside;
+      long cell = cells[(int) ((long) q * 7919 % cells.length)];
+      queries[q] = H3Index.cellToCenterChild(cell, QUERY_RES);
+    }
+  }
+
+  private long nextQuery() {
+    return queries[i++ & BenchmarkData.MASK];
+  }
+
+  @Benchmark
+  public Boolean cellsContain() {
+    return HierarchyFunctions.cellsContain(coverage, nextQuery());
+  }
+
+  @Benchmark
+  public Boolean cellsContainColumn() {
+    return HierarchyFunctions.cellsContain(
+        coverage.getRegion(0, coverage.getPositionCount()), nextQuery());
+  }
+
+  @Benchmark
+  public boolean uncached() {
+    return CompactedCellIndex.build(coverage).contains(nextQuery());
+  }
+
+  @Benchmark
+  public boolean parentScans() {
+    long cell = nextQuery();
+    for (int r = 0; r <= QUERY_RES; r++) {
+      long parent = H3Index.cellToParent(cell, r);
+      for (int p = 0; p < coverage.getPositionCount(); p++) {
+        if (coverage.getLong(p) == parent) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
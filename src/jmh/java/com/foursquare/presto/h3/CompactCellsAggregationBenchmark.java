@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>h3_compact_cells_agg</code> on a disk of cells split between two partial aggregations,
+ * compared with <code>h3_compact_cells</code> of the array of cells. Per-operation allocation
+ * (<code>gc.alloc.rate.norm</code>) compares the compacted state with the array that <code>
+ * array_agg</code> would build.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@State(Scope.Thread)
+public class CompactCellsAggregationBenchmark {
+  private static final int RES = 9;
+
+  /** Radius of the disk of cells: about 30 thousand and 1 million cells. */
+  @Param({"100", "577"})
+  public int k;
+
+  private long[] disk;
+  private Block diskBlock;
+
+  @Setup
+  public void setup() {
+    long origin = BenchmarkData.cells(RES)[0];
+    diskBlock = BenchmarkData.block(new ArrayList<>(H3Plugin.h3.gridDisk(origin, k)));
+    disk = H3Plugin.longBlockToArray(diskBlock);
+  }
+
+  @Benchmark
+  public long[] aggregation() {
+    CompactCellSetStateFactory factory = new CompactCellSetStateFactory();
+    CompactCellSetState first = factory.createSingleState();
+    CompactCellSetState second = factory.createSingleState();
+    for (int i = 0; i < disk.length; i++) {
+      CompactCellsAggregation.input(i % 2 == 0 ? first : second, disk[i]);
+    }
+    CompactCellsAggregation.combine(first, second);
+    return CompactCellsAggregation.outputCells(first.getCells());
+  }
+
+  @Benchmark
+  public Block array() {
+    return HierarchyFunctions.compactCells(diskBlock);
+  }
+}
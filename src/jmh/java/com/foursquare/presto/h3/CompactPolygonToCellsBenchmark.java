@@ -0,0 +1,68 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>h3_polygon_to_cells_compact</code> compared with compacting the result of <code>
+ * h3_polygon_to_cells</code>, on a polygon about 200km across. As in {@link LargeArrayBenchmark},
+ * <code>gc.alloc.rate.norm</code> shows the memory saved by not producing every cell.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@State(Scope.Thread)
+public class CompactPolygonToCellsBenchmark {
+  private static final double POLYGON_RADIUS = 1;
+  private static final int POLYGON_VERTICES = 300;
+
+  /** About 60 thousand, 400 thousand and 3 million cells before compacting. */
+  @Param({"7", "8", "9"})
+  public int res;
+
+  private Slice polygon;
+
+  @Setup
+  public void setup() {
+    polygon = BenchmarkData.polygons(1, POLYGON_RADIUS, POLYGON_VERTICES)[0];
+  }
+
+  @Benchmark
+  public Block polygonToCellsCompact() {
+    return RegionFunctions.polygonToCellsCompact(polygon, res);
+  }
+
+  @Benchmark
+  public Block polygonToCellsThenCompact() {
+    return HierarchyFunctions.compactCells(RegionFunctions.polygonToCells(polygon, res));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class DirectedEdgeFunctionsBenchmark {
+  private long[] origins;
+  private long[] destinations;
+  private long[] edges;
+  private int i;
+
+  @Setup
+  public void setup() {
+    origins = BenchmarkData.cells(9);
+    destinations = BenchmarkData.distant(origins, 1);
+    edges = new long[origins.length];
+    for (int j = 0; j < origins.length; j++) {
+      edges[j] = H3Plugin.h3.cellsToDirectedEdge(origins[j], destinations[j]);
+    }
+  }
+
+  @Benchmark
+  public Boolean areNeighborCells() {
+    int index = i++ & BenchmarkData.MASK;
+    return DirectedEdgeFunctions.areNeighborCells(origins[index], destinations[index]);
+  }
+
+  @Benchmark
+  public Long cellsToDirectedEdge() {
+    int index = i++ & BenchmarkData.MASK;
+    return DirectedEdgeFunctions.cellsToDirectedEdge(origins[index], destinations[index]);
+  }
+
+  @Benchmark
+  public Long getDirectedEdgeOrigin() {
+    return DirectedEdgeFunctions.getDirectedEdgeOrigin(edges[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public Long getDirectedEdgeDestination() {
+    return DirectedEdgeFunctions.getDirectedEdgeDestination(edges[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public Block directedEdgeToCells() {
+    return DirectedEdgeFunctions.directedEdgeToCells(edges[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public Block originToDirectedEdges() {
+    return DirectedEdgeFunctions.originToDirectedEdges(origins[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public Slice directedEdgeToBoundary() {
+    return DirectedEdgeFunctions.directedEdgeToBoundary(edges[i++ & BenchmarkData.MASK]);
+  }
+}
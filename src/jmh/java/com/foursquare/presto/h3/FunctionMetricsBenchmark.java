@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of {@link FunctionMetrics}: each function is run with metrics disabled, as in the other
+ * benchmarks, and in a fork with <code>h3.metrics.enabled</code> set. The functions range from the
+ * cheapest (<code>h3_get_resolution</code>) to one returning an array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class FunctionMetricsBenchmark {
+  private static final String METRICS_ENABLED =
+      "-D" + H3PluginConfig.METRICS_ENABLED_PROPERTY + "=true";
+
+  private long[] cells;
+  private double[][] points;
+  private int i;
+
+  @Setup
+  public void setup() {
+    cells = BenchmarkData.cells(9);
+    points = BenchmarkData.points();
+  }
+
+  @Benchmark
+  public long getResolution() {
+    return InspectionFunctions.getResolution(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = METRICS_ENABLED)
+  public long getResolutionWithMetrics() {
+    return InspectionFunctions.getResolution(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public Long latLngToCell() {
+    double[] point = points[i++ & BenchmarkData.MASK];
+    return IndexingFunctions.latLngToCell(point[0], point[1], 9);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = METRICS_ENABLED)
+  public Long latLngToCellWithMetrics() {
+    double[] point = points[i++ & BenchmarkData.MASK];
+    return IndexingFunctions.latLngToCell(point[0], point[1], 9);
+  }
+
+  @Benchmark
+  public Block gridDisk() {
+    return TraversalFunctions.gridDisk(cells[i++ & BenchmarkData.MASK], 2);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = METRICS_ENABLED)
+  public Block gridDiskWithMetrics() {
+    return TraversalFunctions.gridDisk(cells[i++ & BenchmarkData.MASK], 2);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compacted disks: <code>h3_grid_disk_compact</code> compared with <code>
+ * h3_compact_cells(h3_grid_disk(...))</code>, and with the uncompacted disk alone. Run with <code>
+ * -prof gc</code> to compare allocation per disk (<code>gc.alloc.rate.norm</code>).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class GridDiskCompactBenchmark {
+  private static final int RES = 10;
+
+  @Param({"100", "300", "1000"})
+  public int k;
+
+  private long[] origins;
+  private int i;
+
+  @Setup
+  public void setup() {
+    origins = BenchmarkData.cells(RES);
+  }
+
+  @Benchmark
+  public Block gridDiskCompact() {
+    return TraversalFunctions.gridDiskCompact(origins[i++ & BenchmarkData.MASK], k);
+  }
+
+  @Benchmark
+  public Block compactGridDisk() {
+    return HierarchyFunctions.compactCells(
+        TraversalFunctions.gridDisk(origins[i++ & BenchmarkData.MASK], k));
+  }
+
+  @Benchmark
+  public Block gridDisk() {
+    return TraversalFunctions.gridDisk(origins[i++ & BenchmarkData.MASK], k);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cells of a disk grouped by distance from the origin: <code>h3_grid_disk_distances</code> in one
+ * traversal, compared with <code>h3_grid_ring_unsafe</code> for each distance, and with <code>
+ * h3_grid_distance</code> for each cell of <code>h3_grid_disk</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class GridDiskDistancesBenchmark {
+  private static final int RES = 9;
+
+  @Param({"5", "20", "50"})
+  public int k;
+
+  private long[] origins;
+  private int i;
+
+  @Setup
+  public void setup() {
+    origins = BenchmarkData.cells(RES);
+  }
+
+  @Benchmark
+  public Block gridDiskDistances() {
+    return TraversalFunctions.gridDiskDistances(origins[i++ & BenchmarkData.MASK], k);
+  }
+
+  @Benchmark
+  public Block gridDiskDistancesUnsafe() {
+    return TraversalFunctions.gridDiskDistancesUnsafe(origins[i++ & BenchmarkData.MASK], k);
+  }
+
+  @Benchmark
+  public List<List<Long>> gridDiskDistancesBoxed() {
+    return H3Plugin.h3.gridDiskDistances(origins[i++ & BenchmarkData.MASK], k);
+  }
+
+  @Benchmark
+  public Block[] ringByRing() {
+    long origin = origins[i++ & BenchmarkData.MASK];
+    Block[] rings = new Block[k + 1];
+    for (int d = 0; d <= k; d++) {
+      rings[d] = TraversalFunctions.gridRingUnsafe(origin, d);
+    }
+    return rings;
+  }
+
+  @Benchmark
+  public long[] distancePerCell() {
+    long origin = origins[i++ & BenchmarkData.MASK];
+    Block disk = TraversalFunctions.gridDisk(origin, k);
+    long[] distances = new long[disk.getPositionCount()];
+    for (int c = 0; c < distances.length; c++) {
+      Long distance = TraversalFunctions.gridDistance(origin, disk.getLong(c));
+      distances[c] = distance == null ? -1 : distance;
+    }
+    return distances;
+  }
+}
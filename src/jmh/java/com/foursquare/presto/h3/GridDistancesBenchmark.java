@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Distances from one origin to many destinations: <code>h3_grid_distances</code> compared with
+ * <code>h3_grid_distance</code> for each destination. Destinations are the disk of radius k around
+ * the origin, so there are 3k(k + 1) + 1 of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class GridDistancesBenchmark {
+  private static final int RES = 9;
+
+  @Param({"2", "10", "25"})
+  public int k;
+
+  private long[] origins;
+  private Block[] destinations;
+  private int i;
+
+  @Setup
+  public void setup() {
+    origins = BenchmarkData.cells(RES);
+    destinations = new Block[origins.length];
+    for (int o = 0; o < origins.length; o++) {
+      destinations[o] = TraversalFunctions.gridDisk(origins[o], k);
+    }
+  }
+
+  @Benchmark
+  public Block gridDistances() {
+    int o = i++ & BenchmarkData.MASK;
+    return TraversalFunctions.gridDistances(origins[o], destinations[o]);
+  }
+
+  @Benchmark
+  public long[] gridDistancePerPair() {
+    int o = i++ & BenchmarkData.MASK;
+    Block block = destinations[o];
+    long[] distances = new long[block.getPositionCount()];
+    for (int d = 0; d < distances.length; d++) {
+      Long distance = TraversalFunctions.gridDistance(origins[o], block.getLong(d));
+      distances[d] = distance == null ? -1 : distance;
+    }
+    return distances;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares {@link H3Index} with the equivalent calls through the native library. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class H3IndexBenchmark {
+  private static final int RES = 9;
+  private static final int PARENT_RES = 5;
+  private static final int CHILD_RES = 12;
+
+  private long[] cells;
+  private int i;
+
+  @Setup
+  public void setup() {
+    cells = BenchmarkData.cells(RES);
+  }
+
+  @Benchmark
+  public int getBaseCellNumberJava() {
+    return H3Index.getBaseCellNumber(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public int getBaseCellNumberNative() {
+    return H3Plugin.h3.getBaseCellNumber(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public boolean isValidCellJava() {
+    return H3Index.isValidCell(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public boolean isValidCellNative() {
+    return H3Plugin.h3.isValidCell(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public boolean isPentagonJava() {
+    return H3Index.isPentagon(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public boolean isPentagonNative() {
+    return H3Plugin.h3.isPentagon(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public long cellToParentJava() {
+    return H3Index.cellToParent(cells[i++ & BenchmarkData.MASK], PARENT_RES);
+  }
+
+  @Benchmark
+  public long cellToParentNative() {
+    return H3Plugin.h3.cellToParent(cells[i++ & BenchmarkData.MASK], PARENT_RES);
+  }
+
+  @Benchmark
+  public long cellToCenterChildJava() {
+    return H3Index.cellToCenterChild(cells[i++ & BenchmarkData.MASK], CHILD_RES);
+  }
+
+  @Benchmark
+  public long cellToCenterChildNative() {
+    return H3Plugin.h3.cellToCenterChild(cells[i++ & BenchmarkData.MASK], CHILD_RES);
+  }
+}
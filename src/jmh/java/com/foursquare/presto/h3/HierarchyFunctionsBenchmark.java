@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class HierarchyFunctionsBenchmark {
+  private static final int RES = 9;
+  private static final int BLOCKS = 16;
+  private static final int PAGE_SIZE = 64;
+
+  /** Number of resolutions between the cells and their children or parents. */
+  @Param({"1", "3"})
+  public int levels;
+
+  private long[] cells;
+  private Block[] children;
+  private Block[] compacted;
+  private int i;
+
+  @Setup
+  public void setup() {
+    cells = BenchmarkData.cells(RES);
+    children = BenchmarkData.childBlocks(cells, BLOCKS, RES + levels);
+    compacted = new Block[BLOCKS];
+    for (int j = 0; j < BLOCKS; j++) {
+      compacted[j] = HierarchyFunctions.compactCells(children[j]);
+    }
+  }
+
+  @Benchmark
+  public Long cellToParent() {
+    return HierarchyFunctions.cellToParent(cells[i++ & BenchmarkData.MASK], RES - levels);
+  }
+
+  @Benchmark
+  public Block cellToChildren() {
+    return HierarchyFunctions.cellToChildren(cells[i++ & BenchmarkData.MASK], RES + levels);
+  }
+
+  /** A page of children, which is the start of those of {@link #cellToChildren()}. */
+  @Benchmark
+  public Block cellToChildrenPage() {
+    return HierarchyFunctions.cellToChildren(
+        cells[i++ & BenchmarkData.MASK], RES + levels, 0, PAGE_SIZE);
+  }
+
+  @Benchmark
+  public Long cellToChildrenSize() {
+    return HierarchyFunctions.cellToChildrenSize(cells[i++ & BenchmarkData.MASK], RES + levels);
+  }
+
+  @Benchmark
+  public Long cellToChildPos() {
+    return HierarchyFunctions.cellToChildPos(cells[i++ & BenchmarkData.MASK], RES - levels);
+  }
+
+  @Benchmark
+  public Long childPosToCell() {
+    return HierarchyFunctions.childPosToCell(5, cells[i++ & BenchmarkData.MASK], RES + levels);
+  }
+
+  @Benchmark
+  public Long cellToCenterChild() {
+    return HierarchyFunctions.cellToCenterChild(cells[i++ & BenchmarkData.MASK], RES + levels);
+  }
+
+  @Benchmark
+  public Block compactCells() {
+    return HierarchyFunctions.compactCells(children[i++ % BLOCKS]);
+  }
+
+  @Benchmark
+  public Block uncompactCells() {
+    return HierarchyFunctions.uncompactCells(compacted[i++ % BLOCKS], RES + levels);
+  }
+
+  @Benchmark
+  public Long uncompactCellsSize() {
+    return HierarchyFunctions.uncompactCellsSize(compacted[i++ % BLOCKS], RES + levels);
+  }
+
+  /** A page of uncompacted cells, which is the start of those of {@link #uncompactCells()}. */
+  @Benchmark
+  public Block uncompactCellsPage() {
+    return HierarchyFunctions.uncompactCells(compacted[i++ % BLOCKS], RES + levels, 0, PAGE_SIZE);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class IndexingFunctionsBenchmark {
+  @Param({"5", "9", "12"})
+  public int res;
+
+  private double[][] points;
+  private Slice[] pointGeometries;
+  private long[] cells;
+  private int i;
+
+  @Setup
+  public void setup() {
+    points = BenchmarkData.points();
+    pointGeometries = BenchmarkData.pointGeometries();
+    cells = BenchmarkData.cells(res);
+  }
+
+  @Benchmark
+  public Long latLngToCell() {
+    double[] point = points[i++ & BenchmarkData.MASK];
+    return IndexingFunctions.latLngToCell(point[0], point[1], res);
+  }
+
+  /** The native library alone, for comparison with {@link #latLngToCell()}. */
+  @Benchmark
+  public long latLngToCellNative() {
+    double[] point = points[i++ & BenchmarkData.MASK];
+    return H3Plugin.h3.latLngToCell(point[0], point[1], res);
+  }
+
+  @Benchmark
+  public Long latLngToCellGeometry() {
+    return IndexingFunctions.latLngToCell(pointGeometries[i++ & BenchmarkData.MASK], res);
+  }
+
+  @Benchmark
+  public Slice cellToLatLng() {
+    return IndexingFunctions.cellToLatLng(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public Slice cellToBoundary() {
+    return IndexingFunctions.cellToBoundary(cells[i++ & BenchmarkData.MASK]);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Functions taking arrays of millions of cells, as in compaction jobs. Allocation per operation
+ * (<code>gc.alloc.rate.norm</code>) is the measure of peak memory here, since the input and output
+ * arrays dominate it. The <code>Boxed</code> variants read the input through a <code>List&lt;Long
+ * &gt;</code> and H3Core for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@State(Scope.Thread)
+public class LargeArrayBenchmark {
+  private static final int RES = 9;
+
+  /** Radius of the disk of cells: about 1 and 4 million cells. */
+  @Param({"577", "1155"})
+  public int k;
+
+  private Block disk;
+  private Block compacted;
+
+  @Setup
+  public void setup() {
+    long origin = BenchmarkData.cells(RES)[0];
+    disk = BenchmarkData.block(new ArrayList<>(H3Plugin.h3.gridDisk(origin, k)));
+    compacted = HierarchyFunctions.compactCells(disk);
+  }
+
+  @Benchmark
+  public Block compactCells() {
+    return HierarchyFunctions.compactCells(disk);
+  }
+
+  @Benchmark
+  public List<Long> compactCellsBoxed() {
+    return H3Plugin.h3.compactCells(blockToList(disk));
+  }
+
+  @Benchmark
+  public Block uncompactCells() {
+    return HierarchyFunctions.uncompactCells(compacted, RES);
+  }
+
+  @Benchmark
+  public List<Long> uncompactCellsBoxed() {
+    return H3Plugin.h3.uncompactCells(blockToList(compacted), RES);
+  }
+
+  private static List<Long> blockToList(Block block) {
+    List<Long> list = new ArrayList<>(block.getPositionCount());
+    for (int i = 0; i < block.getPositionCount(); i++) {
+      list.add(block.getLong(i));
+    }
+    return list;
+  }
+}
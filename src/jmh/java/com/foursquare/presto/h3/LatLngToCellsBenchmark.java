@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.IntArrayBlock;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Indexing each point at resolutions 5, 7, 9 and 11: <code>h3_latlng_to_cells</code> compared with
+ * <code>h3_latlng_to_cell</code> for each resolution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class LatLngToCellsBenchmark {
+  private static final int[] RESOLUTIONS = {5, 7, 9, 11};
+
+  private double[][] points;
+  private Block resolutions;
+  private int i;
+
+  @Setup
+  public void setup() {
+    points = BenchmarkData.points();
+    resolutions = new IntArrayBlock(RESOLUTIONS.length, Optional.empty(), RESOLUTIONS);
+  }
+
+  @Benchmark
+  public Block latLngToCells() {
+    double[] point = points[i++ & BenchmarkData.MASK];
+    return IndexingFunctions.latLngToCells(point[0], point[1], resolutions);
+  }
+
+  @Benchmark
+  public long[] latLngToCellPerResolution() {
+    double[] point = points[i++ & BenchmarkData.MASK];
+    long[] cells = new long[RESOLUTIONS.length];
+    for (int r = 0; r < RESOLUTIONS.length; r++) {
+      cells[r] = IndexingFunctions.latLngToCell(point[0], point[1], RESOLUTIONS[r]);
+    }
+    return cells;
+  }
+}
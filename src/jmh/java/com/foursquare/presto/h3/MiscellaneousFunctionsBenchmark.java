@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class MiscellaneousFunctionsBenchmark {
+  private static final Slice AREA_UNIT = Slices.utf8Slice("km2");
+  private static final Slice LENGTH_UNIT = Slices.utf8Slice("m");
+
+  private double[][] points;
+  private long[] cells;
+  private long[] edges;
+  private int i;
+
+  @Setup
+  public void setup() {
+    points = BenchmarkData.points();
+    cells = BenchmarkData.cells(9);
+    long[] neighbors = BenchmarkData.distant(cells, 1);
+    edges = new long[cells.length];
+    for (int j = 0; j < cells.length; j++) {
+      edges[j] = H3Plugin.h3.cellsToDirectedEdge(cells[j], neighbors[j]);
+    }
+  }
+
+  @Benchmark
+  public Double getHexagonAreaAvg() {
+    return MiscellaneousFunctions.getHexagonAreaAvg(i++ & 15, AREA_UNIT);
+  }
+
+  @Benchmark
+  public Double cellArea() {
+    return MiscellaneousFunctions.cellArea(cells[i++ & BenchmarkData.MASK], AREA_UNIT);
+  }
+
+  @Benchmark
+  public Double getHexagonEdgeLengthAvg() {
+    return MiscellaneousFunctions.getHexagonEdgeLengthAvg(i++ & 15, LENGTH_UNIT);
+  }
+
+  @Benchmark
+  public Double edgeLength() {
+    return MiscellaneousFunctions.edgeLength(edges[i++ & BenchmarkData.MASK], LENGTH_UNIT);
+  }
+
+  @Benchmark
+  public Double greatCircleDistance() {
+    double[] a = points[i++ & BenchmarkData.MASK];
+    double[] b = points[i & BenchmarkData.MASK];
+    return MiscellaneousFunctions.greatCircleDistance(a[0], a[1], b[0], b[1], LENGTH_UNIT);
+  }
+
+  @Benchmark
+  public Long getNumCells() {
+    return MiscellaneousFunctions.getNumCells(i++ & 15);
+  }
+
+  @Benchmark
+  public Block getRes0Cells() {
+    return MiscellaneousFunctions.getRes0Cells();
+  }
+
+  @Benchmark
+  public Block getPentagons() {
+    return MiscellaneousFunctions.getPentagons(i++ & 15);
+  }
+}
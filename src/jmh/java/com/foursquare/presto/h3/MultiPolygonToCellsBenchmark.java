@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.serialize;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <code>h3_polygon_to_cells</code> on multipart boundaries, compared with filling each part
+ * separately, as when the parts are split with <code>ST_Dump</code> in SQL (not counting
+ * flattening and deduplicating the arrays afterwards). The archipelago is 200 small islands; the
+ * counties are a 10 by 10 grid of half degree squares with shared, detailed borders.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@State(Scope.Thread)
+public class MultiPolygonToCellsBenchmark {
+  private static final int RES = 8;
+
+  @Param({"archipelago", "counties"})
+  public String layout;
+
+  private Slice multiPolygon;
+  private Slice[] parts;
+
+  @Setup
+  public void setup() {
+    Polygon[] polygons =
+        layout.equals("archipelago")
+            ? BenchmarkData.archipelago(200, 0.1, 100)
+            : BenchmarkData.counties(10, 0.5, 50);
+    multiPolygon = serialize(new GeometryFactory().createMultiPolygon(polygons));
+    parts = new Slice[polygons.length];
+    for (int i = 0; i < polygons.length; i++) {
+      parts[i] = serialize(polygons[i]);
+    }
+  }
+
+  @Benchmark
+  public Block multiPolygonToCells() {
+    return RegionFunctions.polygonToCells(multiPolygon, RES);
+  }
+
+  @Benchmark
+  @Fork(
+      value = 1,
+      jvmArgsAppend = "-D" + H3PluginConfig.POLYGON_TO_CELLS_PARALLELISM_PROPERTY + "=4")
+  public Block multiPolygonToCellsParallel4() {
+    return RegionFunctions.polygonToCells(multiPolygon, RES);
+  }
+
+  @Benchmark
+  public void polygonToCellsPerPart(Blackhole blackhole) {
+    for (Slice part : parts) {
+      blackhole.consume(RegionFunctions.polygonToCells(part, RES));
+    }
+  }
+}
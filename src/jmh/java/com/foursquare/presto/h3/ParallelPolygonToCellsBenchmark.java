@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>h3_polygon_to_cells</code> on polygons the size of a small state, with detailed
+ * boundaries, filled on one thread and with {@link ParallelPolygonToCells} on increasing numbers
+ * of threads. Each thread count runs in its own fork, as the pool size is read at startup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@State(Scope.Thread)
+public class ParallelPolygonToCellsBenchmark {
+  private static final String PARALLELISM =
+      "-D" + H3PluginConfig.POLYGON_TO_CELLS_PARALLELISM_PROPERTY + "=";
+  /** About 400km across. */
+  private static final double POLYGON_RADIUS = 2;
+
+  private static final int POLYGON_VERTICES = 2000;
+
+  /** About 30 thousand and 200 thousand cells. */
+  @Param({"7", "8"})
+  public int res;
+
+  private Slice polygon;
+
+  @Setup
+  public void setup() {
+    polygon = BenchmarkData.polygons(1, POLYGON_RADIUS, POLYGON_VERTICES)[0];
+  }
+
+  @Benchmark
+  public Block polygonToCells() {
+    return RegionFunctions.polygonToCells(polygon, res);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = PARALLELISM + "2")
+  public Block polygonToCellsParallel2() {
+    return RegionFunctions.polygonToCells(polygon, res);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = PARALLELISM + "4")
+  public Block polygonToCellsParallel4() {
+    return RegionFunctions.polygonToCells(polygon, res);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = PARALLELISM + "8")
+  public Block polygonToCellsParallel8() {
+    return RegionFunctions.polygonToCells(polygon, res);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = PARALLELISM + "16")
+  public Block polygonToCellsParallel16() {
+    return RegionFunctions.polygonToCells(polygon, res);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.deserialize;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the rings of polygons with many vertices directly from the slice, compared with
+ * deserializing them to JTS and converting the rings, and the whole of <code>h3_polygon_to_cells
+ * </code> for scale. The polygons are about a degree across, like a detailed coastline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class PolygonRingsBenchmark {
+  private static final int POLYGONS = 4;
+  private static final int RES = 6;
+  private static final double POLYGON_RADIUS = 0.5;
+
+  @Param({"1000", "100000"})
+  public int vertices;
+
+  private Slice[] polygons;
+  private int i;
+
+  @Setup
+  public void setup() {
+    polygons = BenchmarkData.polygons(POLYGONS, POLYGON_RADIUS, vertices);
+  }
+
+  @Benchmark
+  public GeometrySlices.PolygonRings readPolygon() {
+    return GeometrySlices.readPolygon(polygons[i++ % POLYGONS]);
+  }
+
+  @Benchmark
+  public GeometrySlices.PolygonRings deserializePolygon() {
+    return RegionFunctions.polygonRings((Polygon) deserialize(polygons[i++ % POLYGONS]));
+  }
+
+  @Benchmark
+  public Block polygonToCells() {
+    return RegionFunctions.polygonToCells(polygons[i++ % POLYGONS], RES);
+  }
+}
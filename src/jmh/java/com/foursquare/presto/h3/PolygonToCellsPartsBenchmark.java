@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Filling a polygon about 400km across at resolution 9, about 1.5 million cells, as one array and
+ * in parts of at most about <code>cellsPerPart</code> cells. The parts are filled one after another
+ * here, so the comparison is of the total work; the largest array held at once is what the parts
+ * save, and is about <code>cellsPerPart</code> cells rather than the whole polygon.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@State(Scope.Thread)
+public class PolygonToCellsPartsBenchmark {
+  private static final int RES = 9;
+  private static final double POLYGON_RADIUS = 2;
+  private static final int POLYGON_VERTICES = 2000;
+
+  @Param({"100000", "1000000"})
+  public long cellsPerPart;
+
+  private Slice polygon;
+  private long partCount;
+
+  @Setup
+  public void setup() {
+    polygon = BenchmarkData.polygons(1, POLYGON_RADIUS, POLYGON_VERTICES)[0];
+    partCount = RegionFunctions.polygonToCellsPartCount(polygon, RES, cellsPerPart);
+  }
+
+  @Benchmark
+  public Block polygonToCells() {
+    return RegionFunctions.polygonToCells(polygon, RES);
+  }
+
+  @Benchmark
+  public void polygonToCellsParts(Blackhole blackhole) {
+    for (long part = 0; part < partCount; part++) {
+      blackhole.consume(RegionFunctions.polygonToCells(polygon, RES, part, partCount));
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class RegionFunctionsBenchmark {
+  private static final int POLYGONS = 16;
+  private static final int RES = 9;
+  /** Roughly a neighborhood: about 2km across. */
+  private static final double POLYGON_RADIUS = 0.01;
+
+  private static final int POLYGON_VERTICES = 64;
+
+  /** Radius of the disks of cells passed to cellsToMultiPolygon. */
+  @Param({"1", "10"})
+  public int k;
+
+  private Slice[] polygons;
+  private Block[] disks;
+  private int i;
+
+  @Setup
+  public void setup() {
+    polygons = BenchmarkData.polygons(POLYGONS, POLYGON_RADIUS, POLYGON_VERTICES);
+    disks = BenchmarkData.diskBlocks(BenchmarkData.cells(RES), POLYGONS, k);
+  }
+
+  @Benchmark
+  public Block polygonToCells() {
+    return RegionFunctions.polygonToCells(polygons[i++ % POLYGONS], RES);
+  }
+
+  @Benchmark
+  public Slice cellsToMultiPolygon() {
+    return RegionFunctions.cellsToMultiPolygon(disks[i++ % POLYGONS]);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import com.uber.h3core.util.CoordIJ;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class TraversalFunctionsBenchmark {
+  private static final int RES = 9;
+
+  @Param({"1", "5", "20"})
+  public int k;
+
+  private long[] origins;
+  private long[] destinations;
+  private int[][] localIjs;
+  private int i;
+
+  @Setup
+  public void setup() {
+    origins = BenchmarkData.cells(RES);
+    destinations = BenchmarkData.distant(origins, k);
+    localIjs = new int[origins.length][];
+    for (int j = 0; j < origins.length; j++) {
+      try {
+        CoordIJ ij = H3Plugin.h3.cellToLocalIj(origins[j], destinations[j]);
+        localIjs[j] = new int[] {ij.i, ij.j};
+      } catch (Exception e) {
+        // Across pentagon distortion; benchmark the origin itself instead
+        CoordIJ ij = H3Plugin.h3.cellToLocalIj(origins[j], origins[j]);
+        localIjs[j] = new int[] {ij.i, ij.j};
+      }
+    }
+  }
+
+  @Benchmark
+  public Block gridDisk() {
+    return TraversalFunctions.gridDisk(origins[i++ & BenchmarkData.MASK], k);
+  }
+
+  @Benchmark
+  public Block gridDiskUnsafe() {
+    return TraversalFunctions.gridDiskUnsafe(origins[i++ & BenchmarkData.MASK], k);
+  }
+
+  @Benchmark
+  public Block gridRingUnsafe() {
+    return TraversalFunctions.gridRingUnsafe(origins[i++ & BenchmarkData.MASK], k);
+  }
+
+  @Benchmark
+  public Block gridPathCells() {
+    int index = i++ & BenchmarkData.MASK;
+    return TraversalFunctions.gridPathCells(origins[index], destinations[index]);
+  }
+
+  @Benchmark
+  public Long gridDistance() {
+    int index = i++ & BenchmarkData.MASK;
+    return TraversalFunctions.gridDistance(origins[index], destinations[index]);
+  }
+
+  @Benchmark
+  public Block cellToLocalIj() {
+    int index = i++ & BenchmarkData.MASK;
+    return TraversalFunctions.cellToLocalIj(origins[index], destinations[index]);
+  }
+
+  @Benchmark
+  public Long localIjToCell() {
+    int index = i++ & BenchmarkData.MASK;
+    return TraversalFunctions.localIjToCell(
+        origins[index], localIjs[index][0], localIjs[index][1]);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class VertexFunctionsBenchmark {
+  private long[] cells;
+  private long[] vertexes;
+  private int i;
+
+  @Setup
+  public void setup() {
+    cells = BenchmarkData.cells(9);
+    vertexes = new long[cells.length];
+    for (int j = 0; j < cells.length; j++) {
+      vertexes[j] = H3Plugin.h3.cellToVertex(cells[j], j % 5);
+    }
+  }
+
+  @Benchmark
+  public Long cellToVertex() {
+    int index = i++ & BenchmarkData.MASK;
+    return VertexFunctions.cellToVertex(cells[index], index % 5);
+  }
+
+  @Benchmark
+  public Block cellToVertexes() {
+    return VertexFunctions.cellToVertexes(cells[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public Slice vertexToLatLng() {
+    return VertexFunctions.vertexToLatLng(vertexes[i++ & BenchmarkData.MASK]);
+  }
+
+  @Benchmark
+  public boolean isValidVertex() {
+    return VertexFunctions.isValidVertex(vertexes[i++ & BenchmarkData.MASK]);
+  }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import io.airlift.slice.Slice;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * Optional cache of the serialized geometry of cells, for functions whose result depends only on
+ * the cell, such as <code>h3_cell_to_boundary</code>. Enabled by {@link
+ * H3PluginConfig#GEOMETRY_CACHE_SIZE}, and registered with JMX as <code>
+ * com.foursquare.presto.h3:type=CellGeometryCache,name=&lt;function name&gt;</code>.
+ *
+ * <p>Cells are kept as primitive <code>long</code>s, in {@link #CONCURRENCY_LEVEL} segments which
+ * are each an open addressing table, as in {@link LongHashSet}, so that lookups do not box the
+ * cell or allocate. Reads do not lock, and are retried under a read lock only if they overlap a
+ * write to their segment. Writes lock their segment.
+ *
+ * <p>When a segment is full, cells which have not been read recently are evicted, by the CLOCK
+ * approximation of least recently used: a hand sweeps the table, clearing the flag set when each
+ * cell is read, and evicts the first cell whose flag is already clear. Cells which have not been
+ * read for {@link H3PluginConfig#GEOMETRY_CACHE_EXPIRE_AFTER_ACCESS_SECONDS}, if set, are no
+ * longer returned, and are evicted by the hand, which each write also moves a few cells on.
+ */
+final class CellGeometryCache implements CellGeometryCacheMBean {
+  /** Number of segments, so that writes from many driver threads rarely wait for each other. */
+  private static final int CONCURRENCY_LEVEL = 64;
+  /** Kept at most half full, within the largest array of a power of two. */
+  private static final int MAX_SEGMENT_SIZE = 1 << 29;
+
+  private static final int MIN_CAPACITY = 16;
+  /** Cells checked for expiry on each write. */
+  private static final int EXPIRE_SWEEP = 2;
+
+  /** Null if the cache is disabled. */
+  private final Segment[] segments;
+
+  private final long expireAfterAccessNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  CellGeometryCache(long maximumSize, long expireAfterAccessSeconds) {
+    expireAfterAccessNanos = TimeUnit.SECONDS.toNanos(Math.max(0, expireAfterAccessSeconds));
+    if (maximumSize <= 0) {
+      segments = null;
+      return;
+    }
+    // Fewer segments than cells, so that the sizes of the segments add up to the maximum
+    int count = 1;
+    while (count < CONCURRENCY_LEVEL && count * 2L <= maximumSize) {
+      count <<= 1;
+    }
+    segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      long size = maximumSize / count + (i < maximumSize % count ? 1 : 0);
+      segments[i] = new Segment((int) Math.min(size, MAX_SEGMENT_SIZE));
+    }
+  }
+
+  /** Returns the cache for the function <code>name</code>, registering it with JMX if enabled. */
+  static CellGeometryCache forFunction(String name) {
+    CellGeometryCache cache =
+        new CellGeometryCache(
+            H3PluginConfig.GEOMETRY_CACHE_SIZE,
+            H3PluginConfig.GEOMETRY_CACHE_EXPIRE_AFTER_ACCESS_SECONDS);
+    if (cache.isEnabled()) {
+      H3Plugin.registerMBean("type=CellGeometryCache,name=" + name, cache);
+    }
+    return cache;
+  }
+
+  boolean isEnabled() {
+    return segments != null;
+  }
+
+  /**
+   * Returns the cached geometry of <code>cell</code>, or the result of <code>serializer</code>,
+   * which is cached if not null. Concurrent misses for the same cell may each call the serializer,
+   * which is cheaper than making readers wait. Exceptions from the serializer are not caught.
+   */
+  Slice get(long cell, LongFunction<Slice> serializer) {
+    // 0 marks empty slots, and is never a valid cell
+    if (segments == null || cell == 0) {
+      return serializer.apply(cell);
+    }
+    long hash = LongHashSet.mix(cell);
+    // The low bits of the hash are used for the slot within the segment
+    Segment segment = segments[(int) (hash >>> 32) & (segments.length - 1)];
+    long now = expireAfterAccessNanos > 0 ? System.nanoTime() : 0;
+    Slice geometry = segment.get(cell, (int) hash, now);
+    if (geometry != null) {
+      hits.increment();
+      return geometry;
+    }
+    misses.increment();
+    geometry = serializer.apply(cell);
+    if (geometry != null) {
+      segment.put(cell, (int) hash, geometry, now);
+    }
+    return geometry;
+  }
+
+  @Override
+  public long getSize() {
+    long size = 0;
+    if (segments != null) {
+      for (Segment segment : segments) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public double getHitRate() {
+    long hitCount = hits.sum();
+    long lookups = hitCount + misses.sum();
+    return lookups == 0 ? 1 : (double) hitCount / lookups;
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /** Slots of a segment, replaced as a whole when the segment grows. */
+  private static final class Table {
+    final long[] cells;
+    final Slice[] geometries;
+    /** Whether each cell was read since the hand last passed it. */
+    final boolean[] referenced;
+    /** When each cell was last read, from {@link System#nanoTime()}, or null without expiry. */
+    final long[] accessed;
+
+    final int mask;
+
+    Table(int capacity, boolean expiring) {
+      cells = new long[capacity];
+      geometries = new Slice[capacity];
+      referenced = new boolean[capacity];
+      accessed = expiring ? new long[capacity] : null;
+      mask = capacity - 1;
+    }
+
+    /**
+     * Returns the slot of the cell, or -1. Also called without a lock, when the table may be
+     * changing, so the probe is bounded.
+     */
+    int find(long cell, int hash) {
+      int slot = hash & mask;
+      for (int probes = 0; probes <= mask; probes++) {
+        long key = cells[slot];
+        if (key == cell) {
+          return slot;
+        }
+        if (key == 0) {
+          return -1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    /** Puts the cell in its first empty slot, which it must have, and returns the slot. */
+    int insert(long cell, int hash) {
+      int slot = hash & mask;
+      while (cells[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      cells[slot] = cell;
+      return slot;
+    }
+
+    void move(int from, int to) {
+      cells[to] = cells[from];
+      geometries[to] = geometries[from];
+      referenced[to] = referenced[from];
+      if (accessed != null) {
+        accessed[to] = accessed[from];
+      }
+    }
+  }
+
+  private final class Segment {
+    private final StampedLock lock = new StampedLock();
+    private final int maximumSize;
+
+    private Table table;
+    private int size;
+    private int hand;
+
+    Segment(int maximumSize) {
+      this.maximumSize = maximumSize;
+      int capacity = 2;
+      while (capacity < MIN_CAPACITY && capacity < maximumSize * 2L) {
+        capacity <<= 1;
+      }
+      table = new Table(capacity, expireAfterAccessNanos > 0);
+    }
+
+    Slice get(long cell, int hash, long now) {
+      long stamp = lock.tryOptimisticRead();
+      Table current = table;
+      int slot = current.find(cell, hash);
+      Slice geometry = slot < 0 ? null : current.geometries[slot];
+      if (!lock.validate(stamp)) {
+        stamp = lock.readLock();
+        try {
+          current = table;
+          slot = current.find(cell, hash);
+          geometry = slot < 0 ? null : current.geometries[slot];
+        } finally {
+          lock.unlockRead(stamp);
+        }
+      }
+      if (geometry == null || isExpired(current, slot, now)) {
+        return null;
+      }
+      // Racing with writes, which at worst keeps another cell a little longer
+      current.referenced[slot] = true;
+      if (current.accessed != null) {
+        current.accessed[slot] = now;
+      }
+      return geometry;
+    }
+
+    void put(long cell, int hash, Slice geometry, long now) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = table.find(cell, hash);
+        if (slot < 0) {
+          if (size == maximumSize) {
+            evict(now);
+          } else if ((size + 1) * 2L > table.cells.length) {
+            grow();
+          }
+          slot = table.insert(cell, hash);
+          size++;
+        }
+        table.geometries[slot] = geometry;
+        table.referenced[slot] = true;
+        if (table.accessed != null) {
+          table.accessed[slot] = now;
+          expire(now);
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    private boolean isExpired(Table current, int slot, long now) {
+      return current.accessed != null && now - current.accessed[slot] > expireAfterAccessNanos;
+    }
+
+    /** Moves the hand until it evicts a cell. The segment is full, so there is one. */
+    private void evict(long now) {
+      while (true) {
+        int slot = hand;
+        hand = (hand + 1) & table.mask;
+        if (table.cells[slot] == 0) {
+          continue;
+        }
+        if (table.referenced[slot] && !isExpired(table, slot, now)) {
+          table.referenced[slot] = false;
+          continue;
+        }
+        remove(slot);
+        return;
+      }
+    }
+
+    /** Moves the hand a few slots, evicting expired cells. */
+    private void expire(long now) {
+      for (int i = 0; i < EXPIRE_SWEEP; i++) {
+        int slot = hand;
+        hand = (hand + 1) & table.mask;
+        if (table.cells[slot] != 0 && isExpired(table, slot, now)) {
+          remove(slot);
+        }
+      }
+    }
+
+    /** Empties the slot, moving later cells back so that every cell is reached from its hash. */
+    private void remove(int slot) {
+      int empty = slot;
+      for (int next = (slot + 1) & table.mask;
+          table.cells[next] != 0;
+          next = (next + 1) & table.mask) {
+        int home = (int) LongHashSet.mix(table.cells[next]) & table.mask;
+        // The cell can move back if the empty slot is between its hash's slot and its own
+        if (((next - home) & table.mask) >= ((next - empty) & table.mask)) {
+          table.move(next, empty);
+          empty = next;
+        }
+      }
+      table.cells[empty] = 0;
+      table.geometries[empty] = null;
+      size--;
+      evictions.increment();
+    }
+
+    private void grow() {
+      Table old = table;
+      Table grown = new Table(old.cells.length * 2, old.accessed != null);
+      for (int slot = 0; slot < old.cells.length; slot++) {
+        if (old.cells[slot] != 0) {
+          int moved = grown.insert(old.cells[slot], (int) LongHashSet.mix(old.cells[slot]));
+          grown.geometries[moved] = old.geometries[slot];
+          grown.referenced[moved] = old.referenced[slot];
+          if (old.accessed != null) {
+            grown.accessed[moved] = old.accessed[slot];
+          }
+        }
+      }
+      table = grown;
+      hand = 0;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+/**
+ * Statistics of a {@link CellGeometryCache}, registered for each cached function when <code>
+ * h3.geometry_cache.size</code> is set, as <code>
+ * com.foursquare.presto.h3:type=CellGeometryCache,name=&lt;function name&gt;</code>.
+ */
+public interface CellGeometryCacheMBean {
+  /** Approximate number of cached cells. */
+  long getSize();
+
+  long getHits();
+
+  long getMisses();
+
+  /** Hits as a fraction of lookups, or 1 if there have been none. */
+  double getHitRate();
+
+  /** Cells removed because the cache was full or, if configured, had not been read recently. */
+  long getEvictions();
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.Arrays;
+
+/**
+ * Growing set of valid cells of one resolution, stored as primitive <code>long</code>s, for
+ * aggregations over cells. Cells are appended, and sorted and deduplicated when the array is full,
+ * before it grows, so the set takes about 8 to 16 bytes per distinct cell.
+ *
+ * <p>Adding an invalid cell, or one of a different resolution, rejects the whole set: its cells are
+ * dropped and {@link #getRejected()} gives the reason, which is kept when sets are merged.
+ *
+ * <p>Serialized, a set is a byte for the rejection reason (0 for none, otherwise the reason's
+ * ordinal plus 1), followed by the sorted cells as little-endian longs.
+ */
+final class CellSet {
+  private static final int INSTANCE_SIZE = 40;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int HEADER_SIZE = 1;
+  private static final long[] EMPTY = {};
+
+  private long[] cells = EMPTY;
+  private int size;
+  /** The first <code>sortedSize</code> cells are sorted, without duplicates. */
+  private int sortedSize;
+
+  private int res = -1;
+  private Reason rejected;
+
+  /** Adds the cell, or rejects the set if the cell is invalid or of a different resolution. */
+  void add(long cell) {
+    if (rejected != null) {
+      return;
+    }
+    if (!H3Index.isValidCell(cell)) {
+      reject(Reason.INVALID_CELL);
+      return;
+    }
+    int cellRes = H3Index.getResolution(cell);
+    if (res == -1) {
+      res = cellRes;
+    } else if (cellRes != res) {
+      reject(Reason.INVALID_RESOLUTION);
+      return;
+    }
+    if (size == cells.length) {
+      makeRoom(1);
+    }
+    cells[size++] = cell;
+  }
+
+  /** Adds the cells of <code>other</code>, which is unchanged. */
+  void addAll(CellSet other) {
+    if (rejected != null) {
+      return;
+    }
+    if (other.rejected != null) {
+      reject(other.rejected);
+      return;
+    }
+    if (other.size == 0) {
+      return;
+    }
+    if (res == -1) {
+      res = other.res;
+    } else if (other.res != res) {
+      reject(Reason.INVALID_RESOLUTION);
+      return;
+    }
+    if (size + other.size > cells.length) {
+      makeRoom(other.size);
+    }
+    System.arraycopy(other.cells, 0, cells, size, other.size);
+    size += other.size;
+  }
+
+  /** The reason the set was rejected, or null if all of its cells were valid. */
+  Reason getRejected() {
+    return rejected;
+  }
+
+  /** Returns the distinct cells, sorted. */
+  long[] toArray() {
+    sort();
+    return Arrays.copyOf(cells, size);
+  }
+
+  long getEstimatedSize() {
+    return INSTANCE_SIZE + (long) Long.BYTES * cells.length;
+  }
+
+  Slice serialize() {
+    sort();
+    Slice slice = Slices.allocate(HEADER_SIZE + Long.BYTES * size);
+    slice.setByte(0, rejected == null ? 0 : rejected.ordinal() + 1);
+    for (int i = 0; i < size; i++) {
+      slice.setLong(HEADER_SIZE + Long.BYTES * i, cells[i]);
+    }
+    return slice;
+  }
+
+  /** Adds the cells of a set serialized by {@link #serialize()}. */
+  void addSerialized(Slice slice) {
+    int reason = slice.getByte(0);
+    if (reason != 0) {
+      reject(Reason.values()[reason - 1]);
+      return;
+    }
+    int count = (slice.length() - HEADER_SIZE) / Long.BYTES;
+    for (int i = 0; i < count; i++) {
+      add(slice.getLong(HEADER_SIZE + Long.BYTES * i));
+    }
+  }
+
+  private void reject(Reason reason) {
+    rejected = reason;
+    cells = EMPTY;
+    size = 0;
+    sortedSize = 0;
+  }
+
+  /** Makes room for <code>count</code> more cells, first by removing duplicates. */
+  private void makeRoom(int count) {
+    sort();
+    // Grow if the array would be more than half full, so that sorting is not repeated too often
+    if ((size + count) * 2L > cells.length) {
+      long capacity = Math.max(INITIAL_CAPACITY, Math.max(cells.length * 2L, (size + count) * 2L));
+      cells = Arrays.copyOf(cells, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+    }
+  }
+
+  /** Sorts the cells and removes duplicates. */
+  private void sort() {
+    if (sortedSize == size) {
+      return;
+    }
+    Arrays.sort(cells, 0, size);
+    int distinct = 0;
+    for (int i = 0; i < size; i++) {
+      if (distinct == 0 || cells[i] != cells[distinct - 1]) {
+        cells[distinct++] = cells[i];
+      }
+    }
+    size = distinct;
+    sortedSize = distinct;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.Description;
+import com.facebook.presto.spi.function.ScalarFunction;
+import com.facebook.presto.spi.function.SqlNullable;
+import com.facebook.presto.spi.function.SqlType;
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import io.airlift.slice.Slice;
+import java.util.Arrays;
+
+/**
+ * Sets of cells encoded as {@link EncodedCellSet} in a <code>VARBINARY</code>, as a smaller and
+ * faster alternative to <code>ARRAY(BIGINT)</code> with <code>array_intersect</code> and
+ * <code>contains</code>. Sets which are not valid encodings give null.
+ */
+public final class CellSetFunctions {
+  private static final FunctionMetrics CELL_SET =
+      FunctionMetrics.forFunction(CellSetFunctions.class, "h3_cell_set");
+  private static final FunctionMetrics CELL_SET_TO_ARRAY =
+      FunctionMetrics.forFunction(CellSetFunctions.class, "h3_cell_set_to_array");
+  private static final FunctionMetrics CELL_SET_CARDINALITY =
+      FunctionMetrics.forFunction(CellSetFunctions.class, "h3_cell_set_cardinality");
+  private static final FunctionMetrics CELL_SET_CONTAINS =
+      FunctionMetrics.forFunction(CellSetFunctions.class, "h3_cell_set_contains");
+  private static final FunctionMetrics CELL_SET_UNION =
+      FunctionMetrics.forFunction(CellSetFunctions.class, "h3_cell_set_union");
+  private static final FunctionMetrics CELL_SET_INTERSECTION =
+      FunctionMetrics.forFunction(CellSetFunctions.class, "h3_cell_set_intersection");
+  private static final FunctionMetrics CELL_SET_DIFFERENCE =
+      FunctionMetrics.forFunction(CellSetFunctions.class, "h3_cell_set_difference");
+
+  @ScalarFunction(value = "h3_cell_set")
+  @Description("Encode an array of indexes as a cell set, skipping nulls and duplicates")
+  @SqlNullable
+  @SqlType(StandardTypes.VARBINARY)
+  public static Slice cellSet(@SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock) {
+    long start = CELL_SET.start();
+    long[] cells = H3Plugin.longBlockToArray(cellsBlock);
+    int count = 0;
+    for (long cell : cells) {
+      // Null elements are read as 0
+      if (cell == 0) {
+        continue;
+      }
+      if (!H3Index.isValidCell(cell)) {
+        return CELL_SET.reject(Reason.INVALID_CELL);
+      }
+      cells[count++] = cell;
+    }
+    Arrays.sort(cells, 0, count);
+    return CELL_SET.end(start, EncodedCellSet.encode(Arrays.copyOf(cells, count)));
+  }
+
+  @ScalarFunction(value = "h3_cell_set_to_array")
+  @Description("Decode a cell set to a sorted array of indexes")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block cellSetToArray(@SqlType(StandardTypes.VARBINARY) Slice set) {
+    long start = CELL_SET_TO_ARRAY.start();
+    try {
+      return CELL_SET_TO_ARRAY.end(start, H3Plugin.longArrayToBlock(EncodedCellSet.toArray(set)));
+    } catch (IllegalArgumentException e) {
+      return CELL_SET_TO_ARRAY.reject(Reason.INVALID_ARGUMENT);
+    }
+  }
+
+  @ScalarFunction(value = "h3_cell_set_cardinality")
+  @Description("Number of indexes in a cell set")
+  @SqlNullable
+  @SqlType(StandardTypes.BIGINT)
+  public static Long cellSetCardinality(@SqlType(StandardTypes.VARBINARY) Slice set) {
+    long start = CELL_SET_CARDINALITY.start();
+    try {
+      return CELL_SET_CARDINALITY.end(start, (long) EncodedCellSet.cardinality(set));
+    } catch (IllegalArgumentException e) {
+      return CELL_SET_CARDINALITY.reject(Reason.INVALID_ARGUMENT);
+    }
+  }
+
+  @ScalarFunction(value = "h3_cell_set_contains")
+  @Description("Returns true if the cell set contains the index")
+  @SqlNullable
+  @SqlType(StandardTypes.BOOLEAN)
+  public static Boolean cellSetContains(
+      @SqlType(StandardTypes.VARBINARY) Slice set, @SqlType(StandardTypes.BIGINT) long cell) {
+    long start = CELL_SET_CONTAINS.start();
+    try {
+      return CELL_SET_CONTAINS.end(start, EncodedCellSet.contains(set, cell));
+    } catch (IllegalArgumentException e) {
+      return CELL_SET_CONTAINS.reject(Reason.INVALID_ARGUMENT);
+    }
+  }
+
+  @ScalarFunction(value = "h3_cell_set_union")
+  @Description("Indexes in either cell set")
+  @SqlNullable
+  @SqlType(StandardTypes.VARBINARY)
+  public static Slice cellSetUnion(
+      @SqlType(StandardTypes.VARBINARY) Slice a, @SqlType(StandardTypes.VARBINARY) Slice b) {
+    long start = CELL_SET_UNION.start();
+    try {
+      return CELL_SET_UNION.end(start, EncodedCellSet.union(a, b));
+    } catch (IllegalArgumentException e) {
+      return CELL_SET_UNION.reject(Reason.INVALID_ARGUMENT);
+    }
+  }
+
+  @ScalarFunction(value = "h3_cell_set_intersection")
+  @Description("Indexes in both cell sets")
+  @SqlNullable
+  @SqlType(StandardTypes.VARBINARY)
+  public static Slice cellSetIntersection(
+      @SqlType(StandardTypes.VARBINARY) Slice a, @SqlType(StandardTypes.VARBINARY) Slice b) {
+    long start = CELL_SET_INTERSECTION.start();
+    try {
+      return CELL_SET_INTERSECTION.end(start, EncodedCellSet.intersection(a, b));
+    } catch (IllegalArgumentException e) {
+      return CELL_SET_INTERSECTION.reject(Reason.INVALID_ARGUMENT);
+    }
+  }
+
+  @ScalarFunction(value = "h3_cell_set_difference")
+  @Description("Indexes in the first cell set but not the second")
+  @SqlNullable
+  @SqlType(StandardTypes.VARBINARY)
+  public static Slice cellSetDifference(
+      @SqlType(StandardTypes.VARBINARY) Slice a, @SqlType(StandardTypes.VARBINARY) Slice b) {
+    long start = CELL_SET_DIFFERENCE.start();
+    try {
+      return CELL_SET_DIFFERENCE.end(start, EncodedCellSet.difference(a, b));
+    } catch (IllegalArgumentException e) {
+      return CELL_SET_DIFFERENCE.reject(Reason.INVALID_ARGUMENT);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateMetadata;
+
+/** Aggregation state holding a {@link CellSet}, which is null until the first cell is added. */
+@AccumulatorStateMetadata(
+    stateSerializerClass = CellSetStateSerializer.class,
+    stateFactoryClass = CellSetStateFactory.class)
+public interface CellSetState extends AccumulatorState {
+  CellSet getCells();
+
+  void setCells(CellSet cells);
+
+  /** Adjusts the estimated size of the state, after its cells change by <code>memory</code>. */
+  void addMemoryUsage(long memory);
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.array.ObjectBigArray;
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.facebook.presto.spi.function.GroupedAccumulatorState;
+
+public final class CellSetStateFactory implements AccumulatorStateFactory<CellSetState> {
+  @Override
+  public CellSetState createSingleState() {
+    return new SingleCellSetState();
+  }
+
+  @Override
+  public Class<? extends CellSetState> getSingleStateClass() {
+    return SingleCellSetState.class;
+  }
+
+  @Override
+  public CellSetState createGroupedState() {
+    return new GroupedCellSetState();
+  }
+
+  @Override
+  public Class<? extends CellSetState> getGroupedStateClass() {
+    return GroupedCellSetState.class;
+  }
+
+  public static final class SingleCellSetState implements CellSetState {
+    private CellSet cells;
+
+    @Override
+    public CellSet getCells() {
+      return cells;
+    }
+
+    @Override
+    public void setCells(CellSet cells) {
+      this.cells = cells;
+    }
+
+    @Override
+    public void addMemoryUsage(long memory) {
+      // The size is read from the set itself
+    }
+
+    @Override
+    public long getEstimatedSize() {
+      return cells == null ? 0 : cells.getEstimatedSize();
+    }
+  }
+
+  public static final class GroupedCellSetState implements GroupedAccumulatorState, CellSetState {
+    private final ObjectBigArray<CellSet> cells = new ObjectBigArray<>();
+    private long groupId;
+    private long size;
+
+    @Override
+    public void setGroupId(long groupId) {
+      this.groupId = groupId;
+    }
+
+    @Override
+    public void ensureCapacity(long size) {
+      cells.ensureCapacity(size);
+    }
+
+    @Override
+    public CellSet getCells() {
+      return cells.get(groupId);
+    }
+
+    @Override
+    public void setCells(CellSet value) {
+      cells.set(groupId, value);
+    }
+
+    @Override
+    public void addMemoryUsage(long memory) {
+      size += memory;
+    }
+
+    @Override
+    public long getEstimatedSize() {
+      return size + cells.sizeOf();
+    }
+  }
+}
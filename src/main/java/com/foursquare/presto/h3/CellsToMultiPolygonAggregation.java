@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.facebook.presto.geospatial.type.GeometryType.GEOMETRY;
+import static com.facebook.presto.geospatial.type.GeometryType.GEOMETRY_TYPE_NAME;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.AggregationFunction;
+import com.facebook.presto.spi.function.AggregationState;
+import com.facebook.presto.spi.function.CombineFunction;
+import com.facebook.presto.spi.function.Description;
+import com.facebook.presto.spi.function.InputFunction;
+import com.facebook.presto.spi.function.OutputFunction;
+import com.facebook.presto.spi.function.SqlType;
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import io.airlift.slice.Slice;
+
+/**
+ * Aggregate form of <code>h3_cells_to_multi_polygon</code>, which collects the cells of each group
+ * in a {@link CellSet} rather than an array, so that partial aggregation can combine cells from
+ * several nodes. The multipolygon is only built from the distinct cells at output. As for the
+ * scalar function, the result is null if any cell is invalid or the cells are of different
+ * resolutions.
+ */
+@AggregationFunction("h3_cells_to_multi_polygon_agg")
+@Description("Find the multipolygon of the aggregated cells")
+public final class CellsToMultiPolygonAggregation {
+  private static final FunctionMetrics CELLS_TO_MULTI_POLYGON_AGG =
+      FunctionMetrics.forFunction(
+          CellsToMultiPolygonAggregation.class, "h3_cells_to_multi_polygon_agg");
+
+  private CellsToMultiPolygonAggregation() {}
+
+  @InputFunction
+  public static void input(
+      @AggregationState CellSetState state, @SqlType(StandardTypes.BIGINT) long cell) {
+    CellSet cells = state.getCells();
+    if (cells == null) {
+      cells = new CellSet();
+      state.setCells(cells);
+    }
+    long size = cells.getEstimatedSize();
+    cells.add(cell);
+    state.addMemoryUsage(cells.getEstimatedSize() - size);
+  }
+
+  @CombineFunction
+  public static void combine(
+      @AggregationState CellSetState state, @AggregationState CellSetState otherState) {
+    CellSet otherCells = otherState.getCells();
+    if (otherCells == null) {
+      return;
+    }
+    CellSet cells = state.getCells();
+    if (cells == null) {
+      cells = new CellSet();
+      state.setCells(cells);
+    }
+    long size = cells.getEstimatedSize();
+    cells.addAll(otherCells);
+    state.addMemoryUsage(cells.getEstimatedSize() - size);
+  }
+
+  @OutputFunction(GEOMETRY_TYPE_NAME)
+  public static void output(@AggregationState CellSetState state, BlockBuilder out) {
+    Slice result = outputSlice(state.getCells());
+    if (result == null) {
+      out.appendNull();
+    } else {
+      GEOMETRY.writeSlice(out, result);
+    }
+  }
+
+  /** The multipolygon of the cells, or null if there are none or the set was rejected. */
+  static Slice outputSlice(CellSet cells) {
+    if (cells == null) {
+      return null;
+    }
+    long start = CELLS_TO_MULTI_POLYGON_AGG.start();
+    if (cells.getRejected() != null) {
+      return CELLS_TO_MULTI_POLYGON_AGG.reject(cells.getRejected());
+    }
+    try {
+      return CELLS_TO_MULTI_POLYGON_AGG.end(
+          start, RegionFunctions.cellsToMultiPolygon(cells.toArray()));
+    } catch (Exception e) {
+      return CELLS_TO_MULTI_POLYGON_AGG.reject(Reason.H3_ERROR);
+    }
+  }
+}
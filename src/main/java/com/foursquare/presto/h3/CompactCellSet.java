@@ -0,0 +1,295 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.Arrays;
+
+/**
+ * Compacted set of cells, for aggregations which compact as cells arrive. Cells must all be valid
+ * and of one resolution, as for compactCells; otherwise the set is rejected as in {@link CellSet}.
+ *
+ * <p>The set keeps a sorted array of compacted cells for each resolution, and a buffer of added
+ * cells. When the buffer is full it is merged into the compacted cells: cells within a coarser
+ * cell of the set are dropped, and complete groups of siblings (7, or 6 for the children of
+ * pentagons) are replaced by their parent, repeatedly up to resolution 0. The buffer is as large
+ * as the compacted cells, so memory is proportional to the compacted size rather than to the number
+ * of cells added.
+ *
+ * <p>Sorted cells of one resolution are in groups of siblings, since their digits differ only at
+ * their resolution.
+ *
+ * <p>Serialized, a set is a byte for the rejection reason as in {@link CellSet}, a byte for the
+ * resolution of the added cells (or -1 if there are none), followed by the compacted cells as
+ * little-endian longs.
+ */
+final class CompactCellSet {
+  private static final int INSTANCE_SIZE = 64;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int HEADER_SIZE = 2;
+  private static final long[] EMPTY = {};
+
+  /** Compacted cells of each resolution, sorted, with their number in <code>sizes</code>. */
+  private final long[][] levels = new long[H3Index.MAX_RES + 1][];
+
+  private final int[] sizes = new int[H3Index.MAX_RES + 1];
+  private int compactedSize;
+
+  private long[] buffer = EMPTY;
+  private int bufferSize;
+
+  private int res = -1;
+  private Reason rejected;
+
+  CompactCellSet() {
+    Arrays.fill(levels, EMPTY);
+  }
+
+  /** Adds the cell, or rejects the set if the cell is invalid or of a different resolution. */
+  void add(long cell) {
+    if (rejected != null) {
+      return;
+    }
+    if (!H3Index.isValidCell(cell)) {
+      reject(Reason.INVALID_CELL);
+      return;
+    }
+    if (!checkResolution(H3Index.getResolution(cell))) {
+      return;
+    }
+    if (bufferSize == buffer.length) {
+      flush();
+      if (buffer.length < Math.max(INITIAL_CAPACITY, compactedSize)) {
+        buffer = new long[Math.max(INITIAL_CAPACITY, compactedSize)];
+      }
+    }
+    buffer[bufferSize++] = cell;
+  }
+
+  /** Adds the cells of <code>other</code>, which is unchanged. */
+  void addAll(CompactCellSet other) {
+    if (rejected != null) {
+      return;
+    }
+    if (other.rejected != null) {
+      reject(other.rejected);
+      return;
+    }
+    if (other.res == -1 || !checkResolution(other.res)) {
+      return;
+    }
+    other.flush();
+    flush();
+    for (int r = 0; r <= H3Index.MAX_RES; r++) {
+      addLevel(r, other.levels[r], other.sizes[r]);
+    }
+    compact();
+  }
+
+  /** The reason the set was rejected, or null if all of its cells were valid. */
+  Reason getRejected() {
+    return rejected;
+  }
+
+  /** Returns the compacted cells, from the coarsest resolution. */
+  long[] toArray() {
+    flush();
+    long[] cells = new long[compactedSize];
+    int offset = 0;
+    for (int r = 0; r <= H3Index.MAX_RES; r++) {
+      System.arraycopy(levels[r], 0, cells, offset, sizes[r]);
+      offset += sizes[r];
+    }
+    return cells;
+  }
+
+  long getEstimatedSize() {
+    long size = INSTANCE_SIZE + (long) Long.BYTES * buffer.length;
+    for (long[] level : levels) {
+      size += (long) Long.BYTES * level.length;
+    }
+    return size;
+  }
+
+  Slice serialize() {
+    long[] cells = toArray();
+    Slice slice = Slices.allocate(HEADER_SIZE + Long.BYTES * cells.length);
+    slice.setByte(0, rejected == null ? 0 : rejected.ordinal() + 1);
+    slice.setByte(1, res);
+    for (int i = 0; i < cells.length; i++) {
+      slice.setLong(HEADER_SIZE + Long.BYTES * i, cells[i]);
+    }
+    return slice;
+  }
+
+  /** Adds the cells of a set serialized by {@link #serialize()}. */
+  void addSerialized(Slice slice) {
+    CompactCellSet other = new CompactCellSet();
+    int reason = slice.getByte(0);
+    if (reason != 0) {
+      other.reject(Reason.values()[reason - 1]);
+    } else {
+      other.res = slice.getByte(1);
+      long[] cells = new long[(slice.length() - HEADER_SIZE) / Long.BYTES];
+      for (int i = 0; i < cells.length; i++) {
+        cells[i] = slice.getLong(HEADER_SIZE + Long.BYTES * i);
+      }
+      // Cells are in runs of one resolution, as written by toArray()
+      int start = 0;
+      while (start < cells.length && other.rejected == null) {
+        int cellRes = H3Index.getResolution(cells[start]);
+        int end = start;
+        while (end < cells.length && H3Index.getResolution(cells[end]) == cellRes) {
+          if (!H3Index.isValidCell(cells[end]) || cellRes > other.res) {
+            other.reject(Reason.INVALID_CELL);
+            break;
+          }
+          end++;
+        }
+        if (other.rejected == null) {
+          long[] run = Arrays.copyOfRange(cells, start, end);
+          Arrays.sort(run);
+          other.addLevel(cellRes, run, run.length);
+        }
+        start = end;
+      }
+    }
+    addAll(other);
+  }
+
+  private boolean checkResolution(int cellRes) {
+    if (res == -1) {
+      res = cellRes;
+    } else if (cellRes != res) {
+      reject(Reason.INVALID_RESOLUTION);
+      return false;
+    }
+    return true;
+  }
+
+  private void reject(Reason reason) {
+    rejected = reason;
+    Arrays.fill(levels, EMPTY);
+    Arrays.fill(sizes, 0);
+    compactedSize = 0;
+    buffer = EMPTY;
+    bufferSize = 0;
+  }
+
+  /** Merges the buffer into the compacted cells. */
+  private void flush() {
+    if (bufferSize == 0) {
+      return;
+    }
+    Arrays.sort(buffer, 0, bufferSize);
+    addLevel(res, buffer, bufferSize);
+    bufferSize = 0;
+    compact();
+  }
+
+  /** Merges sorted cells, possibly with duplicates, into the level, without compacting. */
+  private void addLevel(int r, long[] cells, int count) {
+    if (count == 0) {
+      return;
+    }
+    long[] level = levels[r];
+    int size = sizes[r];
+    long[] merged = new long[size + count];
+    int i = 0;
+    int j = 0;
+    int m = 0;
+    while (i < size || j < count) {
+      long next = j == count || (i < size && level[i] <= cells[j]) ? level[i++] : cells[j++];
+      if (m == 0 || merged[m - 1] != next) {
+        merged[m++] = next;
+      }
+    }
+    compactedSize += m - size;
+    levels[r] = merged;
+    sizes[r] = m;
+  }
+
+  /**
+   * Drops cells within coarser cells of the set, then replaces complete groups of siblings with
+   * their parent, from the finest resolution up.
+   */
+  private void compact() {
+    for (int r = 1; r <= H3Index.MAX_RES; r++) {
+      if (sizes[r] > 0) {
+        dropCovered(r);
+      }
+    }
+    for (int r = H3Index.MAX_RES; r > 0; r--) {
+      if (sizes[r] > 0) {
+        compactLevel(r);
+      }
+    }
+  }
+
+  /** Removes the cells of level <code>r</code> which have an ancestor in a coarser level. */
+  private void dropCovered(int r) {
+    long[] level = levels[r];
+    int kept = 0;
+    for (int i = 0; i < sizes[r]; i++) {
+      if (!hasAncestor(level[i], r)) {
+        level[kept++] = level[i];
+      }
+    }
+    compactedSize -= sizes[r] - kept;
+    sizes[r] = kept;
+  }
+
+  private boolean hasAncestor(long cell, int cellRes) {
+    for (int r = 0; r < cellRes; r++) {
+      if (sizes[r] > 0
+          && Arrays.binarySearch(levels[r], 0, sizes[r], H3Index.cellToParent(cell, r)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Replaces complete groups of siblings in level <code>r</code> with their parents. */
+  private void compactLevel(int r) {
+    long[] level = levels[r];
+    int size = sizes[r];
+    long[] parents = new long[size / 6];
+    int numParents = 0;
+    int kept = 0;
+    int start = 0;
+    while (start < size) {
+      long parent = H3Index.cellToParent(level[start], r - 1);
+      int end = start + 1;
+      while (end < size && H3Index.cellToParent(level[end], r - 1) == parent) {
+        end++;
+      }
+      int numChildren = H3Index.isPentagon(parent) ? 6 : 7;
+      if (end - start == numChildren) {
+        parents[numParents++] = parent;
+      } else {
+        System.arraycopy(level, start, level, kept, end - start);
+        kept += end - start;
+      }
+      start = end;
+    }
+    compactedSize -= size - kept;
+    sizes[r] = kept;
+    // Parents are sorted, as their children were
+    addLevel(r - 1, parents, numParents);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.array.ObjectBigArray;
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.facebook.presto.spi.function.GroupedAccumulatorState;
+
+public final class CompactCellSetStateFactory
+    implements AccumulatorStateFactory<CompactCellSetState> {
+  @Override
+  public CompactCellSetState createSingleState() {
+    return new SingleCompactCellSetState();
+  }
+
+  @Override
+  public Class<? extends CompactCellSetState> getSingleStateClass() {
+    return SingleCompactCellSetState.class;
+  }
+
+  @Override
+  public CompactCellSetState createGroupedState() {
+    return new GroupedCompactCellSetState();
+  }
+
+  @Override
+  public Class<? extends CompactCellSetState> getGroupedStateClass() {
+    return GroupedCompactCellSetState.class;
+  }
+
+  public static final class SingleCompactCellSetState implements CompactCellSetState {
+    private CompactCellSet cells;
+
+    @Override
+    public CompactCellSet getCells() {
+      return cells;
+    }
+
+    @Override
+    public void setCells(CompactCellSet cells) {
+      this.cells = cells;
+    }
+
+    @Override
+    public void addMemoryUsage(long memory) {
+      // The size is read from the set itself
+    }
+
+    @Override
+    public long getEstimatedSize() {
+      return cells == null ? 0 : cells.getEstimatedSize();
+    }
+  }
+
+  public static final class GroupedCompactCellSetState
+      implements GroupedAccumulatorState, CompactCellSetState {
+    private final ObjectBigArray<CompactCellSet> cells = new ObjectBigArray<>();
+    private long groupId;
+    private long size;
+
+    @Override
+    public void setGroupId(long groupId) {
+      this.groupId = groupId;
+    }
+
+    @Override
+    public void ensureCapacity(long size) {
+      cells.ensureCapacity(size);
+    }
+
+    @Override
+    public CompactCellSet getCells() {
+      return cells.get(groupId);
+    }
+
+    @Override
+    public void setCells(CompactCellSet value) {
+      cells.set(groupId, value);
+    }
+
+    @Override
+    public void addMemoryUsage(long memory) {
+      size += memory;
+    }
+
+    @Override
+    public long getEstimatedSize() {
+      return size + cells.sizeOf();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+
+/** Partial states are sent between nodes as {@link CompactCellSet#serialize()} in a VARBINARY. */
+public final class CompactCellSetStateSerializer
+    implements AccumulatorStateSerializer<CompactCellSetState> {
+  @Override
+  public Type getSerializedType() {
+    return VARBINARY;
+  }
+
+  @Override
+  public void serialize(CompactCellSetState state, BlockBuilder out) {
+    if (state.getCells() == null) {
+      out.appendNull();
+    } else {
+      VARBINARY.writeSlice(out, state.getCells().serialize());
+    }
+  }
+
+  @Override
+  public void deserialize(Block block, int index, CompactCellSetState state) {
+    if (block.isNull(index)) {
+      return;
+    }
+    CompactCellSet cells = new CompactCellSet();
+    cells.addSerialized(VARBINARY.getSlice(block, index));
+    state.setCells(cells);
+    state.addMemoryUsage(cells.getEstimatedSize());
+  }
+}
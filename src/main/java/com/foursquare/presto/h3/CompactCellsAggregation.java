@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.AggregationFunction;
+import com.facebook.presto.spi.function.AggregationState;
+import com.facebook.presto.spi.function.CombineFunction;
+import com.facebook.presto.spi.function.Description;
+import com.facebook.presto.spi.function.InputFunction;
+import com.facebook.presto.spi.function.OutputFunction;
+import com.facebook.presto.spi.function.SqlType;
+
+/**
+ * Aggregate form of <code>h3_compact_cells</code>, which compacts the cells of each group as they
+ * arrive in a {@link CompactCellSet}, so that memory is proportional to the compacted cells. The
+ * result is null if any cell is invalid or the cells are of different resolutions.
+ */
+@AggregationFunction("h3_compact_cells_agg")
+@Description("Compact the aggregated indexes to coarser resolutions")
+public final class CompactCellsAggregation {
+  private static final FunctionMetrics COMPACT_CELLS_AGG =
+      FunctionMetrics.forFunction(CompactCellsAggregation.class, "h3_compact_cells_agg");
+
+  private CompactCellsAggregation() {}
+
+  @InputFunction
+  public static void input(
+      @AggregationState CompactCellSetState state, @SqlType(StandardTypes.BIGINT) long cell) {
+    CompactCellSet cells = state.getCells();
+    if (cells == null) {
+      cells = new CompactCellSet();
+      state.setCells(cells);
+    }
+    long size = cells.getEstimatedSize();
+    cells.add(cell);
+    state.addMemoryUsage(cells.getEstimatedSize() - size);
+  }
+
+  @CombineFunction
+  public static void combine(
+      @AggregationState CompactCellSetState state,
+      @AggregationState CompactCellSetState otherState) {
+    CompactCellSet otherCells = otherState.getCells();
+    if (otherCells == null) {
+      return;
+    }
+    CompactCellSet cells = state.getCells();
+    if (cells == null) {
+      cells = new CompactCellSet();
+      state.setCells(cells);
+    }
+    long size = cells.getEstimatedSize();
+    cells.addAll(otherCells);
+    state.addMemoryUsage(cells.getEstimatedSize() - size);
+  }
+
+  @OutputFunction(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static void output(@AggregationState CompactCellSetState state, BlockBuilder out) {
+    long[] cells = outputCells(state.getCells());
+    if (cells == null) {
+      out.appendNull();
+      return;
+    }
+    BlockBuilder entry = out.beginBlockEntry();
+    for (long cell : cells) {
+      BIGINT.writeLong(entry, cell);
+    }
+    out.closeEntry();
+  }
+
+  /** The compacted cells, or null if there are none or the set was rejected. */
+  static long[] outputCells(CompactCellSet cells) {
+    if (cells == null) {
+      return null;
+    }
+    long start = COMPACT_CELLS_AGG.start();
+    if (cells.getRejected() != null) {
+      return COMPACT_CELLS_AGG.reject(cells.getRejected());
+    }
+    return COMPACT_CELLS_AGG.end(start, cells.toArray());
+  }
+}
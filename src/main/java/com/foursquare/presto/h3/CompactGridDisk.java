@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.uber.h3core.exceptions.H3Exception;
+import com.uber.h3core.util.LatLng;
+import java.util.Arrays;
+import java.util.List;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Compacted cells of a grid disk, the same as compacting the result of gridDisk, without producing
+ * every cell of a large disk. The cells of a disk are exactly those whose centers are inside its
+ * outline, which is the outer loop of the outline of its outermost ring. So only the 6k cells of
+ * that ring are found at the origin's resolution, and the interior is filled by {@link
+ * CompactPolygonToCells}.
+ *
+ * <p>Near pentagons, gridRingUnsafe fails and disks have fewer than 3k(k + 1) + 1 cells, so disks
+ * containing a pentagon are compacted from the full disk. As a check, the filled cells are counted
+ * at the origin's resolution, and the disk is also compacted from the full disk if that is not the
+ * number of cells in a disk without pentagons.
+ */
+final class CompactGridDisk {
+  /** Smaller disks are compacted from the full disk, which is cheaper than filling the outline. */
+  static final int MIN_FILL_K = 16;
+
+  private CompactGridDisk() {}
+
+  /** The result may have unused positions, which are 0. */
+  static long[] gridDiskCompact(long origin, int k) {
+    if (k >= MIN_FILL_K) {
+      long[] filled = fill(origin, k);
+      if (filled != null) {
+        return filled;
+      }
+    }
+    long[] disk = H3Plugin.h3Primitives.gridDisk(origin, k);
+    // compactCells does not compact cells mixed with the 0s of unused positions
+    return H3Plugin.h3Primitives.compactCells(Arrays.stream(disk).filter(c -> c != 0).toArray());
+  }
+
+  /** Fills the disk from its outline, or returns null if the disk must be compacted in full. */
+  private static long[] fill(long origin, int k) {
+    long[] ring;
+    try {
+      ring = H3Plugin.h3Primitives.gridRingUnsafe(origin, k);
+    } catch (H3Exception e) {
+      return null;
+    }
+    if (aroundPole(ring)) {
+      // H3 cannot trace the outline of cells around a pole
+      return null;
+    }
+    List<List<List<LatLng>>> outline = H3Plugin.h3Primitives.cellsToMultiPolygon(ring, true);
+    if (outline.size() != 1) {
+      return null;
+    }
+    GeometryFactory geomFactory = new GeometryFactory();
+    Polygon polygonGeom =
+        geomFactory.createPolygon(
+            RegionFunctions.latLngListToLinearRing(geomFactory, outline.get(0).get(0)));
+    double[] polygon = RegionFunctions.shellLatLngRadians(polygonGeom);
+    int[] holeSizes = new int[0];
+    double[] holes = new double[0];
+
+    H3Polygon h3Polygon = new H3Polygon(polygon, holeSizes, holes);
+    if (h3Polygon.isTransmeridian() || !polygonGeom.isValid()) {
+      return null;
+    }
+    int res = H3Index.getResolution(origin);
+    for (long pentagon : H3Plugin.h3Primitives.getPentagons(res)) {
+      double[] center = H3Plugin.h3Primitives.cellToLatLngRadians(pentagon);
+      if (h3Polygon.contains(center[0], center[1])) {
+        return null;
+      }
+    }
+
+    long[] cells =
+        CompactPolygonToCells.polygonToCellsCompact(polygonGeom, polygon, holeSizes, holes, res);
+    long count = 0;
+    for (long cell : cells) {
+      if (cell != 0) {
+        count += pow7(res - H3Index.getResolution(cell));
+      }
+    }
+    return count == 3L * k * (k + 1) + 1 ? cells : null;
+  }
+
+  /**
+   * Returns true if the ring winds around a pole, which is when the longitudes of the centers of
+   * its cells, which gridRingUnsafe returns in order around the ring, change by a full turn.
+   */
+  private static boolean aroundPole(long[] ring) {
+    double winding = 0;
+    double previous = H3Plugin.h3Primitives.cellToLatLngRadians(ring[ring.length - 1])[1];
+    for (long cell : ring) {
+      double lng = H3Plugin.h3Primitives.cellToLatLngRadians(cell)[1];
+      double delta = lng - previous;
+      if (delta > Math.PI) {
+        delta -= 2 * Math.PI;
+      } else if (delta < -Math.PI) {
+        delta += 2 * Math.PI;
+      }
+      winding += delta;
+      previous = lng;
+    }
+    return Math.abs(winding) > Math.PI;
+  }
+
+  /** Number of descendants of a hexagon <code>levels</code> resolutions finer. */
+  private static long pow7(int levels) {
+    long result = 1;
+    for (int i = 0; i < levels; i++) {
+      result *= 7;
+    }
+    return result;
+  }
+}
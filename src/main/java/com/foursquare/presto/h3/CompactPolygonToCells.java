@@ -0,0 +1,221 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import java.util.Arrays;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Compacted cells of a polygon, the same as compacting the result of polygonToCells, without
+ * producing the cells at the target resolution. Starting from the base cells, each cell is:
+ *
+ * <ul>
+ *   <li>left out if all of its descendants are outside the polygon,
+ *   <li>added whole if all of its descendants are inside,
+ *   <li>otherwise, replaced by its children, down to the target resolution, where the center of
+ *       the cell is tested as by H3, using {@link H3Polygon}.
+ * </ul>
+ *
+ * <p>Cells are classified by a spherical cap around the cell's center which contains the centers
+ * of all of its descendants, at any resolution, see {@link #DESCENDANT_RADIUS}. The polygon is
+ * compared, using JTS, with the cap's bounding box in latitude and longitude, which H3 also treats
+ * as planar coordinates. A cell whose children are all in the result replaces them, as in
+ * compactCells.
+ *
+ * <p>Polygons which are not valid, or which cross the antimeridian, are filled and compacted
+ * natively instead.
+ */
+final class CompactPolygonToCells {
+  /** Cells are only classified if they are at least this many levels above the target. */
+  private static final int MIN_CLASSIFY_LEVELS = 2;
+
+  /**
+   * Radius of the cap containing a cell's descendant centers, relative to the cell's radius, the
+   * largest distance from its center to a vertex.
+   *
+   * <p>Measured over every cell to resolution 4, and pentagons, their neighbors and random cells at
+   * finer resolutions, every child's center is within a = 0.668 of the cell's radius of its center,
+   * and every child's radius is at most b = 0.471 of the cell's. The ratios alternate between two
+   * values from resolution 5 on, as cells become flat, so these are the largest of either. A
+   * descendant <code>n</code> levels down is then within a (1 + b + ... + b^(n-1)) radii of the
+   * center, which is less than a / (1 - b) = 1.262 at any depth. 1.3 leaves a margin of about 3%
+   * for rounding and for cells which were not measured.
+   */
+  static final double DESCENDANT_RADIUS = 1.3;
+
+  private static final int LAT = 0;
+  private static final int LNG = 1;
+
+  private enum Coverage {
+    /** No descendant's center is in the polygon. */
+    OUTSIDE,
+    /** Every descendant's center is in the polygon. */
+    INSIDE,
+    BOUNDARY
+  }
+
+  private final GeometryFactory geometryFactory;
+  private final PreparedGeometry preparedPolygon;
+  private final Envelope envelope;
+  private final H3Polygon h3Polygon;
+  private final int res;
+
+  private long[] cells = new long[16];
+  private int size;
+
+  private CompactPolygonToCells(Polygon polygonGeom, H3Polygon h3Polygon, int res) {
+    this.geometryFactory = polygonGeom.getFactory();
+    this.preparedPolygon = PreparedGeometryFactory.prepare(polygonGeom);
+    this.envelope = polygonGeom.getEnvelopeInternal();
+    this.h3Polygon = h3Polygon;
+    this.res = res;
+  }
+
+  /**
+   * Returns the compacted cells of the polygon, given both as a geometry in degrees and as arrays
+   * in radians for H3. The result may have unused positions, which are 0.
+   */
+  static long[] polygonToCellsCompact(
+      Polygon polygonGeom, double[] polygon, int[] holeSizes, double[] holes, int res) {
+    H3Polygon h3Polygon = new H3Polygon(polygon, holeSizes, holes);
+    if (h3Polygon.isTransmeridian() || !polygonGeom.isValid()) {
+      long[] cells = H3Plugin.h3Primitives.polygonToCells(polygon, holeSizes, holes, res);
+      // compactCells does not compact cells mixed with the 0s of unused positions
+      return H3Plugin.h3Primitives.compactCells(
+          Arrays.stream(cells).filter(cell -> cell != 0).toArray());
+    }
+    CompactPolygonToCells fill = new CompactPolygonToCells(polygonGeom, h3Polygon, res);
+    for (long cell : H3Plugin.h3Primitives.getRes0Cells()) {
+      if (fill.fill(cell, 0)) {
+        fill.add(cell);
+      }
+    }
+    return Arrays.copyOf(fill.cells, fill.size);
+  }
+
+  /**
+   * Adds the result's cells within <code>cell</code>, compacted, unless every descendant of the
+   * cell at the target resolution is in the result. In that case, nothing is added and this returns
+   * true, so that the caller can add the cell or its parent.
+   */
+  private boolean fill(long cell, int cellRes) {
+    if (cellRes == res) {
+      double[] center = H3Plugin.h3Primitives.cellToLatLngRadians(cell);
+      return h3Polygon.contains(center[LAT], center[LNG]);
+    }
+    // Testing the centers of the children directly is cheaper than classifying their parent
+    Coverage coverage =
+        res - cellRes < MIN_CLASSIFY_LEVELS ? Coverage.BOUNDARY : classify(cell);
+    if (coverage != Coverage.BOUNDARY) {
+      return coverage == Coverage.INSIDE;
+    }
+    long[] children = H3Plugin.h3Primitives.cellToChildren(cell, cellRes + 1);
+    boolean[] complete = new boolean[children.length];
+    boolean allComplete = true;
+    for (int i = 0; i < children.length; i++) {
+      complete[i] = fill(children[i], cellRes + 1);
+      allComplete &= complete[i];
+    }
+    if (!allComplete) {
+      for (int i = 0; i < children.length; i++) {
+        if (complete[i]) {
+          add(children[i]);
+        }
+      }
+    }
+    return allComplete;
+  }
+
+  private void add(long cell) {
+    if (size == cells.length) {
+      cells = Arrays.copyOf(cells, size * 2);
+    }
+    cells[size++] = cell;
+  }
+
+  /** Compares the bounding box of the cap containing the cell's descendant centers. */
+  private Coverage classify(long cell) {
+    double[] center = H3Plugin.h3Primitives.cellToLatLngRadians(cell);
+    double radius = DESCENDANT_RADIUS * cellRadius(center, cell);
+    double minLat = Math.toDegrees(center[LAT] - radius);
+    double maxLat = Math.toDegrees(center[LAT] + radius);
+    double minLng;
+    double maxLng;
+    if (Math.abs(center[LAT]) + radius >= Math.PI / 2) {
+      // The cap contains a pole, so it covers all longitudes
+      minLat = Math.max(minLat, -90);
+      maxLat = Math.min(maxLat, 90);
+      minLng = -180;
+      maxLng = 180;
+    } else {
+      double halfWidth = Math.asin(Math.sin(radius) / Math.cos(center[LAT]));
+      minLng = Math.toDegrees(center[LNG] - halfWidth);
+      maxLng = Math.toDegrees(center[LNG] + halfWidth);
+    }
+    Envelope box = new Envelope(minLng, maxLng, minLat, maxLat);
+
+    if (minLng < -180 || maxLng > 180) {
+      // The polygon does not cross the antimeridian, so it can only intersect the cap
+      for (double shift : new double[] {-360, 0, 360}) {
+        Envelope shifted = new Envelope(box);
+        shifted.translate(shift, 0);
+        if (shifted.intersects(envelope)
+            && preparedPolygon.intersects(geometryFactory.toGeometry(shifted))) {
+          return Coverage.BOUNDARY;
+        }
+      }
+      return Coverage.OUTSIDE;
+    }
+    if (!box.intersects(envelope)) {
+      return Coverage.OUTSIDE;
+    }
+    Geometry shape = geometryFactory.toGeometry(box);
+    if (preparedPolygon.contains(shape)) {
+      return Coverage.INSIDE;
+    }
+    return preparedPolygon.intersects(shape) ? Coverage.BOUNDARY : Coverage.OUTSIDE;
+  }
+
+  /** The largest great circle distance from the center to a vertex of the cell, in radians. */
+  static double cellRadius(double[] center, long cell) {
+    double[] boundary = H3Plugin.h3Primitives.cellToBoundary(cell);
+    double radius = 0;
+    for (int i = 0; i < boundary.length; i += 2) {
+      radius =
+          Math.max(
+              radius,
+              distance(
+                  center[LAT],
+                  center[LNG],
+                  Math.toRadians(boundary[i + LAT]),
+                  Math.toRadians(boundary[i + LNG])));
+    }
+    return radius;
+  }
+
+  /** Great circle distance in radians, by the haversine formula. */
+  static double distance(double lat1, double lng1, double lat2, double lng2) {
+    double sinLat = Math.sin((lat2 - lat1) / 2);
+    double sinLng = Math.sin((lng2 - lng1) / 2);
+    double h = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLng * sinLng;
+    return 2 * Math.asin(Math.min(1, Math.sqrt(h)));
+  }
+}
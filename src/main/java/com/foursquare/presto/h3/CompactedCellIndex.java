@@ -0,0 +1,174 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Sorted copy of a set of cells of any resolutions, such as the output of compactCells, for
+ * testing whether cells are within it. A cell is within the set if it or one of its ancestors is in
+ * the set, which is a binary search at each resolution of the set up to that of the cell, or a
+ * scan of the set comparing each cell with the ancestor of its resolution.
+ *
+ * <p>Building the index copies and sorts the cells, which only pays off if it is used for many
+ * lookups. A constant array is passed as the same block for every row, so each thread keeps the
+ * index of the last block it was built for, compared by identity. Arrays read from a column, e.g.
+ * from the build side of a join, are a different block for every row, even if they have the same
+ * cells. So a block seen for the first time with a single lookup is scanned in place, and is only
+ * indexed if the same block is passed again. Blocks are weakly referenced, and an index is dropped
+ * by the next call on the thread once its block is collected. Blocks larger than {@link
+ * #MAX_CACHED_CELLS} are indexed for each call rather than kept on the thread.
+ */
+final class CompactedCellIndex {
+  /** Largest block whose index is kept on the thread, 8 MB of cells. */
+  static final int MAX_CACHED_CELLS = 1 << 20;
+
+  private static final ThreadLocal<CompactedCellIndex> LAST = new ThreadLocal<>();
+
+  /** The last block which was scanned rather than indexed, on each thread. */
+  private static final ThreadLocal<WeakReference<Block>> LAST_SCANNED = new ThreadLocal<>();
+
+  private final WeakReference<Block> block;
+
+  /** Sorted cells, or null if the block is invalid or scanned in place. */
+  private final long[] cells;
+
+  /** The block if it is scanned in place rather than indexed, otherwise null. */
+  private final Block scannedBlock;
+
+  /** Bit <code>r</code> is set if there are cells of resolution <code>r</code>. */
+  private final int resolutions;
+
+  private CompactedCellIndex(Block block, long[] cells, Block scannedBlock, int resolutions) {
+    this.block = new WeakReference<>(block);
+    this.cells = cells;
+    this.scannedBlock = scannedBlock;
+    this.resolutions = resolutions;
+  }
+
+  /**
+   * Returns the index of the cells in <code>block</code> for <code>lookups</code> calls of
+   * contains, reusing this thread's last index if it was built for the same block. Null positions
+   * are skipped.
+   */
+  static CompactedCellIndex forBlock(Block block, int lookups) {
+    CompactedCellIndex last = LAST.get();
+    if (last != null) {
+      Block lastBlock = last.block.get();
+      if (lastBlock == block) {
+        return last;
+      }
+      if (lastBlock == null) {
+        // Do not keep the cells of a collected block until the thread builds another index
+        LAST.remove();
+      }
+    }
+    if (block.getPositionCount() > MAX_CACHED_CELLS) {
+      return lookups <= 1 ? scan(block) : build(block);
+    }
+    WeakReference<Block> lastScanned = LAST_SCANNED.get();
+    if (lookups <= 1 && (lastScanned == null || lastScanned.get() != block)) {
+      LAST_SCANNED.set(new WeakReference<>(block));
+      return scan(block);
+    }
+    CompactedCellIndex index = build(block);
+    LAST.set(index);
+    return index;
+  }
+
+  /** Builds an index of the cells in <code>block</code>, without caching it. */
+  static CompactedCellIndex build(Block block) {
+    long[] cells = H3Plugin.longBlockToArray(block);
+    int count = 0;
+    int resolutions = 0;
+    for (long cell : cells) {
+      // Null elements are read as 0
+      if (cell == 0) {
+        continue;
+      }
+      if (!H3Index.isValidCell(cell)) {
+        return new CompactedCellIndex(block, null, null, 0);
+      }
+      resolutions |= 1 << H3Index.getResolution(cell);
+      cells[count++] = cell;
+    }
+    cells = count < cells.length ? Arrays.copyOf(cells, count) : cells;
+    Arrays.sort(cells);
+    return new CompactedCellIndex(block, cells, null, resolutions);
+  }
+
+  /**
+   * Checks the cells in <code>block</code> without copying them, for contains to scan the block
+   * rather than search an index.
+   */
+  static CompactedCellIndex scan(Block block) {
+    int resolutions = 0;
+    for (int i = 0; i < block.getPositionCount(); i++) {
+      long cell = block.isNull(i) ? 0 : block.getLong(i);
+      if (cell == 0) {
+        continue;
+      }
+      if (!H3Index.isValidCell(cell)) {
+        return new CompactedCellIndex(block, null, null, 0);
+      }
+      resolutions |= 1 << H3Index.getResolution(cell);
+    }
+    return new CompactedCellIndex(block, null, block, resolutions);
+  }
+
+  /** False if any cell of the block was invalid, in which case contains must not be called. */
+  boolean isValid() {
+    return cells != null || scannedBlock != null;
+  }
+
+  /** Returns true if the valid cell or one of its ancestors is in the set. */
+  boolean contains(long cell) {
+    int cellRes = H3Index.getResolution(cell);
+    // Resolutions of the set no finer than the cell
+    int candidates = resolutions & ((2 << cellRes) - 1);
+    if (scannedBlock != null) {
+      return candidates != 0 && scanContains(cell, candidates);
+    }
+    while (candidates != 0) {
+      int r = Integer.numberOfTrailingZeros(candidates);
+      if (Arrays.binarySearch(cells, H3Index.cellToParent(cell, r)) >= 0) {
+        return true;
+      }
+      candidates &= candidates - 1;
+    }
+    return false;
+  }
+
+  /** Compares each cell of the block with the ancestor of the same resolution. */
+  private boolean scanContains(long cell, int candidates) {
+    for (int i = 0; i < scannedBlock.getPositionCount(); i++) {
+      if (scannedBlock.isNull(i)) {
+        continue;
+      }
+      long setCell = scannedBlock.getLong(i);
+      if (setCell == 0) {
+        continue;
+      }
+      int r = H3Index.getResolution(setCell);
+      if ((candidates & (1 << r)) != 0 && H3Index.cellToParent(cell, r) == setCell) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -19,25 +19,49 @@ import static com.facebook.presto.geospatial.type.GeometryType.GEOMETRY_TYPE_NAM
 
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.StandardTypes;
-import com.facebook.presto.geospatial.GeometryType;
 import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import com.uber.h3core.exceptions.H3Exception;
 import io.airlift.slice.Slice;
 
 /** Functions wrapping https://h3geo.org/docs/api/uniedge */
 public final class DirectedEdgeFunctions {
+  /** H3 error code for cells which are not neighbors. */
+  private static final int E_NOT_NEIGHBORS = 11;
+
+  private static final FunctionMetrics ARE_NEIGHBOR_CELLS =
+      FunctionMetrics.forFunction(DirectedEdgeFunctions.class, "h3_are_neighbor_cells");
+  private static final FunctionMetrics CELLS_TO_DIRECTED_EDGE =
+      FunctionMetrics.forFunction(DirectedEdgeFunctions.class, "h3_cells_to_directed_edge");
+  private static final FunctionMetrics GET_DIRECTED_EDGE_ORIGIN =
+      FunctionMetrics.forFunction(DirectedEdgeFunctions.class, "h3_get_directed_edge_origin");
+  private static final FunctionMetrics GET_DIRECTED_EDGE_DESTINATION =
+      FunctionMetrics.forFunction(DirectedEdgeFunctions.class, "h3_get_directed_edge_destination");
+  private static final FunctionMetrics DIRECTED_EDGE_TO_CELLS =
+      FunctionMetrics.forFunction(DirectedEdgeFunctions.class, "h3_directed_edge_to_cells");
+  private static final FunctionMetrics ORIGIN_TO_DIRECTED_EDGES =
+      FunctionMetrics.forFunction(DirectedEdgeFunctions.class, "h3_origin_to_directed_edges");
+  private static final FunctionMetrics DIRECTED_EDGE_TO_BOUNDARY =
+      FunctionMetrics.forFunction(DirectedEdgeFunctions.class, "h3_directed_edge_to_boundary");
+
   @ScalarFunction(value = "h3_are_neighbor_cells")
   @Description("Returns true if the H3 cells are adjacent")
   @SqlNullable
   @SqlType(StandardTypes.BOOLEAN)
   public static Boolean areNeighborCells(
       @SqlType(StandardTypes.BIGINT) long a, @SqlType(StandardTypes.BIGINT) long b) {
+    long start = ARE_NEIGHBOR_CELLS.start();
+    Reason invalid = H3Plugin.checkCellPair(a, b);
+    if (invalid != null) {
+      return ARE_NEIGHBOR_CELLS.reject(invalid);
+    }
     try {
-      return H3Plugin.h3.areNeighborCells(a, b);
+      return ARE_NEIGHBOR_CELLS.end(start, H3Plugin.h3.areNeighborCells(a, b));
     } catch (Exception e) {
-      return null;
+      return ARE_NEIGHBOR_CELLS.reject(Reason.H3_ERROR);
     }
   }
 
@@ -47,10 +71,22 @@ public final class DirectedEdgeFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long cellsToDirectedEdge(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long destination) {
+    long start = CELLS_TO_DIRECTED_EDGE.start();
+    Reason invalid = H3Plugin.checkCellPair(origin, destination);
+    if (invalid != null) {
+      return CELLS_TO_DIRECTED_EDGE.reject(invalid);
+    }
+    if (origin == destination) {
+      return CELLS_TO_DIRECTED_EDGE.reject(Reason.INVALID_ARGUMENT);
+    }
     try {
-      return H3Plugin.h3.cellsToDirectedEdge(origin, destination);
+      return CELLS_TO_DIRECTED_EDGE.end(
+          start, H3Plugin.h3.cellsToDirectedEdge(origin, destination));
+    } catch (H3Exception e) {
+      return CELLS_TO_DIRECTED_EDGE.reject(
+          e.getCode() == E_NOT_NEIGHBORS ? Reason.INVALID_ARGUMENT : Reason.H3_ERROR);
     } catch (Exception e) {
-      return null;
+      return CELLS_TO_DIRECTED_EDGE.reject(Reason.H3_ERROR);
     }
   }
 
@@ -59,10 +95,14 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long getDirectedEdgeOrigin(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = GET_DIRECTED_EDGE_ORIGIN.start();
+    if (!H3Index.isValidDirectedEdge(h3)) {
+      return GET_DIRECTED_EDGE_ORIGIN.reject(Reason.INVALID_DIRECTED_EDGE);
+    }
     try {
-      return H3Plugin.h3.getDirectedEdgeOrigin(h3);
+      return GET_DIRECTED_EDGE_ORIGIN.end(start, H3Plugin.h3.getDirectedEdgeOrigin(h3));
     } catch (Exception e) {
-      return null;
+      return GET_DIRECTED_EDGE_ORIGIN.reject(Reason.H3_ERROR);
     }
   }
 
@@ -71,10 +111,15 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long getDirectedEdgeDestination(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = GET_DIRECTED_EDGE_DESTINATION.start();
+    if (!H3Index.isValidDirectedEdge(h3)) {
+      return GET_DIRECTED_EDGE_DESTINATION.reject(Reason.INVALID_DIRECTED_EDGE);
+    }
     try {
-      return H3Plugin.h3.getDirectedEdgeDestination(h3);
+      return GET_DIRECTED_EDGE_DESTINATION.end(
+          start, H3Plugin.h3.getDirectedEdgeDestination(h3));
     } catch (Exception e) {
-      return null;
+      return GET_DIRECTED_EDGE_DESTINATION.reject(Reason.H3_ERROR);
     }
   }
 
@@ -83,10 +128,15 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block directedEdgeToCells(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = DIRECTED_EDGE_TO_CELLS.start();
+    if (!H3Index.isValidDirectedEdge(h3)) {
+      return DIRECTED_EDGE_TO_CELLS.reject(Reason.INVALID_DIRECTED_EDGE);
+    }
     try {
-      return H3Plugin.longListToBlock(H3Plugin.h3.directedEdgeToCells(h3));
+      long[] cells = H3Plugin.h3Primitives.directedEdgeToCells(h3);
+      return DIRECTED_EDGE_TO_CELLS.end(start, H3Plugin.longArrayToBlock(cells));
     } catch (Exception e) {
-      return null;
+      return DIRECTED_EDGE_TO_CELLS.reject(Reason.H3_ERROR);
     }
   }
 
@@ -95,10 +145,15 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block originToDirectedEdges(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = ORIGIN_TO_DIRECTED_EDGES.start();
+    if (!H3Index.isValidCell(h3)) {
+      return ORIGIN_TO_DIRECTED_EDGES.reject(Reason.INVALID_CELL);
+    }
     try {
-      return H3Plugin.longListToBlock(H3Plugin.h3.originToDirectedEdges(h3));
+      long[] edges = H3Plugin.h3Primitives.originToDirectedEdges(h3);
+      return ORIGIN_TO_DIRECTED_EDGES.end(start, H3Plugin.longArrayToBlock(edges));
     } catch (Exception e) {
-      return null;
+      return ORIGIN_TO_DIRECTED_EDGES.reject(Reason.H3_ERROR);
     }
   }
 
@@ -107,11 +162,15 @@ public final class DirectedEdgeFunctions {
   @SqlNullable
   @SqlType(GEOMETRY_TYPE_NAME)
   public static Slice directedEdgeToBoundary(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = DIRECTED_EDGE_TO_BOUNDARY.start();
+    if (!H3Index.isValidDirectedEdge(h3)) {
+      return DIRECTED_EDGE_TO_BOUNDARY.reject(Reason.INVALID_DIRECTED_EDGE);
+    }
     try {
-      return H3Plugin.latLngListToGeometry(
-          H3Plugin.h3.directedEdgeToBoundary(h3), GeometryType.LINE_STRING);
+      double[] boundary = H3Plugin.h3Primitives.directedEdgeToBoundary(h3);
+      return DIRECTED_EDGE_TO_BOUNDARY.end(start, GeometrySlices.lineString(boundary));
     } catch (Exception e) {
-      return null;
+      return DIRECTED_EDGE_TO_BOUNDARY.reject(Reason.H3_ERROR);
     }
   }
 }
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.Arrays;
+
+/**
+ * Set of H3 indexes encoded in a <code>VARBINARY</code>, with set operations which stream over the
+ * encoded form rather than decoding it into arrays.
+ *
+ * <p>Indexes are sorted and split into blocks of {@link #BLOCK_SIZE}. The first index of each
+ * block is in an index at the start of the encoding, and the rest are varint deltas from the
+ * previous index. The unused digits of an index are all set, so deltas between cells of one
+ * resolution end in 3 zero bits per unused digit, which each block shifts out. Deltas between
+ * nearby cells then typically take 1 or 2 bytes rather than 8. Membership tests and intersections
+ * binary search the block index, decoding only the blocks they need.
+ *
+ * <p>The encoding is a byte for the format version, the number of indexes as a little-endian int,
+ * then for each block its first index as a little-endian long, the offset of its deltas in the data
+ * as an int and the shift of its deltas as a byte, followed by the data. Sets compare indexes
+ * exactly, so a cell and its children are different members.
+ */
+final class EncodedCellSet {
+  static final int BLOCK_SIZE = 128;
+
+  private static final byte VERSION = 1;
+  private static final int HEADER_SIZE = 5;
+  private static final int INDEX_ENTRY_SIZE = 13;
+
+  private EncodedCellSet() {}
+
+  /** Encodes sorted indexes, skipping duplicates. */
+  static Slice encode(long[] sortedCells) {
+    Writer writer = new Writer();
+    for (int i = 0; i < sortedCells.length; i++) {
+      if (i == 0 || sortedCells[i] != sortedCells[i - 1]) {
+        writer.add(sortedCells[i]);
+      }
+    }
+    return writer.build();
+  }
+
+  /** Returns the sorted indexes of the set. */
+  static long[] toArray(Slice set) {
+    long[] cells = new long[cardinality(set)];
+    Reader reader = new Reader(set);
+    for (int i = 0; reader.next(); i++) {
+      cells[i] = reader.current();
+    }
+    return cells;
+  }
+
+  static int cardinality(Slice set) {
+    if (set.length() < HEADER_SIZE || set.getByte(0) != VERSION) {
+      throw new IllegalArgumentException("not an encoded cell set");
+    }
+    int count = set.getInt(1);
+    if (count < 0 || HEADER_SIZE + (long) INDEX_ENTRY_SIZE * numBlocks(count) > set.length()) {
+      throw new IllegalArgumentException("truncated cell set");
+    }
+    return count;
+  }
+
+  static boolean contains(Slice set, long cell) {
+    Reader reader = new Reader(set);
+    return reader.next() && reader.advanceTo(cell) && reader.current() == cell;
+  }
+
+  static Slice union(Slice a, Slice b) {
+    Reader readerA = new Reader(a);
+    Reader readerB = new Reader(b);
+    Writer writer = new Writer();
+    boolean hasA = readerA.next();
+    boolean hasB = readerB.next();
+    while (hasA && hasB) {
+      long cellA = readerA.current();
+      long cellB = readerB.current();
+      writer.add(Math.min(cellA, cellB));
+      if (cellA <= cellB) {
+        hasA = readerA.next();
+      }
+      if (cellB <= cellA) {
+        hasB = readerB.next();
+      }
+    }
+    for (; hasA; hasA = readerA.next()) {
+      writer.add(readerA.current());
+    }
+    for (; hasB; hasB = readerB.next()) {
+      writer.add(readerB.current());
+    }
+    return writer.build();
+  }
+
+  static Slice intersection(Slice a, Slice b) {
+    Reader readerA = new Reader(a);
+    Reader readerB = new Reader(b);
+    Writer writer = new Writer();
+    boolean hasA = readerA.next();
+    boolean hasB = readerB.next();
+    while (hasA && hasB) {
+      long cellA = readerA.current();
+      long cellB = readerB.current();
+      if (cellA < cellB) {
+        hasA = readerA.advanceTo(cellB);
+      } else if (cellB < cellA) {
+        hasB = readerB.advanceTo(cellA);
+      } else {
+        writer.add(cellA);
+        hasA = readerA.next();
+        hasB = readerB.next();
+      }
+    }
+    return writer.build();
+  }
+
+  /** The indexes of <code>a</code> which are not in <code>b</code>. */
+  static Slice difference(Slice a, Slice b) {
+    Reader readerA = new Reader(a);
+    Reader readerB = new Reader(b);
+    Writer writer = new Writer();
+    boolean hasB = readerB.next();
+    for (boolean hasA = readerA.next(); hasA; hasA = readerA.next()) {
+      long cell = readerA.current();
+      hasB = hasB && readerB.advanceTo(cell);
+      if (!hasB || readerB.current() != cell) {
+        writer.add(cell);
+      }
+    }
+    return writer.build();
+  }
+
+  private static int numBlocks(int count) {
+    return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+  }
+
+  /**
+   * Iterates over the indexes of an encoded set in order. Malformed encodings throw {@link
+   * IllegalArgumentException} when the reader reaches the malformed part.
+   */
+  static final class Reader {
+    private final Slice set;
+    private final int count;
+    private final int numBlocks;
+    private final int dataStart;
+
+    /** Position of the current index in the set, or -1 before the first call to next(). */
+    private int index = -1;
+
+    private long current;
+    private int shift;
+    private int position;
+    private int blockEnd;
+
+    Reader(Slice set) {
+      this.set = set;
+      count = cardinality(set);
+      numBlocks = numBlocks(count);
+      dataStart = HEADER_SIZE + INDEX_ENTRY_SIZE * numBlocks;
+    }
+
+    /** Moves to the next index, returning false if there are no more. */
+    boolean next() {
+      if (index + 1 >= count) {
+        index = count;
+        return false;
+      }
+      if ((index + 1) % BLOCK_SIZE == 0) {
+        seekBlock((index + 1) / BLOCK_SIZE);
+      } else {
+        long next = current + (readDelta() << shift);
+        if (next <= current) {
+          throw new IllegalArgumentException("malformed cell set");
+        }
+        current = next;
+        index++;
+      }
+      return true;
+    }
+
+    /**
+     * Moves to the first index which is at least <code>target</code>, skipping whole blocks through
+     * the block index, and returns false if there is none. The reader must be on an index.
+     */
+    boolean advanceTo(long target) {
+      if (index >= count) {
+        return false;
+      }
+      if (current >= target) {
+        return true;
+      }
+      // Last block starting at or before the target
+      int low = index / BLOCK_SIZE + 1;
+      int high = numBlocks - 1;
+      int block = low - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (firstCell(mid) <= target) {
+          block = mid;
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      if (block > index / BLOCK_SIZE) {
+        seekBlock(block);
+      }
+      while (current < target) {
+        if (!next()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    long current() {
+      return current;
+    }
+
+    private long firstCell(int block) {
+      return set.getLong(HEADER_SIZE + INDEX_ENTRY_SIZE * block);
+    }
+
+    private int dataOffset(int block) {
+      return set.getInt(HEADER_SIZE + INDEX_ENTRY_SIZE * block + Long.BYTES);
+    }
+
+    private int shift(int block) {
+      return set.getByte(HEADER_SIZE + INDEX_ENTRY_SIZE * block + Long.BYTES + Integer.BYTES);
+    }
+
+    private void seekBlock(int block) {
+      long first = firstCell(block);
+      int blockShift = shift(block);
+      int start = dataStart + dataOffset(block);
+      int end = block + 1 < numBlocks ? dataStart + dataOffset(block + 1) : set.length();
+      if ((index >= 0 && first <= current)
+          || start < dataStart
+          || end < start
+          || blockShift < 0
+          || blockShift >= Long.SIZE) {
+        throw new IllegalArgumentException("malformed cell set");
+      }
+      if (end > set.length()) {
+        throw new IllegalArgumentException("truncated cell set");
+      }
+      index = block * BLOCK_SIZE;
+      current = first;
+      shift = blockShift;
+      position = start;
+      blockEnd = end;
+    }
+
+    private long readDelta() {
+      long delta = 0;
+      for (int shift = 0; shift < Long.SIZE; shift += 7) {
+        if (position >= blockEnd) {
+          throw new IllegalArgumentException("truncated cell set");
+        }
+        byte b = set.getByte(position++);
+        delta |= (long) (b & 0x7f) << shift;
+        if (b >= 0) {
+          if (delta <= 0) {
+            throw new IllegalArgumentException("malformed cell set");
+          }
+          return delta;
+        }
+      }
+      throw new IllegalArgumentException("malformed cell set");
+    }
+  }
+
+  /**
+   * Encodes indexes which are added in strictly increasing order. Deltas are held until their block
+   * is complete, since the shift of the block depends on all of them.
+   */
+  static final class Writer {
+    private long[] firstCells = new long[1];
+    private int[] dataOffsets = new int[1];
+    private byte[] shifts = new byte[1];
+    private final long[] deltas = new long[BLOCK_SIZE - 1];
+    private int numDeltas;
+    private byte[] data = new byte[64];
+    private int dataSize;
+    private int count;
+    private long last;
+
+    void add(long cell) {
+      if (count > 0 && cell <= last) {
+        throw new IllegalArgumentException("cells must be added in increasing order");
+      }
+      if (count % BLOCK_SIZE == 0) {
+        int block = count / BLOCK_SIZE;
+        if (block == firstCells.length) {
+          firstCells = Arrays.copyOf(firstCells, block * 2);
+          dataOffsets = Arrays.copyOf(dataOffsets, block * 2);
+          shifts = Arrays.copyOf(shifts, block * 2);
+        }
+        writeBlock();
+        firstCells[block] = cell;
+      } else {
+        deltas[numDeltas++] = cell - last;
+      }
+      last = cell;
+      count++;
+    }
+
+    Slice build() {
+      writeBlock();
+      int numBlocks = numBlocks(count);
+      int dataStart = HEADER_SIZE + INDEX_ENTRY_SIZE * numBlocks;
+      Slice set = Slices.allocate(dataStart + dataSize);
+      set.setByte(0, VERSION);
+      set.setInt(1, count);
+      for (int block = 0; block < numBlocks; block++) {
+        set.setLong(HEADER_SIZE + INDEX_ENTRY_SIZE * block, firstCells[block]);
+        set.setInt(HEADER_SIZE + INDEX_ENTRY_SIZE * block + Long.BYTES, dataOffsets[block]);
+        set.setByte(
+            HEADER_SIZE + INDEX_ENTRY_SIZE * block + Long.BYTES + Integer.BYTES, shifts[block]);
+      }
+      set.setBytes(dataStart, data, 0, dataSize);
+      return set;
+    }
+
+    /** Writes the deltas of the last block started, if any. */
+    private void writeBlock() {
+      if (count == 0) {
+        return;
+      }
+      int block = (count - 1) / BLOCK_SIZE;
+      long bits = 0;
+      for (int i = 0; i < numDeltas; i++) {
+        bits |= deltas[i];
+      }
+      int shift = numDeltas == 0 ? 0 : Long.numberOfTrailingZeros(bits);
+      dataOffsets[block] = dataSize;
+      shifts[block] = (byte) shift;
+      for (int i = 0; i < numDeltas; i++) {
+        writeDelta(deltas[i] >>> shift);
+      }
+      numDeltas = 0;
+    }
+
+    private void writeDelta(long delta) {
+      // A long takes at most 10 bytes as a varint
+      if (dataSize + 10 > data.length) {
+        data = Arrays.copyOf(data, data.length * 2);
+      }
+      while ((delta & ~0x7fL) != 0) {
+        data[dataSize++] = (byte) ((delta & 0x7f) | 0x80);
+        delta >>>= 7;
+      }
+      data[dataSize++] = (byte) delta;
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.common.block.Block;
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional instrumentation of a function: calls, null results, and sampled latency and array
+ * result sizes, enabled by {@link H3PluginConfig#METRICS_ENABLED}. When disabled, only rejected
+ * rows are counted, in {@link RejectedRows}, and the other methods return immediately.
+ *
+ * <p>Functions hold one of these in a static field, call {@link #start()} on entry, and return
+ * their result through {@link #end(long, Object)} or {@link #reject(Reason)}:
+ *
+ * <pre>
+ * long start = GRID_DISK.start();
+ * ...
+ * return GRID_DISK.end(start, H3Plugin.longArrayToBlock(disk));
+ * </pre>
+ */
+final class FunctionMetrics implements FunctionMetricsMBean {
+  /** One in this many calls has its latency and result size recorded. */
+  private static final int SAMPLE_INTERVAL = 64;
+  /**
+   * Returned by {@link #start()} for calls which are not sampled. {@link System#nanoTime()} can
+   * also return this, which only loses that sample.
+   */
+  private static final long NOT_SAMPLED = 0;
+
+  private static final ConcurrentMap<String, FunctionMetrics> FUNCTIONS =
+      new ConcurrentHashMap<>();
+
+  private final RejectedRows rejectedRows;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder nulls = new LongAdder();
+  private final Histogram latency = new Histogram();
+  private final Histogram cardinality = new Histogram();
+
+  private FunctionMetrics(RejectedRows rejectedRows) {
+    this.rejectedRows = rejectedRows;
+  }
+
+  /**
+   * Returns the metrics for the SQL function <code>name</code> in the class <code>family</code>,
+   * registering them with JMX if enabled. Overloads of a function share metrics.
+   */
+  static FunctionMetrics forFunction(Class<?> family, String name) {
+    return FUNCTIONS.computeIfAbsent(
+        name,
+        n -> {
+          FunctionMetrics metrics = new FunctionMetrics(RejectedRows.forFunction(n));
+          if (H3PluginConfig.METRICS_ENABLED) {
+            H3Plugin.registerMBean(
+                "type=FunctionMetrics,family=" + family.getSimpleName() + ",name=" + n, metrics);
+          }
+          return metrics;
+        });
+  }
+
+  /** Returns the start time to pass to <code>end</code> if this call is sampled. */
+  long start() {
+    if (!H3PluginConfig.METRICS_ENABLED
+        || ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) != 0) {
+      return NOT_SAMPLED;
+    }
+    return System.nanoTime();
+  }
+
+  long end(long start, long result) {
+    if (H3PluginConfig.METRICS_ENABLED) {
+      record(start);
+    }
+    return result;
+  }
+
+  double end(long start, double result) {
+    if (H3PluginConfig.METRICS_ENABLED) {
+      record(start);
+    }
+    return result;
+  }
+
+  boolean end(long start, boolean result) {
+    if (H3PluginConfig.METRICS_ENABLED) {
+      record(start);
+    }
+    return result;
+  }
+
+  <T> T end(long start, T result) {
+    if (H3PluginConfig.METRICS_ENABLED) {
+      record(start);
+      if (result == null) {
+        nulls.increment();
+      }
+    }
+    return result;
+  }
+
+  /** As {@link #end(long, Object)}, also sampling the size of the array. */
+  Block end(long start, Block result) {
+    if (H3PluginConfig.METRICS_ENABLED) {
+      record(start);
+      if (result == null) {
+        nulls.increment();
+      } else if (start != NOT_SAMPLED) {
+        cardinality.record(result.getPositionCount());
+      }
+    }
+    return result;
+  }
+
+  /** Counts a rejected row, see {@link RejectedRows#reject(Reason)}. Returns null. */
+  <T> T reject(Reason reason) {
+    if (H3PluginConfig.METRICS_ENABLED) {
+      calls.increment();
+      nulls.increment();
+    }
+    return rejectedRows.reject(reason);
+  }
+
+  /** Counts a rejected row, see {@link RejectedRows#reject(Reason, Object)}. */
+  <T> T reject(Reason reason, T result) {
+    if (H3PluginConfig.METRICS_ENABLED) {
+      calls.increment();
+    }
+    return rejectedRows.reject(reason, result);
+  }
+
+  private void record(long start) {
+    calls.increment();
+    if (start != NOT_SAMPLED) {
+      latency.record(System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public long getCalls() {
+    return calls.sum();
+  }
+
+  @Override
+  public long getNulls() {
+    return nulls.sum();
+  }
+
+  @Override
+  public long getErrors() {
+    return rejectedRows.getH3Error();
+  }
+
+  @Override
+  public long getLatencySamples() {
+    return latency.getCount();
+  }
+
+  @Override
+  public long getLatencyP50Nanos() {
+    return latency.getPercentile(50);
+  }
+
+  @Override
+  public long getLatencyP90Nanos() {
+    return latency.getPercentile(90);
+  }
+
+  @Override
+  public long getLatencyP99Nanos() {
+    return latency.getPercentile(99);
+  }
+
+  @Override
+  public long getCardinalityP50() {
+    return cardinality.getPercentile(50);
+  }
+
+  @Override
+  public long getCardinalityP90() {
+    return cardinality.getPercentile(90);
+  }
+
+  @Override
+  public long getCardinalityP99() {
+    return cardinality.getPercentile(99);
+  }
+
+  @Override
+  public String getCardinalityHistogram() {
+    return cardinality.toString();
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+/**
+ * Calls of a function and their results, registered for each function when <code>
+ * h3.metrics.enabled</code> is set, as <code>
+ * com.foursquare.presto.h3:type=FunctionMetrics,family=&lt;class&gt;,name=&lt;function name&gt;
+ * </code>. Latency and cardinality are sampled from a fraction of calls.
+ */
+public interface FunctionMetricsMBean {
+  long getCalls();
+
+  /** Calls which returned null, including rows rejected as invalid. */
+  long getNulls();
+
+  /** Rows which passed the checks made by the plugin, but which H3 reported as invalid. */
+  long getErrors();
+
+  long getLatencySamples();
+
+  long getLatencyP50Nanos();
+
+  long getLatencyP90Nanos();
+
+  long getLatencyP99Nanos();
+
+  /** Number of positions in array results. */
+  long getCardinalityP50();
+
+  long getCardinalityP90();
+
+  long getCardinalityP99();
+
+  /** Histogram of the number of positions in array results, as <code>lower-upper:count</code>. */
+  String getCardinalityHistogram();
+}
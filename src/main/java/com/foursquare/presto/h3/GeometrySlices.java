@@ -0,0 +1,332 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.facebook.presto.geospatial.serde.GeometrySerializationType;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes Presto <code>GEOMETRY</code> values directly from coordinates, without building JTS
+ * geometries. The output is identical to serializing the same geometry with {@link
+ * com.facebook.presto.geospatial.serde.JtsGeometrySerde#serialize}: a serialization type byte
+ * followed by an ESRI shape. Points and polygons can also be read directly.
+ *
+ * <p>Coordinates are interleaved latitude and longitude in degrees, as returned by {@link
+ * com.uber.h3core.H3CorePrimitives}, and written as x (longitude) and y (latitude).
+ */
+final class GeometrySlices {
+  /** ESRI shape types, written after the serialization type. */
+  private static final int SHAPE_TYPE_POLYLINE = 3;
+
+  private static final int SHAPE_TYPE_POLYGON = 5;
+
+  private static final int COORDINATE_SIZE = 2 * Double.BYTES;
+  private static final int POINT_SIZE = Byte.BYTES + COORDINATE_SIZE;
+  /** ESRI shapes use coordinates below this as NaN, which Presto reads as an empty point. */
+  private static final double ESRI_NAN_THRESHOLD = -1.0e38;
+  /** Serialization type, shape type, envelope, number of parts and number of points. */
+  private static final int SHAPE_HEADER_SIZE =
+      Byte.BYTES + Integer.BYTES + 4 * Double.BYTES + 2 * Integer.BYTES;
+
+  /** Offset of the number of parts, which is followed by the number of points. */
+  private static final int NUM_PARTS_OFFSET = SHAPE_HEADER_SIZE - 2 * Integer.BYTES;
+  /** JTS requires closed rings to have at least this many points. */
+  private static final int MIN_RING_POINTS = 4;
+
+  /**
+   * Rings of one polygon, as interleaved latitude and longitude in radians, in the form H3 fills
+   * them. Each ring includes its closing vertex, as when converting a JTS polygon.
+   */
+  static final class PolygonRings {
+    final double[] shell;
+    /** The number of values each hole takes in {@link #holes}. */
+    final int[] holeSizes;
+    /** The holes, concatenated. */
+    final double[] holes;
+
+    PolygonRings(double[] shell, int[] holeSizes, double[] holes) {
+      this.shell = shell;
+      this.holeSizes = holeSizes;
+      this.holes = holes;
+    }
+  }
+
+  private GeometrySlices() {}
+
+  static Slice point(double lat, double lng) {
+    Slice slice = Slices.allocate(Byte.BYTES + COORDINATE_SIZE);
+    SliceOutput output = slice.getOutput();
+    output.writeByte(GeometrySerializationType.POINT.code());
+    output.writeDouble(lng);
+    output.writeDouble(lat);
+    return slice;
+  }
+
+  /**
+   * Returns true if the value is a point with coordinates, which {@link #pointLat} and {@link
+   * #pointLng} read without deserializing it. Otherwise, including for empty points, it must be
+   * deserialized.
+   */
+  static boolean isPoint(Slice slice) {
+    return slice.length() == POINT_SIZE
+        && slice.getByte(0) == GeometrySerializationType.POINT.code()
+        && isCoordinate(pointLng(slice))
+        && isCoordinate(pointLat(slice));
+  }
+
+  /** Latitude (y) of a value for which {@link #isPoint} is true. */
+  static double pointLat(Slice slice) {
+    return slice.getDouble(Byte.BYTES + Double.BYTES);
+  }
+
+  /** Longitude (x) of a value for which {@link #isPoint} is true. */
+  static double pointLng(Slice slice) {
+    return slice.getDouble(Byte.BYTES);
+  }
+
+  /**
+   * Reads the rings of a non-empty polygon without deserializing it, or returns null if the value
+   * is not one, or is not valid, in which case it must be deserialized.
+   */
+  static PolygonRings readPolygon(Slice slice) {
+    List<PolygonRings> polygons = readPolygons(slice, GeometrySerializationType.POLYGON);
+    return polygons != null && polygons.size() == 1 ? polygons.get(0) : null;
+  }
+
+  /**
+   * Reads the rings of each polygon of a non-empty multipolygon without deserializing it, or
+   * returns null as {@link #readPolygon}.
+   */
+  static List<PolygonRings> readMultiPolygon(Slice slice) {
+    return readPolygons(slice, GeometrySerializationType.MULTI_POLYGON);
+  }
+
+  /**
+   * Reads the rings in the same way as the JTS deserializer: each clockwise ring starts a polygon,
+   * and the counterclockwise rings after it are its holes. Returns null where the deserializer
+   * would fail, so that it reports the error.
+   */
+  private static List<PolygonRings> readPolygons(Slice slice, GeometrySerializationType type) {
+    if (slice.length() < SHAPE_HEADER_SIZE || slice.getByte(0) != type.code()) {
+      return null;
+    }
+    int numParts = slice.getInt(NUM_PARTS_OFFSET);
+    int numPoints = slice.getInt(NUM_PARTS_OFFSET + Integer.BYTES);
+    if (numParts <= 0
+        || numPoints < 0
+        || slice.length()
+            != SHAPE_HEADER_SIZE
+                + (long) numParts * Integer.BYTES
+                + (long) numPoints * COORDINATE_SIZE) {
+      return null;
+    }
+    int pointsOffset = SHAPE_HEADER_SIZE + numParts * Integer.BYTES;
+    List<PolygonRings> polygons = new ArrayList<>();
+    int shellPart = -1;
+    for (int part = 0; part < numParts; part++) {
+      int from = partStart(slice, part, numParts, numPoints);
+      int to = partStart(slice, part + 1, numParts, numPoints);
+      if ((part == 0 && from != 0)
+          || to > numPoints
+          || to - from < MIN_RING_POINTS
+          || !isClosedRing(slice, pointsOffset, from, to)) {
+        return null;
+      }
+      if (isClockwise(slice, pointsOffset, from, to)) {
+        if (shellPart >= 0) {
+          polygons.add(readPolygonRings(slice, pointsOffset, shellPart, part, numParts, numPoints));
+        }
+        shellPart = part;
+      } else if (shellPart < 0) {
+        return null;
+      }
+    }
+    polygons.add(readPolygonRings(slice, pointsOffset, shellPart, numParts, numParts, numPoints));
+    return polygons;
+  }
+
+  /** Index of the first point of the part, or the number of points after the last part. */
+  private static int partStart(Slice slice, int part, int numParts, int numPoints) {
+    return part < numParts ? slice.getInt(SHAPE_HEADER_SIZE + part * Integer.BYTES) : numPoints;
+  }
+
+  /** Reads the shell <code>shellPart</code> and the holes up to <code>endPart</code>. */
+  private static PolygonRings readPolygonRings(
+      Slice slice, int pointsOffset, int shellPart, int endPart, int numParts, int numPoints) {
+    int shellFrom = partStart(slice, shellPart, numParts, numPoints);
+    int holesFrom = partStart(slice, shellPart + 1, numParts, numPoints);
+    int holesTo = partStart(slice, endPart, numParts, numPoints);
+    double[] shell = new double[(holesFrom - shellFrom) * 2];
+    readLatLngRadians(slice, pointsOffset, shellFrom, holesFrom, shell);
+    int[] holeSizes = new int[endPart - shellPart - 1];
+    for (int i = 0; i < holeSizes.length; i++) {
+      int part = shellPart + 1 + i;
+      holeSizes[i] =
+          (partStart(slice, part + 1, numParts, numPoints)
+                  - partStart(slice, part, numParts, numPoints))
+              * 2;
+    }
+    double[] holes = new double[(holesTo - holesFrom) * 2];
+    readLatLngRadians(slice, pointsOffset, holesFrom, holesTo, holes);
+    return new PolygonRings(shell, holeSizes, holes);
+  }
+
+  /**
+   * Reads points <code>from</code> (inclusive) to <code>to</code> (exclusive) into <code>latLngs
+   * </code> as interleaved latitude and longitude in radians.
+   */
+  private static void readLatLngRadians(
+      Slice slice, int pointsOffset, int from, int to, double[] latLngs) {
+    int offset = 0;
+    for (int point = from; point < to; point++) {
+      int position = pointsOffset + point * COORDINATE_SIZE;
+      latLngs[offset++] = Math.toRadians(slice.getDouble(position + Double.BYTES));
+      latLngs[offset++] = Math.toRadians(slice.getDouble(position));
+    }
+  }
+
+  /** Whether the first and last points are equal, as JTS requires of a linear ring. */
+  private static boolean isClosedRing(Slice slice, int pointsOffset, int from, int to) {
+    int first = pointsOffset + from * COORDINATE_SIZE;
+    int last = pointsOffset + (to - 1) * COORDINATE_SIZE;
+    return slice.getDouble(first) == slice.getDouble(last)
+        && slice.getDouble(first + Double.BYTES) == slice.getDouble(last + Double.BYTES);
+  }
+
+  /**
+   * Whether the serialized ring is clockwise, summing the same terms in the same order as the JTS
+   * deserializer, so that rings are assigned to the same polygons.
+   */
+  private static boolean isClockwise(Slice slice, int pointsOffset, int from, int to) {
+    double area = 0;
+    double previousX = slice.getDouble(pointsOffset + from * COORDINATE_SIZE);
+    double previousY = slice.getDouble(pointsOffset + from * COORDINATE_SIZE + Double.BYTES);
+    for (int point = from + 1; point < to; point++) {
+      int position = pointsOffset + point * COORDINATE_SIZE;
+      double x = slice.getDouble(position);
+      double y = slice.getDouble(position + Double.BYTES);
+      area += (x - previousX) * (y + previousY);
+      previousX = x;
+      previousY = y;
+    }
+    int first = pointsOffset + from * COORDINATE_SIZE;
+    double firstX = slice.getDouble(first);
+    double firstY = slice.getDouble(first + Double.BYTES);
+    area += (firstX - previousX) * (firstY + previousY);
+    return area > 0;
+  }
+
+  static Slice lineString(double[] latLngs) {
+    return shape(GeometrySerializationType.LINE_STRING, SHAPE_TYPE_POLYLINE, latLngs, false);
+  }
+
+  /** Returns a polygon with one ring, which is closed by repeating the first vertex. */
+  static Slice polygon(double[] latLngs) {
+    return shape(GeometrySerializationType.POLYGON, SHAPE_TYPE_POLYGON, latLngs, true);
+  }
+
+  private static Slice shape(
+      GeometrySerializationType type, int shapeType, double[] latLngs, boolean polygon) {
+    int numVertices = latLngs.length / 2;
+    int numPoints = polygon && numVertices > 0 ? numVertices + 1 : numVertices;
+    int numParts = numPoints > 0 ? 1 : 0;
+    Slice slice =
+        Slices.allocate(SHAPE_HEADER_SIZE + numParts * Integer.BYTES + numPoints * COORDINATE_SIZE);
+    SliceOutput output = slice.getOutput();
+    output.writeByte(type.code());
+    output.writeInt(shapeType);
+    writeEnvelope(latLngs, output);
+    output.writeInt(numParts);
+    output.writeInt(numPoints);
+    if (numParts == 0) {
+      return slice;
+    }
+    // Index of the first point of the part
+    output.writeInt(0);
+
+    // ESRI polygon shells are clockwise
+    boolean reverse = polygon && !isClockwise(latLngs, numPoints);
+    for (int i = 0; i < numPoints; i++) {
+      int vertex = (reverse ? numPoints - 1 - i : i) % numVertices;
+      output.writeDouble(latLngs[vertex * 2 + 1]);
+      output.writeDouble(latLngs[vertex * 2]);
+    }
+    return slice;
+  }
+
+  private static boolean isCoordinate(double value) {
+    return !Double.isNaN(value) && value >= ESRI_NAN_THRESHOLD;
+  }
+
+  /**
+   * Writes the bounding box as min x, min y, max x, max y, comparing coordinates in the same order
+   * as JTS so that the sign of zero bounds is the same.
+   */
+  private static void writeEnvelope(double[] latLngs, SliceOutput output) {
+    if (latLngs.length == 0) {
+      for (int i = 0; i < 4; i++) {
+        output.writeDouble(Double.NaN);
+      }
+      return;
+    }
+    double minLat = latLngs[0];
+    double maxLat = latLngs[0];
+    double minLng = latLngs[1];
+    double maxLng = latLngs[1];
+    for (int i = 2; i < latLngs.length; i += 2) {
+      double lat = latLngs[i];
+      double lng = latLngs[i + 1];
+      if (lng < minLng) {
+        minLng = lng;
+      }
+      if (lng > maxLng) {
+        maxLng = lng;
+      }
+      if (lat < minLat) {
+        minLat = lat;
+      }
+      if (lat > maxLat) {
+        maxLat = lat;
+      }
+    }
+    output.writeDouble(minLng);
+    output.writeDouble(minLat);
+    output.writeDouble(maxLng);
+    output.writeDouble(maxLat);
+  }
+
+  /**
+   * Returns whether the closed ring of <code>numPoints</code> points is clockwise, summing the same
+   * terms in the same order as the JTS serializer so that the result is the same for degenerate
+   * rings: the sum over edges of (x2 - x1) * (y2 + y1) is positive if the ring is clockwise.
+   */
+  private static boolean isClockwise(double[] latLngs, int numPoints) {
+    int numVertices = numPoints - 1;
+    double area = 0;
+    for (int i = 1; i < numPoints; i++) {
+      int current = (i % numVertices) * 2;
+      int previous = (i - 1) * 2;
+      area +=
+          (latLngs[current + 1] - latLngs[previous + 1]) * (latLngs[current] + latLngs[previous]);
+    }
+    // JTS also adds the edge from the last point to the first, which is 0 as they are the same
+    return area > 0;
+  }
+}
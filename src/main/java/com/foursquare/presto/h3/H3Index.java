@@ -0,0 +1,328 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+/**
+ * Pure Java implementations of the H3 functions which only inspect or rearrange the bits of an
+ * index, so that they do not need to call into the native library. These follow the H3 C library
+ * (h3Index.c) and return identical results, including for invalid input.
+ *
+ * <p>Callers are responsible for checking arguments where noted, so that these never throw or
+ * allocate.
+ */
+final class H3Index {
+  static final int MAX_RES = 15;
+  static final int NUM_BASE_CELLS = 122;
+
+  static final int CELL_MODE = 1;
+  static final int DIRECTED_EDGE_MODE = 2;
+
+  static final int CENTER_DIGIT = 0;
+  static final int K_AXES_DIGIT = 1;
+  static final int INVALID_DIGIT = 7;
+
+  /** Digit rotated 60 degrees counterclockwise, indexed by digit. */
+  private static final int[] ROTATE_60_CCW = {0, 5, 3, 1, 6, 4, 2, 7};
+  /** Digit rotated 60 degrees clockwise, indexed by digit. */
+  private static final int[] ROTATE_60_CW = {0, 3, 6, 2, 5, 1, 4, 7};
+
+  private static final int PER_DIGIT_OFFSET = 3;
+  private static final long DIGIT_MASK = 7;
+
+  private static final int MODE_OFFSET = 59;
+  private static final long MODE_MASK = 15L << MODE_OFFSET;
+  private static final int RESERVED_OFFSET = 56;
+  private static final long RESERVED_MASK = 7L << RESERVED_OFFSET;
+  private static final int RES_OFFSET = 52;
+  private static final long RES_MASK = 15L << RES_OFFSET;
+  private static final int BC_OFFSET = 45;
+  private static final long BC_MASK = 127L << BC_OFFSET;
+  /** All 15 digits. */
+  private static final long DIGITS_MASK = (1L << BC_OFFSET) - 1;
+
+  private static final boolean[] PENTAGON_BASE_CELLS = new boolean[NUM_BASE_CELLS];
+
+  static {
+    for (int baseCell : new int[] {4, 14, 24, 38, 49, 58, 63, 72, 83, 97, 107, 117}) {
+      PENTAGON_BASE_CELLS[baseCell] = true;
+    }
+  }
+
+  private H3Index() {}
+
+  /** Returns a cell index at <code>res</code> with base cell 0 and every digit unused. */
+  static long newCell(int res) {
+    return ((long) CELL_MODE << MODE_OFFSET) | ((long) res << RES_OFFSET) | DIGITS_MASK;
+  }
+
+  static boolean isValidResolution(long res) {
+    return res >= 0 && res <= MAX_RES;
+  }
+
+  static int getMode(long h3) {
+    return (int) ((h3 & MODE_MASK) >>> MODE_OFFSET);
+  }
+
+  static int getReservedBits(long h3) {
+    return (int) ((h3 & RESERVED_MASK) >>> RESERVED_OFFSET);
+  }
+
+  static int getResolution(long h3) {
+    return (int) ((h3 & RES_MASK) >>> RES_OFFSET);
+  }
+
+  static int getBaseCellNumber(long h3) {
+    return (int) ((h3 & BC_MASK) >>> BC_OFFSET);
+  }
+
+  static long setBaseCellNumber(long h3, int baseCell) {
+    return (h3 & ~BC_MASK) | ((long) baseCell << BC_OFFSET);
+  }
+
+  /** Returns the digit at resolution <code>res</code>, which must be in 1..15. */
+  static int getIndexDigit(long h3, int res) {
+    return (int) ((h3 >>> ((MAX_RES - res) * PER_DIGIT_OFFSET)) & DIGIT_MASK);
+  }
+
+  static long setIndexDigit(long h3, int res, int digit) {
+    int offset = (MAX_RES - res) * PER_DIGIT_OFFSET;
+    return (h3 & ~(DIGIT_MASK << offset)) | ((long) digit << offset);
+  }
+
+  static boolean isResClassIII(long h3) {
+    return getResolution(h3) % 2 != 0;
+  }
+
+  static boolean isBaseCellPentagon(int baseCell) {
+    return baseCell >= 0 && baseCell < NUM_BASE_CELLS && PENTAGON_BASE_CELLS[baseCell];
+  }
+
+  /** Returns the first digit that is not {@link #CENTER_DIGIT}, or CENTER_DIGIT if all are. */
+  static int leadingNonZeroDigit(long h3) {
+    int res = getResolution(h3);
+    for (int r = 1; r <= res; r++) {
+      int digit = getIndexDigit(h3, r);
+      if (digit != CENTER_DIGIT) {
+        return digit;
+      }
+    }
+    return CENTER_DIGIT;
+  }
+
+  static long rotate60ccw(long h3) {
+    for (int r = 1, res = getResolution(h3); r <= res; r++) {
+      h3 = setIndexDigit(h3, r, ROTATE_60_CCW[getIndexDigit(h3, r)]);
+    }
+    return h3;
+  }
+
+  static long rotate60cw(long h3) {
+    for (int r = 1, res = getResolution(h3); r <= res; r++) {
+      h3 = setIndexDigit(h3, r, ROTATE_60_CW[getIndexDigit(h3, r)]);
+    }
+    return h3;
+  }
+
+  /**
+   * Rotates a pentagon index 60 degrees counterclockwise, rotating once more if that would place
+   * it in the deleted K axes subsequence.
+   */
+  static long rotatePent60ccw(long h3) {
+    boolean foundFirstNonZeroDigit = false;
+    for (int r = 1, res = getResolution(h3); r <= res; r++) {
+      h3 = setIndexDigit(h3, r, ROTATE_60_CCW[getIndexDigit(h3, r)]);
+      if (!foundFirstNonZeroDigit && getIndexDigit(h3, r) != CENTER_DIGIT) {
+        foundFirstNonZeroDigit = true;
+        if (leadingNonZeroDigit(h3) == K_AXES_DIGIT) {
+          h3 = rotate60ccw(h3);
+        }
+      }
+    }
+    return h3;
+  }
+
+  static boolean isPentagon(long h3) {
+    return isBaseCellPentagon(getBaseCellNumber(h3)) && leadingNonZeroDigit(h3) == CENTER_DIGIT;
+  }
+
+  static boolean isValidCell(long h3) {
+    if (h3 < 0 || getMode(h3) != CELL_MODE || (h3 & RESERVED_MASK) != 0) {
+      return false;
+    }
+    int baseCell = getBaseCellNumber(h3);
+    if (baseCell >= NUM_BASE_CELLS) {
+      return false;
+    }
+    int res = getResolution(h3);
+    boolean foundFirstNonZeroDigit = false;
+    for (int r = 1; r <= res; r++) {
+      int digit = getIndexDigit(h3, r);
+      if (!foundFirstNonZeroDigit && digit != CENTER_DIGIT) {
+        foundFirstNonZeroDigit = true;
+        // Pentagons have no children in the deleted K axes subsequence
+        if (PENTAGON_BASE_CELLS[baseCell] && digit == K_AXES_DIGIT) {
+          return false;
+        }
+      }
+      if (digit == INVALID_DIGIT) {
+        return false;
+      }
+    }
+    // Digits past the resolution must all be unused
+    long unusedMask = DIGITS_MASK >>> (res * PER_DIGIT_OFFSET);
+    return (h3 & unusedMask) == unusedMask;
+  }
+
+  static boolean isValidDirectedEdge(long edge) {
+    // The reserved bits hold the direction from the origin
+    int direction = getReservedBits(edge);
+    if (direction <= CENTER_DIGIT
+        || direction >= INVALID_DIGIT
+        || getMode(edge) != DIRECTED_EDGE_MODE) {
+      return false;
+    }
+    long origin = (edge & ~(MODE_MASK | RESERVED_MASK)) | ((long) CELL_MODE << MODE_OFFSET);
+    if (direction == K_AXES_DIGIT && isPentagon(origin)) {
+      return false;
+    }
+    return isValidCell(origin);
+  }
+
+  /**
+   * Truncates the index to its parent at <code>parentRes</code>, which must be between 0 and the
+   * resolution of <code>h3</code>, inclusive.
+   */
+  static long cellToParent(long h3, int parentRes) {
+    if (parentRes == getResolution(h3)) {
+      return h3;
+    }
+    return (h3 & ~RES_MASK)
+        | ((long) parentRes << RES_OFFSET)
+        | (DIGITS_MASK >>> (parentRes * PER_DIGIT_OFFSET));
+  }
+
+  /**
+   * Returns the center child of the index at <code>childRes</code>, which must be between the
+   * resolution of <code>h3</code> and {@link #MAX_RES}, inclusive.
+   */
+  static long cellToCenterChild(long h3, int childRes) {
+    // Zero the digits from the current resolution + 1 to childRes
+    long zeroMask =
+        (DIGITS_MASK >>> (getResolution(h3) * PER_DIGIT_OFFSET))
+            & ~(DIGITS_MASK >>> (childRes * PER_DIGIT_OFFSET));
+    return (h3 & ~zeroMask & ~RES_MASK) | ((long) childRes << RES_OFFSET);
+  }
+
+  /**
+   * Number of children of the cell at <code>childRes</code>, which must be between the resolution
+   * of <code>h3</code> and {@link #MAX_RES}, inclusive. A pentagon has one pentagon child and five
+   * hexagon children at each resolution.
+   */
+  static long cellToChildrenSize(long h3, int childRes) {
+    int levels = childRes - getResolution(h3);
+    return isPentagon(h3) ? pentagonChildrenSize(levels) : pow7(levels);
+  }
+
+  /**
+   * Position of the cell among the children of its parent at <code>parentRes</code>, in the order
+   * of cellToChildren, or -1 if it is in a pentagon's deleted K axes subsequence.
+   * <code>parentRes</code> must be between 0 and the resolution of <code>h3</code>, inclusive.
+   */
+  static long cellToChildPos(long h3, int parentRes) {
+    int childRes = getResolution(h3);
+    boolean inPentagon = isPentagon(cellToParent(h3, parentRes));
+    long pos = 0;
+    for (int r = parentRes + 1; r <= childRes; r++) {
+      int digit = getIndexDigit(h3, r);
+      int levels = childRes - r;
+      if (inPentagon) {
+        if (digit == K_AXES_DIGIT) {
+          return -1;
+        }
+        if (digit != CENTER_DIGIT) {
+          // After the pentagon child, and the hexagon children before this digit
+          pos += pentagonChildrenSize(levels) + (digit - 2) * pow7(levels);
+          inPentagon = false;
+        }
+      } else {
+        pos += digit * pow7(levels);
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the child of <code>parent</code> at <code>childRes</code> with position <code>pos
+   * </code> in the order of cellToChildren. <code>pos</code> must be between 0, inclusive, and
+   * {@link #cellToChildrenSize(long, int)}, exclusive.
+   */
+  static long childPosToCell(long pos, long parent, int childRes) {
+    boolean inPentagon = isPentagon(parent);
+    long child = cellToCenterChild(parent, childRes);
+    for (int r = getResolution(parent) + 1; r <= childRes; r++) {
+      int levels = childRes - r;
+      long hexagonSize = pow7(levels);
+      int digit;
+      if (inPentagon) {
+        long pentagonSize = pentagonChildrenSize(levels);
+        if (pos < pentagonSize) {
+          continue;
+        }
+        pos -= pentagonSize;
+        digit = (int) (pos / hexagonSize) + 2;
+        inPentagon = false;
+      } else {
+        digit = (int) (pos / hexagonSize);
+      }
+      pos %= hexagonSize;
+      child = setIndexDigit(child, r, digit);
+    }
+    return child;
+  }
+
+  /**
+   * Returns the child after <code>h3</code> among the children of its parent at <code>parentRes
+   * </code>, in the order of cellToChildren, or 0 if it is the last one.
+   */
+  static long nextChild(long h3, int parentRes) {
+    for (int r = getResolution(h3); r > parentRes; r--) {
+      int digit = getIndexDigit(h3, r);
+      if (digit < INVALID_DIGIT - 1) {
+        h3 = setIndexDigit(h3, r, digit + 1);
+        // Only a digit after the last center digit of a pentagon can become the first non-center
+        if (isBaseCellPentagon(getBaseCellNumber(h3)) && leadingNonZeroDigit(h3) == K_AXES_DIGIT) {
+          h3 = setIndexDigit(h3, r, K_AXES_DIGIT + 1);
+        }
+        return h3;
+      }
+      h3 = setIndexDigit(h3, r, CENTER_DIGIT);
+    }
+    return 0;
+  }
+
+  /** Number of children of a pentagon <code>levels</code> resolutions finer. */
+  private static long pentagonChildrenSize(int levels) {
+    return 1 + 5 * (pow7(levels) - 1) / 6;
+  }
+
+  private static long pow7(int levels) {
+    long result = 1;
+    for (int i = 0; i < levels; i++) {
+      result *= 7;
+    }
+    return result;
+  }
+}
@@ -17,56 +17,82 @@ package com.foursquare.presto.h3;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
-import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.serialize;
 
+import com.facebook.presto.common.block.ArrayBlock;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
-import com.facebook.presto.geospatial.GeometryType;
+import com.facebook.presto.common.block.LongArrayBlock;
 import com.facebook.presto.spi.Plugin;
+import com.foursquare.presto.h3.RejectedRows.Reason;
 import com.google.common.collect.ImmutableSet;
 import com.uber.h3core.H3Core;
-import com.uber.h3core.util.LatLng;
-import io.airlift.slice.Slice;
+import com.uber.h3core.H3CorePrimitives;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Point;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 public class H3Plugin implements Plugin {
   static final String TYPE_ARRAY_BIGINT = "ARRAY(BIGINT)";
   static final String TYPE_ARRAY_INTEGER = "ARRAY(INTEGER)";
+  static final String TYPE_ARRAY_BOOLEAN = "ARRAY(BOOLEAN)";
+  static final String TYPE_ARRAY_ARRAY_BIGINT = "ARRAY(ARRAY(BIGINT))";
+  static final String JMX_DOMAIN = "com.foursquare.presto.h3";
 
   static final H3Core h3;
+  static final H3CorePrimitives h3Primitives;
 
   static {
     try {
       h3 = H3Core.newInstance();
+      h3Primitives = H3CorePrimitives.newInstance();
     } catch (IOException e) {
       throw new RuntimeException("H3 setup failed", e);
     }
   }
 
   /**
-   * Presto passes integer parameters in as `long`s in Java. These need to be cast down to `int` for
-   * H3 functions. Throws if out of range.
+   * Registers an MBean with the platform MBean server, as <code>JMX_DOMAIN:properties</code>.
+   * Failure is ignored, e.g. if another copy of the plugin registered the name first, since the
+   * plugin does not depend on JMX.
    */
-  static int longToInt(long l) {
-    if (l < Integer.MIN_VALUE || l > Integer.MAX_VALUE) {
-      throw new RuntimeException("integer out of range");
-    } else {
-      return (int) l;
+  static void registerMBean(String properties, Object mbean) {
+    try {
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(mbean, new ObjectName(JMX_DOMAIN + ":" + properties));
+    } catch (JMException e) {
+      // Ignored, see above
     }
   }
 
-  static List<Long> longBlockToList(Block block) {
-    List<Long> list = new ArrayList<>(block.getPositionCount());
-    for (int i = 0; i < block.getPositionCount(); i++) {
-      list.add(block.getLong(i));
+  /**
+   * Returns why a pair of cells cannot be used together, or null if they can: both must be valid
+   * and at the same resolution.
+   */
+  static Reason checkCellPair(long a, long b) {
+    if (!H3Index.isValidCell(a) || !H3Index.isValidCell(b)) {
+      return Reason.INVALID_CELL;
+    }
+    if (H3Index.getResolution(a) != H3Index.getResolution(b)) {
+      return Reason.INVALID_RESOLUTION;
+    }
+    return null;
+  }
+
+  /**
+   * Copies the values of an <code>ARRAY(BIGINT)</code> block into an array, without boxing. Null
+   * positions are read as 0, which H3 treats as an invalid index.
+   */
+  static long[] longBlockToArray(Block block) {
+    long[] values = new long[block.getPositionCount()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = block.getLong(i);
     }
-    return list;
+    return values;
   }
 
   static Block longListToBlock(List<Long> list) {
@@ -77,17 +103,37 @@ public class H3Plugin implements Plugin {
     return blockBuilder.build();
   }
 
-  static Slice latLngListToGeometry(List<LatLng> list, GeometryType type) {
-    Coordinate[] coordinates =
-        list.stream().map(ll -> new Coordinate(ll.lng, ll.lat)).toArray(Coordinate[]::new);
-    GeometryFactory geomFactory = new GeometryFactory();
-    if (GeometryType.LINE_STRING.equals(type)) {
-      return serialize(geomFactory.createLineString(coordinates));
-    } else if (GeometryType.POLYGON.equals(type)) {
-      return serialize(geomFactory.createPolygon(coordinates));
-    } else {
-      throw new IllegalArgumentException("Cannot serialize with GeometryType " + type);
+  /**
+   * Wraps the output array of an H3 function in a block without boxing, skipping the zeros that H3
+   * leaves in unused positions. <code>values</code> is compacted in place and may be used by the
+   * block, so it must not be modified afterwards.
+   */
+  static Block longArrayToBlock(long[] values) {
+    int count = 0;
+    for (long value : values) {
+      if (value != 0) {
+        values[count++] = value;
+      }
+    }
+    // Output arrays are sized for the worst case, so avoid retaining mostly unused ones
+    if (count < values.length / 2) {
+      values = Arrays.copyOf(values, count);
     }
+    return new LongArrayBlock(count, Optional.empty(), values);
+  }
+
+  /**
+   * Wraps consecutive arrays of cells in an <code>ARRAY(ARRAY(BIGINT))</code> block without
+   * copying. Array <code>i</code> is from <code>values[offsets[i]]</code> up to <code>
+   * values[offsets[i + 1]]</code>, so there is one fewer array than offsets.
+   */
+  static Block longArraysToBlock(long[] values, int[] offsets) {
+    int count = offsets.length - 1;
+    return ArrayBlock.fromElementBlock(
+        count,
+        Optional.empty(),
+        offsets,
+        new LongArrayBlock(offsets[count], Optional.empty(), values));
   }
 
   static Block intListToBlock(List<Integer> list) {
@@ -98,12 +144,6 @@ public class H3Plugin implements Plugin {
     return blockBuilder.build();
   }
 
-  static Slice latLngToGeometry(LatLng latLng) {
-    GeometryFactory geomFactory = new GeometryFactory();
-    Point point = geomFactory.createPoint(new Coordinate(latLng.lng, latLng.lat));
-    return serialize(point);
-  }
-
   @Override
   public Set<Class<?>> getFunctions() {
     return ImmutableSet.<Class<?>>builder()
@@ -115,7 +155,10 @@ public class H3Plugin implements Plugin {
             RegionFunctions.class,
             DirectedEdgeFunctions.class,
             VertexFunctions.class,
-            MiscellaneousFunctions.class)
+            MiscellaneousFunctions.class,
+            CellSetFunctions.class,
+            CellsToMultiPolygonAggregation.class,
+            CompactCellsAggregation.class)
         .build();
   }
 }
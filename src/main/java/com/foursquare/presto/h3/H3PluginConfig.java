@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+/**
+ * Settings for the plugin. Functions are static, so these are read once from system properties of
+ * the Presto server JVM, e.g. <code>-Dh3.latlng_to_cell.engine=native</code> in jvm.config.
+ */
+final class H3PluginConfig {
+  static final String LAT_LNG_TO_CELL_ENGINE_PROPERTY = "h3.latlng_to_cell.engine";
+  static final String METRICS_ENABLED_PROPERTY = "h3.metrics.enabled";
+  static final String GEOMETRY_CACHE_SIZE_PROPERTY = "h3.geometry_cache.size";
+  static final String GEOMETRY_CACHE_EXPIRE_AFTER_ACCESS_SECONDS_PROPERTY =
+      "h3.geometry_cache.expire_after_access_seconds";
+  static final String POLYGON_TO_CELLS_PARALLELISM_PROPERTY = "h3.polygon_to_cells.parallelism";
+  static final String UNCOMPACT_CELLS_MAX_CELLS_PROPERTY = "h3.uncompact_cells.max_cells";
+
+  /** Implementations of functions which have both a Java and a native version. */
+  enum Engine {
+    /** Pure Java, falling back to the native library where needed for identical results. */
+    JAVA,
+    /** The native H3 library, through H3-Java. */
+    NATIVE
+  }
+
+  /** Implementation of <code>h3_latlng_to_cell</code>, {@link Engine#JAVA} by default. */
+  static final Engine LAT_LNG_TO_CELL_ENGINE =
+      getEngine(LAT_LNG_TO_CELL_ENGINE_PROPERTY, Engine.JAVA);
+
+  /** Whether functions record {@link FunctionMetrics}, false by default. */
+  static final boolean METRICS_ENABLED = Boolean.getBoolean(METRICS_ENABLED_PROPERTY);
+
+  /**
+   * Maximum number of cells in each {@link CellGeometryCache}, 0 (disabled) by default. A cached
+   * cell boundary takes roughly 400 bytes of heap.
+   */
+  static final long GEOMETRY_CACHE_SIZE = Long.getLong(GEOMETRY_CACHE_SIZE_PROPERTY, 0);
+
+  /** Seconds after which unread cells are evicted from the {@link CellGeometryCache}, or 0. */
+  static final long GEOMETRY_CACHE_EXPIRE_AFTER_ACCESS_SECONDS =
+      Long.getLong(GEOMETRY_CACHE_EXPIRE_AFTER_ACCESS_SECONDS_PROPERTY, 0);
+
+  /**
+   * Threads shared by all queries for filling large polygons, see {@link ParallelPolygonToCells}.
+   * 0 (disabled) by default, so that each polygon is filled on the thread of its driver.
+   */
+  static final int POLYGON_TO_CELLS_PARALLELISM =
+      Integer.getInteger(POLYGON_TO_CELLS_PARALLELISM_PROPERTY, 0);
+
+  /**
+   * Maximum number of cells that <code>h3_uncompact_cells</code> returns in one array, 100 million
+   * (800 MB) by default. Larger results are rejected before they are allocated.
+   */
+  static final long UNCOMPACT_CELLS_MAX_CELLS =
+      Long.getLong(UNCOMPACT_CELLS_MAX_CELLS_PROPERTY, 100_000_000);
+
+  private H3PluginConfig() {}
+
+  static Engine getEngine(String property, Engine defaultEngine) {
+    String value = System.getProperty(property);
+    if (value == null) {
+      return defaultEngine;
+    }
+    for (Engine engine : Engine.values()) {
+      if (engine.name().equalsIgnoreCase(value)) {
+        return engine;
+      }
+    }
+    throw new IllegalArgumentException("Invalid value for " + property + ": " + value);
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java implementation of the point in polygon test of the H3 C library (polygonAlgos.h), which
+ * <code>polygonToCells</code> applies to cell centers, with identical results. Coordinates are
+ * interleaved latitude and longitude in radians, as passed to polygonToCells.
+ *
+ * <p>The test casts a ray east from the point and counts the edges it crosses, nudging the point
+ * when it is level with a vertex. Those nudges carry over to the following edges, so edges are
+ * always tested in the order of the ring. To avoid testing every edge, each ring keeps the edges
+ * overlapping each of a number of latitude bands, in ring order.
+ */
+final class H3Polygon {
+  /** Same as C's DBL_EPSILON. */
+  private static final double DBL_EPSILON = Math.ulp(1.0);
+  private static final int MAX_BANDS = 4096;
+  private static final int EDGES_PER_BAND = 4;
+  /**
+   * Edges are also listed in bands within this latitude, since the test can nudge the point north
+   * by DBL_EPSILON for each vertex level with it.
+   */
+  private static final double BAND_TOLERANCE = 1e-12;
+
+  private static final int LAT = 0;
+  private static final int LNG = 1;
+
+  private final Loop outer;
+  private final Loop[] holes;
+
+  H3Polygon(double[] polygon, int[] holeSizes, double[] holes) {
+    outer = new Loop(polygon, 0, polygon.length);
+    this.holes = new Loop[holeSizes.length];
+    for (int i = 0, offset = 0; i < holeSizes.length; offset += holeSizes[i++]) {
+      this.holes[i] = new Loop(holes, offset, offset + holeSizes[i]);
+    }
+  }
+
+  /** Whether any ring crosses the antimeridian, by the C library's definition. */
+  boolean isTransmeridian() {
+    if (outer.isTransmeridian()) {
+      return true;
+    }
+    for (Loop hole : holes) {
+      if (hole.isTransmeridian()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** As <code>pointInsidePolygon</code>: inside the outer ring and not inside any hole. */
+  boolean contains(double lat, double lng) {
+    if (!outer.contains(lat, lng)) {
+      return false;
+    }
+    for (Loop hole : holes) {
+      if (hole.contains(lat, lng)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** A ring, as the C library's GeoLoop, with its bounding box and edge index. */
+  private static final class Loop {
+    private final double[] latLngs;
+    private final double south;
+    private final double north;
+    private final double west;
+    private final double east;
+    /** Bands of latitude between south and north, each listing the edges that overlap it. */
+    private final int[][] bandEdges;
+
+    private final int numBands;
+    private final double bandHeight;
+
+    Loop(double[] source, int from, int to) {
+      latLngs = Arrays.copyOfRange(source, from, to);
+      int numVerts = latLngs.length / 2;
+
+      // As bboxFromGeoLoop
+      double south = Double.MAX_VALUE;
+      double west = Double.MAX_VALUE;
+      double north = -Double.MAX_VALUE;
+      double east = -Double.MAX_VALUE;
+      double minPosLng = Double.MAX_VALUE;
+      double maxNegLng = -Double.MAX_VALUE;
+      boolean isTransmeridian = false;
+      for (int i = 0; i < numVerts; i++) {
+        double lat = lat(i);
+        double lng = lng(i);
+        south = Math.min(south, lat);
+        west = Math.min(west, lng);
+        north = Math.max(north, lat);
+        east = Math.max(east, lng);
+        if (lng > 0 && lng < minPosLng) {
+          minPosLng = lng;
+        }
+        if (lng < 0 && lng > maxNegLng) {
+          maxNegLng = lng;
+        }
+        if (Math.abs(lng - lng((i + 1) % numVerts)) > Math.PI) {
+          isTransmeridian = true;
+        }
+      }
+      if (numVerts == 0) {
+        south = north = west = east = 0;
+      } else if (isTransmeridian) {
+        east = maxNegLng;
+        west = minPosLng;
+      }
+      this.south = south;
+      this.north = north;
+      this.west = west;
+      this.east = east;
+
+      numBands = Math.max(1, Math.min(MAX_BANDS, numVerts / EDGES_PER_BAND));
+      bandHeight = (north - south) / numBands;
+      int[] counts = new int[numBands];
+      for (int i = 0; i < numVerts; i++) {
+        for (int band = firstBand(i); band <= lastBand(i); band++) {
+          counts[band]++;
+        }
+      }
+      bandEdges = new int[numBands][];
+      for (int band = 0; band < numBands; band++) {
+        bandEdges[band] = new int[counts[band]];
+        counts[band] = 0;
+      }
+      for (int i = 0; i < numVerts; i++) {
+        for (int band = firstBand(i); band <= lastBand(i); band++) {
+          bandEdges[band][counts[band]++] = i;
+        }
+      }
+    }
+
+    private int numVerts() {
+      return latLngs.length / 2;
+    }
+
+    private double lat(int vertex) {
+      return latLngs[vertex * 2 + LAT];
+    }
+
+    private double lng(int vertex) {
+      return latLngs[vertex * 2 + LNG];
+    }
+
+    /** Band of the lowest latitude of the edge from vertex <code>i</code> to the next. */
+    private int firstBand(int i) {
+      return band(Math.min(lat(i), lat((i + 1) % numVerts())) - BAND_TOLERANCE);
+    }
+
+    private int lastBand(int i) {
+      return band(Math.max(lat(i), lat((i + 1) % numVerts())) + BAND_TOLERANCE);
+    }
+
+    private int band(double lat) {
+      if (!(bandHeight > 0)) {
+        return 0;
+      }
+      return Math.max(0, Math.min(numBands - 1, (int) ((lat - south) / bandHeight)));
+    }
+
+    private boolean isTransmeridian() {
+      return east < west;
+    }
+
+    private double normalizeLng(double lng) {
+      return isTransmeridian() && lng < 0 ? lng + 2 * Math.PI : lng;
+    }
+
+    /** As <code>pointInsideGeoLoop</code>. */
+    boolean contains(double lat, double lng) {
+      // As bboxContains
+      if (!(lat >= south
+          && lat <= north
+          && (isTransmeridian() ? lng >= west || lng <= east : lng >= west && lng <= east))) {
+        return false;
+      }
+      boolean contains = false;
+      lng = normalizeLng(lng);
+      int numVerts = numVerts();
+      for (int i : bandEdges[band(lat)]) {
+        double aLat = lat(i);
+        double aLng = lng(i);
+        double bLat = lat((i + 1) % numVerts);
+        double bLng = lng((i + 1) % numVerts);
+        if (aLat > bLat) {
+          double tmp = aLat;
+          aLat = bLat;
+          bLat = tmp;
+          tmp = aLng;
+          aLng = bLng;
+          bLng = tmp;
+        }
+        if (lat == aLat || lat == bLat) {
+          lat += DBL_EPSILON;
+        }
+        if (lat < aLat || lat > bLat) {
+          continue;
+        }
+        aLng = normalizeLng(aLng);
+        bLng = normalizeLng(bLng);
+        if (aLng == lng || bLng == lng) {
+          lng -= DBL_EPSILON;
+        }
+        double ratio = (lat - aLat) / (bLat - aLat);
+        double testLng = normalizeLng(aLng + (bLng - aLng) * ratio);
+        if (testLng > lng) {
+          contains = !contains;
+        }
+      }
+      return contains;
+    }
+  }
+}
@@ -15,27 +15,51 @@
  */
 package com.foursquare.presto.h3;
 
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.StandardTypes;
 import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
-import java.util.List;
+import com.foursquare.presto.h3.RejectedRows.Reason;
 
 /** Function wrapping {@link com.uber.h3core.H3Core#cellToParent(long, int)} */
 public final class HierarchyFunctions {
+  private static final FunctionMetrics CELL_TO_PARENT =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_cell_to_parent");
+  private static final FunctionMetrics CELL_TO_CHILDREN =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_cell_to_children");
+  private static final FunctionMetrics CELL_TO_CHILDREN_SIZE =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_cell_to_children_size");
+  private static final FunctionMetrics CELL_TO_CHILD_POS =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_cell_to_child_pos");
+  private static final FunctionMetrics CHILD_POS_TO_CELL =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_child_pos_to_cell");
+  private static final FunctionMetrics CELL_TO_CENTER_CHILD =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_cell_to_center_child");
+  private static final FunctionMetrics COMPACT_CELLS =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_compact_cells");
+  private static final FunctionMetrics UNCOMPACT_CELLS =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_uncompact_cells");
+  private static final FunctionMetrics UNCOMPACT_CELLS_SIZE =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_uncompact_cells_size");
+  private static final FunctionMetrics CELLS_CONTAIN =
+      FunctionMetrics.forFunction(HierarchyFunctions.class, "h3_cells_contain");
+
   @ScalarFunction(value = "h3_cell_to_parent")
   @Description("Truncate H3 index to parent")
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToParent(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long res) {
-    try {
-      return H3Plugin.h3.cellToParent(cell, H3Plugin.longToInt(res));
-    } catch (Exception e) {
-      return null;
+    long start = CELL_TO_PARENT.start();
+    if (res < 0 || res > H3Index.getResolution(cell)) {
+      return CELL_TO_PARENT.reject(Reason.INVALID_RESOLUTION);
     }
+    return CELL_TO_PARENT.end(start, H3Index.cellToParent(cell, (int) res));
   }
 
   @ScalarFunction(value = "h3_cell_to_children")
@@ -44,25 +68,121 @@ public final class HierarchyFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block cellToChildren(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long res) {
+    long start = CELL_TO_CHILDREN.start();
+    if (!H3Index.isValidCell(cell)) {
+      // An invalid cell has no children
+      return CELL_TO_CHILDREN.reject(Reason.INVALID_CELL, H3Plugin.longArrayToBlock(new long[0]));
+    }
+    if (res < H3Index.getResolution(cell) || res > H3Index.MAX_RES) {
+      return CELL_TO_CHILDREN.reject(Reason.INVALID_RESOLUTION);
+    }
     try {
-      List<Long> children = H3Plugin.h3.cellToChildren(cell, H3Plugin.longToInt(res));
-      return H3Plugin.longListToBlock(children);
+      long[] children = H3Plugin.h3Primitives.cellToChildren(cell, (int) res);
+      return CELL_TO_CHILDREN.end(start, H3Plugin.longArrayToBlock(children));
     } catch (Exception e) {
-      return null;
+      return CELL_TO_CHILDREN.reject(Reason.H3_ERROR);
     }
   }
 
+  /**
+   * Children of the cell from position <code>pos</code> in the order of the other overload, up to
+   * <code>count</code> of them, so that many children can be produced over several rows, e.g. by
+   * unnesting <code>sequence(0, h3_cell_to_children_size(cell, res) - 1, count)</code>, rather than
+   * as one array. Pages are limited to {@link H3PluginConfig#UNCOMPACT_CELLS_MAX_CELLS} cells.
+   */
+  @ScalarFunction(value = "h3_cell_to_children")
+  @Description("Find some children of an H3 index at given resolution, starting at a position")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block cellToChildren(
+      @SqlType(StandardTypes.BIGINT) long cell,
+      @SqlType(StandardTypes.INTEGER) long res,
+      @SqlType(StandardTypes.BIGINT) long pos,
+      @SqlType(StandardTypes.INTEGER) long count) {
+    long start = CELL_TO_CHILDREN.start();
+    if (!H3Index.isValidCell(cell)) {
+      return CELL_TO_CHILDREN.reject(Reason.INVALID_CELL, H3Plugin.longArrayToBlock(new long[0]));
+    }
+    if (res < H3Index.getResolution(cell) || res > H3Index.MAX_RES) {
+      return CELL_TO_CHILDREN.reject(Reason.INVALID_RESOLUTION);
+    }
+    if (pos < 0 || count < 0) {
+      return CELL_TO_CHILDREN.reject(Reason.INVALID_ARGUMENT);
+    }
+    long size = Math.max(0, Math.min(count, H3Index.cellToChildrenSize(cell, (int) res) - pos));
+    if (size > H3PluginConfig.UNCOMPACT_CELLS_MAX_CELLS) {
+      return CELL_TO_CHILDREN.reject(Reason.TOO_LARGE);
+    }
+    long[] children = new long[(int) size];
+    childrenPage(new long[] {cell}, (int) res, pos, children);
+    return CELL_TO_CHILDREN.end(start, H3Plugin.longArrayToBlock(children));
+  }
+
+  @ScalarFunction(value = "h3_cell_to_children_size")
+  @Description("Number of children of an H3 index at given resolution")
+  @SqlNullable
+  @SqlType(StandardTypes.BIGINT)
+  public static Long cellToChildrenSize(
+      @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long res) {
+    long start = CELL_TO_CHILDREN_SIZE.start();
+    if (!H3Index.isValidCell(cell)) {
+      return CELL_TO_CHILDREN_SIZE.reject(Reason.INVALID_CELL);
+    }
+    if (res < H3Index.getResolution(cell) || res > H3Index.MAX_RES) {
+      return CELL_TO_CHILDREN_SIZE.reject(Reason.INVALID_RESOLUTION);
+    }
+    return CELL_TO_CHILDREN_SIZE.end(start, H3Index.cellToChildrenSize(cell, (int) res));
+  }
+
+  @ScalarFunction(value = "h3_cell_to_child_pos")
+  @Description("Position of an H3 index among the children of its parent at given resolution")
+  @SqlNullable
+  @SqlType(StandardTypes.BIGINT)
+  public static Long cellToChildPos(
+      @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long parentRes) {
+    long start = CELL_TO_CHILD_POS.start();
+    if (!H3Index.isValidCell(cell)) {
+      return CELL_TO_CHILD_POS.reject(Reason.INVALID_CELL);
+    }
+    if (parentRes < 0 || parentRes > H3Index.getResolution(cell)) {
+      return CELL_TO_CHILD_POS.reject(Reason.INVALID_RESOLUTION);
+    }
+    return CELL_TO_CHILD_POS.end(start, H3Index.cellToChildPos(cell, (int) parentRes));
+  }
+
+  @ScalarFunction(value = "h3_child_pos_to_cell")
+  @Description("Find the child of an H3 index at given position and resolution")
+  @SqlNullable
+  @SqlType(StandardTypes.BIGINT)
+  public static Long childPosToCell(
+      @SqlType(StandardTypes.BIGINT) long childPos,
+      @SqlType(StandardTypes.BIGINT) long parent,
+      @SqlType(StandardTypes.INTEGER) long childRes) {
+    long start = CHILD_POS_TO_CELL.start();
+    if (!H3Index.isValidCell(parent)) {
+      return CHILD_POS_TO_CELL.reject(Reason.INVALID_CELL);
+    }
+    if (childRes < H3Index.getResolution(parent) || childRes > H3Index.MAX_RES) {
+      return CHILD_POS_TO_CELL.reject(Reason.INVALID_RESOLUTION);
+    }
+    if (childPos < 0 || childPos >= H3Index.cellToChildrenSize(parent, (int) childRes)) {
+      return CHILD_POS_TO_CELL.reject(Reason.INVALID_ARGUMENT);
+    }
+    return CHILD_POS_TO_CELL.end(
+        start, H3Index.childPosToCell(childPos, parent, (int) childRes));
+  }
+
   @ScalarFunction(value = "h3_cell_to_center_child")
   @Description("Find the center child of an H3 index at a given resolution")
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToCenterChild(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long res) {
-    try {
-      return H3Plugin.h3.cellToCenterChild(cell, H3Plugin.longToInt(res));
-    } catch (Exception e) {
-      return null;
+    long start = CELL_TO_CENTER_CHILD.start();
+    if (res < H3Index.getResolution(cell) || res > H3Index.MAX_RES) {
+      return CELL_TO_CENTER_CHILD.reject(Reason.INVALID_RESOLUTION);
     }
+    return CELL_TO_CENTER_CHILD.end(start, H3Index.cellToCenterChild(cell, (int) res));
   }
 
   @ScalarFunction(value = "h3_compact_cells")
@@ -70,15 +190,27 @@ public final class HierarchyFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block compactCells(@SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock) {
+    long start = COMPACT_CELLS.start();
+    long[] cells = H3Plugin.longBlockToArray(cellsBlock);
+    for (long cell : cells) {
+      // H3 skips 0, which is also what null elements are read as
+      if (cell != 0 && !H3Index.isValidCell(cell)) {
+        return COMPACT_CELLS.reject(Reason.INVALID_CELL);
+      }
+    }
     try {
-      List<Long> cells = H3Plugin.longBlockToList(cellsBlock);
-      List<Long> compacted = H3Plugin.h3.compactCells(cells);
-      return H3Plugin.longListToBlock(compacted);
+      long[] compacted = H3Plugin.h3Primitives.compactCells(cells);
+      return COMPACT_CELLS.end(start, H3Plugin.longArrayToBlock(compacted));
     } catch (Exception e) {
-      return null;
+      return COMPACT_CELLS.reject(Reason.H3_ERROR);
     }
   }
 
+  /**
+   * Uncompacts the cells, or returns null if the result would have more than {@link
+   * H3PluginConfig#UNCOMPACT_CELLS_MAX_CELLS} cells, which is checked before the result is
+   * allocated. Larger results can be uncompacted a page at a time with the other overload.
+   */
   @ScalarFunction(value = "h3_uncompact_cells")
   @Description("Uncompact indexes to finer resolutions")
   @SqlNullable
@@ -86,12 +218,189 @@ public final class HierarchyFunctions {
   public static Block uncompactCells(
       @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock,
       @SqlType(StandardTypes.INTEGER) long res) {
+    long start = UNCOMPACT_CELLS.start();
+    long[] cells = H3Plugin.longBlockToArray(cellsBlock);
+    Reason invalid = checkUncompactArguments(cells, res);
+    if (invalid != null) {
+      return UNCOMPACT_CELLS.reject(invalid);
+    }
+    if (uncompactCellsSize(cells, (int) res) > H3PluginConfig.UNCOMPACT_CELLS_MAX_CELLS) {
+      return UNCOMPACT_CELLS.reject(Reason.TOO_LARGE);
+    }
     try {
-      List<Long> cells = H3Plugin.longBlockToList(cellsBlock);
-      List<Long> uncompacted = H3Plugin.h3.uncompactCells(cells, H3Plugin.longToInt(res));
-      return H3Plugin.longListToBlock(uncompacted);
+      long[] uncompacted = H3Plugin.h3Primitives.uncompactCells(cells, (int) res);
+      return UNCOMPACT_CELLS.end(start, H3Plugin.longArrayToBlock(uncompacted));
     } catch (Exception e) {
-      return null;
+      return UNCOMPACT_CELLS.reject(Reason.H3_ERROR);
+    }
+  }
+
+  /**
+   * Uncompacted cells from position <code>pos</code> in the order of the other overload, up to
+   * <code>count</code> of them, so that a large result can be produced over several rows, e.g. by
+   * unnesting <code>sequence(0, h3_uncompact_cells_size(cells, res) - 1, count)</code>. Pages are
+   * also limited to {@link H3PluginConfig#UNCOMPACT_CELLS_MAX_CELLS} cells.
+   */
+  @ScalarFunction(value = "h3_uncompact_cells")
+  @Description("Uncompact indexes to finer resolutions, starting at a position")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block uncompactCells(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock,
+      @SqlType(StandardTypes.INTEGER) long res,
+      @SqlType(StandardTypes.BIGINT) long pos,
+      @SqlType(StandardTypes.INTEGER) long count) {
+    long start = UNCOMPACT_CELLS.start();
+    long[] cells = H3Plugin.longBlockToArray(cellsBlock);
+    Reason invalid = checkUncompactArguments(cells, res);
+    if (invalid != null) {
+      return UNCOMPACT_CELLS.reject(invalid);
+    }
+    if (pos < 0 || count < 0) {
+      return UNCOMPACT_CELLS.reject(Reason.INVALID_ARGUMENT);
+    }
+    long size = Math.max(0, Math.min(count, uncompactCellsSize(cells, (int) res) - pos));
+    if (size > H3PluginConfig.UNCOMPACT_CELLS_MAX_CELLS) {
+      return UNCOMPACT_CELLS.reject(Reason.TOO_LARGE);
+    }
+    long[] uncompacted = new long[(int) size];
+    childrenPage(cells, (int) res, pos, uncompacted);
+    return UNCOMPACT_CELLS.end(start, H3Plugin.longArrayToBlock(uncompacted));
+  }
+
+  /**
+   * Number of cells from uncompacting, to page through them with <code>h3_uncompact_cells</code>,
+   * or null if the number does not fit in a bigint.
+   */
+  @ScalarFunction(value = "h3_uncompact_cells_size")
+  @Description("Number of indexes from uncompacting to finer resolutions")
+  @SqlNullable
+  @SqlType(StandardTypes.BIGINT)
+  public static Long uncompactCellsSize(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock,
+      @SqlType(StandardTypes.INTEGER) long res) {
+    long start = UNCOMPACT_CELLS_SIZE.start();
+    long[] cells = H3Plugin.longBlockToArray(cellsBlock);
+    Reason invalid = checkUncompactArguments(cells, res);
+    if (invalid != null) {
+      return UNCOMPACT_CELLS_SIZE.reject(invalid);
+    }
+    long size = uncompactCellsSize(cells, (int) res);
+    if (size == Long.MAX_VALUE) {
+      return UNCOMPACT_CELLS_SIZE.reject(Reason.TOO_LARGE);
+    }
+    return UNCOMPACT_CELLS_SIZE.end(start, size);
+  }
+
+  @ScalarFunction(value = "h3_cells_contain")
+  @Description("Returns true if the cell or one of its parents is in the array of indexes")
+  @SqlNullable
+  @SqlType(StandardTypes.BOOLEAN)
+  public static Boolean cellsContain(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock,
+      @SqlType(StandardTypes.BIGINT) long cell) {
+    long start = CELLS_CONTAIN.start();
+    if (!H3Index.isValidCell(cell)) {
+      return CELLS_CONTAIN.reject(Reason.INVALID_CELL);
+    }
+    CompactedCellIndex index = CompactedCellIndex.forBlock(cellsBlock, 1);
+    if (!index.isValid()) {
+      return CELLS_CONTAIN.reject(Reason.INVALID_CELL);
+    }
+    return CELLS_CONTAIN.end(start, index.contains(cell));
+  }
+
+  @ScalarFunction(value = "h3_cells_contain")
+  @Description(
+      "For each cell, returns true if it or one of its parents is in the array of indexes, or null"
+          + " if the cell is invalid")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BOOLEAN)
+  public static Block cellsContainEach(
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block cellsBlock,
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block queryBlock) {
+    long start = CELLS_CONTAIN.start();
+    int count = queryBlock.getPositionCount();
+    CompactedCellIndex index = CompactedCellIndex.forBlock(cellsBlock, count);
+    if (!index.isValid()) {
+      return CELLS_CONTAIN.reject(Reason.INVALID_CELL);
+    }
+    BlockBuilder blockBuilder = BOOLEAN.createFixedSizeBlockBuilder(count);
+    for (int i = 0; i < count; i++) {
+      long cell = queryBlock.isNull(i) ? 0 : queryBlock.getLong(i);
+      if (H3Index.isValidCell(cell)) {
+        BOOLEAN.writeBoolean(blockBuilder, index.contains(cell));
+      } else {
+        blockBuilder.appendNull();
+      }
+    }
+    return CELLS_CONTAIN.end(start, blockBuilder.build());
+  }
+
+  /** Returns why cells cannot be uncompacted to <code>res</code>, or null if they can. */
+  private static Reason checkUncompactArguments(long[] cells, long res) {
+    if (!H3Index.isValidResolution(res)) {
+      return Reason.INVALID_RESOLUTION;
+    }
+    for (long cell : cells) {
+      if (cell == 0) {
+        // H3 skips 0, which is also what null elements are read as
+        continue;
+      }
+      if (!H3Index.isValidCell(cell)) {
+        return Reason.INVALID_CELL;
+      }
+      if (H3Index.getResolution(cell) > res) {
+        return Reason.INVALID_RESOLUTION;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Number of cells from uncompacting valid cells, as H3's uncompactCellsSize, or {@link
+   * Long#MAX_VALUE} if that does not fit in a long, as for millions of repeated base cells.
+   */
+  private static long uncompactCellsSize(long[] cells, int res) {
+    long size = 0;
+    for (long cell : cells) {
+      if (cell != 0) {
+        long children = H3Index.cellToChildrenSize(cell, res);
+        if (size > Long.MAX_VALUE - children) {
+          return Long.MAX_VALUE;
+        }
+        size += children;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Fills <code>out</code> with the children at <code>res</code> of all of the cells, in order,
+   * starting from position <code>pos</code>. Positions count the children of every cell, which
+   * must be valid or 0, and <code>out</code> must not extend past the last child.
+   */
+  private static void childrenPage(long[] cells, int res, long pos, long[] out) {
+    int i = 0;
+    for (long cell : cells) {
+      if (i == out.length) {
+        return;
+      }
+      if (cell == 0) {
+        continue;
+      }
+      long size = H3Index.cellToChildrenSize(cell, res);
+      if (pos >= size) {
+        pos -= size;
+        continue;
+      }
+      int parentRes = H3Index.getResolution(cell);
+      for (long child = H3Index.childPosToCell(pos, cell, res);
+          child != 0 && i < out.length;
+          child = H3Index.nextChild(child, parentRes)) {
+        out[i++] = child;
+      }
+      pos = 0;
     }
   }
 }
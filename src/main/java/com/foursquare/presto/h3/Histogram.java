@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of non-negative values, in buckets of a quarter of a power of two, so that
+ * percentiles are accurate to within 25% over the whole range of <code>long</code>.
+ */
+final class Histogram {
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int NUM_BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+  /** Records a value, counting negative values as 0. */
+  void record(long value) {
+    counts.incrementAndGet(bucket(value));
+  }
+
+  long getCount() {
+    long count = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the upper bound of the bucket containing the <code>percentile</code> (0 to 100) value,
+   * or 0 if nothing has been recorded.
+   */
+  long getPercentile(double percentile) {
+    long[] snapshot = snapshot();
+    long count = 0;
+    for (long bucketCount : snapshot) {
+      count += bucketCount;
+    }
+    long rank = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen > 0 && seen >= rank) {
+        return upperBound(i);
+      }
+    }
+    return 0;
+  }
+
+  /** Returns the non-empty buckets as <code>lower-upper:count</code>, separated by commas. */
+  @Override
+  public String toString() {
+    long[] snapshot = snapshot();
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      if (snapshot[i] != 0) {
+        if (result.length() > 0) {
+          result.append(", ");
+        }
+        result.append(lowerBound(i)).append('-').append(upperBound(i));
+        result.append(':').append(snapshot[i]);
+      }
+    }
+    return result.toString();
+  }
+
+  private long[] snapshot() {
+    long[] snapshot = new long[NUM_BUCKETS];
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(value, 0);
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS * (shift + 1) + subBucket;
+  }
+
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+  }
+
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    return lowerBound(bucket) + (1L << shift) - 1;
+  }
+}
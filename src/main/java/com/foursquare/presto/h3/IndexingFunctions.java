@@ -4,21 +4,37 @@ import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.deserialize;
 import static com.facebook.presto.geospatial.type.GeometryType.GEOMETRY_TYPE_NAME;
 import static org.locationtech.jts.geom.Geometry.TYPENAME_POINT;
 
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.StandardTypes;
-import com.facebook.presto.geospatial.GeometryType;
 import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
-import com.uber.h3core.util.LatLng;
+import com.foursquare.presto.h3.RejectedRows.Reason;
 import io.airlift.slice.Slice;
-import java.util.List;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
 
 /** Wraps https://h3geo.org/docs/api/indexing */
 public final class IndexingFunctions {
-  /** Function wrapping {@link com.uber.h3core.H3Core#latLngToCell(double, double, int)} */
+  private static final FunctionMetrics LAT_LNG_TO_CELL =
+      FunctionMetrics.forFunction(IndexingFunctions.class, "h3_latlng_to_cell");
+  private static final FunctionMetrics LAT_LNG_TO_CELLS =
+      FunctionMetrics.forFunction(IndexingFunctions.class, "h3_latlng_to_cells");
+  private static final FunctionMetrics CELL_TO_LAT_LNG =
+      FunctionMetrics.forFunction(IndexingFunctions.class, "h3_cell_to_latlng");
+  private static final FunctionMetrics CELL_TO_BOUNDARY =
+      FunctionMetrics.forFunction(IndexingFunctions.class, "h3_cell_to_boundary");
+  private static final CellGeometryCache CELL_TO_LAT_LNG_CACHE =
+      CellGeometryCache.forFunction("h3_cell_to_latlng");
+  private static final CellGeometryCache CELL_TO_BOUNDARY_CACHE =
+      CellGeometryCache.forFunction("h3_cell_to_boundary");
+
+  /**
+   * Function equivalent to {@link com.uber.h3core.H3Core#latLngToCell(double, double, int)},
+   * implemented by {@link LatLngToCell} unless {@link H3PluginConfig#LAT_LNG_TO_CELL_ENGINE} is
+   * native.
+   */
   @ScalarFunction(value = "h3_latlng_to_cell")
   @Description("Convert degrees lat/lng to H3 index")
   @SqlNullable
@@ -27,10 +43,24 @@ public final class IndexingFunctions {
       @SqlType(StandardTypes.DOUBLE) double lat,
       @SqlType(StandardTypes.DOUBLE) double lng,
       @SqlType(StandardTypes.INTEGER) long res) {
+    long start = LAT_LNG_TO_CELL.start();
+    if (!H3Index.isValidResolution(res)) {
+      return LAT_LNG_TO_CELL.reject(Reason.INVALID_RESOLUTION);
+    }
+    if (!Double.isFinite(lat) || !Double.isFinite(lng)) {
+      return LAT_LNG_TO_CELL.reject(Reason.INVALID_ARGUMENT);
+    }
+    if (H3PluginConfig.LAT_LNG_TO_CELL_ENGINE == H3PluginConfig.Engine.JAVA) {
+      long cell = LatLngToCell.latLngToCell(lat, lng, (int) res);
+      if (cell == 0) {
+        return LAT_LNG_TO_CELL.reject(Reason.H3_ERROR);
+      }
+      return LAT_LNG_TO_CELL.end(start, cell);
+    }
     try {
-      return H3Plugin.h3.latLngToCell(lat, lng, H3Plugin.longToInt(res));
+      return LAT_LNG_TO_CELL.end(start, H3Plugin.h3.latLngToCell(lat, lng, (int) res));
     } catch (Exception e) {
-      return null;
+      return LAT_LNG_TO_CELL.reject(Reason.H3_ERROR);
     }
   }
 
@@ -41,17 +71,99 @@ public final class IndexingFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long latLngToCell(
       @SqlType(GEOMETRY_TYPE_NAME) Slice pointSlice, @SqlType(StandardTypes.INTEGER) long res) {
+    if (GeometrySlices.isPoint(pointSlice)) {
+      return latLngToCell(
+          GeometrySlices.pointLat(pointSlice), GeometrySlices.pointLng(pointSlice), res);
+    }
+    Geometry pointGeomUntyped;
     try {
-      Geometry pointGeomUntyped = deserialize(pointSlice);
-      if (!TYPENAME_POINT.equals(pointGeomUntyped.getGeometryType())) {
-        throw new IllegalArgumentException("Invalid polygon geometry");
+      pointGeomUntyped = deserialize(pointSlice);
+    } catch (Exception e) {
+      return LAT_LNG_TO_CELL.reject(Reason.INVALID_GEOMETRY);
+    }
+    if (!TYPENAME_POINT.equals(pointGeomUntyped.getGeometryType()) || pointGeomUntyped.isEmpty()) {
+      return LAT_LNG_TO_CELL.reject(Reason.INVALID_GEOMETRY);
+    }
+    Point pointGeom = (Point) pointGeomUntyped;
+
+    // Metrics are recorded by the other overload
+    return latLngToCell(pointGeom.getY(), pointGeom.getX(), res);
+  }
+
+  /**
+   * Cells containing the point at each resolution, the same as calling <code>h3_latlng_to_cell
+   * </code> for each. With the Java engine, the point is projected onto its icosahedron face only
+   * once, which is most of the cost of indexing it. Coarser cells are not found by truncating the
+   * finest cell, because a cell's parent does not always contain all of the cell.
+   */
+  @ScalarFunction(value = "h3_latlng_to_cells")
+  @Description("Convert degrees lat/lng to H3 indexes at several resolutions")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block latLngToCells(
+      @SqlType(StandardTypes.DOUBLE) double lat,
+      @SqlType(StandardTypes.DOUBLE) double lng,
+      @SqlType(H3Plugin.TYPE_ARRAY_INTEGER) Block resolutionsBlock) {
+    long start = LAT_LNG_TO_CELLS.start();
+    int[] resolutions = new int[resolutionsBlock.getPositionCount()];
+    for (int i = 0; i < resolutions.length; i++) {
+      if (resolutionsBlock.isNull(i)) {
+        return LAT_LNG_TO_CELLS.reject(Reason.INVALID_RESOLUTION);
+      }
+      resolutions[i] = resolutionsBlock.getInt(i);
+      if (!H3Index.isValidResolution(resolutions[i])) {
+        return LAT_LNG_TO_CELLS.reject(Reason.INVALID_RESOLUTION);
       }
-      Point pointGeom = (Point) pointGeomUntyped;
+    }
+    if (!Double.isFinite(lat) || !Double.isFinite(lng)) {
+      return LAT_LNG_TO_CELLS.reject(Reason.INVALID_ARGUMENT);
+    }
+    long[] cells = new long[resolutions.length];
+    try {
+      if (H3PluginConfig.LAT_LNG_TO_CELL_ENGINE == H3PluginConfig.Engine.JAVA) {
+        LatLngToCell.latLngToCells(lat, lng, resolutions, cells);
+      } else {
+        for (int i = 0; i < resolutions.length; i++) {
+          cells[i] = H3Plugin.h3.latLngToCell(lat, lng, resolutions[i]);
+        }
+      }
+    } catch (Exception e) {
+      return LAT_LNG_TO_CELLS.reject(Reason.H3_ERROR);
+    }
+    for (long cell : cells) {
+      if (cell == 0) {
+        return LAT_LNG_TO_CELLS.reject(Reason.H3_ERROR);
+      }
+    }
+    return LAT_LNG_TO_CELLS.end(start, H3Plugin.longArrayToBlock(cells));
+  }
 
-      return H3Plugin.h3.latLngToCell(pointGeom.getY(), pointGeom.getX(), H3Plugin.longToInt(res));
+  @ScalarFunction(value = "h3_latlng_to_cells")
+  @Description("Convert degrees lat/lng to H3 indexes at several resolutions")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block latLngToCells(
+      @SqlType(GEOMETRY_TYPE_NAME) Slice pointSlice,
+      @SqlType(H3Plugin.TYPE_ARRAY_INTEGER) Block resolutionsBlock) {
+    if (GeometrySlices.isPoint(pointSlice)) {
+      return latLngToCells(
+          GeometrySlices.pointLat(pointSlice),
+          GeometrySlices.pointLng(pointSlice),
+          resolutionsBlock);
+    }
+    Geometry pointGeomUntyped;
+    try {
+      pointGeomUntyped = deserialize(pointSlice);
     } catch (Exception e) {
-      return null;
+      return LAT_LNG_TO_CELLS.reject(Reason.INVALID_GEOMETRY);
+    }
+    if (!TYPENAME_POINT.equals(pointGeomUntyped.getGeometryType()) || pointGeomUntyped.isEmpty()) {
+      return LAT_LNG_TO_CELLS.reject(Reason.INVALID_GEOMETRY);
     }
+    Point pointGeom = (Point) pointGeomUntyped;
+
+    // Metrics are recorded by the other overload
+    return latLngToCells(pointGeom.getY(), pointGeom.getX(), resolutionsBlock);
   }
 
   /**
@@ -63,11 +175,14 @@ public final class IndexingFunctions {
   @SqlNullable
   @SqlType(GEOMETRY_TYPE_NAME)
   public static Slice cellToLatLng(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = CELL_TO_LAT_LNG.start();
+    if (!H3Index.isValidCell(h3)) {
+      return CELL_TO_LAT_LNG.reject(Reason.INVALID_CELL);
+    }
     try {
-      LatLng latLng = H3Plugin.h3.cellToLatLng(h3);
-      return H3Plugin.latLngToGeometry(latLng);
+      return CELL_TO_LAT_LNG.end(start, CELL_TO_LAT_LNG_CACHE.get(h3, IndexingFunctions::center));
     } catch (Exception e) {
-      return null;
+      return CELL_TO_LAT_LNG.reject(Reason.H3_ERROR);
     }
   }
 
@@ -80,13 +195,24 @@ public final class IndexingFunctions {
   @SqlNullable
   @SqlType(GEOMETRY_TYPE_NAME)
   public static Slice cellToBoundary(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = CELL_TO_BOUNDARY.start();
+    if (!H3Index.isValidCell(h3)) {
+      return CELL_TO_BOUNDARY.reject(Reason.INVALID_CELL);
+    }
     try {
-      List<LatLng> boundary = H3Plugin.h3.cellToBoundary(h3);
-      // Duplicate the first point at the end to form a closed ring
-      boundary.add(boundary.get(0));
-      return H3Plugin.latLngListToGeometry(boundary, GeometryType.POLYGON);
+      return CELL_TO_BOUNDARY.end(
+          start, CELL_TO_BOUNDARY_CACHE.get(h3, IndexingFunctions::boundary));
     } catch (Exception e) {
-      return null;
+      return CELL_TO_BOUNDARY.reject(Reason.H3_ERROR);
     }
   }
+
+  private static Slice center(long h3) {
+    double[] latLng = H3Plugin.h3Primitives.cellToLatLng(h3);
+    return GeometrySlices.point(latLng[0], latLng[1]);
+  }
+
+  private static Slice boundary(long h3) {
+    return GeometrySlices.polygon(H3Plugin.h3Primitives.cellToBoundary(h3));
+  }
 }
@@ -9,34 +9,44 @@ import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
+import com.foursquare.presto.h3.RejectedRows.Reason;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
 import java.util.Collection;
 
 /** Wraps https://h3geo.org/docs/api/inspection/ */
 public final class InspectionFunctions {
+  private static final FunctionMetrics GET_RESOLUTION =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_get_resolution");
+  private static final FunctionMetrics GET_BASE_CELL_NUMBER =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_get_base_cell_number");
+  private static final FunctionMetrics STRING_TO_H3 =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_string_to_h3");
+  private static final FunctionMetrics H3_TO_STRING =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_h3_to_string");
+  private static final FunctionMetrics IS_VALID_CELL =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_is_valid_cell");
+  private static final FunctionMetrics IS_RES_CLASS_III =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_is_res_class_iii");
+  private static final FunctionMetrics IS_PENTAGON =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_is_pentagon");
+  private static final FunctionMetrics GET_ICOSAHEDRON_FACES =
+      FunctionMetrics.forFunction(InspectionFunctions.class, "h3_get_icosahedron_faces");
+
   @ScalarFunction(value = "h3_get_resolution")
   @Description("Convert H3 index to resolution (0-15)")
-  @SqlNullable
   @SqlType(StandardTypes.INTEGER)
-  public static Long getResolution(@SqlType(StandardTypes.BIGINT) long h3) {
-    try {
-      return Long.valueOf(H3Plugin.h3.getResolution(h3));
-    } catch (Exception e) {
-      return null;
-    }
+  public static long getResolution(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = GET_RESOLUTION.start();
+    return GET_RESOLUTION.end(start, H3Index.getResolution(h3));
   }
 
   @ScalarFunction(value = "h3_get_base_cell_number")
   @Description("Convert H3 index to base cell number (0-122)")
-  @SqlNullable
   @SqlType(StandardTypes.INTEGER)
-  public static Long getBaseCellNumber(@SqlType(StandardTypes.BIGINT) long h3) {
-    try {
-      return Long.valueOf(H3Plugin.h3.getBaseCellNumber(h3));
-    } catch (Exception e) {
-      return null;
-    }
+  public static long getBaseCellNumber(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = GET_BASE_CELL_NUMBER.start();
+    return GET_BASE_CELL_NUMBER.end(start, H3Index.getBaseCellNumber(h3));
   }
 
   @ScalarFunction(value = "h3_string_to_h3")
@@ -44,11 +54,22 @@ public final class InspectionFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long stringToH3(@SqlType(StandardTypes.VARCHAR) Slice h3) {
-    try {
-      return H3Plugin.h3.stringToH3(h3.toStringUtf8());
-    } catch (Exception e) {
-      return null;
+    long start = STRING_TO_H3.start();
+    String address = h3.toStringUtf8();
+    // As Long.parseUnsignedLong(address, 16), which H3Core uses, but without throwing
+    int first = address.startsWith("+") ? 1 : 0;
+    if (first == address.length()) {
+      return STRING_TO_H3.reject(Reason.INVALID_ARGUMENT);
     }
+    long index = 0;
+    for (int i = first; i < address.length(); i++) {
+      int digit = Character.digit(address.charAt(i), 16);
+      if (digit < 0 || (index >>> 60) != 0) {
+        return STRING_TO_H3.reject(Reason.INVALID_ARGUMENT);
+      }
+      index = (index << 4) | digit;
+    }
+    return STRING_TO_H3.end(start, index);
   }
 
   @ScalarFunction(value = "h3_h3_to_string")
@@ -56,10 +77,11 @@ public final class InspectionFunctions {
   @SqlNullable
   @SqlType(StandardTypes.VARCHAR)
   public static Slice h3ToString(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = H3_TO_STRING.start();
     try {
-      return Slices.utf8Slice(H3Plugin.h3.h3ToString(h3));
+      return H3_TO_STRING.end(start, Slices.utf8Slice(H3Plugin.h3.h3ToString(h3)));
     } catch (Exception e) {
-      return null;
+      return H3_TO_STRING.reject(Reason.H3_ERROR);
     }
   }
 
@@ -67,21 +89,24 @@ public final class InspectionFunctions {
   @Description("Returns true if given a valid H3 cell identifier")
   @SqlType(StandardTypes.BOOLEAN)
   public static boolean isValidCell(@SqlType(StandardTypes.BIGINT) long h3) {
-    return H3Plugin.h3.isValidCell(h3);
+    long start = IS_VALID_CELL.start();
+    return IS_VALID_CELL.end(start, H3Index.isValidCell(h3));
   }
 
   @ScalarFunction(value = "h3_is_res_class_iii")
   @Description("Returns true if the index is in resolution class III")
   @SqlType(StandardTypes.BOOLEAN)
   public static boolean isResClassIII(@SqlType(StandardTypes.BIGINT) long h3) {
-    return H3Plugin.h3.isResClassIII(h3);
+    long start = IS_RES_CLASS_III.start();
+    return IS_RES_CLASS_III.end(start, H3Index.isResClassIII(h3));
   }
 
   @ScalarFunction(value = "h3_is_pentagon")
   @Description("Returns true if the cell index is a pentagon")
   @SqlType(StandardTypes.BOOLEAN)
   public static boolean isPentagon(@SqlType(StandardTypes.BIGINT) long h3) {
-    return H3Plugin.h3.isPentagon(h3);
+    long start = IS_PENTAGON.start();
+    return IS_PENTAGON.end(start, H3Index.isPentagon(h3));
   }
 
   @ScalarFunction(value = "h3_get_icosahedron_faces")
@@ -89,15 +114,19 @@ public final class InspectionFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_INTEGER)
   public static Block getIcosahedronFaces(@SqlType(StandardTypes.BIGINT) long h3) {
+    long start = GET_ICOSAHEDRON_FACES.start();
+    if (!H3Index.isValidCell(h3)) {
+      return GET_ICOSAHEDRON_FACES.reject(Reason.INVALID_CELL);
+    }
     try {
       Collection<Integer> faces = H3Plugin.h3.getIcosahedronFaces(h3);
       BlockBuilder blockBuilder = INTEGER.createFixedSizeBlockBuilder(faces.size());
       for (Integer face : faces) {
         INTEGER.writeLong(blockBuilder, face);
       }
-      return blockBuilder.build();
+      return GET_ICOSAHEDRON_FACES.end(start, blockBuilder.build());
     } catch (Exception e) {
-      return null;
+      return GET_ICOSAHEDRON_FACES.reject(Reason.H3_ERROR);
     }
   }
 }
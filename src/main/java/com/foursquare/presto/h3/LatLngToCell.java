@@ -0,0 +1,630 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import com.uber.h3core.exceptions.H3Exception;
+
+/**
+ * Pure Java implementation of {@link com.uber.h3core.H3Core#latLngToCell(double, double, int)},
+ * following the H3 C library (faceijk.c and h3Index.c): the point is projected onto the closest
+ * icosahedron face, rounded to hex IJK coordinates, and the index is built up digit by digit.
+ *
+ * <p>The projection is computed differently than in the C library, which uses its own trigonometry
+ * and some x87 extended precision, so the two can disagree on points within rounding error of a
+ * face or cell boundary. Such points, and points very close to a face center where the C
+ * projection is ill-conditioned, are passed to the native library instead, so that results are
+ * always identical to it. This happens for a tiny fraction of points.
+ */
+final class LatLngToCell {
+  private static final int NUM_ICOSA_FACES = 20;
+  /** Maximum IJK coordinate of a base cell on a face. */
+  private static final int MAX_FACE_COORD = 2;
+
+  /** Scaling from gnomonic projection to hex2d at resolution 0. */
+  private static final double RES0_U_GNOMONIC = 0.38196601125010500003;
+
+  private static final double SQRT7 = 2.6457513110645905905016157536392604257102;
+  private static final double SIN60 = 0.8660254037844386467637231707529361834714;
+  /** Rotation between class II and class III resolution axes. */
+  private static final double AP7_ROT_RADS = 0.333473172251832115336090755351601070065900389;
+
+  /**
+   * Points closer than this (squared chord distance) to a face center are passed to the native
+   * library, because of the C library's numerical error there.
+   */
+  private static final double FACE_CENTER_SQD = 1e-6;
+  /**
+   * Points that are within this (squared chord distance) of being equally close to two faces are
+   * passed to the native library.
+   */
+  private static final double FACE_TOLERANCE = 1e-12;
+  /**
+   * Points within this fraction of a resolution 0 hex2d unit of a cell boundary are passed to the
+   * native library. This is several orders of magnitude larger than the difference between the two
+   * projections.
+   */
+  private static final double RELATIVE_TOLERANCE = 0x1p-36;
+  /** Result of {@link #gnomonicToCell} for points that must be passed to the native library. */
+  private static final long NEEDS_NATIVE = -1;
+
+  /** Face center lat/lng, in radians. */
+  private static final double[][] FACE_CENTER_GEO = {
+    {0.80358264971899, 1.2483974196173961},
+    {1.3077478834556382, 2.5369450098779214},
+    {1.054751253523952, -1.3475173589003966},
+    {0.6001915955381868, -0.45060390946975576},
+    {0.49171542819877384, 0.40198820291130694},
+    {0.1727453274156187, 1.6781468852804338},
+    {0.6059293215713507, 2.9539233298124117},
+    {0.42737051832897965, -1.8888762003362853},
+    {-0.07906611854921283, -0.7334295133808677},
+    {-0.23096164445538364, 0.506495587332349},
+    {0.07906611854921283, 2.4081631402089254},
+    {0.23096164445538364, -2.635097066257444},
+    {-0.1727453274156187, -1.4634457683093596},
+    {-0.6059293215713507, -0.18766932377738163},
+    {-0.42737051832897965, 1.2527164532535078},
+    {-0.6001915955381868, 2.6909887441200375},
+    {-0.49171542819877384, -2.7396044506784865},
+    {-0.80358264971899, -1.8931952339723972},
+    {-1.3077478834556382, -0.6046476437118721},
+    {-1.054751253523952, 1.7940752946893965},
+  };
+
+  /** Face center x, y, z on the unit sphere. */
+  private static final double[][] FACE_CENTER_POINT = {
+    {0.2199307791404606, 0.6583691780274996, 0.7198475378926182},
+    {-0.2139234834501421, 0.1478171829550703, 0.9656017935214205},
+    {0.1092625278784797, -0.481195157287321, 0.8697775121287253},
+    {0.7428567301586791, -0.3593941678278028, 0.5648005936517033},
+    {0.8112534709140969, 0.3448953237639384, 0.472138773641393},
+    {-0.1055498149613921, 0.9794457296411413, 0.1718874610009365},
+    {-0.8075407579970092, 0.1533552485898818, 0.5695261994882688},
+    {-0.2846148069787907, -0.8644080972654206, 0.4144792552473539},
+    {0.7405621473854482, -0.6673299564565524, -0.0789837646326737},
+    {0.8512303986474293, 0.4722343788582681, -0.2289137388687808},
+    {-0.7405621473854481, 0.6673299564565524, 0.0789837646326737},
+    {-0.8512303986474292, -0.4722343788582682, 0.2289137388687808},
+    {0.1055498149613919, -0.9794457296411413, -0.1718874610009365},
+    {0.8075407579970092, -0.1533552485898819, -0.5695261994882688},
+    {0.2846148069787908, 0.8644080972654204, -0.4144792552473539},
+    {-0.7428567301586791, 0.3593941678278027, -0.5648005936517033},
+    {-0.811253470914097, -0.3448953237639382, -0.472138773641393},
+    {-0.2199307791404607, -0.6583691780274996, -0.7198475378926182},
+    {0.213923483450142, -0.1478171829550704, -0.9656017935214205},
+    {-0.1092625278784796, 0.481195157287321, -0.8697775121287253},
+  };
+
+  /** Azimuth from the face center to the class II i axis, in radians. */
+  private static final double[] FACE_AXIS_AZ_RADS = {
+    5.6199582685239395,
+    5.7603390817141875,
+    0.78021365439343,
+    0.4304693639799999,
+    6.130269123335111,
+    2.692877706530643,
+    2.982963003477244,
+    3.532912002790141,
+    3.494305004259568,
+    3.0032141694995382,
+    5.930472956509812,
+    0.13837848409025486,
+    0.4487149470591504,
+    0.15862965011254937,
+    5.891865957979238,
+    2.711123289609793,
+    3.294508837434268,
+    3.80481969224544,
+    3.6644388790551923,
+    2.361378999196363,
+  };
+
+  /** Base cell at each face and IJK coordinate, indexed by face * 27 + i * 9 + j * 3 + k. */
+  private static final int[] FACE_IJK_BASE_CELLS = {
+    // face 0
+    16, 18, 24, 33, 30, 32, 49, 48, 50,
+    8, 5, 10, 22, 16, 18, 41, 33, 30,
+    4, 0, 2, 15, 8, 5, 31, 22, 16,
+    // face 1
+    2, 6, 14, 10, 11, 17, 24, 23, 25,
+    0, 1, 9, 5, 2, 6, 18, 10, 11,
+    4, 3, 7, 8, 0, 1, 16, 5, 2,
+    // face 2
+    7, 21, 38, 9, 19, 34, 14, 20, 36,
+    3, 13, 29, 1, 7, 21, 6, 9, 19,
+    4, 12, 26, 0, 3, 13, 2, 1, 7,
+    // face 3
+    26, 42, 58, 29, 43, 62, 38, 47, 64,
+    12, 28, 44, 13, 26, 42, 21, 29, 43,
+    4, 15, 31, 3, 12, 28, 7, 13, 26,
+    // face 4
+    31, 41, 49, 44, 53, 61, 58, 65, 75,
+    15, 22, 33, 28, 31, 41, 42, 44, 53,
+    4, 8, 16, 12, 15, 22, 26, 28, 31,
+    // face 5
+    50, 48, 49, 32, 30, 33, 24, 18, 16,
+    70, 67, 66, 52, 50, 48, 37, 32, 30,
+    83, 87, 85, 74, 70, 67, 57, 52, 50,
+    // face 6
+    25, 23, 24, 17, 11, 10, 14, 6, 2,
+    45, 39, 37, 35, 25, 23, 27, 17, 11,
+    63, 59, 57, 56, 45, 39, 46, 35, 25,
+    // face 7
+    36, 20, 14, 34, 19, 9, 38, 21, 7,
+    55, 40, 27, 54, 36, 20, 51, 34, 19,
+    72, 60, 46, 73, 55, 40, 71, 54, 36,
+    // face 8
+    64, 47, 38, 62, 43, 29, 58, 42, 26,
+    84, 69, 51, 82, 64, 47, 76, 62, 43,
+    97, 89, 71, 98, 84, 69, 96, 82, 64,
+    // face 9
+    75, 65, 58, 61, 53, 44, 49, 41, 31,
+    94, 86, 76, 81, 75, 65, 66, 61, 53,
+    107, 104, 96, 101, 94, 86, 85, 81, 75,
+    // face 10
+    57, 59, 63, 74, 78, 79, 83, 92, 95,
+    37, 39, 45, 52, 57, 59, 70, 74, 78,
+    24, 23, 25, 32, 37, 39, 50, 52, 57,
+    // face 11
+    46, 60, 72, 56, 68, 80, 63, 77, 90,
+    27, 40, 55, 35, 46, 60, 45, 56, 68,
+    14, 20, 36, 17, 27, 40, 25, 35, 46,
+    // face 12
+    71, 89, 97, 73, 91, 103, 72, 88, 105,
+    51, 69, 84, 54, 71, 89, 55, 73, 91,
+    38, 47, 64, 34, 51, 69, 36, 54, 71,
+    // face 13
+    96, 104, 107, 98, 110, 115, 97, 111, 119,
+    76, 86, 94, 82, 96, 104, 84, 98, 110,
+    58, 65, 75, 62, 76, 86, 64, 82, 96,
+    // face 14
+    85, 87, 83, 101, 102, 100, 107, 112, 114,
+    66, 67, 70, 81, 85, 87, 94, 101, 102,
+    49, 48, 50, 61, 66, 67, 75, 81, 85,
+    // face 15
+    95, 92, 83, 79, 78, 74, 63, 59, 57,
+    109, 108, 100, 93, 95, 92, 77, 79, 78,
+    117, 118, 114, 106, 109, 108, 90, 93, 95,
+    // face 16
+    90, 77, 63, 80, 68, 56, 72, 60, 46,
+    106, 93, 79, 99, 90, 77, 88, 80, 68,
+    117, 109, 95, 113, 106, 93, 105, 99, 90,
+    // face 17
+    105, 88, 72, 103, 91, 73, 97, 89, 71,
+    113, 99, 80, 116, 105, 88, 111, 103, 91,
+    117, 106, 90, 121, 113, 99, 119, 116, 105,
+    // face 18
+    119, 111, 97, 115, 110, 98, 107, 104, 96,
+    121, 116, 103, 120, 119, 111, 112, 115, 110,
+    117, 113, 105, 118, 121, 116, 114, 120, 119,
+    // face 19
+    114, 112, 107, 100, 102, 101, 83, 87, 85,
+    118, 120, 115, 108, 114, 112, 92, 100, 102,
+    117, 121, 119, 109, 118, 120, 95, 108, 114,
+  };
+
+  /** Counterclockwise 60 degree rotations into the base cell's orientation, indexed as above. */
+  private static final int[] FACE_IJK_BASE_CELL_ROTATIONS = {
+    // face 0
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    0, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 1
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    1, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 2
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    2, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 3
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    3, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 4
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 5, 5, 0, 0, 0, 1, 0, 0,
+    4, 5, 5, 1, 0, 5, 1, 0, 0,
+    // face 5
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 1, 3, 0,
+    // face 6
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 7
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 8
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 9
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 0, 3, 3, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 0, 3, 3, 0,
+    // face 10
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 11
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 12
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 13
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 14
+    0, 0, 3, 0, 3, 3, 3, 3, 3,
+    0, 3, 3, 0, 0, 0, 3, 0, 3,
+    0, 3, 3, 3, 0, 3, 3, 0, 0,
+    // face 15
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    4, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 16
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    3, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 17
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    2, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 18
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    1, 5, 5, 1, 0, 0, 1, 1, 0,
+    // face 19
+    0, 0, 0, 0, 0, 3, 1, 3, 3,
+    0, 0, 5, 1, 0, 0, 1, 0, 0,
+    0, 5, 5, 1, 0, 0, 1, 1, 0,
+  };
+  /** Base cells with a pentagon which have a clockwise offset at a face, as {base cell, face}. */
+  private static final int[][] CW_OFFSET_PENTAGON_FACES = {
+    {14, 2}, {14, 6}, {24, 1}, {24, 5}, {38, 3}, {38, 7}, {49, 0}, {49, 9}, {58, 4}, {58, 8},
+    {63, 11}, {63, 15}, {72, 12}, {72, 16}, {83, 10}, {83, 19}, {97, 13}, {97, 17}, {107, 14},
+    {107, 18},
+  };
+
+  /**
+   * Per face: sine and cosine of the center latitude and longitude, then the cosine and sine of the
+   * i axis azimuth for class II and class III resolutions.
+   */
+  private static final double[][] FACE_TRIG = new double[NUM_ICOSA_FACES][];
+
+  /** Per resolution: scaling from gnomonic projection to hex2d. */
+  private static final double[] SCALE = new double[H3Index.MAX_RES + 1];
+  /** Per resolution: distance from a cell boundary below which the native library is used. */
+  private static final double[] TOLERANCE = new double[H3Index.MAX_RES + 1];
+
+  private static final boolean[] CW_OFFSET_FACES =
+      new boolean[H3Index.NUM_BASE_CELLS * NUM_ICOSA_FACES];
+
+  static {
+    for (int f = 0; f < NUM_ICOSA_FACES; f++) {
+      double lat = FACE_CENTER_GEO[f][0];
+      double lng = FACE_CENTER_GEO[f][1];
+      double az = FACE_AXIS_AZ_RADS[f];
+      FACE_TRIG[f] =
+          new double[] {
+            Math.sin(lat),
+            Math.cos(lat),
+            Math.sin(lng),
+            Math.cos(lng),
+            Math.cos(az),
+            Math.sin(az),
+            Math.cos(az - AP7_ROT_RADS),
+            Math.sin(az - AP7_ROT_RADS)
+          };
+    }
+    double scale = 1 / RES0_U_GNOMONIC;
+    for (int res = 0; res <= H3Index.MAX_RES; res++) {
+      SCALE[res] = scale;
+      TOLERANCE[res] = scale * RELATIVE_TOLERANCE;
+      scale *= SQRT7;
+    }
+    for (int[] baseCellFace : CW_OFFSET_PENTAGON_FACES) {
+      CW_OFFSET_FACES[baseCellFace[0] * NUM_ICOSA_FACES + baseCellFace[1]] = true;
+    }
+  }
+
+  private LatLngToCell() {}
+
+  /**
+   * Returns the cell containing the point, or 0 if the native library fails to index it. The
+   * coordinates, in degrees, must be finite and <code>res</code> must be in 0..15.
+   */
+  static long latLngToCell(double lat, double lng, int res) {
+    double latRads = Math.toRadians(lat);
+    double lngRads = Math.toRadians(lng);
+    double cosLat = Math.cos(latRads);
+    double x = Math.cos(lngRads) * cosLat;
+    double y = Math.sin(lngRads) * cosLat;
+    double z = Math.sin(latRads);
+    int face = nearestFace(x, y, z);
+    long cell =
+        face < 0
+            ? NEEDS_NATIVE
+            : gnomonicToCell(
+                face, sqd(face, x, y, z), east(face, x, y), north(face, x, y, z), res);
+    return cell == NEEDS_NATIVE ? nativeLatLngToCell(lat, lng, res) : cell;
+  }
+
+  /**
+   * Sets <code>cells[i]</code> to the cell containing the point at <code>resolutions[i]</code>,
+   * with the same results as {@link #latLngToCell(double, double, int)}. The projection of the
+   * point onto its face, which is most of the cost of indexing it, is computed only once.
+   */
+  static void latLngToCells(double lat, double lng, int[] resolutions, long[] cells) {
+    double latRads = Math.toRadians(lat);
+    double lngRads = Math.toRadians(lng);
+    double cosLat = Math.cos(latRads);
+    double x = Math.cos(lngRads) * cosLat;
+    double y = Math.sin(lngRads) * cosLat;
+    double z = Math.sin(latRads);
+    int face = nearestFace(x, y, z);
+    double sqd = face < 0 ? 0 : sqd(face, x, y, z);
+    double east = face < 0 ? 0 : east(face, x, y);
+    double north = face < 0 ? 0 : north(face, x, y, z);
+    for (int n = 0; n < resolutions.length; n++) {
+      int res = resolutions[n];
+      long cell = face < 0 ? NEEDS_NATIVE : gnomonicToCell(face, sqd, east, north, res);
+      cells[n] = cell == NEEDS_NATIVE ? nativeLatLngToCell(lat, lng, res) : cell;
+    }
+  }
+
+  /**
+   * Returns the face whose center is nearest to the point on the unit sphere, or -1 if the point
+   * must be passed to the native library at every resolution.
+   */
+  private static int nearestFace(double x, double y, double z) {
+    int face = 0;
+    double sqd = 5.0;
+    double nextSqd = 5.0;
+    for (int f = 0; f < NUM_ICOSA_FACES; f++) {
+      double sqdT = sqd(f, x, y, z);
+      if (sqdT < sqd) {
+        nextSqd = sqd;
+        sqd = sqdT;
+        face = f;
+      } else if (sqdT < nextSqd) {
+        nextSqd = sqdT;
+      }
+    }
+    if (sqd < FACE_CENTER_SQD || nextSqd - sqd < FACE_TOLERANCE) {
+      return -1;
+    }
+    return face;
+  }
+
+  /** Squared chord distance from the point to the center of the face. */
+  private static double sqd(int face, double x, double y, double z) {
+    double[] center = FACE_CENTER_POINT[face];
+    double dx = center[0] - x;
+    double dy = center[1] - y;
+    double dz = center[2] - z;
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  /**
+   * East component of the point in the face's tangent plane, for the gnomonic projection onto the
+   * face. The C library computes the projection in polar coordinates (from the azimuth and angular
+   * distance to the face center) but the east and north components give the same result without
+   * any further trigonometry.
+   */
+  private static double east(int face, double x, double y) {
+    double[] trig = FACE_TRIG[face];
+    return y * trig[3] - x * trig[2];
+  }
+
+  /** North component of the point in the face's tangent plane, as for {@link #east}. */
+  private static double north(int face, double x, double y, double z) {
+    double[] trig = FACE_TRIG[face];
+    return trig[1] * z - trig[0] * (x * trig[3] + y * trig[2]);
+  }
+
+  /**
+   * Returns the cell at <code>res</code> from the point's squared chord distance to the center of
+   * its face and its components in the face's tangent plane, or {@link #NEEDS_NATIVE} if the point
+   * must be passed to the native library at this resolution.
+   */
+  private static long gnomonicToCell(int face, double sqd, double east, double north, int res) {
+    // Rotated so that the i axis is along x
+    double[] trig = FACE_TRIG[face];
+    boolean classIII = res % 2 != 0;
+    double cosAxis = classIII ? trig[6] : trig[4];
+    double sinAxis = classIII ? trig[7] : trig[5];
+    double scale = SCALE[res] / (1 - sqd / 2);
+    double hexX = scale * (cosAxis * north + sinAxis * east);
+    double hexY = scale * (sinAxis * north - cosAxis * east);
+
+    // Round hex2d to IJK coordinates, as _hex2dToCoordIJK
+    double a1 = Math.abs(hexX);
+    double a2 = Math.abs(hexY);
+    double x2 = a2 / SIN60;
+    double x1 = a1 + x2 / 2.0;
+    int m1 = (int) x1;
+    int m2 = (int) x2;
+    double r1 = x1 - m1;
+    double r2 = x2 - m2;
+    if (isNearBoundary(a1, a2, r1, r2, TOLERANCE[res])) {
+      return NEEDS_NATIVE;
+    }
+
+    int i;
+    int j;
+    if (r1 < 0.5) {
+      if (r1 < 1.0 / 3.0) {
+        i = m1;
+        j = r2 < (1.0 + r1) / 2.0 ? m2 : m2 + 1;
+      } else {
+        j = r2 < (1.0 - r1) ? m2 : m2 + 1;
+        i = (1.0 - r1) <= r2 && r2 < (2.0 * r1) ? m1 + 1 : m1;
+      }
+    } else {
+      if (r1 < 2.0 / 3.0) {
+        j = r2 < (1.0 - r1) ? m2 : m2 + 1;
+        i = (2.0 * r1 - 1.0) < r2 && r2 < (1.0 - r1) ? m1 : m1 + 1;
+      } else {
+        i = m1 + 1;
+        j = r2 < (r1 / 2.0) ? m2 : m2 + 1;
+      }
+    }
+
+    // Fold across the axes if necessary
+    if (hexX < 0.0) {
+      if ((j % 2) == 0) {
+        int axisi = j / 2;
+        int diff = i - axisi;
+        i = i - 2 * diff;
+      } else {
+        int axisi = (j + 1) / 2;
+        int diff = i - axisi;
+        i = i - (2 * diff + 1);
+      }
+    }
+    if (hexY < 0.0) {
+      i = i - (2 * j + 1) / 2;
+      j = -j;
+    }
+    int k = 0;
+    int min = Math.min(Math.min(i, j), k);
+    i -= min;
+    j -= min;
+    k -= min;
+
+    // Build the index from the finest resolution up, as _faceIjkToH3
+    long h3 = H3Index.newCell(res);
+    for (int r = res - 1; r >= 0; r--) {
+      int lastI = i;
+      int lastJ = j;
+      int lastK = k;
+      int ci;
+      int cj;
+      int ck;
+      // IJ coordinates of the cell
+      int ijI = i - k;
+      int ijJ = j - k;
+      if ((r + 1) % 2 != 0) {
+        // Aperture 7 counterclockwise up to the parent, then back down to its center
+        i = round7(3 * ijI - ijJ);
+        j = round7(ijI + 2 * ijJ);
+        min = Math.min(Math.min(i, j), 0);
+        i -= min;
+        j -= min;
+        k = -min;
+        ci = 3 * i + j;
+        cj = 3 * j + k;
+        ck = i + 3 * k;
+      } else {
+        // Aperture 7 clockwise up to the parent, then back down to its center
+        i = round7(2 * ijI + ijJ);
+        j = round7(3 * ijJ - ijI);
+        min = Math.min(Math.min(i, j), 0);
+        i -= min;
+        j -= min;
+        k = -min;
+        ci = 3 * i + k;
+        cj = i + 3 * j;
+        ck = j + 3 * k;
+      }
+      h3 = H3Index.setIndexDigit(h3, r + 1, unitIjkToDigit(lastI - ci, lastJ - cj, lastK - ck));
+    }
+
+    if (i > MAX_FACE_COORD || j > MAX_FACE_COORD || k > MAX_FACE_COORD) {
+      return NEEDS_NATIVE;
+    }
+    int faceIjk = face * 27 + i * 9 + j * 3 + k;
+    int baseCell = FACE_IJK_BASE_CELLS[faceIjk];
+    h3 = H3Index.setBaseCellNumber(h3, baseCell);
+
+    // Rotate into the canonical orientation of the base cell
+    int numRots = FACE_IJK_BASE_CELL_ROTATIONS[faceIjk];
+    if (H3Index.isBaseCellPentagon(baseCell)) {
+      // Force rotation out of the deleted K axes subsequence
+      if (H3Index.leadingNonZeroDigit(h3) == H3Index.K_AXES_DIGIT) {
+        if (CW_OFFSET_FACES[baseCell * NUM_ICOSA_FACES + face]) {
+          h3 = H3Index.rotate60cw(h3);
+        } else {
+          h3 = H3Index.rotate60ccw(h3);
+        }
+      }
+      for (int n = 0; n < numRots; n++) {
+        h3 = H3Index.rotatePent60ccw(h3);
+      }
+    } else {
+      for (int n = 0; n < numRots; n++) {
+        h3 = H3Index.rotate60ccw(h3);
+      }
+    }
+    return h3;
+  }
+
+  /**
+   * Returns true if the hex2d point, given by its absolute coordinates and its fractional IJ
+   * position, is within <code>tolerance</code> of an axis or of any line where
+   * <code>_hex2dToCoordIJK</code> rounds differently.
+   */
+  private static boolean isNearBoundary(
+      double a1, double a2, double r1, double r2, double tolerance) {
+    return a1 < tolerance
+        || a2 < tolerance
+        || r1 < tolerance
+        || 1.0 - r1 < tolerance
+        || r2 < tolerance
+        || 1.0 - r2 < tolerance
+        || Math.abs(r1 - 1.0 / 3.0) < tolerance
+        || Math.abs(r1 - 0.5) < tolerance
+        || Math.abs(r1 - 2.0 / 3.0) < tolerance
+        || Math.abs(r2 - (1.0 + r1) / 2.0) < tolerance
+        || Math.abs(r2 - (1.0 - r1)) < tolerance
+        || Math.abs(r2 - 2.0 * r1) < tolerance
+        || Math.abs(r2 - (2.0 * r1 - 1.0)) < tolerance
+        || Math.abs(r2 - r1 / 2.0) < tolerance;
+  }
+
+  /** Rounds <code>n / 7</code> to the nearest integer. There are no ties. */
+  private static int round7(int n) {
+    return Math.floorDiv(2 * n + 7, 14);
+  }
+
+  /** Returns the digit for the unit IJK vector, or {@link H3Index#INVALID_DIGIT}. */
+  private static int unitIjkToDigit(int i, int j, int k) {
+    int min = Math.min(Math.min(i, j), k);
+    i -= min;
+    j -= min;
+    k -= min;
+    if (i > 1 || j > 1 || k > 1) {
+      return H3Index.INVALID_DIGIT;
+    }
+    return i << 2 | j << 1 | k;
+  }
+
+  private static long nativeLatLngToCell(double lat, double lng, int res) {
+    try {
+      return H3Plugin.h3.latLngToCell(lat, lng, res);
+    } catch (H3Exception e) {
+      return 0;
+    }
+  }
+}
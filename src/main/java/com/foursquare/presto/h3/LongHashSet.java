@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+/**
+ * Set of H3 indexes, stored in an open addressing table of primitive <code>long</code>s rather than
+ * as boxed values. 0, which is never a valid index, marks empty slots and cannot be added.
+ */
+final class LongHashSet {
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] table;
+  private int mask;
+  private int size;
+
+  /** Sized to hold <code>expectedSize</code> indexes without growing. */
+  LongHashSet(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    // Kept at most half full
+    while (capacity < expectedSize * 2L) {
+      capacity <<= 1;
+    }
+    table = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  /** Adds the index, returning false if it was already in the set. */
+  boolean add(long value) {
+    if (value == 0) {
+      throw new IllegalArgumentException("0 cannot be added to the set");
+    }
+    int slot = slot(value);
+    while (table[slot] != 0) {
+      if (table[slot] == value) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = value;
+    if (++size * 2 > table.length) {
+      grow();
+    }
+    return true;
+  }
+
+  /** Adds every index in the array, skipping unused positions, which are 0. */
+  void addAll(long[] values) {
+    for (long value : values) {
+      if (value != 0) {
+        add(value);
+      }
+    }
+  }
+
+  boolean contains(long value) {
+    if (value == 0) {
+      return false;
+    }
+    int slot = slot(value);
+    while (table[slot] != 0) {
+      if (table[slot] == value) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the indexes in the set, in no particular order. */
+  long[] toArray() {
+    long[] values = new long[size];
+    int count = 0;
+    for (long value : table) {
+      if (value != 0) {
+        values[count++] = value;
+      }
+    }
+    return values;
+  }
+
+  private void grow() {
+    long[] old = table;
+    table = new long[old.length * 2];
+    mask = table.length - 1;
+    for (long value : old) {
+      if (value != 0) {
+        int slot = slot(value);
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+      }
+    }
+  }
+
+  private int slot(long value) {
+    return (int) mix(value) & mask;
+  }
+
+  /**
+   * The low bits of an index are mostly unused digits, set to 7, so the index is mixed (as in
+   * MurmurHash3's finalizer) before taking a slot from its bits.
+   */
+  static long mix(long value) {
+    long hash = value;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -6,25 +6,66 @@ import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import com.google.common.collect.ImmutableMap;
 import com.uber.h3core.AreaUnit;
 import com.uber.h3core.LengthUnit;
 import com.uber.h3core.util.LatLng;
 import io.airlift.slice.Slice;
-import java.util.ArrayList;
+import io.airlift.slice.Slices;
+import java.util.Map;
 
 /** Wraps https://h3geo.org/docs/api/misc */
 public final class MiscellaneousFunctions {
+  private static final FunctionMetrics GET_HEXAGON_AREA_AVG =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_get_hexagon_area_avg");
+  private static final FunctionMetrics CELL_AREA =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_cell_area");
+  private static final FunctionMetrics GET_HEXAGON_EDGE_LENGTH_AVG =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_get_hexagon_edge_length_avg");
+  private static final FunctionMetrics EDGE_LENGTH =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_edge_length");
+  private static final FunctionMetrics GREAT_CIRCLE_DISTANCE =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_great_circle_distance");
+  private static final FunctionMetrics GET_NUM_CELLS =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_get_num_cells");
+  private static final FunctionMetrics GET_RES0_CELLS =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_get_res0_cells");
+  private static final FunctionMetrics GET_PENTAGONS =
+      FunctionMetrics.forFunction(MiscellaneousFunctions.class, "h3_get_pentagons");
+
+  /** Units by name, so that looking up an invalid unit does not throw as valueOf does. */
+  private static final Map<Slice, AreaUnit> AREA_UNITS = unitsByName(AreaUnit.values());
+
+  private static final Map<Slice, LengthUnit> LENGTH_UNITS = unitsByName(LengthUnit.values());
+
+  private static <T extends Enum<T>> Map<Slice, T> unitsByName(T[] units) {
+    ImmutableMap.Builder<Slice, T> builder = ImmutableMap.builder();
+    for (T unit : units) {
+      builder.put(Slices.utf8Slice(unit.name()), unit);
+    }
+    return builder.build();
+  }
+
   @ScalarFunction(value = "h3_get_hexagon_area_avg")
   @Description("Get average area of hexagon cells (unit may be km2 or m2)")
   @SqlNullable
   @SqlType(StandardTypes.DOUBLE)
   public static Double getHexagonAreaAvg(
       @SqlType(StandardTypes.INTEGER) long res, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    long start = GET_HEXAGON_AREA_AVG.start();
+    AreaUnit areaUnit = AREA_UNITS.get(unit);
+    if (areaUnit == null) {
+      return GET_HEXAGON_AREA_AVG.reject(Reason.INVALID_UNIT);
+    }
+    if (!H3Index.isValidResolution(res)) {
+      return GET_HEXAGON_AREA_AVG.reject(Reason.INVALID_RESOLUTION);
+    }
     try {
-      return H3Plugin.h3.getHexagonAreaAvg(
-          H3Plugin.longToInt(res), AreaUnit.valueOf(unit.toStringUtf8()));
+      return GET_HEXAGON_AREA_AVG.end(
+          start, H3Plugin.h3.getHexagonAreaAvg((int) res, areaUnit));
     } catch (Exception e) {
-      return null;
+      return GET_HEXAGON_AREA_AVG.reject(Reason.H3_ERROR);
     }
   }
 
@@ -34,10 +75,18 @@ public final class MiscellaneousFunctions {
   @SqlType(StandardTypes.DOUBLE)
   public static Double cellArea(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    long start = CELL_AREA.start();
+    AreaUnit areaUnit = AREA_UNITS.get(unit);
+    if (areaUnit == null) {
+      return CELL_AREA.reject(Reason.INVALID_UNIT);
+    }
+    if (!H3Index.isValidCell(cell)) {
+      return CELL_AREA.reject(Reason.INVALID_CELL);
+    }
     try {
-      return H3Plugin.h3.cellArea(cell, AreaUnit.valueOf(unit.toStringUtf8()));
+      return CELL_AREA.end(start, H3Plugin.h3.cellArea(cell, areaUnit));
     } catch (Exception e) {
-      return null;
+      return CELL_AREA.reject(Reason.H3_ERROR);
     }
   }
 
@@ -47,11 +96,19 @@ public final class MiscellaneousFunctions {
   @SqlType(StandardTypes.DOUBLE)
   public static Double getHexagonEdgeLengthAvg(
       @SqlType(StandardTypes.INTEGER) long res, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    long start = GET_HEXAGON_EDGE_LENGTH_AVG.start();
+    LengthUnit lengthUnit = LENGTH_UNITS.get(unit);
+    if (lengthUnit == null) {
+      return GET_HEXAGON_EDGE_LENGTH_AVG.reject(Reason.INVALID_UNIT);
+    }
+    if (!H3Index.isValidResolution(res)) {
+      return GET_HEXAGON_EDGE_LENGTH_AVG.reject(Reason.INVALID_RESOLUTION);
+    }
     try {
-      return H3Plugin.h3.getHexagonEdgeLengthAvg(
-          H3Plugin.longToInt(res), LengthUnit.valueOf(unit.toStringUtf8()));
+      return GET_HEXAGON_EDGE_LENGTH_AVG.end(
+          start, H3Plugin.h3.getHexagonEdgeLengthAvg((int) res, lengthUnit));
     } catch (Exception e) {
-      return null;
+      return GET_HEXAGON_EDGE_LENGTH_AVG.reject(Reason.H3_ERROR);
     }
   }
 
@@ -61,10 +118,18 @@ public final class MiscellaneousFunctions {
   @SqlType(StandardTypes.DOUBLE)
   public static Double edgeLength(
       @SqlType(StandardTypes.BIGINT) long edge, @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    long start = EDGE_LENGTH.start();
+    LengthUnit lengthUnit = LENGTH_UNITS.get(unit);
+    if (lengthUnit == null) {
+      return EDGE_LENGTH.reject(Reason.INVALID_UNIT);
+    }
+    if (!H3Index.isValidDirectedEdge(edge)) {
+      return EDGE_LENGTH.reject(Reason.INVALID_DIRECTED_EDGE);
+    }
     try {
-      return H3Plugin.h3.edgeLength(edge, LengthUnit.valueOf(unit.toStringUtf8()));
+      return EDGE_LENGTH.end(start, H3Plugin.h3.edgeLength(edge, lengthUnit));
     } catch (Exception e) {
-      return null;
+      return EDGE_LENGTH.reject(Reason.H3_ERROR);
     }
   }
 
@@ -79,11 +144,18 @@ public final class MiscellaneousFunctions {
       @SqlType(StandardTypes.DOUBLE) double lat2,
       @SqlType(StandardTypes.DOUBLE) double lng2,
       @SqlType(StandardTypes.VARCHAR) Slice unit) {
+    long start = GREAT_CIRCLE_DISTANCE.start();
+    LengthUnit lengthUnit = LENGTH_UNITS.get(unit);
+    if (lengthUnit == null) {
+      return GREAT_CIRCLE_DISTANCE.reject(Reason.INVALID_UNIT);
+    }
     try {
-      return H3Plugin.h3.greatCircleDistance(
-          new LatLng(lat1, lng1), new LatLng(lat2, lng2), LengthUnit.valueOf(unit.toStringUtf8()));
+      double distance =
+          H3Plugin.h3.greatCircleDistance(
+              new LatLng(lat1, lng1), new LatLng(lat2, lng2), lengthUnit);
+      return GREAT_CIRCLE_DISTANCE.end(start, distance);
     } catch (Exception e) {
-      return null;
+      return GREAT_CIRCLE_DISTANCE.reject(Reason.H3_ERROR);
     }
   }
 
@@ -92,10 +164,14 @@ public final class MiscellaneousFunctions {
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long getNumCells(@SqlType(StandardTypes.INTEGER) long res) {
+    long start = GET_NUM_CELLS.start();
+    if (!H3Index.isValidResolution(res)) {
+      return GET_NUM_CELLS.reject(Reason.INVALID_RESOLUTION);
+    }
     try {
-      return H3Plugin.h3.getNumCells(H3Plugin.longToInt(res));
+      return GET_NUM_CELLS.end(start, H3Plugin.h3.getNumCells((int) res));
     } catch (Exception e) {
-      return null;
+      return GET_NUM_CELLS.reject(Reason.H3_ERROR);
     }
   }
 
@@ -103,7 +179,9 @@ public final class MiscellaneousFunctions {
   @Description("Get all resolution 0 cells")
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block getRes0Cells() {
-    return H3Plugin.longListToBlock(new ArrayList<>(H3Plugin.h3.getRes0Cells()));
+    long start = GET_RES0_CELLS.start();
+    long[] cells = H3Plugin.h3Primitives.getRes0Cells();
+    return GET_RES0_CELLS.end(start, H3Plugin.longArrayToBlock(cells));
   }
 
   @ScalarFunction(value = "h3_get_pentagons")
@@ -111,11 +189,15 @@ public final class MiscellaneousFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block getPentagons(@SqlType(StandardTypes.INTEGER) long res) {
+    long start = GET_PENTAGONS.start();
+    if (!H3Index.isValidResolution(res)) {
+      return GET_PENTAGONS.reject(Reason.INVALID_RESOLUTION);
+    }
     try {
-      return H3Plugin.longListToBlock(
-          new ArrayList<>(H3Plugin.h3.getPentagons(H3Plugin.longToInt(res))));
+      long[] pentagons = H3Plugin.h3Primitives.getPentagons((int) res);
+      return GET_PENTAGONS.end(start, H3Plugin.longArrayToBlock(pentagons));
     } catch (Exception e) {
-      return null;
+      return GET_PENTAGONS.reject(Reason.H3_ERROR);
     }
   }
 }
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Fills large polygons on a shared {@link ForkJoinPool}, when {@link
+ * H3PluginConfig#POLYGON_TO_CELLS_PARALLELISM} is set. The polygon is cut into latitude bands,
+ * each band is filled by the native library on the pool, and each cell is kept only from the band
+ * containing its center, so that there are no duplicates. Banding is faster even on one thread for
+ * polygons with many vertices, as each band has fewer edges for the native fill to test.
+ *
+ * <p>H3 includes a cell if its center is inside the polygon, which it decides by casting a ray
+ * along the center's latitude, so only the edges crossing that latitude matter. Bands are clipped
+ * with a small margin and original vertices are kept as they are, so that edges within a band are
+ * unchanged, and a cell is kept from a band only if its center is inside the band without the
+ * margin. The one difference from filling the whole polygon is that edges crossing a band's
+ * boundary are replaced by the part within the band, which ends at a computed vertex: cells whose
+ * centers are within rounding error of such an edge could be decided differently. Cells are not in
+ * the same order as from the native library.
+ *
+ * <p>H3 fills a polygon crossing the antimeridian by adding 2 pi to the negative longitudes of each
+ * ring which crosses it, and of the centers it tests against that ring. Bands of these polygons
+ * are clipped in the same coordinates, and then cut at longitude pi into a western half, filled as
+ * it is, and an eastern half, moved back by 2 pi, so that neither half crosses the antimeridian.
+ * Centers within rounding error of the cut could also be decided differently.
+ *
+ * <p>Coordinates are interleaved latitude and longitude in radians, as for {@link
+ * com.uber.h3core.H3CorePrimitives#polygonToCells(double[], int[], double[], int)}, with closed
+ * rings.
+ */
+final class ParallelPolygonToCells {
+  /** Fewer cells than this per band are not worth a separate task. */
+  private static final long MIN_CELLS_PER_BAND = 16384;
+  /** Bands per thread, so that threads finishing early can take work from others. */
+  private static final int BANDS_PER_THREAD = 4;
+  /** Added to each side of a band when clipping, in radians. Much larger than rounding error. */
+  private static final double BAND_MARGIN = 1e-9;
+
+  private static final int LAT = 0;
+  private static final int LNG = 1;
+
+  /** Created on first use, so that there are no threads if parallelism is not enabled. */
+  private static class PoolHolder {
+    static final ForkJoinPool POOL = new ForkJoinPool(H3PluginConfig.POLYGON_TO_CELLS_PARALLELISM);
+  }
+
+  private ParallelPolygonToCells() {}
+
+  /** Whether polygons are filled in bands, with any number of threads. */
+  static boolean isEnabled() {
+    return H3PluginConfig.POLYGON_TO_CELLS_PARALLELISM > 0;
+  }
+
+  /**
+   * As the native polygonToCells, but in parallel if the polygon is large enough. The result may
+   * have unused positions, which are 0.
+   */
+  static long[] polygonToCells(double[] polygon, int[] holeSizes, double[] holes, int res) {
+    long estimate = H3Plugin.h3Primitives.maxPolygonToCellsSize(polygon, holeSizes, holes, res);
+    int numBands =
+        (int)
+            Math.min(
+                estimate / MIN_CELLS_PER_BAND,
+                (long) H3PluginConfig.POLYGON_TO_CELLS_PARALLELISM * BANDS_PER_THREAD);
+    if (numBands < 2) {
+      return H3Plugin.h3Primitives.polygonToCells(polygon, holeSizes, holes, res);
+    }
+    return polygonToCells(polygon, holeSizes, holes, res, numBands);
+  }
+
+  /** Fills the polygon in <code>numBands</code> bands of equal latitude range. */
+  static long[] polygonToCells(
+      double[] polygon, int[] holeSizes, double[] holes, int res, int numBands) {
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    for (int i = LAT; i < polygon.length; i += 2) {
+      minLat = Math.min(minLat, polygon[i]);
+      maxLat = Math.max(maxLat, polygon[i]);
+    }
+    List<Callable<long[]>> tasks = new ArrayList<>(numBands);
+    for (int band = 0; band < numBands; band++) {
+      double south = bandLimit(minLat, maxLat, band, numBands);
+      double north = bandLimit(minLat, maxLat, band + 1, numBands);
+      tasks.add(() -> fillBand(polygon, holeSizes, holes, res, south, north));
+    }
+
+    List<long[]> bandCells = invokeAll(tasks);
+    int count = 0;
+    for (long[] cells : bandCells) {
+      count += cells.length;
+    }
+    long[] out = new long[count];
+    int offset = 0;
+    for (long[] cells : bandCells) {
+      System.arraycopy(cells, 0, out, offset, cells.length);
+      offset += cells.length;
+    }
+    return out;
+  }
+
+  /**
+   * Fills one of <code>numBands</code> bands of equal latitude range between <code>minLat</code>
+   * and <code>maxLat</code>, on the calling thread, so that the bands together have the cells of
+   * the whole polygon, each once. Only the band is filled by the native library, including for
+   * polygons crossing the antimeridian.
+   */
+  static long[] polygonToCellsBand(
+      double[] polygon,
+      int[] holeSizes,
+      double[] holes,
+      int res,
+      double minLat,
+      double maxLat,
+      int band,
+      int numBands) {
+    double south = bandLimit(minLat, maxLat, band, numBands);
+    double north = bandLimit(minLat, maxLat, band + 1, numBands);
+    return fillBand(polygon, holeSizes, holes, res, south, north);
+  }
+
+  /**
+   * Returns the southern limit of the band, or the northern limit of the band before it. The first
+   * and last bands are open, so that every center is in one band.
+   */
+  private static double bandLimit(double minLat, double maxLat, int band, int numBands) {
+    if (band == 0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    if (band == numBands) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return minLat + (maxLat - minLat) * band / numBands;
+  }
+
+  /**
+   * Runs the tasks on the shared pool and returns their results in order. Tasks may themselves
+   * call this, as the pool's threads help run the tasks they wait for.
+   */
+  static List<long[]> invokeAll(List<Callable<long[]>> tasks) {
+    List<long[]> results = new ArrayList<>(tasks.size());
+    try {
+      for (Future<long[]> result : PoolHolder.POOL.invokeAll(tasks)) {
+        results.add(result.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted filling polygon", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Failed to fill polygon", e.getCause());
+    }
+    return results;
+  }
+
+  /** Fills the polygon clipped to the band, keeping cells whose center is in the band. */
+  private static long[] fillBand(
+      double[] polygon, int[] holeSizes, double[] holes, int res, double south, double north) {
+    if (crossesAntimeridian(polygon, holeSizes, holes)) {
+      return fillCrossingBand(polygon, holeSizes, holes, res, south, north);
+    }
+    double[][] clipped = clipBand(polygon, holeSizes, holes, south, north);
+    return clipped == null ? new long[0] : fillClipped(clipped, res, south, north);
+  }
+
+  /** Fills the band of a polygon crossing the antimeridian as two halves, see the class. */
+  private static long[] fillCrossingBand(
+      double[] polygon, int[] holeSizes, double[] holes, int res, double south, double north) {
+    double[] unwrappedHoles = new double[holes.length];
+    for (int i = 0, offset = 0; i < holeSizes.length; offset += holeSizes[i++]) {
+      System.arraycopy(
+          unwrap(holes, offset, offset + holeSizes[i]), 0, unwrappedHoles, offset, holeSizes[i]);
+    }
+    double[][] clipped =
+        clipBand(unwrap(polygon, 0, polygon.length), holeSizes, unwrappedHoles, south, north);
+    if (clipped == null) {
+      return new long[0];
+    }
+    long[] west = fillHalf(clipped, res, south, north, -1, 0);
+    long[] east = fillHalf(clipped, res, south, north, 1, -2 * Math.PI);
+    long[] cells = Arrays.copyOf(west, west.length + east.length);
+    System.arraycopy(east, 0, cells, west.length, east.length);
+    return cells;
+  }
+
+  /**
+   * Returns a copy of the ring in <code>latLngs[from, to)</code> in the longitudes H3 tests it in:
+   * with 2 pi added to negative longitudes if it crosses the antimeridian. Rings which are entirely
+   * west of it are also moved, only so that they are cut into the same half.
+   */
+  private static double[] unwrap(double[] latLngs, int from, int to) {
+    double[] ring = Arrays.copyOfRange(latLngs, from, to);
+    boolean west = true;
+    for (int i = LNG; i < ring.length; i += 2) {
+      west &= ring[i] < 0;
+    }
+    if (west || crossesAntimeridian(ring, 0, ring.length)) {
+      for (int i = LNG; i < ring.length; i += 2) {
+        if (ring[i] < 0) {
+          ring[i] += 2 * Math.PI;
+        }
+      }
+    }
+    return ring;
+  }
+
+  /**
+   * Cuts the unwrapped rings at longitude pi, keeping the side given by <code>side</code> (-1 for
+   * west, 1 for east), and fills them after adding <code>shift</code> to their longitudes.
+   */
+  private static long[] fillHalf(
+      double[][] rings, int res, double south, double north, int side, double shift) {
+    List<double[]> half = new ArrayList<>(rings.length);
+    for (int i = 0; i < rings.length; i++) {
+      double[] ring = clip(rings[i], 0, rings[i].length, Math.PI, side, LNG);
+      if (ring.length == 0) {
+        if (i == 0) {
+          return new long[0];
+        }
+        continue;
+      }
+      for (int j = LNG; j < ring.length; j += 2) {
+        ring[j] += shift;
+      }
+      half.add(ring);
+    }
+    return fillClipped(half.toArray(new double[0][]), res, south, north);
+  }
+
+  /** Fills clipped rings, keeping cells whose center is in <code>[south, north)</code>. */
+  private static long[] fillClipped(double[][] clipped, int res, double south, double north) {
+    return centersInBand(
+        H3Plugin.h3Primitives.polygonToCells(
+            clipped[0], holeSizes(clipped), concatHoles(clipped), res),
+        south,
+        north);
+  }
+
+  /**
+   * Keeps the cells whose center is in <code>[south, north)</code>, in place, skipping unused
+   * positions, and returns them without unused positions.
+   */
+  private static long[] centersInBand(long[] cells, double south, double north) {
+    int count = 0;
+    for (long cell : cells) {
+      if (cell != 0) {
+        double lat = H3Plugin.h3Primitives.cellToLatLngRadians(cell)[LAT];
+        if (lat >= south && lat < north) {
+          cells[count++] = cell;
+        }
+      }
+    }
+    return Arrays.copyOf(cells, count);
+  }
+
+  /**
+   * Returns the outer ring followed by the holes, clipped to the band including its margin, or
+   * null if the outer ring is outside the band. Holes outside the band are left out.
+   */
+  static double[][] clipBand(
+      double[] polygon, int[] holeSizes, double[] holes, double south, double north) {
+    double min = south - BAND_MARGIN;
+    double max = north + BAND_MARGIN;
+    double[] outer = clipRing(polygon, 0, polygon.length, min, max);
+    if (outer == null) {
+      return null;
+    }
+    List<double[]> rings = new ArrayList<>(holeSizes.length + 1);
+    rings.add(outer);
+    for (int i = 0, offset = 0; i < holeSizes.length; offset += holeSizes[i++]) {
+      double[] hole = clipRing(holes, offset, offset + holeSizes[i], min, max);
+      if (hole != null) {
+        rings.add(hole);
+      }
+    }
+    return rings.toArray(new double[0][]);
+  }
+
+  /**
+   * Clips the closed ring in <code>latLngs[from, to)</code> to latitudes between <code>min</code>
+   * and <code>max</code> (Sutherland-Hodgman), returning a closed ring or null if no part of it is
+   * within them. Vertices within the latitudes are kept exactly.
+   */
+  static double[] clipRing(double[] latLngs, int from, int to, double min, double max) {
+    double[] southClipped = clip(latLngs, from, to, min, 1, LAT);
+    if (southClipped.length == 0) {
+      return null;
+    }
+    double[] clipped = clip(southClipped, 0, southClipped.length, max, -1, LAT);
+    return clipped.length == 0 ? null : clipped;
+  }
+
+  /**
+   * Clips a closed ring to the side of <code>limit</code> given by <code>side</code> (1 for above,
+   * -1 for below), in the coordinate <code>axis</code>, {@link #LAT} or {@link #LNG}. Returns an
+   * empty array if the ring is entirely outside.
+   */
+  private static double[] clip(
+      double[] latLngs, int from, int to, double limit, int side, int axis) {
+    int other = 1 - axis;
+    // Each edge adds at most two vertices, plus the closing vertex
+    double[] out = new double[(to - from) * 2 + 2];
+    int size = 0;
+    for (int i = from; i < to - 2; i += 2) {
+      double a = latLngs[i + axis];
+      double aOther = latLngs[i + other];
+      double b = latLngs[i + 2 + axis];
+      double bOther = latLngs[i + 2 + other];
+      boolean aInside = (a - limit) * side >= 0;
+      boolean bInside = (b - limit) * side >= 0;
+      if (aInside) {
+        out[size + LAT] = latLngs[i + LAT];
+        out[size + LNG] = latLngs[i + LNG];
+        size += 2;
+      }
+      if (aInside != bInside) {
+        out[size + axis] = limit;
+        out[size + other] = aOther + (bOther - aOther) * ((limit - a) / (b - a));
+        size += 2;
+      }
+    }
+    if (size == 0) {
+      return new double[0];
+    }
+    out[size++] = out[0];
+    out[size++] = out[1];
+    return Arrays.copyOf(out, size);
+  }
+
+  /**
+   * Whether any edge spans more than 180 degrees of longitude, which H3 takes as crossing the
+   * antimeridian. Clipping does not handle these.
+   */
+  private static boolean crossesAntimeridian(double[] polygon, int[] holeSizes, double[] holes) {
+    if (crossesAntimeridian(polygon, 0, polygon.length)) {
+      return true;
+    }
+    for (int i = 0, offset = 0; i < holeSizes.length; offset += holeSizes[i++]) {
+      if (crossesAntimeridian(holes, offset, offset + holeSizes[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean crossesAntimeridian(double[] latLngs, int from, int to) {
+    for (int i = from; i < to - 2; i += 2) {
+      if (Math.abs(latLngs[i + 2 + LNG] - latLngs[i + LNG]) > Math.PI) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int[] holeSizes(double[][] rings) {
+    int[] sizes = new int[rings.length - 1];
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = rings[i + 1].length;
+    }
+    return sizes;
+  }
+
+  private static double[] concatHoles(double[][] rings) {
+    int size = 0;
+    for (int i = 1; i < rings.length; i++) {
+      size += rings[i].length;
+    }
+    double[] holes = new double[size];
+    for (int i = 1, offset = 0; i < rings.length; offset += rings[i++].length) {
+      System.arraycopy(rings[i], 0, holes, offset, rings[i].length);
+    }
+    return holes;
+  }
+}
@@ -18,6 +18,8 @@ package com.foursquare.presto.h3;
 import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.deserialize;
 import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.serialize;
 import static com.facebook.presto.geospatial.type.GeometryType.GEOMETRY_TYPE_NAME;
+import static org.locationtech.jts.geom.Geometry.TYPENAME_GEOMETRYCOLLECTION;
+import static org.locationtech.jts.geom.Geometry.TYPENAME_MULTIPOLYGON;
 import static org.locationtech.jts.geom.Geometry.TYPENAME_POLYGON;
 
 import com.facebook.presto.common.block.Block;
@@ -26,13 +28,17 @@ import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
+import com.foursquare.presto.h3.RejectedRows.Reason;
 import com.uber.h3core.util.LatLng;
 import io.airlift.slice.Slice;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LinearRing;
@@ -41,37 +47,340 @@ import org.locationtech.jts.geom.Polygon;
 
 /** Functions wrapping https://h3geo.org/docs/api/regions */
 public final class RegionFunctions {
+  private static final FunctionMetrics POLYGON_TO_CELLS =
+      FunctionMetrics.forFunction(RegionFunctions.class, "h3_polygon_to_cells");
+  private static final FunctionMetrics POLYGON_TO_CELLS_PART_COUNT =
+      FunctionMetrics.forFunction(RegionFunctions.class, "h3_polygon_to_cells_part_count");
+  private static final FunctionMetrics POLYGON_TO_CELLS_COMPACT =
+      FunctionMetrics.forFunction(RegionFunctions.class, "h3_polygon_to_cells_compact");
+  private static final FunctionMetrics CELLS_TO_MULTI_POLYGON =
+      FunctionMetrics.forFunction(RegionFunctions.class, "h3_cells_to_multi_polygon");
+  /** Fewer parts than this are filled one after another, each possibly in parallel bands. */
+  private static final int MIN_PARALLEL_PARTS = 4;
+  /** The most elements <code>sequence</code> produces, which is how parts are enumerated. */
+  static final int MAX_PART_COUNT = 10000;
+
+  /**
+   * Fills a polygon, or every polygon of a multipolygon or geometry collection. Parts are filled
+   * in parallel if {@link ParallelPolygonToCells} is enabled and there are several, and cells in
+   * more than one part are only returned once.
+   */
   @ScalarFunction(value = "h3_polygon_to_cells")
-  @Description("Convert a polygon to H3 cells")
+  @Description("Convert a polygon or multipolygon to H3 cells")
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block polygonToCells(
       @SqlType(GEOMETRY_TYPE_NAME) Slice polygonSlice, @SqlType(StandardTypes.INTEGER) long res) {
+    long start = POLYGON_TO_CELLS.start();
+    if (!H3Index.isValidResolution(res)) {
+      return POLYGON_TO_CELLS.reject(Reason.INVALID_RESOLUTION);
+    }
+    // Polygons and multipolygons are read directly from the slice, which avoids building JTS
+    // geometries for polygons with many vertices
+    GeometrySlices.PolygonRings polygon = GeometrySlices.readPolygon(polygonSlice);
+    List<GeometrySlices.PolygonRings> parts =
+        polygon == null ? GeometrySlices.readMultiPolygon(polygonSlice) : null;
+    if (polygon == null && parts == null) {
+      Geometry polygonGeomUntyped;
+      try {
+        polygonGeomUntyped = deserialize(polygonSlice);
+      } catch (Exception e) {
+        return POLYGON_TO_CELLS.reject(Reason.INVALID_GEOMETRY);
+      }
+      if (TYPENAME_POLYGON.equals(polygonGeomUntyped.getGeometryType())) {
+        polygon = polygonRings((Polygon) polygonGeomUntyped);
+      } else {
+        List<Polygon> polygons = new ArrayList<>();
+        if (!addPolygons(polygonGeomUntyped, polygons)) {
+          return POLYGON_TO_CELLS.reject(Reason.INVALID_GEOMETRY);
+        }
+        parts = polygonRings(polygons);
+      }
+    }
+    try {
+      long[] cells =
+          polygon != null
+              ? polygonToCells(polygon, (int) res)
+              : polygonRingsToCells(parts, (int) res);
+      return POLYGON_TO_CELLS.end(start, H3Plugin.longArrayToBlock(cells));
+    } catch (Exception e) {
+      return POLYGON_TO_CELLS.reject(Reason.H3_ERROR);
+    }
+  }
+
+  /**
+   * Number of parts for the overload of <code>h3_polygon_to_cells</code> which fills one part of a
+   * polygon, so that each has at most about <code>cells_per_part</code> cells. This is estimated
+   * from the polygon's bounding box, so parts may have fewer cells.
+   */
+  @ScalarFunction(value = "h3_polygon_to_cells_part_count")
+  @Description("Number of parts to fill a polygon in, with at most about the given number of cells")
+  @SqlNullable
+  @SqlType(StandardTypes.INTEGER)
+  public static Long polygonToCellsPartCount(
+      @SqlType(GEOMETRY_TYPE_NAME) Slice polygonSlice,
+      @SqlType(StandardTypes.INTEGER) long res,
+      @SqlType(StandardTypes.BIGINT) long cellsPerPart) {
+    long start = POLYGON_TO_CELLS_PART_COUNT.start();
+    if (!H3Index.isValidResolution(res)) {
+      return POLYGON_TO_CELLS_PART_COUNT.reject(Reason.INVALID_RESOLUTION);
+    }
+    if (cellsPerPart < 1) {
+      return POLYGON_TO_CELLS_PART_COUNT.reject(Reason.INVALID_ARGUMENT);
+    }
+    List<Polygon> parts = new ArrayList<>();
     try {
-      Geometry polygonGeomUntyped = deserialize(polygonSlice);
-      if (!TYPENAME_POLYGON.equals(polygonGeomUntyped.getGeometryType())) {
-        throw new IllegalArgumentException("Invalid polygon geometry");
+      if (!addPolygons(deserialize(polygonSlice), parts)) {
+        return POLYGON_TO_CELLS_PART_COUNT.reject(Reason.INVALID_GEOMETRY);
       }
-      Polygon polygonGeom = (Polygon) polygonGeomUntyped;
-      List<LatLng> polygon = linearRingTolatLngList(polygonGeom.getExteriorRing());
+    } catch (Exception e) {
+      return POLYGON_TO_CELLS_PART_COUNT.reject(Reason.INVALID_GEOMETRY);
+    }
+    try {
+      long estimate = 0;
+      for (Polygon part : parts) {
+        int[] holeSizes = holeSizes(part);
+        estimate +=
+            H3Plugin.h3Primitives.maxPolygonToCellsSize(
+                shellLatLngRadians(part),
+                holeSizes,
+                holesLatLngRadians(part, holeSizes),
+                (int) res);
+      }
+      long partCount = (estimate + cellsPerPart - 1) / cellsPerPart;
+      return POLYGON_TO_CELLS_PART_COUNT.end(
+          start, Math.max(1L, Math.min(partCount, MAX_PART_COUNT)));
+    } catch (Exception e) {
+      return POLYGON_TO_CELLS_PART_COUNT.reject(Reason.H3_ERROR);
+    }
+  }
+
+  /**
+   * Fills one of <code>part_count</code> parts of a polygon, multipolygon or geometry collection,
+   * so that a large polygon can be filled over several rows, e.g. by unnesting <code>sequence(0,
+   * part_count - 1)</code>, rather than as one array. Parts are bands of equal latitude range, and
+   * each cell of the whole polygon is in exactly one part. Only the part is filled, including for
+   * polygons crossing the antimeridian.
+   */
+  @ScalarFunction(value = "h3_polygon_to_cells")
+  @Description("Convert one part of a polygon or multipolygon to H3 cells")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block polygonToCells(
+      @SqlType(GEOMETRY_TYPE_NAME) Slice polygonSlice,
+      @SqlType(StandardTypes.INTEGER) long res,
+      @SqlType(StandardTypes.INTEGER) long part,
+      @SqlType(StandardTypes.INTEGER) long partCount) {
+    long start = POLYGON_TO_CELLS.start();
+    if (!H3Index.isValidResolution(res)) {
+      return POLYGON_TO_CELLS.reject(Reason.INVALID_RESOLUTION);
+    }
+    if (partCount < 1 || partCount > MAX_PART_COUNT || part < 0 || part >= partCount) {
+      return POLYGON_TO_CELLS.reject(Reason.INVALID_ARGUMENT);
+    }
+    Geometry polygonGeomUntyped;
+    List<Polygon> parts = new ArrayList<>();
+    try {
+      polygonGeomUntyped = deserialize(polygonSlice);
+      if (!addPolygons(polygonGeomUntyped, parts)) {
+        return POLYGON_TO_CELLS.reject(Reason.INVALID_GEOMETRY);
+      }
+    } catch (Exception e) {
+      return POLYGON_TO_CELLS.reject(Reason.INVALID_GEOMETRY);
+    }
+    try {
+      Envelope envelope = polygonGeomUntyped.getEnvelopeInternal();
+      double minLat = Math.toRadians(envelope.getMinY());
+      double maxLat = Math.toRadians(envelope.getMaxY());
+      LongHashSet cellSet = parts.size() > 1 ? new LongHashSet(0) : null;
+      long[] cells = new long[0];
+      for (Polygon polygonGeom : parts) {
+        int[] holeSizes = holeSizes(polygonGeom);
+        cells =
+            ParallelPolygonToCells.polygonToCellsBand(
+                shellLatLngRadians(polygonGeom),
+                holeSizes,
+                holesLatLngRadians(polygonGeom, holeSizes),
+                (int) res,
+                minLat,
+                maxLat,
+                (int) part,
+                (int) partCount);
+        if (cellSet != null) {
+          cellSet.addAll(cells);
+        }
+      }
+      if (cellSet != null) {
+        cells = cellSet.toArray();
+      }
+      return POLYGON_TO_CELLS.end(start, H3Plugin.longArrayToBlock(cells));
+    } catch (Exception e) {
+      return POLYGON_TO_CELLS.reject(Reason.H3_ERROR);
+    }
+  }
+
+  /**
+   * Adds the non-empty polygons of a multipolygon or geometry collection to <code>parts</code>.
+   * Returns false if there are any other kinds of geometry.
+   */
+  static boolean addPolygons(Geometry geometry, List<Polygon> parts) {
+    switch (geometry.getGeometryType()) {
+      case TYPENAME_POLYGON:
+        if (!geometry.isEmpty()) {
+          parts.add((Polygon) geometry);
+        }
+        return true;
+      case TYPENAME_MULTIPOLYGON:
+      case TYPENAME_GEOMETRYCOLLECTION:
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+          if (!addPolygons(geometry.getGeometryN(i), parts)) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /** Fills each polygon, without duplicates. The result has no unused positions. */
+  static long[] polygonsToCells(List<Polygon> parts, int res) {
+    return polygonRingsToCells(polygonRings(parts), res);
+  }
 
-      List<List<LatLng>> holes =
-          IntStream.range(0, polygonGeom.getNumInteriorRing())
-              .mapToObj(polygonGeom::getInteriorRingN)
-              .map(RegionFunctions::linearRingTolatLngList)
-              .collect(Collectors.toList());
+  private static long[] polygonRingsToCells(List<GeometrySlices.PolygonRings> parts, int res) {
+    if (!ParallelPolygonToCells.isEnabled() || parts.size() < MIN_PARALLEL_PARTS) {
+      // Each part's array is padded to H3's estimate, so it is added and dropped as it is filled
+      LongHashSet cellSet = new LongHashSet(0);
+      for (GeometrySlices.PolygonRings part : parts) {
+        cellSet.addAll(polygonToCells(part, res));
+      }
+      return cellSet.toArray();
+    }
+    List<Callable<long[]>> tasks = new ArrayList<>(parts.size());
+    for (GeometrySlices.PolygonRings part : parts) {
+      tasks.add(() -> polygonToCells(part, res));
+    }
+    List<long[]> partCells = ParallelPolygonToCells.invokeAll(tasks);
+    long expectedSize = 0;
+    for (long[] cells : partCells) {
+      for (long cell : cells) {
+        if (cell != 0) {
+          expectedSize++;
+        }
+      }
+    }
+    if (expectedSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(String.format("size %d is out of range", expectedSize));
+    }
+    LongHashSet cellSet = new LongHashSet((int) expectedSize);
+    for (int i = 0; i < partCells.size(); i++) {
+      cellSet.addAll(partCells.get(i));
+      partCells.set(i, null);
+    }
+    return cellSet.toArray();
+  }
 
-      List<Long> cells = H3Plugin.h3.polygonToCells(polygon, holes, H3Plugin.longToInt(res));
-      return H3Plugin.longListToBlock(cells);
+  /** Fills one polygon. The result may have unused positions, which are 0. */
+  private static long[] polygonToCells(GeometrySlices.PolygonRings polygon, int res) {
+    return ParallelPolygonToCells.isEnabled()
+        ? ParallelPolygonToCells.polygonToCells(
+            polygon.shell, polygon.holeSizes, polygon.holes, res)
+        : H3Plugin.h3Primitives.polygonToCells(
+            polygon.shell, polygon.holeSizes, polygon.holes, res);
+  }
+
+  /**
+   * Same cells as compacting the result of <code>h3_polygon_to_cells</code>, without producing
+   * every cell at the target resolution. Implemented by {@link CompactPolygonToCells}.
+   */
+  @ScalarFunction(value = "h3_polygon_to_cells_compact")
+  @Description("Convert a polygon to compacted H3 cells")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block polygonToCellsCompact(
+      @SqlType(GEOMETRY_TYPE_NAME) Slice polygonSlice, @SqlType(StandardTypes.INTEGER) long res) {
+    long start = POLYGON_TO_CELLS_COMPACT.start();
+    if (!H3Index.isValidResolution(res)) {
+      return POLYGON_TO_CELLS_COMPACT.reject(Reason.INVALID_RESOLUTION);
+    }
+    Geometry polygonGeomUntyped;
+    try {
+      polygonGeomUntyped = deserialize(polygonSlice);
     } catch (Exception e) {
-      return null;
+      return POLYGON_TO_CELLS_COMPACT.reject(Reason.INVALID_GEOMETRY);
+    }
+    if (!TYPENAME_POLYGON.equals(polygonGeomUntyped.getGeometryType())) {
+      return POLYGON_TO_CELLS_COMPACT.reject(Reason.INVALID_GEOMETRY);
+    }
+    try {
+      Polygon polygonGeom = (Polygon) polygonGeomUntyped;
+      int[] holeSizes = holeSizes(polygonGeom);
+      long[] cells =
+          CompactPolygonToCells.polygonToCellsCompact(
+              polygonGeom,
+              shellLatLngRadians(polygonGeom),
+              holeSizes,
+              holesLatLngRadians(polygonGeom, holeSizes),
+              (int) res);
+      return POLYGON_TO_CELLS_COMPACT.end(start, H3Plugin.longArrayToBlock(cells));
+    } catch (Exception e) {
+      return POLYGON_TO_CELLS_COMPACT.reject(Reason.H3_ERROR);
     }
   }
 
-  static List<LatLng> linearRingTolatLngList(LinearRing ring) {
-    return Arrays.stream(ring.getCoordinates())
-        .map(c -> new LatLng(c.getY(), c.getX()))
-        .collect(Collectors.toList());
+  /** The rings of the polygon, as {@link GeometrySlices#readPolygon} reads them. */
+  static GeometrySlices.PolygonRings polygonRings(Polygon polygonGeom) {
+    int[] holeSizes = holeSizes(polygonGeom);
+    return new GeometrySlices.PolygonRings(
+        shellLatLngRadians(polygonGeom), holeSizes, holesLatLngRadians(polygonGeom, holeSizes));
+  }
+
+  private static List<GeometrySlices.PolygonRings> polygonRings(List<Polygon> polygons) {
+    List<GeometrySlices.PolygonRings> parts = new ArrayList<>(polygons.size());
+    for (Polygon polygonGeom : polygons) {
+      parts.add(polygonRings(polygonGeom));
+    }
+    return parts;
+  }
+
+  /** The exterior ring, as interleaved latitude and longitude in radians. */
+  static double[] shellLatLngRadians(Polygon polygonGeom) {
+    LinearRing shell = polygonGeom.getExteriorRing();
+    double[] polygon = new double[shell.getNumPoints() * 2];
+    packLatLngRadians(shell, polygon, 0);
+    return polygon;
+  }
+
+  /** The number of values each interior ring takes in {@link #holesLatLngRadians}. */
+  static int[] holeSizes(Polygon polygonGeom) {
+    int[] holeSizes = new int[polygonGeom.getNumInteriorRing()];
+    for (int i = 0; i < holeSizes.length; i++) {
+      holeSizes[i] = polygonGeom.getInteriorRingN(i).getNumPoints() * 2;
+    }
+    return holeSizes;
+  }
+
+  /** The interior rings, concatenated, as interleaved latitude and longitude in radians. */
+  static double[] holesLatLngRadians(Polygon polygonGeom, int[] holeSizes) {
+    double[] holes = new double[Arrays.stream(holeSizes).sum()];
+    for (int i = 0, offset = 0; i < holeSizes.length; i++) {
+      offset = packLatLngRadians(polygonGeom.getInteriorRingN(i), holes, offset);
+    }
+    return holes;
+  }
+
+  /**
+   * Writes the vertices of the ring into <code>latLngs</code> from <code>offset</code>, as
+   * interleaved latitude and longitude in radians. Returns the offset after the last vertex.
+   */
+  static int packLatLngRadians(LinearRing ring, double[] latLngs, int offset) {
+    CoordinateSequence coordinates = ring.getCoordinateSequence();
+    for (int i = 0; i < coordinates.size(); i++) {
+      latLngs[offset++] = Math.toRadians(coordinates.getY(i));
+      latLngs[offset++] = Math.toRadians(coordinates.getX(i));
+    }
+    return offset;
   }
 
   @ScalarFunction(value = "h3_cells_to_multi_polygon")
@@ -79,32 +388,51 @@ public final class RegionFunctions {
   @SqlNullable
   @SqlType(GEOMETRY_TYPE_NAME)
   public static Slice cellsToMultiPolygon(@SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block h3Block) {
+    long start = CELLS_TO_MULTI_POLYGON.start();
+    long[] cells = H3Plugin.longBlockToArray(h3Block);
+    // Invalid cells (including nulls) or mixed resolutions can crash the native library here,
+    // rather than failing
+    for (long cell : cells) {
+      if (!H3Index.isValidCell(cell)) {
+        return CELLS_TO_MULTI_POLYGON.reject(Reason.INVALID_CELL);
+      }
+      if (H3Index.getResolution(cell) != H3Index.getResolution(cells[0])) {
+        return CELLS_TO_MULTI_POLYGON.reject(Reason.INVALID_RESOLUTION);
+      }
+    }
     try {
-      List<Long> cells = H3Plugin.longBlockToList(h3Block);
-      List<List<List<LatLng>>> multiPolygon = H3Plugin.h3.cellsToMultiPolygon(cells, true);
-
-      GeometryFactory geomFactory = new GeometryFactory();
-
-      Polygon[] polygons =
-          multiPolygon.stream()
-              .map(
-                  polygon ->
-                      geomFactory.createPolygon(
-                          latLngListToLinearRing(geomFactory, polygon.get(0)),
-                          polygon.subList(1, polygon.size()).stream()
-                              .map(ring -> latLngListToLinearRing(geomFactory, ring))
-                              .collect(Collectors.toList())
-                              .toArray(new LinearRing[0])))
-              .collect(Collectors.toList())
-              .toArray(new Polygon[multiPolygon.size()]);
-
-      MultiPolygon result = geomFactory.createMultiPolygon(polygons);
-      return serialize(result);
+      return CELLS_TO_MULTI_POLYGON.end(start, cellsToMultiPolygon(cells));
     } catch (Exception e) {
-      return null;
+      return CELLS_TO_MULTI_POLYGON.reject(Reason.H3_ERROR);
     }
   }
 
+  /**
+   * Builds and serializes the multipolygon of valid cells of one resolution. Also used by {@link
+   * CellsToMultiPolygonAggregation}.
+   */
+  static Slice cellsToMultiPolygon(long[] cells) {
+    List<List<List<LatLng>>> multiPolygon = H3Plugin.h3Primitives.cellsToMultiPolygon(cells, true);
+
+    GeometryFactory geomFactory = new GeometryFactory();
+
+    Polygon[] polygons =
+        multiPolygon.stream()
+            .map(
+                polygon ->
+                    geomFactory.createPolygon(
+                        latLngListToLinearRing(geomFactory, polygon.get(0)),
+                        polygon.subList(1, polygon.size()).stream()
+                            .map(ring -> latLngListToLinearRing(geomFactory, ring))
+                            .collect(Collectors.toList())
+                            .toArray(new LinearRing[0])))
+            .collect(Collectors.toList())
+            .toArray(new Polygon[multiPolygon.size()]);
+
+    MultiPolygon result = geomFactory.createMultiPolygon(polygons);
+    return serialize(result);
+  }
+
   static LinearRing latLngListToLinearRing(GeometryFactory geomFactory, List<LatLng> latLngs) {
     return geomFactory.createLinearRing(
         latLngs.stream()
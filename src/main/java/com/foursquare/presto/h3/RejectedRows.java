@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the rows for which a function returned null because its input was invalid. Functions
+ * check their input before calling H3, so that rejecting a row is a counter increment rather than
+ * an exception; {@link Reason#H3_ERROR} counts the rows H3 still failed on.
+ *
+ * <p>Functions reject rows through their {@link FunctionMetrics}, e.g. <code>
+ * return GRID_DISK.reject(Reason.INVALID_CELL)</code>.
+ */
+final class RejectedRows implements RejectedRowsMBean {
+  enum Reason {
+    INVALID_CELL,
+    INVALID_DIRECTED_EDGE,
+    INVALID_VERTEX,
+    INVALID_RESOLUTION,
+    /** An argument other than an index or resolution is out of range, e.g. a negative k. */
+    INVALID_ARGUMENT,
+    INVALID_UNIT,
+    INVALID_GEOMETRY,
+    H3_ERROR,
+    /** The result would have more cells than the configured maximum. */
+    TOO_LARGE
+  }
+
+  private static final ConcurrentMap<String, RejectedRows> FUNCTIONS = new ConcurrentHashMap<>();
+
+  private final LongAdder[] counts = new LongAdder[Reason.values().length];
+
+  private RejectedRows() {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Returns the counter for the SQL function <code>name</code>, creating and registering it with
+   * JMX if needed. Overloads of a function share a counter.
+   */
+  static RejectedRows forFunction(String name) {
+    return FUNCTIONS.computeIfAbsent(
+        name,
+        n -> {
+          RejectedRows rejectedRows = new RejectedRows();
+          H3Plugin.registerMBean("type=RejectedRows,name=" + n, rejectedRows);
+          return rejectedRows;
+        });
+  }
+
+  /** Counts a rejected row. Returns null, for the function to return as its result. */
+  <T> T reject(Reason reason) {
+    counts[reason.ordinal()].increment();
+    return null;
+  }
+
+  /**
+   * Counts a rejected row for which the function returns <code>result</code> rather than null, to
+   * keep the result H3 gave for that input before it was checked.
+   */
+  <T> T reject(Reason reason, T result) {
+    counts[reason.ordinal()].increment();
+    return result;
+  }
+
+  long getCount(Reason reason) {
+    return counts[reason.ordinal()].sum();
+  }
+
+  @Override
+  public long getInvalidCell() {
+    return getCount(Reason.INVALID_CELL);
+  }
+
+  @Override
+  public long getInvalidDirectedEdge() {
+    return getCount(Reason.INVALID_DIRECTED_EDGE);
+  }
+
+  @Override
+  public long getInvalidVertex() {
+    return getCount(Reason.INVALID_VERTEX);
+  }
+
+  @Override
+  public long getInvalidResolution() {
+    return getCount(Reason.INVALID_RESOLUTION);
+  }
+
+  @Override
+  public long getInvalidArgument() {
+    return getCount(Reason.INVALID_ARGUMENT);
+  }
+
+  @Override
+  public long getInvalidUnit() {
+    return getCount(Reason.INVALID_UNIT);
+  }
+
+  @Override
+  public long getInvalidGeometry() {
+    return getCount(Reason.INVALID_GEOMETRY);
+  }
+
+  @Override
+  public long getH3Error() {
+    return getCount(Reason.H3_ERROR);
+  }
+
+  @Override
+  public long getTooLarge() {
+    return getCount(Reason.TOO_LARGE);
+  }
+
+  @Override
+  public long getTotal() {
+    long total = 0;
+    for (LongAdder count : counts) {
+      total += count.sum();
+    }
+    return total;
+  }
+}
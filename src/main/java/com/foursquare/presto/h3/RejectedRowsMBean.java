@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+/**
+ * Counts of the rows for which a function returned null because of invalid input, by reason. One
+ * of these is registered for each function, as <code>
+ * com.foursquare.presto.h3:type=RejectedRows,name=&lt;function name&gt;</code>.
+ */
+public interface RejectedRowsMBean {
+  long getInvalidCell();
+
+  long getInvalidDirectedEdge();
+
+  long getInvalidVertex();
+
+  long getInvalidResolution();
+
+  long getInvalidArgument();
+
+  long getInvalidUnit();
+
+  long getInvalidGeometry();
+
+  /** Rows which passed the checks made by the plugin, but which H3 reported as invalid. */
+  long getH3Error();
+
+  /** Rows for which the result would have been larger than allowed by configuration. */
+  long getTooLarge();
+
+  long getTotal();
+}
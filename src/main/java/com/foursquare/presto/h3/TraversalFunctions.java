@@ -16,33 +16,107 @@
 package com.foursquare.presto.h3;
 
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.LongArrayBlock;
 import com.facebook.presto.common.type.StandardTypes;
 import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
+import com.foursquare.presto.h3.RejectedRows.Reason;
 import com.google.common.collect.ImmutableList;
 import com.uber.h3core.util.CoordIJ;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 /** Wraps https://h3geo.org/docs/api/traversal */
 public final class TraversalFunctions {
+  private static final FunctionMetrics GRID_DISK =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_disk");
+  private static final FunctionMetrics GRID_DISK_COMPACT =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_disk_compact");
+  private static final FunctionMetrics GRID_DISK_DISTANCES =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_disk_distances");
+  private static final FunctionMetrics GRID_DISK_UNSAFE =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_disk_unsafe");
+  private static final FunctionMetrics GRID_DISK_DISTANCES_UNSAFE =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_disk_distances_unsafe");
+  private static final FunctionMetrics GRID_RING_UNSAFE =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_ring_unsafe");
+  private static final FunctionMetrics GRID_PATH_CELLS =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_path_cells");
+  private static final FunctionMetrics GRID_DISTANCE =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_distance");
+  private static final FunctionMetrics GRID_DISTANCES =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_distances");
+  private static final FunctionMetrics CELL_TO_LOCAL_IJ =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_cell_to_local_ij");
+  private static final FunctionMetrics LOCAL_IJ_TO_CELL =
+      FunctionMetrics.forFunction(TraversalFunctions.class, "h3_local_ij_to_cell");
+
   @ScalarFunction(value = "h3_grid_disk")
   @Description("Finds all nearby cells in a disk around the origin")
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridDisk(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    long start = GRID_DISK.start();
+    Reason invalid = checkGridArguments(origin, k);
+    if (invalid == Reason.INVALID_CELL) {
+      // As for H3, the disk around an invalid cell is empty
+      return GRID_DISK.reject(invalid, H3Plugin.longArrayToBlock(new long[0]));
+    } else if (invalid != null) {
+      return GRID_DISK.reject(invalid);
+    }
     try {
-      List<Long> disk = H3Plugin.h3.gridDisk(origin, H3Plugin.longToInt(k));
-      return H3Plugin.longListToBlock(disk);
+      long[] disk = H3Plugin.h3Primitives.gridDisk(origin, (int) k);
+      return GRID_DISK.end(start, H3Plugin.longArrayToBlock(disk));
     } catch (Exception e) {
-      return null;
+      return GRID_DISK.reject(Reason.H3_ERROR);
     }
   }
 
-  // TODO: gridDiskDistances
+  @ScalarFunction(value = "h3_grid_disk_compact")
+  @Description("Finds all nearby cells in a disk around the origin, compacted")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block gridDiskCompact(
+      @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    long start = GRID_DISK_COMPACT.start();
+    Reason invalid = checkGridArguments(origin, k);
+    if (invalid == Reason.INVALID_CELL) {
+      // As for h3_grid_disk
+      return GRID_DISK_COMPACT.reject(invalid, H3Plugin.longArrayToBlock(new long[0]));
+    } else if (invalid != null) {
+      return GRID_DISK_COMPACT.reject(invalid);
+    }
+    try {
+      long[] cells = CompactGridDisk.gridDiskCompact(origin, (int) k);
+      return GRID_DISK_COMPACT.end(start, H3Plugin.longArrayToBlock(cells));
+    } catch (Exception e) {
+      return GRID_DISK_COMPACT.reject(Reason.H3_ERROR);
+    }
+  }
+
+  @ScalarFunction(value = "h3_grid_disk_distances")
+  @Description("Finds all nearby cells in a disk around the origin, as one array per distance")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_ARRAY_BIGINT)
+  public static Block gridDiskDistances(
+      @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    long start = GRID_DISK_DISTANCES.start();
+    Reason invalid = checkGridArguments(origin, k);
+    if (invalid != null) {
+      return GRID_DISK_DISTANCES.reject(invalid);
+    }
+    try {
+      // Throws before allocating the offsets if the disk is too large
+      H3Plugin.h3Primitives.maxGridDiskSize((int) k);
+      int[] offsets = new int[(int) k + 2];
+      long[] disk = H3Plugin.h3Primitives.gridDiskDistances(origin, (int) k, offsets);
+      return GRID_DISK_DISTANCES.end(start, H3Plugin.longArraysToBlock(disk, offsets));
+    } catch (Exception e) {
+      return GRID_DISK_DISTANCES.reject(Reason.H3_ERROR);
+    }
+  }
 
   @ScalarFunction(value = "h3_grid_disk_unsafe")
   @Description(
@@ -51,19 +125,44 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridDiskUnsafe(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    long start = GRID_DISK_UNSAFE.start();
+    Reason invalid = checkGridArguments(origin, k);
+    if (invalid != null) {
+      return GRID_DISK_UNSAFE.reject(invalid);
+    }
     try {
-      List<Long> disk =
-          H3Plugin.h3.gridDiskUnsafe(origin, H3Plugin.longToInt(k)).stream()
-              .flatMap(List::stream)
-              .collect(Collectors.toList());
-      return H3Plugin.longListToBlock(disk);
+      long[] disk = H3Plugin.h3Primitives.gridDiskUnsafe(origin, (int) k);
+      return GRID_DISK_UNSAFE.end(start, H3Plugin.longArrayToBlock(disk));
     } catch (Exception e) {
-      return null;
+      return GRID_DISK_UNSAFE.reject(Reason.H3_ERROR);
     }
   }
 
-  // TODO: gridDiskDistancesUnsafe
-  // TODO: gridDiskDistancesSafe
+  @ScalarFunction(value = "h3_grid_disk_distances_unsafe")
+  @Description(
+      "Efficiently finds all nearby cells in a disk around the origin, as one array per distance,"
+          + " but will return null if a pentagon is encountered")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_ARRAY_BIGINT)
+  public static Block gridDiskDistancesUnsafe(
+      @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    long start = GRID_DISK_DISTANCES_UNSAFE.start();
+    Reason invalid = checkGridArguments(origin, k);
+    if (invalid != null) {
+      return GRID_DISK_DISTANCES_UNSAFE.reject(invalid);
+    }
+    try {
+      // The unsafe disk is in order of distance, and every ring is full
+      long[] disk = H3Plugin.h3Primitives.gridDiskUnsafe(origin, (int) k);
+      int[] offsets = new int[(int) k + 2];
+      for (int d = 1; d < offsets.length; d++) {
+        offsets[d] = 3 * d * (d - 1) + 1;
+      }
+      return GRID_DISK_DISTANCES_UNSAFE.end(start, H3Plugin.longArraysToBlock(disk, offsets));
+    } catch (Exception e) {
+      return GRID_DISK_DISTANCES_UNSAFE.reject(Reason.H3_ERROR);
+    }
+  }
 
   @ScalarFunction(value = "h3_grid_ring_unsafe")
   @Description(
@@ -72,11 +171,16 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridRingUnsafe(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.INTEGER) long k) {
+    long start = GRID_RING_UNSAFE.start();
+    Reason invalid = checkGridArguments(origin, k);
+    if (invalid != null) {
+      return GRID_RING_UNSAFE.reject(invalid);
+    }
     try {
-      List<Long> disk = H3Plugin.h3.gridRingUnsafe(origin, H3Plugin.longToInt(k));
-      return H3Plugin.longListToBlock(disk);
+      long[] ring = H3Plugin.h3Primitives.gridRingUnsafe(origin, (int) k);
+      return GRID_RING_UNSAFE.end(start, H3Plugin.longArrayToBlock(ring));
     } catch (Exception e) {
-      return null;
+      return GRID_RING_UNSAFE.reject(Reason.H3_ERROR);
     }
   }
 
@@ -86,11 +190,16 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block gridPathCells(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long destination) {
+    long start = GRID_PATH_CELLS.start();
+    Reason invalid = H3Plugin.checkCellPair(origin, destination);
+    if (invalid != null) {
+      return GRID_PATH_CELLS.reject(invalid);
+    }
     try {
-      List<Long> path = H3Plugin.h3.gridPathCells(origin, destination);
-      return H3Plugin.longListToBlock(path);
+      long[] path = H3Plugin.h3Primitives.gridPathCells(origin, destination);
+      return GRID_PATH_CELLS.end(start, H3Plugin.longArrayToBlock(path));
     } catch (Exception e) {
-      return null;
+      return GRID_PATH_CELLS.reject(Reason.H3_ERROR);
     }
   }
 
@@ -100,11 +209,60 @@ public final class TraversalFunctions {
   @SqlType(StandardTypes.BIGINT)
   public static Long gridDistance(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long destination) {
+    long start = GRID_DISTANCE.start();
+    Reason invalid = H3Plugin.checkCellPair(origin, destination);
+    if (invalid != null) {
+      return GRID_DISTANCE.reject(invalid);
+    }
+    try {
+      return GRID_DISTANCE.end(start, H3Plugin.h3.gridDistance(origin, destination));
+    } catch (Exception e) {
+      return GRID_DISTANCE.reject(Reason.H3_ERROR);
+    }
+  }
+
+  @ScalarFunction(value = "h3_grid_distances")
+  @Description("Finds distances in grid cells between origin and each destination")
+  @SqlNullable
+  @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
+  public static Block gridDistances(
+      @SqlType(StandardTypes.BIGINT) long origin,
+      @SqlType(H3Plugin.TYPE_ARRAY_BIGINT) Block destinationsBlock) {
+    long start = GRID_DISTANCES.start();
+    if (!H3Index.isValidCell(origin)) {
+      return GRID_DISTANCES.reject(Reason.INVALID_CELL);
+    }
+    int res = H3Index.getResolution(origin);
+    int count = destinationsBlock.getPositionCount();
+    long[] distances = new long[count];
+    boolean[] nulls = new boolean[count];
+    boolean anyNull = false;
+    // As gridDistance, from local IJ coordinates, but finding those of the origin only once
+    int[] originIj = new int[2];
+    int[] ij = new int[2];
     try {
-      return H3Plugin.h3.gridDistance(origin, destination);
+      H3Plugin.h3Primitives.cellToLocalIj(origin, origin, originIj);
     } catch (Exception e) {
-      return null;
+      return GRID_DISTANCES.reject(Reason.H3_ERROR);
+    }
+    for (int i = 0; i < count; i++) {
+      long destination = destinationsBlock.isNull(i) ? 0 : destinationsBlock.getLong(i);
+      boolean found = false;
+      if (H3Index.isValidCell(destination) && H3Index.getResolution(destination) == res) {
+        try {
+          H3Plugin.h3Primitives.cellToLocalIj(origin, destination, ij);
+          distances[i] = ijDistance(ij[0] - originIj[0], ij[1] - originIj[1]);
+          found = true;
+        } catch (Exception e) {
+          // Too far away or across a pentagon, as for h3_grid_distance
+        }
+      }
+      nulls[i] = !found;
+      anyNull |= !found;
     }
+    return GRID_DISTANCES.end(
+        start,
+        new LongArrayBlock(count, anyNull ? Optional.of(nulls) : Optional.empty(), distances));
   }
 
   @ScalarFunction(value = "h3_cell_to_local_ij")
@@ -113,12 +271,17 @@ public final class TraversalFunctions {
   @SqlType(H3Plugin.TYPE_ARRAY_INTEGER)
   public static Block cellToLocalIj(
       @SqlType(StandardTypes.BIGINT) long origin, @SqlType(StandardTypes.BIGINT) long cell) {
+    long start = CELL_TO_LOCAL_IJ.start();
+    Reason invalid = H3Plugin.checkCellPair(origin, cell);
+    if (invalid != null) {
+      return CELL_TO_LOCAL_IJ.reject(invalid);
+    }
     try {
       // TODO: Return as ROW(i INTEGER, j INTEGER)
       CoordIJ ij = H3Plugin.h3.cellToLocalIj(origin, cell);
-      return H3Plugin.intListToBlock(ImmutableList.of(ij.i, ij.j));
+      return CELL_TO_LOCAL_IJ.end(start, H3Plugin.intListToBlock(ImmutableList.of(ij.i, ij.j)));
     } catch (Exception e) {
-      return null;
+      return CELL_TO_LOCAL_IJ.reject(Reason.H3_ERROR);
     }
   }
 
@@ -130,12 +293,38 @@ public final class TraversalFunctions {
       @SqlType(StandardTypes.BIGINT) long origin,
       @SqlType(StandardTypes.INTEGER) long i,
       @SqlType(StandardTypes.INTEGER) long j) {
+    long start = LOCAL_IJ_TO_CELL.start();
+    if (!H3Index.isValidCell(origin)) {
+      return LOCAL_IJ_TO_CELL.reject(Reason.INVALID_CELL);
+    }
     try {
       // TODO: Accept as ROW(i INTEGER, j INTEGER)
-      CoordIJ ij = new CoordIJ(H3Plugin.longToInt(i), H3Plugin.longToInt(j));
-      return H3Plugin.h3.localIjToCell(origin, ij);
+      CoordIJ ij = new CoordIJ((int) i, (int) j);
+      return LOCAL_IJ_TO_CELL.end(start, H3Plugin.h3.localIjToCell(origin, ij));
     } catch (Exception e) {
-      return null;
+      return LOCAL_IJ_TO_CELL.reject(Reason.H3_ERROR);
+    }
+  }
+
+  /**
+   * Distance of an IJ offset in grid cells. The I and J axes are 120 degrees apart, so moving along
+   * both in the same direction takes the larger of the two steps, and otherwise their sum.
+   */
+  private static long ijDistance(int di, int dj) {
+    if ((di >= 0) == (dj >= 0)) {
+      return Math.max(Math.abs(di), Math.abs(dj));
+    }
+    return Math.abs(di) + Math.abs(dj);
+  }
+
+  /** Returns why the origin and k of a disk or ring are invalid, or null if they are valid. */
+  private static Reason checkGridArguments(long origin, long k) {
+    if (!H3Index.isValidCell(origin)) {
+      return Reason.INVALID_CELL;
+    }
+    if (k < 0) {
+      return Reason.INVALID_ARGUMENT;
     }
+    return null;
   }
 }
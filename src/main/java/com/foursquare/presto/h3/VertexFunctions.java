@@ -23,22 +23,37 @@ import com.facebook.presto.spi.function.Description;
 import com.facebook.presto.spi.function.ScalarFunction;
 import com.facebook.presto.spi.function.SqlNullable;
 import com.facebook.presto.spi.function.SqlType;
-import com.uber.h3core.util.LatLng;
+import com.foursquare.presto.h3.RejectedRows.Reason;
 import io.airlift.slice.Slice;
-import java.util.List;
 
 /** Wraps https://h3geo.org/docs/api/vertex */
 public final class VertexFunctions {
+  private static final FunctionMetrics CELL_TO_VERTEX =
+      FunctionMetrics.forFunction(VertexFunctions.class, "h3_cell_to_vertex");
+  private static final FunctionMetrics CELL_TO_VERTEXES =
+      FunctionMetrics.forFunction(VertexFunctions.class, "h3_cell_to_vertexes");
+  private static final FunctionMetrics VERTEX_TO_LAT_LNG =
+      FunctionMetrics.forFunction(VertexFunctions.class, "h3_vertex_to_latlng");
+  private static final FunctionMetrics IS_VALID_VERTEX =
+      FunctionMetrics.forFunction(VertexFunctions.class, "h3_is_valid_vertex");
+
   @ScalarFunction(value = "h3_cell_to_vertex")
   @Description("Finds an index for the specified topological cell vertex")
   @SqlNullable
   @SqlType(StandardTypes.BIGINT)
   public static Long cellToVertex(
       @SqlType(StandardTypes.BIGINT) long cell, @SqlType(StandardTypes.INTEGER) long vertexNum) {
+    long start = CELL_TO_VERTEX.start();
+    if (!H3Index.isValidCell(cell)) {
+      return CELL_TO_VERTEX.reject(Reason.INVALID_CELL);
+    }
+    if (vertexNum < 0 || vertexNum >= (H3Index.isPentagon(cell) ? 5 : 6)) {
+      return CELL_TO_VERTEX.reject(Reason.INVALID_ARGUMENT);
+    }
     try {
-      return H3Plugin.h3.cellToVertex(cell, H3Plugin.longToInt(vertexNum));
+      return CELL_TO_VERTEX.end(start, H3Plugin.h3.cellToVertex(cell, (int) vertexNum));
     } catch (Exception e) {
-      return null;
+      return CELL_TO_VERTEX.reject(Reason.H3_ERROR);
     }
   }
 
@@ -47,11 +62,15 @@ public final class VertexFunctions {
   @SqlNullable
   @SqlType(H3Plugin.TYPE_ARRAY_BIGINT)
   public static Block cellToVertexes(@SqlType(StandardTypes.BIGINT) long cell) {
+    long start = CELL_TO_VERTEXES.start();
+    if (!H3Index.isValidCell(cell)) {
+      return CELL_TO_VERTEXES.reject(Reason.INVALID_CELL);
+    }
     try {
-      List<Long> vertexes = H3Plugin.h3.cellToVertexes(cell);
-      return H3Plugin.longListToBlock(vertexes);
+      long[] vertexes = H3Plugin.h3Primitives.cellToVertexes(cell);
+      return CELL_TO_VERTEXES.end(start, H3Plugin.longArrayToBlock(vertexes));
     } catch (Exception e) {
-      return null;
+      return CELL_TO_VERTEXES.reject(Reason.H3_ERROR);
     }
   }
 
@@ -60,11 +79,16 @@ public final class VertexFunctions {
   @SqlNullable
   @SqlType(GEOMETRY_TYPE_NAME)
   public static Slice vertexToLatLng(@SqlType(StandardTypes.BIGINT) long vertex) {
+    long start = VERTEX_TO_LAT_LNG.start();
+    // Checking validity calls into H3 too, but without the cost of an exception
+    if (!H3Plugin.h3.isValidVertex(vertex)) {
+      return VERTEX_TO_LAT_LNG.reject(Reason.INVALID_VERTEX);
+    }
     try {
-      LatLng latLng = H3Plugin.h3.vertexToLatLng(vertex);
-      return H3Plugin.latLngToGeometry(latLng);
+      double[] latLng = H3Plugin.h3Primitives.vertexToLatLng(vertex);
+      return VERTEX_TO_LAT_LNG.end(start, GeometrySlices.point(latLng[0], latLng[1]));
     } catch (Exception e) {
-      return null;
+      return VERTEX_TO_LAT_LNG.reject(Reason.H3_ERROR);
     }
   }
 
@@ -72,6 +96,7 @@ public final class VertexFunctions {
   @Description("Returns true if this is a valid vertex index")
   @SqlType(StandardTypes.BOOLEAN)
   public static boolean isValidVertex(@SqlType(StandardTypes.BIGINT) long vertex) {
-    return H3Plugin.h3.isValidVertex(vertex);
+    long start = IS_VALID_VERTEX.start();
+    return IS_VALID_VERTEX.end(start, H3Plugin.h3.isValidVertex(vertex));
   }
 }
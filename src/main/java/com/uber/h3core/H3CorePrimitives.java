@@ -0,0 +1,262 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.uber.h3core;
+
+import com.uber.h3core.util.LatLng;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primitive array versions of {@link H3Core} methods, which H3Core only exposes as boxed
+ * collections. This is in H3-Java's package because {@link NativeMethods} is package private.
+ *
+ * <p>Each method makes the same checks as the H3Core method of the same name and returns the
+ * output array of the native call. As in H3-Java, positions in the array which are not used are 0.
+ */
+public final class H3CorePrimitives {
+  private static final int NUM_BASE_CELLS = 122;
+  private static final int NUM_PENTAGONS = 12;
+  private static final int MAX_CELL_BNDRY_VERTS = 10;
+
+  private final NativeMethods h3Api;
+
+  private H3CorePrimitives(NativeMethods h3Api) {
+    this.h3Api = h3Api;
+  }
+
+  /** Loads the native library, as {@link H3Core#newInstance()}. */
+  public static H3CorePrimitives newInstance() throws IOException {
+    return new H3CorePrimitives(H3CoreLoader.loadNatives());
+  }
+
+  public long[] cellToChildren(long h3, int childRes) {
+    checkResolution(childRes);
+    long[] out = new long[longToIntSize(h3Api.cellToChildrenSize(h3, childRes))];
+    h3Api.cellToChildren(h3, childRes, out);
+    return out;
+  }
+
+  public long[] compactCells(long[] h3) {
+    long[] out = new long[h3.length];
+    h3Api.compactCells(h3, out);
+    return out;
+  }
+
+  public long[] uncompactCells(long[] h3, int res) {
+    checkResolution(res);
+    long[] out = new long[longToIntSize(h3Api.uncompactCellsSize(h3, res))];
+    h3Api.uncompactCells(h3, res, out);
+    return out;
+  }
+
+  public long[] gridDisk(long h3, int k) {
+    long[] out = new long[longToIntSize(h3Api.maxGridDiskSize(k))];
+    h3Api.gridDisk(h3, k, out);
+    return out;
+  }
+
+  /** Number of cells in a disk without pentagons, which is an upper bound for any disk. */
+  public int maxGridDiskSize(int k) {
+    return longToIntSize(h3Api.maxGridDiskSize(k));
+  }
+
+  /**
+   * Returns the cells of the disk in order of distance from the origin, which H3Core returns as
+   * one list per distance. The cells at distance <code>d</code> start at <code>offsets[d]</code>,
+   * and <code>offsets</code> must have length <code>k + 2</code> so that it also holds the end.
+   */
+  public long[] gridDiskDistances(long h3, int k, int[] offsets) {
+    int size = maxGridDiskSize(k);
+    long[] cells = new long[size];
+    int[] distances = new int[size];
+    h3Api.gridDiskDistances(h3, k, cells, distances);
+    // Counting sort by distance, skipping unused positions
+    Arrays.fill(offsets, 0);
+    for (int i = 0; i < size; i++) {
+      if (cells[i] != 0) {
+        offsets[distances[i] + 1]++;
+      }
+    }
+    for (int d = 0; d <= k; d++) {
+      offsets[d + 1] += offsets[d];
+    }
+    long[] out = new long[offsets[k + 1]];
+    int[] next = Arrays.copyOf(offsets, k + 1);
+    for (int i = 0; i < size; i++) {
+      if (cells[i] != 0) {
+        out[next[distances[i]]++] = cells[i];
+      }
+    }
+    return out;
+  }
+
+  /** Returns the rings of the disk in order, which H3Core splits into separate lists. */
+  public long[] gridDiskUnsafe(long h3, int k) {
+    long[] out = new long[longToIntSize(h3Api.maxGridDiskSize(k))];
+    h3Api.gridDiskUnsafe(h3, k, out);
+    return out;
+  }
+
+  public long[] gridRingUnsafe(long h3, int k) {
+    long[] out = new long[k == 0 ? 1 : 6 * k];
+    h3Api.gridRingUnsafe(h3, k, out);
+    return out;
+  }
+
+  public long[] gridPathCells(long start, long end) {
+    long[] out = new long[longToIntSize(h3Api.gridPathCellsSize(start, end))];
+    h3Api.gridPathCells(start, end, out);
+    return out;
+  }
+
+  /**
+   * Polygon vertices are interleaved latitude and longitude, in radians. Holes are concatenated
+   * into one array, with the length of each hole's part of that array in <code>holeSizes</code>.
+   */
+  public long[] polygonToCells(double[] polygon, int[] holeSizes, double[] holes, int res) {
+    long[] out =
+        new long[longToIntSize(maxPolygonToCellsSize(polygon, holeSizes, holes, res))];
+    h3Api.polygonToCells(polygon, holeSizes, holes, res, 0, out);
+    return out;
+  }
+
+  /** Upper bound of the number of cells, as used to size the output of polygonToCells. */
+  public long maxPolygonToCellsSize(double[] polygon, int[] holeSizes, double[] holes, int res) {
+    checkResolution(res);
+    return h3Api.maxPolygonToCellsSize(polygon, holeSizes, holes, res, 0);
+  }
+
+  /**
+   * Writes the local IJ coordinates of <code>h3</code> relative to <code>origin</code> into <code>
+   * ij</code>, which must have length 2, so that one array can be reused for many cells.
+   */
+  public void cellToLocalIj(long origin, long h3, int[] ij) {
+    h3Api.cellToLocalIj(origin, h3, ij);
+  }
+
+  public long[] originToDirectedEdges(long h3) {
+    long[] out = new long[6];
+    h3Api.originToDirectedEdges(h3, out);
+    return out;
+  }
+
+  public long[] directedEdgeToCells(long h3) {
+    long[] out = new long[2];
+    h3Api.directedEdgeToCells(h3, out);
+    return out;
+  }
+
+  public long[] cellToVertexes(long h3) {
+    long[] out = new long[6];
+    h3Api.cellToVertexes(h3, out);
+    return out;
+  }
+
+  public long[] getRes0Cells() {
+    long[] out = new long[NUM_BASE_CELLS];
+    h3Api.getRes0Cells(out);
+    return out;
+  }
+
+  public long[] getPentagons(int res) {
+    checkResolution(res);
+    long[] out = new long[NUM_PENTAGONS];
+    h3Api.getPentagons(res, out);
+    return out;
+  }
+
+  /** Returns the center of the cell as latitude and longitude in degrees. */
+  public double[] cellToLatLng(long h3) {
+    return toDegrees(cellToLatLngRadians(h3), 1);
+  }
+
+  /** Returns the center of the cell in radians, exactly as H3 uses it internally. */
+  public double[] cellToLatLngRadians(long h3) {
+    double[] latLng = new double[2];
+    h3Api.cellToLatLng(h3, latLng);
+    return latLng;
+  }
+
+  /** Returns the vertices of the boundary as interleaved latitude and longitude in degrees. */
+  public double[] cellToBoundary(long h3) {
+    double[] verts = new double[MAX_CELL_BNDRY_VERTS * 2];
+    int numVerts = h3Api.cellToBoundary(h3, verts);
+    return toDegrees(verts, numVerts);
+  }
+
+  /** Returns the vertices of the edge as interleaved latitude and longitude in degrees. */
+  public double[] directedEdgeToBoundary(long edge) {
+    double[] verts = new double[MAX_CELL_BNDRY_VERTS * 2];
+    int numVerts = h3Api.directedEdgeToBoundary(edge, verts);
+    return toDegrees(verts, numVerts);
+  }
+
+  /** Returns the vertex as latitude and longitude in degrees. */
+  public double[] vertexToLatLng(long h3) {
+    double[] latLng = new double[2];
+    h3Api.vertexToLatLng(h3, latLng);
+    return toDegrees(latLng, 1);
+  }
+
+  /**
+   * As the H3Core method, but taking the cells as an array. Vertices are in degrees, and loops are
+   * closed if <code>geoJson</code> is true.
+   */
+  public List<List<List<LatLng>>> cellsToMultiPolygon(long[] h3, boolean geoJson) {
+    ArrayList<List<List<LatLng>>> result = new ArrayList<>();
+    h3Api.cellsToLinkedMultiPolygon(h3, result);
+    for (List<List<LatLng>> polygon : result) {
+      for (List<LatLng> loop : polygon) {
+        for (int i = 0; i < loop.size(); i++) {
+          LatLng vertex = loop.get(i);
+          loop.set(i, new LatLng(Math.toDegrees(vertex.lat), Math.toDegrees(vertex.lng)));
+        }
+        if (geoJson && !loop.isEmpty()) {
+          loop.add(loop.get(0));
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void checkResolution(int res) {
+    if (res < 0 || res > 15) {
+      throw new IllegalArgumentException(
+          String.format("resolution %d is out of range (must be 0 <= res <= 15)", res));
+    }
+  }
+
+  /**
+   * Converts the first <code>numVerts</code> vertices of <code>verts</code> from radians to
+   * degrees, in place if there are no unused positions.
+   */
+  private static double[] toDegrees(double[] verts, int numVerts) {
+    double[] degrees = verts.length == numVerts * 2 ? verts : Arrays.copyOf(verts, numVerts * 2);
+    for (int i = 0; i < degrees.length; i++) {
+      degrees[i] = Math.toDegrees(degrees[i]);
+    }
+    return degrees;
+  }
+
+  private static int longToIntSize(long size) {
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(String.format("size %d is out of range", size));
+    }
+    return (int) size;
+  }
+}
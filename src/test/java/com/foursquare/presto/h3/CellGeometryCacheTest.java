@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import io.airlift.slice.Slice;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellGeometryCacheTest {
+  private static final long CELL = 0x85283473fffffffL;
+  private static final long OTHER_CELL = 0x85283477fffffffL;
+
+  @Test
+  public void testDisabled() {
+    CellGeometryCache cache = new CellGeometryCache(0, 0);
+    AtomicInteger calls = new AtomicInteger();
+    assertFalse(cache.isEnabled());
+    cache.get(CELL, cell -> point(calls));
+    cache.get(CELL, cell -> point(calls));
+    assertEquals(2, calls.get());
+    assertEquals(0, cache.getHits());
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testGet() {
+    CellGeometryCache cache = new CellGeometryCache(10, 0);
+    AtomicInteger calls = new AtomicInteger();
+    assertTrue(cache.isEnabled());
+    Slice first = cache.get(CELL, cell -> point(calls));
+    assertSame(first, cache.get(CELL, cell -> point(calls)));
+    assertEquals(1, calls.get());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0.5, cache.getHitRate());
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void testNullNotCached() {
+    CellGeometryCache cache = new CellGeometryCache(10, 0);
+    assertNull(cache.get(CELL, cell -> null));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testEviction() {
+    CellGeometryCache cache = new CellGeometryCache(1, 0);
+    AtomicInteger calls = new AtomicInteger();
+    cache.get(CELL, cell -> point(calls));
+    cache.get(OTHER_CELL, cell -> point(calls));
+    cache.get(CELL, cell -> point(calls));
+    assertEquals(3, calls.get());
+    assertEquals(2, cache.getEvictions());
+    assertEquals(1, cache.getSize());
+  }
+
+  /** Many more cells than fit, so that cells are evicted from anywhere in their segments. */
+  @Test
+  public void testManyCells() {
+    CellGeometryCache cache = new CellGeometryCache(1000, 0);
+    Random random = new Random(0);
+    long[] cells = H3Plugin.h3Primitives.cellToChildren(CELL, 9);
+    for (int i = 0; i < 100000; i++) {
+      long cell = cells[random.nextInt(cells.length)];
+      double[] latLng = H3Plugin.h3Primitives.cellToLatLng(cell);
+      assertEquals(
+          GeometrySlices.point(latLng[0], latLng[1]),
+          cache.get(cell, c -> GeometrySlices.point(latLng[0], latLng[1])));
+    }
+    assertEquals(1000, cache.getSize());
+    assertEquals(cache.getMisses() - 1000, cache.getEvictions());
+    assertTrue(cache.getHits() > 0);
+  }
+
+  @Test
+  public void testExpireAfterAccess() throws InterruptedException {
+    CellGeometryCache cache = new CellGeometryCache(10, 1);
+    AtomicInteger calls = new AtomicInteger();
+    cache.get(CELL, cell -> point(calls));
+    cache.get(CELL, cell -> point(calls));
+    assertEquals(1, calls.get());
+    Thread.sleep(1100);
+    cache.get(CELL, cell -> point(calls));
+    assertEquals(2, calls.get());
+    assertEquals(1, cache.getSize());
+  }
+
+  /** The build enables the cache for tests, except when they are run again without settings. */
+  @Test
+  public void testFunctions() throws JMException {
+    assumeTrue(H3PluginConfig.GEOMETRY_CACHE_SIZE > 0);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name =
+        new ObjectName(H3Plugin.JMX_DOMAIN + ":type=CellGeometryCache,name=h3_cell_to_boundary");
+    // Initializes the function's cache
+    Slice boundary = IndexingFunctions.cellToBoundary(CELL);
+    long hits = (Long) server.getAttribute(name, "Hits");
+    assertEquals(boundary, IndexingFunctions.cellToBoundary(CELL));
+    assertEquals(hits + 1, server.getAttribute(name, "Hits"));
+    assertEquals(GeometrySlices.polygon(H3Plugin.h3Primitives.cellToBoundary(CELL)), boundary);
+  }
+
+  private static Slice point(AtomicInteger calls) {
+    calls.incrementAndGet();
+    return GeometrySlices.point(0, 0);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
+import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.facebook.presto.testing.QueryRunner;
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellSetFunctionsTest {
+  @Test
+  public void testConstructor() {
+    assertNotNull(new CellSetFunctions());
+  }
+
+  @Test
+  public void testCellSet() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_to_array(h3_cell_set(ARRAY[from_base('85283477fffffff', 16), from_base('85283473fffffff', 16), from_base('85283473fffffff', 16), null]))",
+          ImmutableList.of(
+              ImmutableList.of(ImmutableList.of(0x85283473fffffffL, 0x85283477fffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_to_array(h3_cell_set(h3_grid_disk(from_base('85283473fffffff', 16), 20))) = array_sort(h3_grid_disk(from_base('85283473fffffff', 16), 20))",
+          ImmutableList.of(ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_cardinality(h3_cell_set(h3_grid_disk(from_base('85283473fffffff', 16), 20)))",
+          ImmutableList.of(ImmutableList.of(1261L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_cardinality(h3_cell_set(ARRAY[]))",
+          ImmutableList.of(ImmutableList.of(0L)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set(ARRAY[from_base('85283473fffffff', 16), 0])",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set(null)",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_cardinality(from_hex('02'))",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_to_array(from_hex('0102000000'))",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testCellSetContains() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT cell, h3_cell_set_contains(h3_cell_set(h3_grid_disk(from_base('85283473fffffff', 16), 20)), cell) FROM (VALUES from_base('85283473fffffff', 16), from_base('85754e67fffffff', 16), 0) AS t(cell) ORDER BY cell",
+          ImmutableList.of(
+              ImmutableList.of(0L, false),
+              ImmutableList.of(0x85283473fffffffL, true),
+              ImmutableList.of(0x85754e67fffffffL, false)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_contains(from_hex('02'), from_base('85283473fffffff', 16))",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testSetOperations() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_to_array(h3_cell_set_union(a, b)) = array_sort(array_union(h3_grid_disk(x, 10), h3_grid_disk(y, 10))), h3_cell_set_to_array(h3_cell_set_intersection(a, b)) = array_sort(array_intersect(h3_grid_disk(x, 10), h3_grid_disk(y, 10))), h3_cell_set_to_array(h3_cell_set_difference(a, b)) = array_sort(array_except(h3_grid_disk(x, 10), h3_grid_disk(y, 10))) FROM (SELECT x, y, h3_cell_set(h3_grid_disk(x, 10)) a, h3_cell_set(h3_grid_disk(y, 10)) b FROM (VALUES (from_base('85283473fffffff', 16), from_base('85291e6ffffffff', 16))) AS t(x, y))",
+          ImmutableList.of(ImmutableList.of(true, true, true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_cardinality(h3_cell_set_intersection(h3_cell_set(ARRAY[from_base('85283473fffffff', 16)]), h3_cell_set(ARRAY[from_base('85283477fffffff', 16)])))",
+          ImmutableList.of(ImmutableList.of(0L)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_union(h3_cell_set(ARRAY[from_base('85283473fffffff', 16)]), from_hex('02'))",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_intersection(from_hex('02'), h3_cell_set(ARRAY[from_base('85283473fffffff', 16)]))",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_set_difference(h3_cell_set(ARRAY[from_base('85283473fffffff', 16)]), null)",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellSetTest {
+  private static final long CELL = 0x85283473fffffffL;
+  private static final long OTHER_CELL = 0x85283477fffffffL;
+
+  @Test
+  public void testAdd() {
+    Random random = new Random(0);
+    CellSet cells = new CellSet();
+    TreeSet<Long> expected = new TreeSet<>();
+    for (int i = 0; i < 100000; i++) {
+      long cell = H3Plugin.h3.latLngToCell(random.nextDouble() * 2, random.nextDouble() * 2, 7);
+      cells.add(cell);
+      expected.add(cell);
+    }
+    assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), cells.toArray());
+    assertNull(cells.getRejected());
+  }
+
+  @Test
+  public void testReject() {
+    CellSet invalid = new CellSet();
+    invalid.add(CELL);
+    invalid.add(0);
+    invalid.add(OTHER_CELL);
+    assertEquals(Reason.INVALID_CELL, invalid.getRejected());
+    assertEquals(0, invalid.toArray().length);
+
+    CellSet mixed = new CellSet();
+    mixed.add(CELL);
+    mixed.add(H3Index.cellToParent(CELL, 4));
+    assertEquals(Reason.INVALID_RESOLUTION, mixed.getRejected());
+
+    CellSet merged = new CellSet();
+    merged.add(CELL);
+    merged.addAll(invalid);
+    assertEquals(Reason.INVALID_CELL, merged.getRejected());
+
+    CellSet mergedMixed = new CellSet();
+    mergedMixed.add(H3Index.cellToParent(CELL, 4));
+    CellSet valid = new CellSet();
+    valid.add(CELL);
+    mergedMixed.addAll(valid);
+    assertEquals(Reason.INVALID_RESOLUTION, mergedMixed.getRejected());
+  }
+
+  @Test
+  public void testAddAll() {
+    CellSet cells = new CellSet();
+    cells.add(OTHER_CELL);
+    CellSet other = new CellSet();
+    other.add(CELL);
+    other.add(OTHER_CELL);
+    cells.addAll(other);
+    cells.addAll(new CellSet());
+    assertArrayEquals(new long[] {CELL, OTHER_CELL}, cells.toArray());
+    assertArrayEquals(new long[] {CELL, OTHER_CELL}, other.toArray());
+  }
+
+  @Test
+  public void testSerialize() {
+    CellSet cells = new CellSet();
+    cells.add(OTHER_CELL);
+    cells.add(CELL);
+    cells.add(OTHER_CELL);
+    CellSet copy = new CellSet();
+    copy.addSerialized(cells.serialize());
+    assertArrayEquals(new long[] {CELL, OTHER_CELL}, copy.toArray());
+    assertEquals(1 + 2 * Long.BYTES, cells.serialize().length());
+
+    cells.add(0);
+    CellSet rejectedCopy = new CellSet();
+    rejectedCopy.addSerialized(cells.serialize());
+    assertEquals(Reason.INVALID_CELL, rejectedCopy.getRejected());
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
+import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.facebook.presto.testing.QueryRunner;
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CellsToMultiPolygonAggregationTest {
+  private static final long CELL = 0x85283473fffffffL;
+
+  /** Input and combine, as for partial aggregation on two nodes. */
+  @Test
+  public void testCombine() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(CELL, 3);
+    CellSetState first = new CellSetStateFactory().createSingleState();
+    CellSetState second = new CellSetStateFactory().createSingleState();
+    for (int i = 0; i < disk.length; i++) {
+      CellsToMultiPolygonAggregation.input(i % 2 == 0 ? first : second, disk[i]);
+    }
+    // Duplicates
+    CellsToMultiPolygonAggregation.input(second, disk[0]);
+    CellsToMultiPolygonAggregation.combine(first, second);
+    assertEquals(
+        RegionFunctions.cellsToMultiPolygon(H3Plugin.h3Primitives.gridDisk(CELL, 3)),
+        CellsToMultiPolygonAggregation.outputSlice(first.getCells()));
+    assertNull(CellsToMultiPolygonAggregation.outputSlice(null));
+  }
+
+  @Test
+  public void testGroupedState() {
+    CellSetState state = new CellSetStateFactory().createGroupedState();
+    CellSetStateFactory.GroupedCellSetState grouped =
+        (CellSetStateFactory.GroupedCellSetState) state;
+    grouped.ensureCapacity(2);
+    grouped.setGroupId(0);
+    CellsToMultiPolygonAggregation.input(state, CELL);
+    grouped.setGroupId(1);
+    CellsToMultiPolygonAggregation.input(state, 0);
+    assertNull(CellsToMultiPolygonAggregation.outputSlice(state.getCells()));
+    grouped.setGroupId(0);
+    assertEquals(
+        RegionFunctions.cellsToMultiPolygon(new long[] {CELL}),
+        CellsToMultiPolygonAggregation.outputSlice(state.getCells()));
+  }
+
+  @Test
+  public void testAggregation() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT ST_Equals(h3_cells_to_multi_polygon_agg(cell), h3_cells_to_multi_polygon(array_agg(cell))) same FROM UNNEST(h3_grid_disk(from_base('85283473fffffff', 16), 5)) AS t(cell)",
+          ImmutableList.of(ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT g, ST_AsText(h3_cells_to_multi_polygon_agg(cell)) = ST_AsText(h3_cells_to_multi_polygon(array_distinct(array_agg(cell)))) same FROM (VALUES (1, from_base('85283473fffffff', 16)), (1, from_base('85283473fffffff', 16)), (1, from_base('85283477fffffff', 16)), (2, from_base('85283473fffffff', 16))) AS t(g, cell) GROUP BY g ORDER BY g",
+          ImmutableList.of(ImmutableList.of(1, true), ImmutableList.of(2, true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_to_multi_polygon_agg(cell) FROM (VALUES from_base('85283473fffffff', 16), 0) AS t(cell)",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_to_multi_polygon_agg(cell) FROM (VALUES from_base('85283473fffffff', 16), from_base('8428347ffffffff', 16)) AS t(cell)",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_to_multi_polygon_agg(cell) FROM (VALUES from_base('85283473fffffff', 16), null) AS t(cell) WHERE cell IS NULL",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+}
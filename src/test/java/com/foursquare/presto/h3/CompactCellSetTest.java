@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CompactCellSetTest {
+  private static final long CELL = 0x85283473fffffffL;
+  private static final long OTHER_CELL = 0x85283477fffffffL;
+
+  /** The cells as compacted by H3, sorted. */
+  private static long[] compacted(long[] cells) {
+    long[] sorted =
+        Arrays.stream(H3Plugin.h3Primitives.compactCells(cells)).filter(c -> c != 0).toArray();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  private static long[] sorted(long[] cells) {
+    long[] sorted = cells.clone();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  @Test
+  public void testAdd() {
+    for (int k : new int[] {0, 1, 2, 10, 50}) {
+      long[] disk = H3Plugin.h3Primitives.gridDisk(CELL, k);
+      CompactCellSet cells = new CompactCellSet();
+      for (long cell : disk) {
+        cells.add(cell);
+      }
+      assertArrayEquals(compacted(disk), sorted(cells.toArray()), "k " + k);
+      assertNull(cells.getRejected());
+    }
+  }
+
+  @Test
+  public void testAddShuffled() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(CELL, 30);
+    long[] shuffled = disk.clone();
+    Random random = new Random(0);
+    for (int i = shuffled.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      long swap = shuffled[i];
+      shuffled[i] = shuffled[j];
+      shuffled[j] = swap;
+    }
+    CompactCellSet cells = new CompactCellSet();
+    for (long cell : shuffled) {
+      cells.add(cell);
+      // Duplicates, including of cells already compacted into their parent
+      cells.add(shuffled[random.nextInt(shuffled.length)]);
+    }
+    assertArrayEquals(compacted(disk), sorted(cells.toArray()));
+  }
+
+  @Test
+  public void testPentagon() {
+    long pentagon = H3Plugin.h3Primitives.getPentagons(4)[0];
+    long[] children = H3Plugin.h3Primitives.cellToChildren(pentagon, 7);
+    CompactCellSet cells = new CompactCellSet();
+    for (long cell : children) {
+      cells.add(cell);
+    }
+    assertArrayEquals(new long[] {pentagon}, cells.toArray());
+
+    CompactCellSet partial = new CompactCellSet();
+    for (int i = 1; i < children.length; i++) {
+      partial.add(children[i]);
+    }
+    assertArrayEquals(
+        compacted(Arrays.copyOfRange(children, 1, children.length)), sorted(partial.toArray()));
+  }
+
+  @Test
+  public void testAddAll() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(CELL, 20);
+    CompactCellSet first = new CompactCellSet();
+    CompactCellSet second = new CompactCellSet();
+    for (int i = 0; i < disk.length; i++) {
+      (i % 3 == 0 ? first : second).add(disk[i]);
+    }
+    second.add(disk[0]);
+    long[] secondCells = second.toArray();
+    first.addAll(second);
+    first.addAll(new CompactCellSet());
+    assertArrayEquals(compacted(disk), sorted(first.toArray()));
+    assertArrayEquals(secondCells, second.toArray());
+
+    CompactCellSet empty = new CompactCellSet();
+    empty.addAll(second);
+    assertArrayEquals(secondCells, empty.toArray());
+  }
+
+  @Test
+  public void testReject() {
+    CompactCellSet invalid = new CompactCellSet();
+    invalid.add(CELL);
+    invalid.add(0);
+    invalid.add(OTHER_CELL);
+    assertEquals(Reason.INVALID_CELL, invalid.getRejected());
+    assertEquals(0, invalid.toArray().length);
+
+    CompactCellSet mixed = new CompactCellSet();
+    mixed.add(CELL);
+    mixed.add(H3Index.cellToParent(CELL, 4));
+    assertEquals(Reason.INVALID_RESOLUTION, mixed.getRejected());
+
+    CompactCellSet merged = new CompactCellSet();
+    merged.add(CELL);
+    merged.addAll(invalid);
+    assertEquals(Reason.INVALID_CELL, merged.getRejected());
+
+    // Compacted cells are coarser, but the resolution of the added cells must still match
+    CompactCellSet compactedSet = new CompactCellSet();
+    for (long cell : H3Plugin.h3Primitives.cellToChildren(CELL, 6)) {
+      compactedSet.add(cell);
+    }
+    CompactCellSet mergedMixed = new CompactCellSet();
+    mergedMixed.add(CELL);
+    mergedMixed.addAll(compactedSet);
+    assertEquals(Reason.INVALID_RESOLUTION, mergedMixed.getRejected());
+  }
+
+  @Test
+  public void testSerialize() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(CELL, 10);
+    CompactCellSet cells = new CompactCellSet();
+    for (long cell : disk) {
+      cells.add(cell);
+    }
+    CompactCellSet copy = new CompactCellSet();
+    copy.addSerialized(cells.serialize());
+    assertArrayEquals(cells.toArray(), copy.toArray());
+    assertEquals(2 + cells.toArray().length * Long.BYTES, cells.serialize().length());
+
+    // The resolution of the added cells is kept, though the compacted cells are coarser
+    copy.add(H3Index.cellToParent(CELL, 4));
+    assertEquals(Reason.INVALID_RESOLUTION, copy.getRejected());
+
+    CompactCellSet rejectedCopy = new CompactCellSet();
+    rejectedCopy.addSerialized(copy.serialize());
+    assertEquals(Reason.INVALID_RESOLUTION, rejectedCopy.getRejected());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
+import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.facebook.presto.testing.QueryRunner;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CompactCellsAggregationTest {
+  private static final long CELL = 0x85283473fffffffL;
+
+  private static long[] sorted(long[] cells) {
+    long[] sorted = Arrays.stream(cells).filter(c -> c != 0).toArray();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  /** Input and combine, as for partial aggregation on two nodes. */
+  @Test
+  public void testCombine() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(CELL, 5);
+    CompactCellSetState first = new CompactCellSetStateFactory().createSingleState();
+    CompactCellSetState second = new CompactCellSetStateFactory().createSingleState();
+    for (int i = 0; i < disk.length; i++) {
+      CompactCellsAggregation.input(i % 2 == 0 ? first : second, disk[i]);
+    }
+    // Duplicates
+    CompactCellsAggregation.input(second, disk[0]);
+    CompactCellsAggregation.combine(first, second);
+    assertArrayEquals(
+        sorted(H3Plugin.h3Primitives.compactCells(disk)),
+        sorted(CompactCellsAggregation.outputCells(first.getCells())));
+    assertNull(CompactCellsAggregation.outputCells(null));
+  }
+
+  @Test
+  public void testGroupedState() {
+    CompactCellSetState state = new CompactCellSetStateFactory().createGroupedState();
+    CompactCellSetStateFactory.GroupedCompactCellSetState grouped =
+        (CompactCellSetStateFactory.GroupedCompactCellSetState) state;
+    grouped.ensureCapacity(2);
+    grouped.setGroupId(0);
+    CompactCellsAggregation.input(state, CELL);
+    grouped.setGroupId(1);
+    CompactCellsAggregation.input(state, 0);
+    assertNull(CompactCellsAggregation.outputCells(state.getCells()));
+    grouped.setGroupId(0);
+    assertArrayEquals(
+        new long[] {CELL}, CompactCellsAggregation.outputCells(state.getCells()));
+  }
+
+  @Test
+  public void testAggregation() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_compact_cells_agg(cell)) = array_sort(h3_compact_cells(array_agg(cell))) same FROM UNNEST(h3_grid_disk(from_base('85283473fffffff', 16), 10)) AS t(cell)",
+          ImmutableList.of(ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT g, array_sort(h3_compact_cells_agg(cell)) = array_sort(h3_compact_cells(array_distinct(array_agg(cell)))) same FROM (SELECT 1 g, cell FROM UNNEST(h3_cell_to_children(from_base('85283473fffffff', 16), 6)) AS t(cell) UNION ALL SELECT 1, from_base('86283470fffffff', 16) UNION ALL SELECT 2, from_base('86283470fffffff', 16)) GROUP BY g ORDER BY g",
+          ImmutableList.of(ImmutableList.of(1, true), ImmutableList.of(2, true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_cells_agg(cell) FROM (VALUES from_base('85283473fffffff', 16), 0) AS t(cell)",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_cells_agg(cell) FROM (VALUES from_base('85283473fffffff', 16), from_base('8428347ffffffff', 16)) AS t(cell)",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_compact_cells_agg(cell) FROM (VALUES from_base('85283473fffffff', 16), null) AS t(cell) WHERE cell IS NULL",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CompactGridDiskTest {
+  private static long[] sorted(long[] cells) {
+    long[] sorted = Arrays.stream(cells).filter(c -> c != 0).toArray();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  private static void assertCompactDisk(long origin, int k) {
+    long[] disk = sorted(H3Plugin.h3Primitives.gridDisk(origin, k));
+    assertArrayEquals(
+        sorted(H3Plugin.h3Primitives.compactCells(disk)),
+        sorted(CompactGridDisk.gridDiskCompact(origin, k)),
+        Long.toHexString(origin) + " " + k);
+  }
+
+  @Test
+  public void testGridDiskCompact() {
+    Random random = new Random(0);
+    for (int i = 0; i < 40; i++) {
+      double lat = Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+      double lng = random.nextDouble() * 360 - 180;
+      int res = 5 + random.nextInt(6);
+      int k = CompactGridDisk.MIN_FILL_K + random.nextInt(60);
+      assertCompactDisk(H3Plugin.h3.latLngToCell(lat, lng, res), k);
+    }
+    // Small disks
+    assertCompactDisk(0x85283473fffffffL, 0);
+    assertCompactDisk(0x85283473fffffffL, 3);
+  }
+
+  @Test
+  public void testPentagon() {
+    long pentagon = H3Plugin.h3Primitives.getPentagons(7)[3];
+    assertCompactDisk(pentagon, 20);
+    // Close to, but not containing, the pentagon
+    long nearby = H3Plugin.h3.gridDiskDistances(pentagon, 25).get(25).get(0);
+    assertCompactDisk(nearby, 20);
+    assertCompactDisk(nearby, 30);
+  }
+
+  @Test
+  public void testAntimeridianAndPoles() {
+    assertCompactDisk(H3Plugin.h3.latLngToCell(10, 179.99, 7), 40);
+    assertCompactDisk(H3Plugin.h3.latLngToCell(-30, -179.99, 8), 40);
+    assertCompactDisk(H3Plugin.h3.latLngToCell(89.9, 0, 6), 30);
+    assertCompactDisk(H3Plugin.h3.latLngToCell(-89.9, 45, 5), 20);
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+/** Checks {@link CompactPolygonToCells} against compacting the result of polygonToCells. */
+@TestInstance(Lifecycle.PER_CLASS)
+public class CompactPolygonToCellsTest {
+  private static final int SAMPLES = 50;
+
+  private final GeometryFactory geometryFactory = new GeometryFactory();
+
+  private static long[] sorted(long[] cells) {
+    return Arrays.stream(cells).filter(cell -> cell != 0).sorted().toArray();
+  }
+
+  private static void assertSameCells(Polygon polygonGeom, int res) {
+    double[] polygon = RegionFunctions.shellLatLngRadians(polygonGeom);
+    int[] holeSizes = RegionFunctions.holeSizes(polygonGeom);
+    double[] holes = RegionFunctions.holesLatLngRadians(polygonGeom, holeSizes);
+    long[] expected =
+        H3Plugin.h3Primitives.compactCells(
+            sorted(H3Plugin.h3Primitives.polygonToCells(polygon, holeSizes, holes, res)));
+    assertArrayEquals(
+        sorted(expected),
+        sorted(
+            CompactPolygonToCells.polygonToCellsCompact(
+                polygonGeom, polygon, holeSizes, holes, res)),
+        polygonGeom + " at res " + res);
+  }
+
+  /**
+   * Returns a closed ring around the point, in degrees, with vertices at random distances up to
+   * <code>radius</code>, so that it is concave.
+   */
+  private LinearRing ring(Random random, double lat, double lng, double radius, int vertices) {
+    Coordinate[] ring = new Coordinate[vertices + 1];
+    for (int v = 0; v < vertices; v++) {
+      double angle = 2 * Math.PI * v / vertices;
+      double r = radius * (0.2 + 0.8 * random.nextDouble());
+      ring[v] = new Coordinate(lng + r * Math.cos(angle), lat + r * Math.sin(angle));
+    }
+    ring[vertices] = ring[0];
+    return geometryFactory.createLinearRing(ring);
+  }
+
+  @Test
+  public void testRandomPolygons() {
+    Random random = new Random(0);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 340 - 170;
+      Polygon polygon =
+          geometryFactory.createPolygon(ring(random, lat, lng, 1, 3 + random.nextInt(100)));
+      assertSameCells(polygon, 4 + random.nextInt(3));
+    }
+  }
+
+  @Test
+  public void testHoles() {
+    Random random = new Random(1);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 340 - 170;
+      Polygon polygon =
+          geometryFactory.createPolygon(
+              ring(random, lat, lng, 2, 3 + random.nextInt(100)),
+              new LinearRing[] {
+                ring(random, lat + 0.3, lng, 0.2, 3 + random.nextInt(10)),
+                ring(random, lat - 0.3, lng, 0.2, 3 + random.nextInt(10))
+              });
+      assertSameCells(polygon, 5);
+    }
+  }
+
+  /** Large polygons, compacted to coarse resolutions, and polygons around the poles. */
+  @Test
+  public void testLargePolygons() {
+    Random random = new Random(2);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 120 - 60;
+      double lng = random.nextDouble() * 240 - 120;
+      Polygon polygon =
+          geometryFactory.createPolygon(ring(random, lat, lng, 30, 3 + random.nextInt(100)));
+      assertSameCells(polygon, 2 + random.nextInt(2));
+    }
+    for (double lat : new double[] {-85, 85}) {
+      Polygon polygon =
+          geometryFactory.createPolygon(
+              new Coordinate[] {
+                new Coordinate(-170, lat),
+                new Coordinate(0, lat),
+                new Coordinate(170, lat),
+                new Coordinate(170, lat + Math.signum(lat) * 4),
+                new Coordinate(-170, lat + Math.signum(lat) * 4),
+                new Coordinate(-170, lat)
+              });
+      assertSameCells(polygon, 4);
+    }
+  }
+
+  /** Small polygons at fine resolutions, where classified cells are many levels above. */
+  @Test
+  public void testFineResolutions() {
+    Random random = new Random(3);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 340 - 170;
+      int res = 9 + random.nextInt(3);
+      Polygon polygon =
+          geometryFactory.createPolygon(
+              ring(random, lat, lng, 0.1 / (res - 8), 3 + random.nextInt(100)));
+      assertSameCells(polygon, res);
+    }
+  }
+
+  /** Polygons around pentagons, whose descendants are distorted the most. */
+  @Test
+  public void testPentagons() {
+    Random random = new Random(4);
+    for (int res : new int[] {0, 2, 5}) {
+      for (long pentagon : H3Plugin.h3Primitives.getPentagons(res)) {
+        double[] center = H3Plugin.h3Primitives.cellToLatLng(pentagon);
+        Polygon polygon =
+            geometryFactory.createPolygon(
+                ring(random, center[0], center[1], 0.2, 3 + random.nextInt(100)));
+        assertSameCells(polygon, 8 + random.nextInt(2));
+      }
+    }
+  }
+
+  /** Polygons near the poles, where cells are wide in longitude. */
+  @Test
+  public void testNearPoles() {
+    Random random = new Random(5);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = (87 + random.nextDouble() * 2.5) * (random.nextBoolean() ? 1 : -1);
+      double lng = random.nextDouble() * 340 - 170;
+      Polygon polygon =
+          geometryFactory.createPolygon(ring(random, lat, lng, 0.4, 3 + random.nextInt(100)));
+      assertSameCells(polygon, 6 + random.nextInt(3));
+    }
+  }
+
+  /** Polygons crossing the antimeridian and invalid polygons are compacted natively. */
+  @Test
+  public void testFallback() {
+    Polygon antimeridian =
+        geometryFactory.createPolygon(
+            new Coordinate[] {
+              new Coordinate(179, 0),
+              new Coordinate(-179, 0),
+              new Coordinate(-179, 2),
+              new Coordinate(179, 2),
+              new Coordinate(179, 0)
+            });
+    Polygon bowtie =
+        geometryFactory.createPolygon(
+            new Coordinate[] {
+              new Coordinate(0, 0),
+              new Coordinate(1, 1),
+              new Coordinate(1, 0),
+              new Coordinate(0, 1),
+              new Coordinate(0, 0)
+            });
+    for (Polygon polygon : new Polygon[] {antimeridian, bowtie}) {
+      assertSameCells(polygon, 6);
+      assertTrue(
+          CompactPolygonToCells.polygonToCellsCompact(
+                      polygon,
+                      RegionFunctions.shellLatLngRadians(polygon),
+                      new int[0],
+                      new double[0],
+                      6)
+                  .length
+              > 0);
+    }
+  }
+
+  @Test
+  public void testDescendantRadius() {
+    // Every descendant's center at resolution 5, two to five levels down, is within the cap used to
+    // classify the cell
+    long[] cells = H3Plugin.h3Primitives.getRes0Cells();
+    for (int res = 0; res <= 3; res++) {
+      for (long cell : cells) {
+        double[] center = H3Plugin.h3Primitives.cellToLatLngRadians(cell);
+        double cellRadius = CompactPolygonToCells.cellRadius(center, cell);
+        double radius = CompactPolygonToCells.DESCENDANT_RADIUS * cellRadius;
+        for (long descendant : H3Plugin.h3Primitives.cellToChildren(cell, 5)) {
+          double[] descendantCenter = H3Plugin.h3Primitives.cellToLatLngRadians(descendant);
+          assertTrue(
+              CompactPolygonToCells.distance(
+                      center[0], center[1], descendantCenter[0], descendantCenter[1])
+                  <= radius,
+              Long.toHexString(descendant));
+        }
+      }
+      int childRes = res + 1;
+      cells =
+          Arrays.stream(cells)
+              .flatMap(cell -> Arrays.stream(H3Plugin.h3Primitives.cellToChildren(cell, childRes)))
+              .toArray();
+    }
+  }
+}
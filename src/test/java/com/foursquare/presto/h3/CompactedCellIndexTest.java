@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.facebook.presto.common.block.Block;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class CompactedCellIndexTest {
+  private static final long CELL = 0x85283473fffffffL;
+
+  @Test
+  public void testContains() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(H3Index.cellToCenterChild(CELL, 9), 40);
+    long[] compacted = H3Plugin.h3Primitives.compactCells(disk);
+    Set<Long> coverage = new HashSet<>();
+    Arrays.stream(compacted).filter(c -> c != 0).forEach(coverage::add);
+    CompactedCellIndex index = CompactedCellIndex.build(H3Plugin.longArrayToBlock(compacted));
+    assertTrue(index.isValid());
+
+    double[] center = H3Plugin.h3Primitives.cellToLatLng(CELL);
+    Random random = new Random(0);
+    int contained = 0;
+    for (int i = 0; i < 10000; i++) {
+      // Around the edge of the disk, which is about 0.2 degrees across
+      long cell =
+          H3Plugin.h3.latLngToCell(
+              center[0] + (random.nextDouble() - 0.5) * 0.3,
+              center[1] + (random.nextDouble() - 0.5) * 0.3,
+              12);
+      boolean expected = false;
+      for (int r = 0; r <= 12; r++) {
+        expected |= coverage.contains(H3Index.cellToParent(cell, r));
+      }
+      assertEquals(expected, index.contains(cell), Long.toHexString(cell));
+      contained += expected ? 1 : 0;
+    }
+    // Both cases are covered
+    assertTrue(contained > 100 && contained < 9900, "contained " + contained);
+
+    // Coarser than the cells of the set
+    assertFalse(index.contains(H3Index.cellToParent(CELL, 3)));
+    for (long cell : compacted) {
+      if (cell != 0) {
+        assertTrue(index.contains(cell));
+      }
+    }
+  }
+
+  @Test
+  public void testScan() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(H3Index.cellToCenterChild(CELL, 9), 40);
+    Block block = H3Plugin.longArrayToBlock(H3Plugin.h3Primitives.compactCells(disk));
+    CompactedCellIndex index = CompactedCellIndex.build(block);
+    CompactedCellIndex scan = CompactedCellIndex.scan(block);
+    assertTrue(scan.isValid());
+    double[] center = H3Plugin.h3Primitives.cellToLatLng(CELL);
+    Random random = new Random(0);
+    for (int i = 0; i < 1000; i++) {
+      long cell =
+          H3Plugin.h3.latLngToCell(
+              center[0] + (random.nextDouble() - 0.5) * 0.3,
+              center[1] + (random.nextDouble() - 0.5) * 0.3,
+              random.nextInt(13));
+      assertEquals(index.contains(cell), scan.contains(cell), Long.toHexString(cell));
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    assertFalse(
+        CompactedCellIndex.build(H3Plugin.longArrayToBlock(new long[] {CELL, -1})).isValid());
+    CompactedCellIndex empty = CompactedCellIndex.build(H3Plugin.longArrayToBlock(new long[0]));
+    assertTrue(empty.isValid());
+    assertFalse(empty.contains(CELL));
+    assertFalse(
+        CompactedCellIndex.scan(H3Plugin.longArrayToBlock(new long[] {CELL, -1})).isValid());
+    assertFalse(CompactedCellIndex.scan(H3Plugin.longArrayToBlock(new long[0])).contains(CELL));
+  }
+
+  @Test
+  public void testForBlock() {
+    Block block = H3Plugin.longArrayToBlock(new long[] {CELL});
+    // Scanned the first time, and indexed once it repeats
+    assertTrue(CompactedCellIndex.forBlock(block, 1).contains(H3Index.cellToCenterChild(CELL, 10)));
+    CompactedCellIndex index = CompactedCellIndex.forBlock(block, 1);
+    assertSame(index, CompactedCellIndex.forBlock(block, 1));
+    assertTrue(index.contains(H3Index.cellToCenterChild(CELL, 10)));
+
+    // Indexed immediately for several lookups
+    Block other = H3Plugin.longArrayToBlock(new long[] {CELL});
+    CompactedCellIndex otherIndex = CompactedCellIndex.forBlock(other, 2);
+    assertNotSame(index, otherIndex);
+    assertSame(otherIndex, CompactedCellIndex.forBlock(other, 1));
+  }
+
+  @Test
+  public void testForBlockCollected() throws InterruptedException {
+    Block block = H3Plugin.longArrayToBlock(new long[] {CELL});
+    WeakReference<Block> blockRef = new WeakReference<>(block);
+    WeakReference<CompactedCellIndex> indexRef =
+        new WeakReference<>(CompactedCellIndex.forBlock(block, 2));
+    block = null;
+    awaitCollected(blockRef);
+    // Scanning another block drops the index of the collected block
+    CompactedCellIndex.forBlock(H3Plugin.longArrayToBlock(new long[] {CELL}), 1);
+    awaitCollected(indexRef);
+    assertNull(indexRef.get());
+  }
+
+  @Test
+  public void testForBlockLarge() {
+    long[] cells = new long[CompactedCellIndex.MAX_CACHED_CELLS + 1];
+    Arrays.fill(cells, CELL);
+    Block block = H3Plugin.longArrayToBlock(cells);
+    // Indexed for each call rather than kept on the thread
+    CompactedCellIndex index = CompactedCellIndex.forBlock(block, 2);
+    assertTrue(index.contains(H3Index.cellToCenterChild(CELL, 10)));
+    assertNotSame(index, CompactedCellIndex.forBlock(block, 2));
+    assertTrue(CompactedCellIndex.forBlock(block, 1).contains(CELL));
+  }
+
+  private static void awaitCollected(WeakReference<?> ref) throws InterruptedException {
+    for (int i = 0; i < 100 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testForBlockFromColumn() {
+    long[] disk = H3Plugin.h3Primitives.gridDisk(H3Index.cellToCenterChild(CELL, 9), 10);
+    long[] compacted = H3Plugin.h3Primitives.compactCells(disk);
+    CompactedCellIndex expected = CompactedCellIndex.build(H3Plugin.longArrayToBlock(compacted));
+    // An array column is a different region of the same values for each row
+    Block column = H3Plugin.longArrayToBlock(compacted);
+    long outside = H3Index.cellToCenterChild(H3Plugin.h3Primitives.gridRingUnsafe(CELL, 2)[0], 11);
+    for (long cell : new long[] {H3Index.cellToCenterChild(disk[0], 11), outside, CELL}) {
+      Block row = column.getRegion(0, column.getPositionCount());
+      CompactedCellIndex index = CompactedCellIndex.forBlock(row, 1);
+      assertTrue(index.isValid());
+      assertEquals(expected.contains(cell), index.contains(cell), Long.toHexString(cell));
+    }
+    assertFalse(
+        CompactedCellIndex.forBlock(H3Plugin.longArrayToBlock(new long[] {CELL, -1}), 1)
+            .isValid());
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class EncodedCellSetTest {
+  private static final long CELL = 0x85283473fffffffL;
+
+  private static long[] sorted(long[] cells) {
+    long[] sorted = Arrays.stream(cells).filter(c -> c != 0).toArray();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  private static long[] toArray(TreeSet<Long> set) {
+    return set.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /** Random cells near the origin, with sizes on both sides of block boundaries. */
+  private static TreeSet<Long> randomCells(Random random, int count) {
+    TreeSet<Long> cells = new TreeSet<>();
+    while (cells.size() < count) {
+      cells.add(H3Plugin.h3.latLngToCell(random.nextDouble(), random.nextDouble(), 8));
+    }
+    return cells;
+  }
+
+  @Test
+  public void testEncode() {
+    long[] disk = sorted(H3Plugin.h3Primitives.gridDisk(CELL, 30));
+    Slice set = EncodedCellSet.encode(disk);
+    assertArrayEquals(disk, EncodedCellSet.toArray(set));
+    assertEquals(disk.length, EncodedCellSet.cardinality(set));
+    // Shifted deltas between nearby cells of one resolution mostly take 1 byte
+    assertTrue(set.length() < disk.length * 2);
+
+    long[] duplicates = {CELL, CELL, CELL + (1L << 39)};
+    assertArrayEquals(
+        new long[] {CELL, CELL + (1L << 39)},
+        EncodedCellSet.toArray(EncodedCellSet.encode(duplicates)));
+
+    Slice empty = EncodedCellSet.encode(new long[0]);
+    assertEquals(0, EncodedCellSet.cardinality(empty));
+    assertEquals(0, EncodedCellSet.toArray(empty).length);
+    assertFalse(EncodedCellSet.contains(empty, CELL));
+  }
+
+  @Test
+  public void testContains() {
+    long[] disk = sorted(H3Plugin.h3Primitives.gridDisk(CELL, 30));
+    Slice set = EncodedCellSet.encode(disk);
+    for (long cell : disk) {
+      assertTrue(EncodedCellSet.contains(set, cell));
+    }
+    for (long cell : H3Plugin.h3Primitives.gridRingUnsafe(CELL, 31)) {
+      assertFalse(EncodedCellSet.contains(set, cell));
+    }
+    assertFalse(EncodedCellSet.contains(set, 0));
+    assertFalse(EncodedCellSet.contains(set, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testSetOperations() {
+    Random random = new Random(0);
+    int[] sizes = {0, 1, 127, 128, 129, 1000, 5000};
+    for (int sizeA : sizes) {
+      for (int sizeB : sizes) {
+        TreeSet<Long> a = randomCells(random, sizeA);
+        TreeSet<Long> b = randomCells(random, sizeB);
+        // Some shared cells
+        b.addAll(a.headSet(a.isEmpty() ? 0L : a.first() + (a.last() - a.first()) / 3));
+        Slice setA = EncodedCellSet.encode(toArray(a));
+        Slice setB = EncodedCellSet.encode(toArray(b));
+
+        TreeSet<Long> union = new TreeSet<>(a);
+        union.addAll(b);
+        TreeSet<Long> intersection = new TreeSet<>(a);
+        intersection.retainAll(b);
+        TreeSet<Long> difference = new TreeSet<>(a);
+        difference.removeAll(b);
+
+        String message = sizeA + ", " + sizeB;
+        assertArrayEquals(
+            toArray(union), EncodedCellSet.toArray(EncodedCellSet.union(setA, setB)), message);
+        assertArrayEquals(
+            toArray(intersection),
+            EncodedCellSet.toArray(EncodedCellSet.intersection(setA, setB)),
+            message);
+        assertArrayEquals(
+            toArray(difference),
+            EncodedCellSet.toArray(EncodedCellSet.difference(setA, setB)),
+            message);
+      }
+    }
+  }
+
+  @Test
+  public void testMalformed() {
+    Slice set = EncodedCellSet.encode(sorted(H3Plugin.h3Primitives.gridDisk(CELL, 10)));
+    assertThrows(
+        IllegalArgumentException.class, () -> EncodedCellSet.cardinality(Slices.allocate(0)));
+
+    Slice wrongVersion = copy(set, set.length());
+    wrongVersion.setByte(0, 2);
+    assertThrows(IllegalArgumentException.class, () -> EncodedCellSet.toArray(wrongVersion));
+
+    Slice truncated = copy(set, set.length() - 1);
+    assertThrows(IllegalArgumentException.class, () -> EncodedCellSet.toArray(truncated));
+
+    Slice truncatedIndex = copy(set, 20);
+    assertThrows(IllegalArgumentException.class, () -> EncodedCellSet.cardinality(truncatedIndex));
+
+    Slice unsorted = copy(set, set.length());
+    // First index of the second block
+    unsorted.setLong(5 + 13, CELL);
+    assertThrows(IllegalArgumentException.class, () -> EncodedCellSet.toArray(unsorted));
+  }
+
+  private static Slice copy(Slice slice, int length) {
+    Slice copy = Slices.allocate(length);
+    for (int i = 0; i < length; i++) {
+      copy.setByte(i, slice.getByte(i));
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
+import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.testing.QueryRunner;
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import com.google.common.collect.ImmutableList;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Tests of recording require <code>h3.metrics.enabled</code>, which the build sets for tests, and
+ * are skipped when the tests are run again without settings.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class FunctionMetricsTest {
+  @Test
+  public void testEnabled() {
+    assertEquals(
+        Boolean.getBoolean(H3PluginConfig.METRICS_ENABLED_PROPERTY),
+        H3PluginConfig.METRICS_ENABLED);
+  }
+
+  @Test
+  public void testForFunction() {
+    assertSame(
+        FunctionMetrics.forFunction(FunctionMetricsTest.class, "test_for_function"),
+        FunctionMetrics.forFunction(FunctionMetricsTest.class, "test_for_function"));
+  }
+
+  @Test
+  public void testCalls() {
+    assumeTrue(H3PluginConfig.METRICS_ENABLED);
+    FunctionMetrics metrics = FunctionMetrics.forFunction(FunctionMetricsTest.class, "test_calls");
+    Block block = H3Plugin.longArrayToBlock(new long[] {1, 2, 3});
+    for (int i = 0; i < 1000; i++) {
+      assertSame(block, metrics.end(metrics.start(), block));
+    }
+    assertNull(metrics.end(metrics.start(), (Block) null));
+    assertNull(metrics.reject(Reason.H3_ERROR));
+    assertEquals(1002, metrics.getCalls());
+    assertEquals(2, metrics.getNulls());
+    assertEquals(1, metrics.getErrors());
+    // Sampled, so almost certainly at least once in 1000 calls
+    assertTrue(metrics.getLatencySamples() > 0);
+    assertEquals(3, metrics.getCardinalityP50());
+    assertTrue(metrics.getCardinalityHistogram().startsWith("3-3:"));
+  }
+
+  /** When metrics are disabled, as by default, only rejected rows are counted. */
+  @Test
+  public void testDisabled() throws JMException {
+    assumeFalse(H3PluginConfig.METRICS_ENABLED);
+    FunctionMetrics metrics =
+        FunctionMetrics.forFunction(FunctionMetricsTest.class, "test_disabled");
+    Block block = H3Plugin.longArrayToBlock(new long[] {1, 2, 3});
+    for (int i = 0; i < 1000; i++) {
+      assertSame(block, metrics.end(metrics.start(), block));
+    }
+    assertNull(metrics.end(metrics.start(), (Block) null));
+    assertNull(metrics.reject(Reason.H3_ERROR));
+    assertEquals(0, metrics.getCalls());
+    assertEquals(0, metrics.getNulls());
+    assertEquals(0, metrics.getLatencySamples());
+    assertEquals(0, metrics.getCardinalityP50());
+    assertEquals(1, metrics.getErrors());
+    assertFalse(
+        ManagementFactory.getPlatformMBeanServer()
+            .isRegistered(
+                new ObjectName(
+                    H3Plugin.JMX_DOMAIN
+                        + ":type=FunctionMetrics,family=FunctionMetricsTest,name=test_disabled")));
+  }
+
+  @Test
+  public void testFunction() {
+    assumeTrue(H3PluginConfig.METRICS_ENABLED);
+    FunctionMetrics metrics = FunctionMetrics.forFunction(TraversalFunctions.class, "h3_grid_disk");
+    long calls = metrics.getCalls();
+    long nulls = metrics.getNulls();
+    TraversalFunctions.gridDisk(0x85283473fffffffL, 1);
+    TraversalFunctions.gridDisk(0x85283473fffffffL, -1);
+    assertEquals(calls + 2, metrics.getCalls());
+    assertEquals(nulls + 1, metrics.getNulls());
+  }
+
+  @Test
+  public void testMBean() throws JMException {
+    assumeTrue(H3PluginConfig.METRICS_ENABLED);
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_parent(from_base('85283473fffffff', 16), 16)",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+    ObjectName name =
+        new ObjectName(
+            H3Plugin.JMX_DOMAIN
+                + ":type=FunctionMetrics,family=HierarchyFunctions,name=h3_cell_to_parent");
+    Object calls = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Calls");
+    Object nulls = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Nulls");
+    assertTrue((Long) calls >= 1);
+    assertTrue((Long) nulls >= 1);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.deserialize;
+import static com.facebook.presto.geospatial.serde.JtsGeometrySerde.serialize;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.uber.h3core.util.LatLng;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+/** Checks that {@link GeometrySlices} serializes and reads geometries identically to JTS. */
+@TestInstance(Lifecycle.PER_CLASS)
+public class GeometrySlicesTest {
+  private static final int SAMPLES = 10000;
+
+  private final GeometryFactory geometryFactory = new GeometryFactory();
+
+  /** Base cells and pentagons, which have distortion vertices, and random cells. */
+  private static List<Long> cells() {
+    Random random = new Random(0);
+    List<Long> cells = new ArrayList<>(H3Plugin.h3.getRes0Cells());
+    for (int res = 0; res <= H3Index.MAX_RES; res++) {
+      cells.addAll(H3Plugin.h3.getPentagons(res));
+    }
+    for (int i = 0; i < SAMPLES; i++) {
+      cells.add(
+          H3Plugin.h3.latLngToCell(
+              random.nextDouble() * 180 - 90,
+              random.nextDouble() * 360 - 180,
+              random.nextInt(H3Index.MAX_RES + 1)));
+    }
+    return cells;
+  }
+
+  private static Coordinate[] coordinates(List<LatLng> latLngs) {
+    return latLngs.stream().map(ll -> new Coordinate(ll.lng, ll.lat)).toArray(Coordinate[]::new);
+  }
+
+  @Test
+  public void testPoint() {
+    for (long cell : cells()) {
+      LatLng center = H3Plugin.h3.cellToLatLng(cell);
+      assertEquals(
+          serialize(geometryFactory.createPoint(new Coordinate(center.lng, center.lat))),
+          GeometrySlices.point(center.lat, center.lng),
+          Long.toHexString(cell));
+    }
+    assertEquals(
+        serialize(geometryFactory.createPoint(new Coordinate(-0.0, 0.0))),
+        GeometrySlices.point(0.0, -0.0));
+  }
+
+  @Test
+  public void testReadPoint() {
+    for (long cell : cells()) {
+      LatLng center = H3Plugin.h3.cellToLatLng(cell);
+      Slice point = serialize(geometryFactory.createPoint(new Coordinate(center.lng, center.lat)));
+      assertTrue(GeometrySlices.isPoint(point), Long.toHexString(cell));
+      assertEquals(center.lat, GeometrySlices.pointLat(point), Long.toHexString(cell));
+      assertEquals(center.lng, GeometrySlices.pointLng(point), Long.toHexString(cell));
+    }
+    assertFalse(GeometrySlices.isPoint(serialize(geometryFactory.createPoint())));
+    assertFalse(GeometrySlices.isPoint(GeometrySlices.point(-1.0e39, 0)));
+    double[] boundary = H3Plugin.h3Primitives.cellToBoundary(H3Plugin.h3.latLngToCell(0, 0, 5));
+    assertFalse(GeometrySlices.isPoint(GeometrySlices.polygon(boundary)));
+    assertFalse(
+        GeometrySlices.isPoint(
+            serialize(
+                geometryFactory.createLineString(
+                    new Coordinate[] {new Coordinate(0, 0), new Coordinate(1, 1)}))));
+  }
+
+  @Test
+  public void testPolygon() {
+    for (long cell : cells()) {
+      List<LatLng> boundary = H3Plugin.h3.cellToBoundary(cell);
+      double[] latLngs = H3Plugin.h3Primitives.cellToBoundary(cell);
+      boundary.add(boundary.get(0));
+      assertEquals(
+          serialize(geometryFactory.createPolygon(coordinates(boundary))),
+          GeometrySlices.polygon(latLngs),
+          Long.toHexString(cell));
+    }
+  }
+
+  @Test
+  public void testPolygonOrientation() {
+    double[] counterClockwise = {0, 0, 0, 1, 1, 1};
+    double[] clockwise = {0, 0, 1, 1, 0, 1};
+    double[] degenerate = {0, 0, 0, 1, 0, 2};
+    for (double[] latLngs : new double[][] {counterClockwise, clockwise, degenerate}) {
+      List<LatLng> ring = new ArrayList<>();
+      for (int i = 0; i < latLngs.length; i += 2) {
+        ring.add(new LatLng(latLngs[i], latLngs[i + 1]));
+      }
+      ring.add(ring.get(0));
+      assertEquals(
+          serialize(geometryFactory.createPolygon(coordinates(ring))),
+          GeometrySlices.polygon(latLngs));
+    }
+  }
+
+  @Test
+  public void testLineString() {
+    for (long cell : cells()) {
+      for (long edge : H3Plugin.h3.originToDirectedEdges(cell)) {
+        List<LatLng> boundary = H3Plugin.h3.directedEdgeToBoundary(edge);
+        double[] latLngs = H3Plugin.h3Primitives.directedEdgeToBoundary(edge);
+        assertEquals(
+            serialize(geometryFactory.createLineString(coordinates(boundary))),
+            GeometrySlices.lineString(latLngs),
+            Long.toHexString(edge));
+      }
+    }
+  }
+
+  @Test
+  public void testReadPolygon() {
+    for (long cell : cells()) {
+      Slice polygon = GeometrySlices.polygon(H3Plugin.h3Primitives.cellToBoundary(cell));
+      assertPolygonRings(
+          RegionFunctions.polygonRings((Polygon) deserialize(polygon)),
+          GeometrySlices.readPolygon(polygon),
+          Long.toHexString(cell));
+      assertNull(GeometrySlices.readMultiPolygon(polygon));
+    }
+  }
+
+  @Test
+  public void testReadMultiPolygon() {
+    Random random = new Random(0);
+    for (int i = 0; i < SAMPLES / 10; i++) {
+      long cell =
+          H3Plugin.h3.latLngToCell(
+              random.nextDouble() * 120 - 60, random.nextDouble() * 360 - 180, 5);
+      // A polygon with a hole, and a polygon in the hole which is after it
+      HashSet<Long> cells = new HashSet<>(H3Plugin.h3.gridDisk(cell, 3));
+      cells.removeAll(H3Plugin.h3.gridDisk(cell, 1));
+      cells.add(cell);
+      Slice multiPolygon =
+          RegionFunctions.cellsToMultiPolygon(cells.stream().mapToLong(Long::longValue).toArray());
+      Geometry geometry = deserialize(multiPolygon);
+      List<GeometrySlices.PolygonRings> parts = GeometrySlices.readMultiPolygon(multiPolygon);
+      assertNotNull(parts, Long.toHexString(cell));
+      assertEquals(geometry.getNumGeometries(), parts.size(), Long.toHexString(cell));
+      for (int j = 0; j < parts.size(); j++) {
+        assertPolygonRings(
+            RegionFunctions.polygonRings((Polygon) geometry.getGeometryN(j)),
+            parts.get(j),
+            Long.toHexString(cell));
+      }
+      assertNull(GeometrySlices.readPolygon(multiPolygon));
+    }
+  }
+
+  @Test
+  public void testReadPolygonInvalid() {
+    Slice polygon =
+        GeometrySlices.polygon(
+            H3Plugin.h3Primitives.cellToBoundary(H3Plugin.h3.latLngToCell(0, 0, 5)));
+    assertNotNull(GeometrySlices.readPolygon(polygon));
+    assertNull(GeometrySlices.readPolygon(polygon.slice(0, polygon.length() - Double.BYTES)));
+    Slice unclosed = Slices.copyOf(polygon);
+    unclosed.setDouble(unclosed.length() - Double.BYTES, 1.0);
+    assertNull(GeometrySlices.readPolygon(unclosed));
+    assertNull(GeometrySlices.readPolygon(serialize(geometryFactory.createPolygon())));
+    assertNull(GeometrySlices.readPolygon(GeometrySlices.point(0, 0)));
+    assertNull(GeometrySlices.readPolygon(GeometrySlices.lineString(new double[] {0, 0, 1, 1})));
+  }
+
+  private static void assertPolygonRings(
+      GeometrySlices.PolygonRings expected, GeometrySlices.PolygonRings actual, String message) {
+    assertNotNull(actual, message);
+    assertArrayEquals(expected.shell, actual.shell, message);
+    assertArrayEquals(expected.holeSizes, actual.holeSizes, message);
+    assertArrayEquals(expected.holes, actual.holes, message);
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/** Checks {@link H3Index} against the native library on valid, corrupted, and random indexes. */
+@TestInstance(Lifecycle.PER_CLASS)
+public class H3IndexTest {
+  private static final int SAMPLES = 10000;
+
+  private static List<Long> corpus() {
+    Random random = new Random(0);
+    List<Long> corpus = new ArrayList<>();
+    corpus.add(0L);
+    corpus.add(-1L);
+    corpus.addAll(H3Plugin.h3.getRes0Cells());
+    for (int res = 0; res <= H3Index.MAX_RES; res++) {
+      corpus.addAll(H3Plugin.h3.getPentagons(res));
+    }
+    for (int i = 0; i < SAMPLES; i++) {
+      long cell =
+          H3Plugin.h3.latLngToCell(
+              random.nextDouble() * 180 - 90,
+              random.nextDouble() * 360 - 180,
+              random.nextInt(H3Index.MAX_RES + 1));
+      corpus.add(cell);
+      corpus.add(cell ^ (1L << random.nextInt(64)));
+      corpus.add(cell ^ (7L << (3 * random.nextInt(H3Index.MAX_RES))));
+      corpus.add(random.nextLong());
+    }
+    return corpus;
+  }
+
+  private static Long nativeCellToParent(long h3, int res) {
+    try {
+      return H3Plugin.h3.cellToParent(h3, res);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static Long nativeCellToCenterChild(long h3, int res) {
+    try {
+      return H3Plugin.h3.cellToCenterChild(h3, res);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @Test
+  public void testInspection() {
+    for (long h3 : corpus()) {
+      String message = Long.toHexString(h3);
+      assertEquals(H3Plugin.h3.getResolution(h3), H3Index.getResolution(h3), message);
+      assertEquals(H3Plugin.h3.getBaseCellNumber(h3), H3Index.getBaseCellNumber(h3), message);
+      assertEquals(H3Plugin.h3.isValidCell(h3), H3Index.isValidCell(h3), message);
+      assertEquals(H3Plugin.h3.isResClassIII(h3), H3Index.isResClassIII(h3), message);
+      assertEquals(H3Plugin.h3.isPentagon(h3), H3Index.isPentagon(h3), message);
+    }
+  }
+
+  @Test
+  public void testHierarchy() {
+    for (long h3 : corpus()) {
+      for (int res = -1; res <= H3Index.MAX_RES + 1; res++) {
+        String message = Long.toHexString(h3) + " " + res;
+        assertEquals(
+            nativeCellToParent(h3, res), HierarchyFunctions.cellToParent(h3, res), message);
+        assertEquals(
+            nativeCellToCenterChild(h3, res),
+            HierarchyFunctions.cellToCenterChild(h3, res),
+            message);
+      }
+    }
+  }
+
+  @Test
+  public void testChildPos() {
+    List<Long> parents = new ArrayList<>();
+    parents.addAll(H3Plugin.h3.getRes0Cells());
+    parents.addAll(H3Plugin.h3.getPentagons(2));
+    parents.add(0x85283473fffffffL);
+    parents.add(0x8a1c00000007fffL);
+    parents.add(H3Plugin.h3.cellToParent(0x8a1c00000007fffL, 7));
+    for (long parent : parents) {
+      int parentRes = H3Index.getResolution(parent);
+      int maxChildRes = Math.min(parentRes + 3, H3Index.MAX_RES);
+      for (int childRes = parentRes; childRes <= maxChildRes; childRes++) {
+        String message = Long.toHexString(parent) + " " + childRes;
+        List<Long> children = H3Plugin.h3.cellToChildren(parent, childRes);
+        assertEquals(children.size(), H3Index.cellToChildrenSize(parent, childRes), message);
+        for (int pos = 0; pos < children.size(); pos++) {
+          long child = children.get(pos);
+          assertEquals(child, H3Index.childPosToCell(pos, parent, childRes), message);
+          assertEquals(pos, H3Index.cellToChildPos(child, parentRes), message);
+          assertEquals(
+              pos + 1 < children.size() ? children.get(pos + 1) : 0L,
+              H3Index.nextChild(child, parentRes),
+              message);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testChildPosDeep() {
+    for (long cell : corpus()) {
+      if (!H3Index.isValidCell(cell)) {
+        continue;
+      }
+      for (int parentRes = 0; parentRes <= H3Index.getResolution(cell); parentRes++) {
+        String message = Long.toHexString(cell) + " " + parentRes;
+        long parent = H3Index.cellToParent(cell, parentRes);
+        int res = H3Index.getResolution(cell);
+        long pos = H3Index.cellToChildPos(cell, parentRes);
+        assertTrue(pos >= 0 && pos < H3Index.cellToChildrenSize(parent, res), message);
+        assertEquals(cell, H3Index.childPosToCell(pos, parent, res), message);
+      }
+    }
+  }
+
+  @Test
+  public void testIsValidDirectedEdge() {
+    Random random = new Random(0);
+    for (long h3 : corpus()) {
+      List<Long> edges = new ArrayList<>();
+      edges.add(h3);
+      if (H3Plugin.h3.isValidCell(h3)) {
+        for (long edge : H3Plugin.h3.originToDirectedEdges(h3)) {
+          edges.add(edge);
+          edges.add(edge ^ (1L << random.nextInt(64)));
+        }
+      }
+      for (long edge : edges) {
+        assertEquals(
+            H3Plugin.h3.isValidDirectedEdge(edge),
+            H3Index.isValidDirectedEdge(edge),
+            Long.toHexString(edge));
+      }
+    }
+  }
+}
@@ -17,15 +17,18 @@ package com.foursquare.presto.h3;
 
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.testing.MaterializedResult;
 import com.facebook.presto.testing.MaterializedRow;
 import com.facebook.presto.testing.QueryRunner;
 import com.facebook.presto.tests.DistributedQueryRunner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import java.util.Map;
@@ -53,6 +56,27 @@ public class H3PluginTest {
     }
   }
 
+  @Test
+  public void testLongArrayToBlock() {
+    Block block = H3Plugin.longArrayToBlock(new long[] {0, 1, 0, 2, 3});
+    assertEquals(3, block.getPositionCount());
+    assertEquals(1, block.getLong(0));
+    assertEquals(2, block.getLong(1));
+    assertEquals(3, block.getLong(2));
+
+    assertEquals(0, H3Plugin.longArrayToBlock(new long[4]).getPositionCount());
+    assertEquals(0, H3Plugin.longArrayToBlock(new long[0]).getPositionCount());
+  }
+
+  @Test
+  public void testLongBlockToArray() {
+    Block block = H3Plugin.longListToBlock(ImmutableList.of(1L, 2L, 3L));
+    assertArrayEquals(new long[] {1, 2, 3}, H3Plugin.longBlockToArray(block));
+    assertArrayEquals(new long[] {2, 3}, H3Plugin.longBlockToArray(block.getRegion(1, 2)));
+    assertArrayEquals(
+        new long[0], H3Plugin.longBlockToArray(H3Plugin.longListToBlock(ImmutableList.of())));
+  }
+
   public static <T> void assertQueryResults(
       QueryRunner queryRunner, String sql, List<List<T>> expected) {
     MaterializedResult results = queryRunner.execute(sql);
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Checks {@link H3Polygon} against polygonToCells, on the cells it returns and their neighbors,
+ * which have centers close to the polygon's edges.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class H3PolygonTest {
+  private static final int SAMPLES = 50;
+  private static final int[] NO_HOLES = {};
+  private static final double[] NO_HOLE_VERTICES = {};
+
+  private static void assertSameCenters(
+      double[] polygon, int[] holeSizes, double[] holes, int res) {
+    Set<Long> expected = new HashSet<>();
+    for (long cell : H3Plugin.h3Primitives.polygonToCells(polygon, holeSizes, holes, res)) {
+      if (cell != 0) {
+        expected.add(cell);
+      }
+    }
+    H3Polygon h3Polygon = new H3Polygon(polygon, holeSizes, holes);
+    Set<Long> candidates = new HashSet<>();
+    for (long cell : expected) {
+      for (long neighbor : H3Plugin.h3Primitives.gridDisk(cell, 1)) {
+        candidates.add(neighbor);
+      }
+    }
+    for (long cell : candidates) {
+      double[] center = H3Plugin.h3Primitives.cellToLatLngRadians(cell);
+      assertEquals(
+          expected.contains(cell),
+          h3Polygon.contains(center[0], center[1]),
+          Long.toHexString(cell));
+    }
+  }
+
+  /** As in ParallelPolygonToCellsTest, a concave ring in radians. */
+  private static double[] ring(Random random, double lat, double lng, double radius, int vertices) {
+    double[] ring = new double[vertices * 2 + 2];
+    for (int v = 0; v < vertices; v++) {
+      double angle = 2 * Math.PI * v / vertices;
+      double r = radius * (0.2 + 0.8 * random.nextDouble());
+      ring[v * 2] = Math.toRadians(lat + r * Math.sin(angle));
+      ring[v * 2 + 1] = Math.toRadians(lng + r * Math.cos(angle));
+    }
+    ring[vertices * 2] = ring[0];
+    ring[vertices * 2 + 1] = ring[1];
+    return ring;
+  }
+
+  @Test
+  public void testRandomPolygons() {
+    Random random = new Random(0);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 360 - 180;
+      double[] polygon = ring(random, lat, lng, 1, 3 + random.nextInt(1000));
+      assertSameCenters(polygon, NO_HOLES, NO_HOLE_VERTICES, 5 + random.nextInt(2));
+    }
+  }
+
+  @Test
+  public void testHoles() {
+    Random random = new Random(1);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 340 - 170;
+      double[] polygon = ring(random, lat, lng, 2, 3 + random.nextInt(100));
+      double[] hole = ring(random, lat, lng, 0.5, 3 + random.nextInt(10));
+      assertSameCenters(polygon, new int[] {hole.length}, hole, 5);
+    }
+  }
+
+  /** Vertices exactly level with cell centers, which the C library nudges. */
+  @Test
+  public void testVerticesLevelWithCenters() {
+    double[] center = H3Plugin.h3Primitives.cellToLatLngRadians(0x85283473fffffffL);
+    double d = 0.001;
+    double[] polygon = {
+      center[0], center[1] - d,
+      center[0] - d, center[1],
+      center[0], center[1] + d,
+      center[0] + d, center[1],
+      center[0], center[1] - d
+    };
+    assertSameCenters(polygon, NO_HOLES, NO_HOLE_VERTICES, 9);
+    assertTrue(new H3Polygon(polygon, NO_HOLES, NO_HOLE_VERTICES).contains(center[0], center[1]));
+  }
+
+  @Test
+  public void testTransmeridian() {
+    double[] polygon = {0.1, 3.13, 0.1, -3.13, 0.12, -3.13, 0.12, 3.13, 0.1, 3.13};
+    assertTrue(new H3Polygon(polygon, NO_HOLES, NO_HOLE_VERTICES).isTransmeridian());
+    assertSameCenters(polygon, NO_HOLES, NO_HOLE_VERTICES, 6);
+    double[] square = {0, 0, 0, 0.1, 0.1, 0.1, 0.1, 0, 0, 0};
+    H3Polygon h3Square = new H3Polygon(square, NO_HOLES, NO_HOLE_VERTICES);
+    assertFalse(h3Square.isTransmeridian());
+    assertTrue(h3Square.contains(0.05, 0.05));
+    assertFalse(h3Square.contains(0.05, 0.15));
+  }
+}
@@ -17,10 +17,13 @@ package com.foursquare.presto.h3;
 
 import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
 import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import com.facebook.presto.testing.QueryRunner;
 import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
 import java.util.Collections;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -96,6 +99,147 @@ public class HierarchyFunctionsTest {
     }
   }
 
+  @Test
+  public void testCellToChildrenPage() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(from_base('85283473fffffff', 16), 6, 2, 3) hex",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(0x862834717ffffffL, 0x86283471fffffffL, 0x862834727ffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(from_base('85283473fffffff', 16), 6, 5, 10) hex",
+          ImmutableList.of(
+              ImmutableList.of(ImmutableList.of(0x86283472fffffffL, 0x862834737ffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(from_base('85283473fffffff', 16), 6, 7, 10) hex",
+          ImmutableList.of(Collections.singletonList(Collections.emptyList())));
+      // Pages of a pentagon's children:
+      assertQueryResults(
+          queryRunner,
+          "SELECT flatten(transform(sequence(0, h3_cell_to_children_size(from_base('821c07fffffffff', 16), 5) - 1, 50), pos -> h3_cell_to_children(from_base('821c07fffffffff', 16), 5, pos, 50))) = h3_cell_to_children(from_base('821c07fffffffff', 16), 5) same",
+          ImmutableList.of(ImmutableList.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(0, 4, 0, 1) hex",
+          ImmutableList.of(Collections.singletonList(Collections.emptyList())));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(from_base('85283473fffffff', 16), 4, 0, 1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(from_base('85283473fffffff', 16), 6, -1, 1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(from_base('85283473fffffff', 16), 6, 0, -1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      // Larger than h3.uncompact_cells.max_cells
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children(from_base('8001fffffffffff', 16), 15, 0, 2147483647) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testCellToChildrenSize() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children_size(from_base('85283473fffffff', 16), 12) hex",
+          ImmutableList.of(ImmutableList.of(823543L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children_size(from_base('821c07fffffffff', 16), 5) hex",
+          ImmutableList.of(ImmutableList.of(286L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children_size(from_base('8001fffffffffff', 16), 15) hex",
+          ImmutableList.of(ImmutableList.of(4747561509943L)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children_size(0, 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children_size(from_base('85283473fffffff', 16), 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_children_size(from_base('85283473fffffff', 16), 16) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testCellToChildPos() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_child_pos(from_base('86283472fffffff', 16), 5) hex",
+          ImmutableList.of(ImmutableList.of(5L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_child_pos(from_base('86283472fffffff', 16), 6) hex",
+          ImmutableList.of(ImmutableList.of(0L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT transform(h3_cell_to_children(from_base('821c07fffffffff', 16), 4), c -> h3_cell_to_child_pos(c, 2)) = sequence(0, 40) same",
+          ImmutableList.of(ImmutableList.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_child_pos(0, 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_child_pos(from_base('86283472fffffff', 16), 7) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_to_child_pos(from_base('86283472fffffff', 16), -1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testChildPosToCell() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_child_pos_to_cell(5, from_base('85283473fffffff', 16), 6) hex",
+          ImmutableList.of(ImmutableList.of(0x86283472fffffffL)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT transform(sequence(0, 40), pos -> h3_child_pos_to_cell(pos, from_base('821c07fffffffff', 16), 4)) = h3_cell_to_children(from_base('821c07fffffffff', 16), 4) same",
+          ImmutableList.of(ImmutableList.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_child_pos_to_cell(0, 0, 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_child_pos_to_cell(7, from_base('85283473fffffff', 16), 6) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_child_pos_to_cell(-1, from_base('85283473fffffff', 16), 6) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_child_pos_to_cell(0, from_base('85283473fffffff', 16), 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testCellToCenterChild() {
     try (QueryRunner queryRunner = createQueryRunner()) {
@@ -276,4 +420,174 @@ public class HierarchyFunctionsTest {
           ImmutableList.of(Collections.singletonList(null)));
     }
   }
+
+  @Test
+  public void testUncompactCellsSize() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells_size(ARRAY [from_base('85283473fffffff', 16), from_base('85283477fffffff', 16)], 7) hex",
+          ImmutableList.of(ImmutableList.of(98L)));
+      // A pentagon, and null which is skipped:
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells_size(ARRAY [from_base('821c07fffffffff', 16), null, from_base('8001fffffffffff', 16)], 12) hex",
+          ImmutableList.of(ImmutableList.of(235396041L + 13841287201L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells_size(ARRAY [], 5) hex",
+          ImmutableList.of(ImmutableList.of(0L)));
+      // 7^15 children of each base cell, summing to more than fits in a bigint:
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells_size(repeat(from_base('8001fffffffffff', 16), 2000000), 15) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(repeat(from_base('8001fffffffffff', 16), 2000000), 15) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      // Pages can still be read
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_uncompact_cells(repeat(from_base('8001fffffffffff', 16), 2000000), 15, 9000000000000000000, 10)) hex",
+          ImmutableList.of(ImmutableList.of(10L)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells_size(ARRAY [-1], 5) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells_size(ARRAY [from_base('85283473fffffff', 16)], 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells_size(null, 5) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  /** The build limits results to 100000 cells, except when tests are run again without settings. */
+  @Test
+  public void testUncompactCellsMaxCells() {
+    assumeTrue(H3PluginConfig.UNCOMPACT_CELLS_MAX_CELLS == 100000);
+    RejectedRows rejectedRows = RejectedRows.forFunction("h3_uncompact_cells");
+    long tooLarge = rejectedRows.getTooLarge();
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [from_base('8001fffffffffff', 16)], 12) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_uncompact_cells(ARRAY [from_base('85283473fffffff', 16)], 10)) hex",
+          ImmutableList.of(ImmutableList.of(2401L)));
+      // Pages are also limited, however many cells there are in total:
+      assertQueryResults(
+          queryRunner,
+          "SELECT cardinality(h3_uncompact_cells(ARRAY [from_base('8001fffffffffff', 16)], 12, 1000000, 100000)) hex",
+          ImmutableList.of(ImmutableList.of(100000L)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [from_base('8001fffffffffff', 16)], 12, 0, 100001) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+    assertEquals(tooLarge + 2, rejectedRows.getTooLarge());
+  }
+
+  @Test
+  public void testUncompactCellsPage() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [from_base('85283473fffffff', 16), from_base('85283477fffffff', 16)], 7, 47, 3) hex",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(0x872834735ffffffL, 0x872834736ffffffL, 0x872834740ffffffL))));
+      // Pages of cells at several resolutions, a pentagon, and null:
+      assertQueryResults(
+          queryRunner,
+          "SELECT flatten(transform(sequence(0, h3_uncompact_cells_size(cells, 5) - 1, 100), pos -> h3_uncompact_cells(cells, 5, pos, 100))) = h3_uncompact_cells(cells, 5) same FROM (VALUES ARRAY [from_base('821c07fffffffff', 16), null, from_base('832834fffffffff', 16), from_base('85283473fffffff', 16)]) t(cells)",
+          ImmutableList.of(ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [from_base('85283473fffffff', 16)], 6, 7, 3) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of())));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [from_base('85283473fffffff', 16)], 6, -1, 3) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [from_base('85283473fffffff', 16)], 6, 0, -1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_uncompact_cells(ARRAY [-1], 6, 0, 3) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testCellsContain() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT cell, h3_cells_contain(ARRAY [from_base('85283407fffffff', 16), from_base('862834707ffffff', 16)], cell) FROM (VALUES from_base('8c28347000001ff', 16), from_base('8c28340400001ff', 16), from_base('8c28347400001ff', 16), from_base('85283407fffffff', 16)) AS t(cell) ORDER BY cell",
+          ImmutableList.of(
+              ImmutableList.of(0x85283407fffffffL, true),
+              ImmutableList.of(0x8c28340400001ffL, true),
+              ImmutableList.of(0x8c28347000001ffL, true),
+              ImmutableList.of(0x8c28347400001ffL, false)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(h3_compact_cells(h3_grid_disk(from_base('89283082803ffff', 16), 10)), h3_cell_to_center_child(cell, 12)) FROM UNNEST(h3_grid_disk(from_base('89283082803ffff', 16), 11)) AS t(cell) GROUP BY 1 ORDER BY 1",
+          ImmutableList.of(ImmutableList.of(false), ImmutableList.of(true)));
+      // Arrays from a column, which are a different block for each row
+      assertQueryResults(
+          queryRunner,
+          "SELECT id, h3_cells_contain(cells, cell) FROM (VALUES (1, ARRAY [from_base('85283407fffffff', 16), from_base('862834707ffffff', 16)], from_base('8c28347000001ff', 16)), (2, ARRAY [from_base('85283407fffffff', 16), from_base('862834707ffffff', 16)], from_base('8c28347400001ff', 16)), (3, ARRAY [from_base('8428347ffffffff', 16)], from_base('8c28347400001ff', 16)), (4, ARRAY [-1], from_base('8c28347400001ff', 16))) AS t(id, cells, cell) ORDER BY id",
+          ImmutableList.of(
+              ImmutableList.of(1, true),
+              ImmutableList.of(2, false),
+              ImmutableList.of(3, true),
+              Arrays.asList(4, null)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(ARRAY [from_base('8428347ffffffff', 16)], 0)",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(ARRAY [from_base('8428347ffffffff', 16), -1], from_base('85283473fffffff', 16))",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(ARRAY [from_base('8428347ffffffff', 16), null], from_base('85283473fffffff', 16))",
+          ImmutableList.of(ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(null, from_base('85283473fffffff', 16))",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testCellsContainEach() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(ARRAY [from_base('8428347ffffffff', 16)], ARRAY [from_base('85283473fffffff', 16), from_base('85283407fffffff', 16), null, 0])",
+          ImmutableList.of(ImmutableList.of(Arrays.asList(true, false, null, null))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(ARRAY [from_base('8428347ffffffff', 16)], ARRAY [])",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of())));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cells_contain(ARRAY [-1], ARRAY [from_base('85283473fffffff', 16)])",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class HistogramTest {
+  @Test
+  public void testBuckets() {
+    long[] values = {0, 1, 3, 4, 5, 7, 8, 9, 10, 1000, 1L << 40, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = Histogram.bucket(value);
+      String message = Long.toString(value);
+      assertTrue(Histogram.lowerBound(bucket) <= value, message);
+      assertTrue(Histogram.upperBound(bucket) >= value, message);
+    }
+    for (int bucket = 1; bucket <= Histogram.bucket(Long.MAX_VALUE); bucket++) {
+      assertEquals(
+          Histogram.upperBound(bucket - 1) + 1, Histogram.lowerBound(bucket), "bucket " + bucket);
+    }
+    assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)));
+    assertEquals(0, Histogram.bucket(-1));
+  }
+
+  @Test
+  public void testPercentile() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.getPercentile(50));
+    assertEquals("", histogram.toString());
+
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.getCount());
+    // 50 is in the bucket 48-55, and 99 in 96-111
+    assertEquals(55, histogram.getPercentile(50));
+    assertEquals(111, histogram.getPercentile(99));
+    assertEquals(1, histogram.getPercentile(0));
+  }
+
+  @Test
+  public void testToString() {
+    Histogram histogram = new Histogram();
+    histogram.record(0);
+    histogram.record(9);
+    histogram.record(8);
+    assertEquals("0-0:1, 8-9:2", histogram.toString());
+  }
+}
@@ -33,6 +33,15 @@ public class IndexingFunctionsTest {
           queryRunner,
           "SELECT h3_latlng_to_cell(ST_GeometryFromText('POINT (0 10)'), 0) hex",
           ImmutableList.of(ImmutableList.of(0x8059fffffffffffL)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cell(ST_Point(lng, lat), 9) = h3_latlng_to_cell(lat, lng, 9) same FROM (VALUES (10.5, 20.25), (-80, 179.999), (0, 0)) t(lat, lng)",
+          ImmutableList.of(
+              ImmutableList.of(true), ImmutableList.of(true), ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cell(ST_GeometryFromText('POINT EMPTY'), 0) hex",
+          ImmutableList.of(Collections.singletonList(null)));
 
       assertQueryResults(
           queryRunner,
@@ -57,6 +66,56 @@ public class IndexingFunctionsTest {
     }
   }
 
+  @Test
+  public void testLatLngToCells() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(37.775938728915946, -122.41795063018799, ARRAY[5, 7, 9, 11]) hex",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(
+                      0x85283083fffffffL,
+                      0x872830828ffffffL,
+                      0x8928308280fffffL,
+                      0x8b28308280f1fffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(lat, lng, ARRAY[11, 0, 5, 5]) = ARRAY[h3_latlng_to_cell(lat, lng, 11), h3_latlng_to_cell(lat, lng, 0), h3_latlng_to_cell(lat, lng, 5), h3_latlng_to_cell(lat, lng, 5)] same FROM (VALUES (10.5, 20.25), (-80, 179.999), (0, 0)) t(lat, lng)",
+          ImmutableList.of(
+              ImmutableList.of(true), ImmutableList.of(true), ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(ST_GeometryFromText('POINT (0 10)'), ARRAY[0]) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of(0x8059fffffffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(0, 0, ARRAY[]) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of())));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(ST_GeometryFromText('LINESTRING (0 0, 10 0, 0 10)'), ARRAY[0]) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(0, 0, ARRAY[5, 16]) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(0, 0, ARRAY[5, null]) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(0, 0, null) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_latlng_to_cells(nan(), 0, ARRAY[5]) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testCellToLatLng() throws ParseException {
     try (QueryRunner queryRunner = createQueryRunner()) {
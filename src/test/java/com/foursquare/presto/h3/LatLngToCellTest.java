@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.uber.h3core.util.LatLng;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/** Checks {@link LatLngToCell} against the native library on randomized points. */
+@TestInstance(Lifecycle.PER_CLASS)
+public class LatLngToCellTest {
+  private static final int SAMPLES = 100000;
+
+  private static void assertSameCell(double lat, double lng, int res) {
+    assertEquals(
+        H3Plugin.h3.latLngToCell(lat, lng, res),
+        LatLngToCell.latLngToCell(lat, lng, res),
+        lat + " " + lng + " " + res);
+  }
+
+  @Test
+  public void testUniform() {
+    Random random = new Random(0);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = random.nextDouble() * 360 - 180;
+      assertSameCell(lat, lng, random.nextInt(H3Index.MAX_RES + 1));
+    }
+  }
+
+  @Test
+  public void testOutOfRange() {
+    Random random = new Random(1);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = (random.nextDouble() - 0.5) * 1000;
+      double lng = (random.nextDouble() - 0.5) * 3000;
+      assertSameCell(lat, lng, random.nextInt(H3Index.MAX_RES + 1));
+    }
+  }
+
+  @Test
+  public void testNearVertices() {
+    Random random = new Random(2);
+    for (int i = 0; i < SAMPLES; i++) {
+      int res = random.nextInt(H3Index.MAX_RES + 1);
+      long cell =
+          H3Plugin.h3.latLngToCell(
+              random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, res);
+      List<LatLng> boundary = H3Plugin.h3.cellToBoundary(cell);
+      LatLng vertex = boundary.get(random.nextInt(boundary.size()));
+      double offset = Math.pow(10, -4 - random.nextInt(12));
+      assertSameCell(
+          vertex.lat + (random.nextDouble() - 0.5) * offset,
+          vertex.lng + (random.nextDouble() - 0.5) * offset,
+          res);
+    }
+  }
+
+  @Test
+  public void testMultipleResolutions() {
+    Random random = new Random(3);
+    int[] resolutions = new int[H3Index.MAX_RES + 1];
+    for (int res = 0; res <= H3Index.MAX_RES; res++) {
+      // Finest first, and out of order, as they need not be sorted
+      resolutions[res] = (H3Index.MAX_RES - res + 5) % (H3Index.MAX_RES + 1);
+    }
+    long[] cells = new long[resolutions.length];
+    for (int i = 0; i < SAMPLES / 10; i++) {
+      double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double lng = random.nextDouble() * 360 - 180;
+      LatLngToCell.latLngToCells(lat, lng, resolutions, cells);
+      for (int n = 0; n < resolutions.length; n++) {
+        assertEquals(
+            H3Plugin.h3.latLngToCell(lat, lng, resolutions[n]),
+            cells[n],
+            lat + " " + lng + " " + resolutions[n]);
+      }
+    }
+    // Near a face center, which is passed to the native library at every resolution
+    LatLngToCell.latLngToCells(90, 0, resolutions, cells);
+    for (int n = 0; n < resolutions.length; n++) {
+      assertEquals(H3Plugin.h3.latLngToCell(90, 0, resolutions[n]), cells[n]);
+    }
+  }
+
+  @Test
+  public void testSpecialPoints() {
+    for (int res = 0; res <= H3Index.MAX_RES; res++) {
+      assertSameCell(90, 0, res);
+      assertSameCell(-90, 0, res);
+      assertSameCell(0, 180, res);
+      assertSameCell(0, -180, res);
+      assertSameCell(0, 0, res);
+      for (long pentagon : H3Plugin.h3.getPentagons(res)) {
+        LatLng center = H3Plugin.h3.cellToLatLng(pentagon);
+        assertSameCell(center.lat, center.lng, res);
+      }
+    }
+  }
+}
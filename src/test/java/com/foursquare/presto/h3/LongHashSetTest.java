@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class LongHashSetTest {
+  @Test
+  public void testAdd() {
+    LongHashSet set = new LongHashSet(0);
+    assertTrue(set.add(0x85283473fffffffL));
+    assertFalse(set.add(0x85283473fffffffL));
+    assertTrue(set.contains(0x85283473fffffffL));
+    assertFalse(set.contains(0x85283477fffffffL));
+    assertFalse(set.contains(0));
+    assertEquals(1, set.size());
+    assertThrows(IllegalArgumentException.class, () -> set.add(0));
+  }
+
+  /** Compared with a HashSet, growing from empty, with many duplicates. */
+  @Test
+  public void testGrow() {
+    Random random = new Random(0);
+    LongHashSet set = new LongHashSet(0);
+    Set<Long> expected = new HashSet<>();
+    for (int i = 0; i < 100000; i++) {
+      long cell =
+          H3Plugin.h3.latLngToCell(random.nextDouble() * 2, random.nextDouble() * 2, 7);
+      assertEquals(expected.add(cell), set.add(cell));
+    }
+    assertEquals(expected.size(), set.size());
+    long[] values = set.toArray();
+    Arrays.sort(values);
+    assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), values);
+  }
+
+  @Test
+  public void testAddAll() {
+    LongHashSet set = new LongHashSet(4);
+    set.addAll(new long[] {0x85283473fffffffL, 0, 0x85283477fffffffL, 0x85283473fffffffL, 0});
+    assertEquals(2, set.size());
+    long[] values = set.toArray();
+    Arrays.sort(values);
+    assertArrayEquals(new long[] {0x85283473fffffffL, 0x85283477fffffffL}, values);
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/** Checks {@link ParallelPolygonToCells} against filling the whole polygon natively. */
+@TestInstance(Lifecycle.PER_CLASS)
+public class ParallelPolygonToCellsTest {
+  private static final int SAMPLES = 50;
+  private static final int[] NUM_BANDS = {2, 3, 7, 16};
+  private static final int[] NO_HOLES = {};
+  private static final double[] NO_HOLE_VERTICES = {};
+
+  private static long[] sorted(long[] cells) {
+    return Arrays.stream(cells).filter(cell -> cell != 0).sorted().toArray();
+  }
+
+  /** Fills on the pool, so requires parallelism, which the build sets for tests. */
+  private static void assertSameCells(double[] polygon, int[] holeSizes, double[] holes, int res) {
+    assumeTrue(ParallelPolygonToCells.isEnabled());
+    long[] expected = sorted(H3Plugin.h3Primitives.polygonToCells(polygon, holeSizes, holes, res));
+    for (int numBands : NUM_BANDS) {
+      long[] actual =
+          sorted(ParallelPolygonToCells.polygonToCells(polygon, holeSizes, holes, res, numBands));
+      // Also checks that there are no duplicates
+      assertArrayEquals(expected, actual, numBands + " bands at res " + res);
+    }
+  }
+
+  /**
+   * Returns a closed ring around the point, in radians, with vertices at random distances up to
+   * <code>radius</code> degrees, so that it is concave.
+   */
+  private static double[] ring(Random random, double lat, double lng, double radius, int vertices) {
+    double[] ring = new double[vertices * 2 + 2];
+    for (int v = 0; v < vertices; v++) {
+      double angle = 2 * Math.PI * v / vertices;
+      double r = radius * (0.2 + 0.8 * random.nextDouble());
+      ring[v * 2] = Math.toRadians(lat + r * Math.sin(angle));
+      ring[v * 2 + 1] = Math.toRadians(lng + r * Math.cos(angle));
+    }
+    ring[vertices * 2] = ring[0];
+    ring[vertices * 2 + 1] = ring[1];
+    return ring;
+  }
+
+  @Test
+  public void testRandomPolygons() {
+    Random random = new Random(0);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 340 - 170;
+      double[] polygon = ring(random, lat, lng, 1, 3 + random.nextInt(100));
+      assertSameCells(polygon, NO_HOLES, NO_HOLE_VERTICES, 5 + random.nextInt(2));
+    }
+  }
+
+  @Test
+  public void testHoles() {
+    Random random = new Random(1);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 340 - 170;
+      double[] polygon = ring(random, lat, lng, 2, 3 + random.nextInt(100));
+      double[] north = ring(random, lat + 0.3, lng, 0.2, 3 + random.nextInt(10));
+      double[] south = ring(random, lat - 0.3, lng, 0.2, 3 + random.nextInt(10));
+      double[] holes = Arrays.copyOf(north, north.length + south.length);
+      System.arraycopy(south, 0, holes, north.length, south.length);
+      assertSameCells(polygon, new int[] {north.length, south.length}, holes, 5);
+    }
+  }
+
+  @Test
+  public void testAntimeridian() {
+    double[] polygon = ring(new Random(2), 10, 180, 1, 20);
+    boolean east = false;
+    boolean west = false;
+    for (int i = 1; i < polygon.length; i += 2) {
+      // Wrap into [-180, 180], as longitudes from geometries are
+      if (polygon[i] > Math.PI) {
+        polygon[i] -= 2 * Math.PI;
+      }
+      east |= polygon[i] > 0;
+      west |= polygon[i] < 0;
+    }
+    assertTrue(east && west);
+    assertSameCells(polygon, NO_HOLES, NO_HOLE_VERTICES, 7);
+    // Large enough to be banded if it did not cross
+    long[] expected =
+        sorted(H3Plugin.h3Primitives.polygonToCells(polygon, NO_HOLES, NO_HOLE_VERTICES, 9));
+    assertTrue(expected.length > 0);
+    assertArrayEquals(
+        expected,
+        sorted(ParallelPolygonToCells.polygonToCells(polygon, NO_HOLES, NO_HOLE_VERTICES, 9)));
+  }
+
+  /** Bands filled separately, as for the parts of h3_polygon_to_cells, have each cell once. */
+  @Test
+  public void testPolygonToCellsBand() {
+    Random random = new Random(3);
+    for (int i = 0; i < SAMPLES; i++) {
+      double lat = random.nextDouble() * 160 - 80;
+      double lng = random.nextDouble() * 340 - 170;
+      double[] polygon = ring(random, lat, lng, 2, 3 + random.nextInt(100));
+      double[] hole = ring(random, lat, lng, 0.5, 3 + random.nextInt(10));
+      int[] holeSizes = {hole.length};
+      long[] expected = sorted(H3Plugin.h3Primitives.polygonToCells(polygon, holeSizes, hole, 5));
+      // Bands between latitudes within the polygon, so that the open ends are also tested
+      double minLat = Math.toRadians(lat - 1);
+      double maxLat = Math.toRadians(lat + 1);
+      int numBands = 1 + random.nextInt(10);
+      long[] actual = new long[0];
+      for (int band = 0; band < numBands; band++) {
+        long[] cells =
+            ParallelPolygonToCells.polygonToCellsBand(
+                polygon, holeSizes, hole, 5, minLat, maxLat, band, numBands);
+        int offset = actual.length;
+        actual = Arrays.copyOf(actual, offset + cells.length);
+        System.arraycopy(cells, 0, actual, offset, cells.length);
+      }
+      assertArrayEquals(expected, sorted(actual), numBands + " bands");
+    }
+  }
+
+  /**
+   * A polygon crossing the antimeridian is filled whole for each band, keeping the band's cells, so
+   * that a polygon overlapping it puts the cells they share in the same band.
+   */
+  @Test
+  public void testPolygonToCellsBandAntimeridian() {
+    double[] polygon = {0.1, 3.13, 0.1, -3.13, 0.12, -3.13, 0.12, 3.13, 0.1, 3.13};
+    double[] overlapping = {0.09, 3.12, 0.09, 3.14, 0.13, 3.14, 0.13, 3.12, 0.09, 3.12};
+    long[] polygonCells =
+        sorted(H3Plugin.h3Primitives.polygonToCells(polygon, NO_HOLES, NO_HOLE_VERTICES, 7));
+    long[] overlappingCells =
+        sorted(H3Plugin.h3Primitives.polygonToCells(overlapping, NO_HOLES, NO_HOLE_VERTICES, 7));
+    LongHashSet expected = new LongHashSet(0);
+    expected.addAll(polygonCells);
+    expected.addAll(overlappingCells);
+    // Some cells are in both polygons
+    assertTrue(polygonCells.length > 0);
+    assertTrue(expected.size() < polygonCells.length + overlappingCells.length);
+    for (int numBands = 1; numBands <= 4; numBands++) {
+      long[] actual = new long[0];
+      for (int band = 0; band < numBands; band++) {
+        // Each band is deduplicated, as the parts of a multipolygon are
+        LongHashSet bandCells = new LongHashSet(0);
+        for (double[] ring : new double[][] {polygon, overlapping}) {
+          bandCells.addAll(
+              ParallelPolygonToCells.polygonToCellsBand(
+                  ring, NO_HOLES, NO_HOLE_VERTICES, 7, 0.09, 0.13, band, numBands));
+        }
+        long[] cells = bandCells.toArray();
+        int offset = actual.length;
+        actual = Arrays.copyOf(actual, offset + cells.length);
+        System.arraycopy(cells, 0, actual, offset, cells.length);
+      }
+      assertArrayEquals(sorted(expected.toArray()), sorted(actual), numBands + " bands");
+    }
+  }
+
+  @Test
+  public void testPolygonToCellsBandAntimeridianFillsBand() {
+    // Too large to fill whole at resolution 11, as the native library overestimates long and thin
+    // polygons
+    double[] polygon = {-1, 3.14, -1, -3.14, 1, -3.14, 1, 3.14, -1, 3.14};
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> H3Plugin.h3Primitives.polygonToCells(polygon, NO_HOLES, NO_HOLE_VERTICES, 11));
+    int numBands = 1000;
+    int band = 500;
+    double south = -1 + 2.0 * band / numBands;
+    double north = -1 + 2.0 * (band + 1) / numBands;
+    long[] actual =
+        ParallelPolygonToCells.polygonToCellsBand(
+            polygon, NO_HOLES, NO_HOLE_VERTICES, 11, -1, 1, band, numBands);
+    // The band is a rectangle crossing the antimeridian, small enough to fill whole
+    double[] rectangle = {
+      south - 1e-6, 3.14, south - 1e-6, -3.14, north + 1e-6, -3.14, north + 1e-6, 3.14,
+      south - 1e-6, 3.14
+    };
+    LongHashSet expected = new LongHashSet(0);
+    for (long cell :
+        H3Plugin.h3Primitives.polygonToCells(rectangle, NO_HOLES, NO_HOLE_VERTICES, 11)) {
+      double lat = H3Plugin.h3Primitives.cellToLatLngRadians(cell)[0];
+      if (lat >= south && lat < north) {
+        expected.add(cell);
+      }
+    }
+    assertTrue(expected.size() > 0);
+    assertArrayEquals(sorted(expected.toArray()), sorted(actual));
+  }
+
+  @Test
+  public void testClipRing() {
+    // A square from 0 to 2, in both latitude and longitude. Edges keep their order.
+    double[] square = {0, 0, 0, 2, 2, 2, 2, 0, 0, 0};
+    assertArrayEquals(
+        new double[] {1, 2, 2, 2, 2, 0, 1, 0, 1, 2},
+        ParallelPolygonToCells.clipRing(square, 0, square.length, 1, 3),
+        0);
+    assertArrayEquals(
+        new double[] {0, 0, 0, 2, 1, 2, 1, 0, 0, 0},
+        ParallelPolygonToCells.clipRing(square, 0, square.length, -1, 1),
+        0);
+    assertArrayEquals(square, ParallelPolygonToCells.clipRing(square, 0, square.length, -1, 3), 0);
+    assertNull(ParallelPolygonToCells.clipRing(square, 0, square.length, 3, 4));
+  }
+
+  @Test
+  public void testEnabled() {
+    assertEquals(
+        Integer.getInteger(H3PluginConfig.POLYGON_TO_CELLS_PARALLELISM_PROPERTY, 0) > 0,
+        ParallelPolygonToCells.isEnabled());
+  }
+}
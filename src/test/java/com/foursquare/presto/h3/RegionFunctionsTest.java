@@ -17,16 +17,26 @@ package com.foursquare.presto.h3;
 
 import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
 import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.facebook.presto.testing.QueryRunner;
 import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
 
@@ -50,7 +60,12 @@ public class RegionFunctionsTest {
                       0x84754e3ffffffffL,
                       0x84754c5ffffffffL,
                       0x84754c7ffffffffL))));
-      // TODO: Test with holes
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 2 0, 2 2, 0 2, 0 0), (0.5 0.5, 1.5 0.5, 1.5 1.5, 0.5 1.5, 0.5 0.5))'), 3)) hex",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(0x83754cfffffffffL, 0x83754efffffffffL, 0x83756afffffffffL))));
 
       assertQueryResults(
           queryRunner,
@@ -67,6 +82,167 @@ public class RegionFunctionsTest {
     }
   }
 
+  @Test
+  public void testMultiPolygonToCells() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      List<Long> expected =
+          ImmutableList.of(
+              0x8458e15ffffffffL,
+              0x8458e19ffffffffL,
+              0x8458e1dffffffffL,
+              0x8458e39ffffffffL,
+              0x84754c5ffffffffL,
+              0x84754c7ffffffffL,
+              0x84754e3ffffffffL,
+              0x84754ebffffffffL);
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_polygon_to_cells(ST_GeometryFromText('MULTIPOLYGON (((0 0, 1 1, 1 0, 0 0)), ((10 10, 11 11, 11 10, 10 10)))'), 4)) hex",
+          ImmutableList.of(ImmutableList.of(expected)));
+      // The same polygon twice, and nested collections
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_polygon_to_cells(ST_GeometryFromText('GEOMETRYCOLLECTION (POLYGON ((0 0, 1 1, 1 0, 0 0)), MULTIPOLYGON (((10 10, 11 11, 11 10, 10 10)), ((0 0, 1 1, 1 0, 0 0))), POLYGON EMPTY)'), 4)) hex",
+          ImmutableList.of(ImmutableList.of(expected)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells(ST_GeometryFromText('GEOMETRYCOLLECTION EMPTY'), 4) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of())));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells(ST_GeometryFromText('GEOMETRYCOLLECTION (POLYGON ((0 0, 1 1, 1 0, 0 0)), POINT (40 4))'), 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  /** Many parts, which are filled in parallel, compared with filling each part. */
+  @Test
+  public void testPolygonsToCells() {
+    GeometryFactory geometryFactory = new GeometryFactory();
+    Random random = new Random(0);
+    List<Polygon> parts = new ArrayList<>();
+    LongHashSet expected = new LongHashSet(0);
+    for (int i = 0; i < 20; i++) {
+      // Overlapping squares, so that some cells are in several parts
+      double lat = random.nextDouble() * 2;
+      double lng = random.nextDouble() * 2;
+      Polygon part =
+          geometryFactory.createPolygon(
+              new Coordinate[] {
+                new Coordinate(lng, lat),
+                new Coordinate(lng + 1, lat),
+                new Coordinate(lng + 1, lat + 1),
+                new Coordinate(lng, lat + 1),
+                new Coordinate(lng, lat)
+              });
+      parts.add(part);
+      expected.addAll(
+          H3Plugin.h3Primitives.polygonToCells(
+              RegionFunctions.shellLatLngRadians(part), new int[0], new double[0], 5));
+    }
+    long[] cells = RegionFunctions.polygonsToCells(parts, 5);
+    Arrays.sort(cells);
+    long[] expectedCells = expected.toArray();
+    Arrays.sort(expectedCells);
+    assertArrayEquals(expectedCells, cells);
+  }
+
+  @Test
+  public void testAddPolygons() throws ParseException {
+    WKTReader wktReader = new WKTReader(new GeometryFactory());
+    List<Polygon> parts = new ArrayList<>();
+    assertTrue(
+        RegionFunctions.addPolygons(
+            wktReader.read(
+                "GEOMETRYCOLLECTION (POLYGON ((0 0, 1 1, 1 0, 0 0)), GEOMETRYCOLLECTION (MULTIPOLYGON (((10 10, 11 11, 11 10, 10 10))), POLYGON EMPTY))"),
+            parts));
+    assertEquals(2, parts.size());
+    assertFalse(
+        RegionFunctions.addPolygons(
+            wktReader.read("MULTILINESTRING ((0 0, 1 1), (1 1, 2 2))"), new ArrayList<>()));
+  }
+
+  @Test
+  public void testPolygonToCellsParts() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_part_count(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4, 10) parts",
+          ImmutableList.of(ImmutableList.of(5)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_part_count(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4, 1000) parts",
+          ImmutableList.of(ImmutableList.of(1)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_part_count(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 15, 1) parts",
+          ImmutableList.of(ImmutableList.of(RegionFunctions.MAX_PART_COUNT)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_part_count(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4, 0) parts",
+          ImmutableList.of(Collections.singletonList(null)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(array_agg(cell)) hex FROM UNNEST(sequence(0, 2)) AS p(part) CROSS JOIN UNNEST(h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4, part, 3)) AS c(cell)",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(
+                      0x84754c5ffffffffL,
+                      0x84754c7ffffffffL,
+                      0x84754e3ffffffffL,
+                      0x84754ebffffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT count(*) cells, count(DISTINCT cell) distinct_cells FROM UNNEST(sequence(0, 6)) AS p(part) CROSS JOIN UNNEST(h3_polygon_to_cells(ST_GeometryFromText('MULTIPOLYGON (((0 0, 1 1, 1 0, 0 0)), ((10 10, 11 11, 11 10, 10 10)))'), 4, part, 7)) AS c(cell)",
+          ImmutableList.of(ImmutableList.of(8L, 8L)));
+      // A polygon crossing the antimeridian, overlapping another
+      assertQueryResults(
+          queryRunner,
+          "SELECT count(*) cells, count(DISTINCT cell) distinct_cells FROM UNNEST(sequence(0, 3)) AS p(part) CROSS JOIN UNNEST(h3_polygon_to_cells(ST_GeometryFromText('MULTIPOLYGON (((179.4 5.7, -179.4 5.7, -179.4 6.9, 179.4 6.9, 179.4 5.7)), ((179 5.2, 179.9 5.2, 179.9 7.4, 179 7.4, 179 5.2)))'), 5, part, 4)) AS c(cell)",
+          ImmutableList.of(ImmutableList.of(174L, 174L)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4, 3, 3) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 4, 0, 0) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testPolygonToCellsCompact() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_polygon_to_cells_compact(ST_GeometryFromText('POLYGON ((0 0, 2 0, 2 2, 0 2, 0 0), (0.5 0.5, 1.5 0.5, 1.5 1.5, 0.5 1.5, 0.5 0.5))'), 3)) hex",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(0x83754cfffffffffL, 0x83754efffffffffL, 0x83756afffffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_polygon_to_cells_compact(h3_cell_to_boundary(from_base('85283473fffffff', 16)), 6)) = array_sort(h3_compact_cells(h3_polygon_to_cells(h3_cell_to_boundary(from_base('85283473fffffff', 16)), 6))) same",
+          ImmutableList.of(ImmutableList.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_compact(ST_GeometryFromText('POINT (40 4)'), 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_compact(null, 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_polygon_to_cells_compact(ST_GeometryFromText('POLYGON ((0 0, 1 1, 1 0, 0 0))'), 16) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testCellsToMultiPolygon() throws ParseException {
     try (QueryRunner queryRunner = createQueryRunner()) {
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 Foursquare Labs, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foursquare.presto.h3;
+
+import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
+import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.facebook.presto.testing.QueryRunner;
+import com.foursquare.presto.h3.RejectedRows.Reason;
+import com.google.common.collect.ImmutableList;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+@TestInstance(Lifecycle.PER_CLASS)
+public class RejectedRowsTest {
+  @Test
+  public void testReject() {
+    RejectedRows rejectedRows = RejectedRows.forFunction("test_reject");
+    assertSame(rejectedRows, RejectedRows.forFunction("test_reject"));
+
+    assertNull(rejectedRows.reject(Reason.INVALID_CELL));
+    assertEquals("result", rejectedRows.reject(Reason.INVALID_CELL, "result"));
+    assertNull(rejectedRows.reject(Reason.H3_ERROR));
+    assertEquals(2, rejectedRows.getInvalidCell());
+    assertEquals(1, rejectedRows.getH3Error());
+    assertEquals(0, rejectedRows.getInvalidResolution());
+    assertEquals(3, rejectedRows.getTotal());
+  }
+
+  @Test
+  public void testMBean() throws JMException {
+    RejectedRows rejectedRows = RejectedRows.forFunction("test_mbean");
+    rejectedRows.reject(Reason.INVALID_UNIT);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name =
+        new ObjectName(H3Plugin.JMX_DOMAIN + ":type=RejectedRows,name=test_mbean");
+    assertEquals(1L, server.getAttribute(name, "InvalidUnit"));
+    assertEquals(1L, server.getAttribute(name, "Total"));
+  }
+
+  @Test
+  public void testFunctions() {
+    RejectedRows cellArea = RejectedRows.forFunction("h3_cell_area");
+    long invalidCell = cellArea.getInvalidCell();
+    long invalidUnit = cellArea.getInvalidUnit();
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_cell_area(-1, 'km2'), h3_cell_area(from_base('85283473fffffff', 16), 'x')",
+          ImmutableList.of(Arrays.asList(null, null)));
+    }
+    assertEquals(invalidCell + 1, cellArea.getInvalidCell());
+    assertEquals(invalidUnit + 1, cellArea.getInvalidUnit());
+
+    RejectedRows latLngToCell = RejectedRows.forFunction("h3_latlng_to_cell");
+    long invalidResolution = latLngToCell.getInvalidResolution();
+    assertNull(IndexingFunctions.latLngToCell(0, 0, 16));
+    assertNull(IndexingFunctions.latLngToCell(0, 0, -1));
+    assertEquals(invalidResolution + 2, latLngToCell.getInvalidResolution());
+  }
+
+  @Test
+  public void testCellsToDirectedEdge() {
+    RejectedRows rejectedRows = RejectedRows.forFunction("h3_cells_to_directed_edge");
+    long invalidArgument = rejectedRows.getInvalidArgument();
+    long h3Error = rejectedRows.getH3Error();
+    // Cells which are not neighbors, from the native library, and the same cell
+    assertNull(DirectedEdgeFunctions.cellsToDirectedEdge(0x85283473fffffffL, 0x852836b7fffffffL));
+    assertNull(DirectedEdgeFunctions.cellsToDirectedEdge(0x85283473fffffffL, 0x85283473fffffffL));
+    assertEquals(invalidArgument + 2, rejectedRows.getInvalidArgument());
+    assertEquals(h3Error, rejectedRows.getH3Error());
+  }
+}
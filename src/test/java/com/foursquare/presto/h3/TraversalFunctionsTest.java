@@ -17,11 +17,16 @@ package com.foursquare.presto.h3;
 
 import static com.foursquare.presto.h3.H3PluginTest.assertQueryResults;
 import static com.foursquare.presto.h3.H3PluginTest.createQueryRunner;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.testing.QueryRunner;
 import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
@@ -136,6 +141,138 @@ public class TraversalFunctionsTest {
     }
   }
 
+  @Test
+  public void testGridDiskDistances() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances(from_base('85283473fffffff', 16), 1) hex",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(
+                      ImmutableList.of(0x85283473fffffffL),
+                      ImmutableList.of(
+                          0x85283447fffffffL,
+                          0x8528347bfffffffL,
+                          0x85283463fffffffL,
+                          0x85283477fffffffL,
+                          0x8528340ffffffffL,
+                          0x8528340bfffffffL)))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT transform(h3_grid_disk_distances(from_base('85283473fffffff', 16), 10), r -> array_sort(r)) = transform(sequence(0, 10), d -> array_sort(h3_grid_ring_unsafe(from_base('85283473fffffff', 16), d))) same",
+          ImmutableList.of(ImmutableList.of(true)));
+      // Pentagon:
+      assertQueryResults(
+          queryRunner,
+          "SELECT transform(h3_grid_disk_distances(from_base('811c3ffffffffff', 16), 2), r -> cardinality(r)) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of(1, 5, 10))));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances(0, 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances(from_base('85283473fffffff', 16), -1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances(from_base('85283473fffffff', 16), 100000) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testGridDiskDistancesPrimitive() {
+    for (long origin : new long[] {0x85283473fffffffL, 0x811c3ffffffffffL, 0x8a1c00000007fffL}) {
+      for (int k = 0; k <= 5; k++) {
+        int[] offsets = new int[k + 2];
+        long[] disk = H3Plugin.h3Primitives.gridDiskDistances(origin, k, offsets);
+        List<List<Long>> expected = H3Plugin.h3.gridDiskDistances(origin, k);
+        assertEquals(k + 1, expected.size());
+        for (int d = 0; d <= k; d++) {
+          List<Long> ring = new ArrayList<>();
+          for (int i = offsets[d]; i < offsets[d + 1]; i++) {
+            ring.add(disk[i]);
+          }
+          assertEquals(expected.get(d), ring, Long.toHexString(origin) + " " + k + " " + d);
+        }
+        assertEquals(disk.length, offsets[k + 1]);
+      }
+    }
+  }
+
+  @Test
+  public void testGridDiskCompact() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_compact(from_base('85283473fffffff', 16), 0) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of(0x85283473fffffffL))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_grid_disk_compact(from_base('89283082803ffff', 16), 30)) = array_sort(h3_compact_cells(h3_grid_disk(from_base('89283082803ffff', 16), 30))) same",
+          ImmutableList.of(ImmutableList.of(true)));
+      // Pentagon:
+      assertQueryResults(
+          queryRunner,
+          "SELECT array_sort(h3_grid_disk_compact(from_base('831c00fffffffff', 16), 20)) = array_sort(h3_compact_cells(h3_grid_disk(from_base('831c00fffffffff', 16), 20))) same",
+          ImmutableList.of(ImmutableList.of(true)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_compact(0, 4) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of())));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_compact(from_base('85283473fffffff', 16), -1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_compact(null, 1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testGridDiskDistancesUnsafe() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances_unsafe(from_base('85283473fffffff', 16), 1) hex",
+          ImmutableList.of(
+              ImmutableList.of(
+                  ImmutableList.of(
+                      ImmutableList.of(0x85283473fffffffL),
+                      ImmutableList.of(
+                          0x85283447fffffffL,
+                          0x8528347bfffffffL,
+                          0x85283463fffffffL,
+                          0x85283477fffffffL,
+                          0x8528340ffffffffL,
+                          0x8528340bfffffffL)))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances_unsafe(from_base('85283473fffffff', 16), 10) = transform(sequence(0, 10), d -> h3_grid_ring_unsafe(from_base('85283473fffffff', 16), d)) same",
+          ImmutableList.of(ImmutableList.of(true)));
+      // Pentagon:
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances_unsafe(from_base('811c3ffffffffff', 16), 1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances_unsafe(0, 4) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_disk_distances_unsafe(from_base('85283473fffffff', 16), -1) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
   @Test
   public void testGridRingUnsafe() {
     try (QueryRunner queryRunner = createQueryRunner()) {
@@ -243,6 +380,53 @@ public class TraversalFunctionsTest {
     }
   }
 
+  @Test
+  public void testGridDistances() {
+    try (QueryRunner queryRunner = createQueryRunner()) {
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_distances(from_base('85283473fffffff', 16), ARRAY[from_base('8528342ffffffff', 16), from_base('85283473fffffff', 16), null, 0, from_base('8928308280fffff', 16), from_base('85754e67fffffff', 16)]) hex",
+          ImmutableList.of(ImmutableList.of(Arrays.asList(3L, 0L, null, null, null, null))));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_distances(from_base('85283473fffffff', 16), h3_grid_disk(from_base('85283473fffffff', 16), 10)) = transform(h3_grid_disk(from_base('85283473fffffff', 16), 10), c -> h3_grid_distance(from_base('85283473fffffff', 16), c)) same",
+          ImmutableList.of(ImmutableList.of(true)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_distances(from_base('85283473fffffff', 16), ARRAY[]) hex",
+          ImmutableList.of(ImmutableList.of(ImmutableList.of())));
+
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_distances(0, ARRAY[from_base('8528342ffffffff', 16)]) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_distances(null, ARRAY[from_base('8528342ffffffff', 16)]) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+      assertQueryResults(
+          queryRunner,
+          "SELECT h3_grid_distances(from_base('8528342ffffffff', 16), null) hex",
+          ImmutableList.of(Collections.singletonList(null)));
+    }
+  }
+
+  @Test
+  public void testGridDistancesMatchesGridDistance() {
+    // Origins include a pentagon and cells near one, where some distances cannot be found
+    for (long origin : new long[] {0x85283473fffffffL, 0x811c3ffffffffffL, 0x8a1c00000007fffL}) {
+      Block disk = H3Plugin.longArrayToBlock(H3Plugin.h3Primitives.gridDisk(origin, 30));
+      Block distances = TraversalFunctions.gridDistances(origin, disk);
+      assertNotNull(distances);
+      for (int i = 0; i < disk.getPositionCount(); i++) {
+        long cell = disk.getLong(i);
+        Long expected = TraversalFunctions.gridDistance(origin, cell);
+        Long actual = distances.isNull(i) ? null : distances.getLong(i);
+        assertEquals(expected, actual, Long.toHexString(cell));
+      }
+    }
+  }
+
   @Test
   public void testCellToLocalIj() {
     try (QueryRunner queryRunner = createQueryRunner()) {